@@ -6,6 +6,7 @@ import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
+import org.newdawn.slick.geom.Transform;
 import org.newdawn.slick.opengl.renderer.SGL;
 import org.newdawn.slick.util.Log;
 
@@ -73,6 +74,17 @@ public class GDXRenderer implements SGL {
 	/** The offset into a quad used to index the triangles */
 	private int quadOffset;
 	
+	/** True if vertices are being transformed on the CPU */
+	private boolean transforming;
+	/** The affine transform applied to vertices on the CPU as m00, m01, m02, m10, m11, m12 */
+	private float[] transform = new float[] {1,0,0,0,1,0};
+	/** The transforms pushed while transforming on the CPU */
+	private float[] transformStack = new float[6 * 8];
+	/** The number of transforms pushed while transforming on the CPU */
+	private int transformDepth;
+	/** The draws held back above the renderer or null if there are none */
+	private DeferredDraws deferred;
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.newdawn.slick.opengl.renderer.SGL#initDisplay(int, int)
@@ -164,6 +176,7 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#flush()
 	 */
 	public void flush() {
+		drawDeferred();
 		applyBuffer();
 	}
 	
@@ -212,6 +225,12 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glVertex3f(float, float, float)
 	 */
 	public void glVertex3f(float x, float y, float z) {
+		if (transforming) {
+			float tx = (transform[0] * x) + (transform[1] * y) + transform[2];
+			y = (transform[3] * x) + (transform[4] * y) + transform[5];
+			x = tx;
+		}
+		
 		if (currentType != SGL.GL_QUADS) {
 			glVertex3f(vertIndex, x, y, z);
 			vertIndex++;
@@ -366,6 +385,15 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPopMatrix()
 	 */
 	public void glPopMatrix() {
+		drawDeferred();
+		if (transforming) {
+			if (transformDepth > 0) {
+				transformDepth--;
+				System.arraycopy(transformStack, transformDepth * 6, transform, 0, 6);
+			}
+			return;
+		}
+		
 		applyBuffer();
 		gl.glPopMatrix();
 	}
@@ -374,6 +402,17 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPushMatrix()
 	 */
 	public void glPushMatrix() {
+		if (transforming) {
+			if ((transformDepth + 1) * 6 > transformStack.length) {
+				float[] stack = new float[transformStack.length * 2];
+				System.arraycopy(transformStack, 0, stack, 0, transformStack.length);
+				transformStack = stack;
+			}
+			System.arraycopy(transform, 0, transformStack, transformDepth * 6, 6);
+			transformDepth++;
+			return;
+		}
+		
 		applyBuffer();
 		gl.glPushMatrix();
 	}
@@ -382,6 +421,23 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glRotatef(float, float, float, float)
 	 */
 	public void glRotatef(float angle, float x, float y, float z) {
+		drawDeferred();
+		if (transforming) {
+			float rad = (float) Math.toRadians(z < 0 ? -angle : angle);
+			float cos = (float) Math.cos(rad);
+			float sin = (float) Math.sin(rad);
+			float m00 = transform[0];
+			float m01 = transform[1];
+			float m10 = transform[3];
+			float m11 = transform[4];
+			
+			transform[0] = (m00 * cos) + (m01 * sin);
+			transform[1] = (m01 * cos) - (m00 * sin);
+			transform[3] = (m10 * cos) + (m11 * sin);
+			transform[4] = (m11 * cos) - (m10 * sin);
+			return;
+		}
+		
 		applyBuffer();
 		gl.glRotatef(angle, x, y, z);
 	}
@@ -390,6 +446,15 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glScalef(float, float, float)
 	 */
 	public void glScalef(float x, float y, float z) {
+		drawDeferred();
+		if (transforming) {
+			transform[0] *= x;
+			transform[3] *= x;
+			transform[1] *= y;
+			transform[4] *= y;
+			return;
+		}
+		
 		applyBuffer();
 		gl.glScalef(x, y, z);
 	}
@@ -414,6 +479,13 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glTranslatef(float, float, float)
 	 */
 	public void glTranslatef(float x, float y, float z) {
+		drawDeferred();
+		if (transforming) {
+			transform[2] += (transform[0] * x) + (transform[1] * y);
+			transform[5] += (transform[3] * x) + (transform[4] * y);
+			return;
+		}
+		
 		applyBuffer();
 		gl.glTranslatef(x, y, z);
 	}
@@ -443,6 +515,18 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
 	 */
 	public void glLoadMatrix(FloatBuffer buffer) {
+		drawDeferred();
+		if (transforming) {
+			int base = buffer.position();
+			transform[0] = buffer.get(base);
+			transform[1] = buffer.get(base + 4);
+			transform[2] = buffer.get(base + 12);
+			transform[3] = buffer.get(base + 1);
+			transform[4] = buffer.get(base + 5);
+			transform[5] = buffer.get(base + 13);
+			return;
+		}
+		
 		flushBuffer();
 		gl.glLoadMatrixf(buffer);
 	}
@@ -501,6 +585,17 @@ public class GDXRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadIdentity()
 	 */
 	public void glLoadIdentity() {
+		drawDeferred();
+		if (transforming) {
+			transform[0] = 1;
+			transform[1] = 0;
+			transform[2] = 0;
+			transform[3] = 0;
+			transform[4] = 1;
+			transform[5] = 0;
+			return;
+		}
+		
 		gl.glLoadIdentity();
 	}
 
@@ -551,6 +646,61 @@ public class GDXRenderer implements SGL {
 	public void setGlobalAlphaScale(float alphaScale) {
 	}
 
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#drawArrays(int, float[], float[], float[], int)
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		float r = color[0];
+		float g = color[1];
+		float b = color[2];
+		float a = color[3];
+		
+		// the vertices go through the same cache as immediate mode geometry
+		// so they're batched with it
+		glBegin(geomType);
+		for (int i=0;i<count;i++) {
+			glColor4f(colors[i*4], colors[(i*4)+1], colors[(i*4)+2], colors[(i*4)+3]);
+			glTexCoord2f(texCoords[i*2], texCoords[(i*2)+1]);
+			glVertex2f(verts[i*2], verts[(i*2)+1]);
+		}
+		glEnd();
+		
+		glColor4f(r, g, b, a);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setTransform(org.newdawn.slick.geom.Transform)
+	 */
+	public void setTransform(Transform transform) {
+		drawDeferred();
+		transformDepth = 0;
+		if (transform == null) {
+			transforming = false;
+			return;
+		}
+		
+		System.arraycopy(transform.getMatrixPosition(), 0, this.transform, 0, 6);
+		transforming = true;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setDeferredDraws(org.newdawn.slick.opengl.renderer.DeferredDraws)
+	 */
+	public void setDeferredDraws(DeferredDraws draws) {
+		// display lists aren't supported so nothing is ever compiled
+		deferred = draws;
+	}
+	
+	/**
+	 * Draw anything held back above the renderer, before a call that would
+	 * change how it's drawn
+	 */
+	private void drawDeferred() {
+		if (deferred != null) {
+			deferred.drawDeferred();
+		}
+	}
+
 	/**
 	 * Log a failure message
 	 * 
@@ -11,6 +11,7 @@ import org.lwjgl.BufferUtils;
 import org.newdawn.slick.geom.Rectangle;
 import org.newdawn.slick.geom.Shape;
 import org.newdawn.slick.geom.ShapeRenderer;
+import org.newdawn.slick.geom.Transform;
 import org.newdawn.slick.opengl.TextureImpl;
 import org.newdawn.slick.opengl.renderer.LineStripRenderer;
 import org.newdawn.slick.opengl.renderer.Renderer;
@@ -69,11 +70,13 @@ public class Graphics {
 	 */
 	public static void setCurrent(Graphics current) {
 		if (currentGraphics != current) {
+			flushCapturedImages();
 			if (currentGraphics != null) {
 				currentGraphics.disable();
 			}
 			currentGraphics = current;
 			currentGraphics.enable();
+			GL.setTransform(current.softwareTransform ? current.transform : null);
 		}
 	}
 	
@@ -117,6 +120,10 @@ public class Graphics {
 	private ArrayList stack = new ArrayList();
 	/** The index into the stack we're using */
 	private int stackIndex;
+	/** True if transforms are applied to vertices on the CPU rather than by GL */
+	private boolean softwareTransform;
+	/** The transform applied since the last reset when transforming on the CPU */
+	private Transform transform = new Transform();
 
 	/**
 	 * Default constructor for sub-classes
@@ -176,6 +183,7 @@ public class Graphics {
 	 *            The mode to apply.
 	 */
 	public void setDrawMode(int mode) {
+		flushCapturedImages();
 		predraw();
 		currentDrawingMode = mode;
 		if (currentDrawingMode == MODE_NORMAL) {
@@ -231,10 +239,34 @@ public class Graphics {
 
 	/**
 	 * Must be called before all OpenGL operations to maintain context for
-	 * dynamic images
+	 * dynamic images. Any image draws captured by a sprite batch are drawn
+	 * first so they stay underneath whatever is drawn next.
 	 */
 	private void predraw() {
 		setCurrent(this);
+		flushCapturedImages();
+	}
+
+	/**
+	 * Must be called before drawing images or changing the colour, which 
+	 * leaves any image draws captured by a sprite batch to be drawn together
+	 * with those that follow
+	 */
+	private void predrawImage() {
+		setCurrent(this);
+	}
+
+	/**
+	 * Draw any image draws captured by a sprite batch, so they're drawn with
+	 * the transform, clip, draw mode and context they were recorded under 
+	 * before it changes
+	 * 
+	 * @see SpriteBatch#begin(boolean)
+	 */
+	private static void flushCapturedImages() {
+		if (Image.batch != null) {
+			Image.batch.flushCaptured();
+		}
 	}
 
 	/**
@@ -316,9 +348,16 @@ public class Graphics {
 	 * Reset the transformation on this graphics context
 	 */
 	public void resetTransform() {
+		flushCapturedImages();
 		sx = 1;
 		sy = 1;
 		
+		if (softwareTransform) {
+			transform = new Transform();
+			applyTransform();
+			return;
+		}
+		
 		if (pushed) {
 			predraw();
 			GL.glPopMatrix();
@@ -327,6 +366,43 @@ public class Graphics {
 		}
 	}
 
+	/**
+	 * Indicate whether transforms should be applied to vertices on the CPU 
+	 * rather than using the GL matrix stack. When transforming on the CPU 
+	 * translate(), rotate(), scale(), pushTransform() and popTransform() 
+	 * don't touch GL at all and the vertices of everything drawn are transformed
+	 * before they reach the renderer, so transformed geometry can still be 
+	 * batched. The transform is reset when switching modes. Note that the 
+	 * world clip is not transformed while transforming on the CPU.
+	 * 
+	 * @param softwareTransform True if transforms should be applied on the CPU
+	 */
+	public void setSoftwareTransform(boolean softwareTransform) {
+		resetTransform();
+		stackIndex = 0;
+		
+		this.softwareTransform = softwareTransform;
+		applyTransform();
+	}
+	
+	/**
+	 * Check if transforms are being applied to vertices on the CPU
+	 * 
+	 * @return True if transforms are being applied on the CPU
+	 */
+	public boolean isSoftwareTransform() {
+		return softwareTransform;
+	}
+	
+	/**
+	 * Pass the transform applied on the CPU to the renderer
+	 */
+	private void applyTransform() {
+		predraw();
+		GL.setTransform(softwareTransform ? transform : null);
+		postdraw();
+	}
+
 	/**
 	 * Check if we've pushed the previous matrix, if not then push it now.
 	 */
@@ -348,9 +424,16 @@ public class Graphics {
 	 *            The scaling factor to apply to the y axis
 	 */
 	public void scale(float sx, float sy) {
+		flushCapturedImages();
 		this.sx = this.sx * sx;
 		this.sy = this.sy * sy;
 		
+		if (softwareTransform) {
+			transform.concatenate(Transform.createScaleTransform(sx, sy));
+			applyTransform();
+			return;
+		}
+		
 		checkPush();
 
 		predraw();
@@ -369,6 +452,13 @@ public class Graphics {
 	 *            The angle (in degrees) to rotate by
 	 */
 	public void rotate(float rx, float ry, float ang) {
+		flushCapturedImages();
+		if (softwareTransform) {
+			transform.concatenate(Transform.createRotateTransform((float) Math.toRadians(ang), rx, ry));
+			applyTransform();
+			return;
+		}
+		
 		checkPush();
 
 		predraw();
@@ -387,6 +477,13 @@ public class Graphics {
 	 *            The amount of translate on the y-axis
 	 */
 	public void translate(float x, float y) {
+		flushCapturedImages();
+		if (softwareTransform) {
+			transform.concatenate(Transform.createTranslateTransform(x, y));
+			applyTransform();
+			return;
+		}
+		
 		checkPush();
 
 		predraw();
@@ -423,7 +520,7 @@ public class Graphics {
 		}
 		
 		currentColor = new Color(color);
-		predraw();
+		predrawImage();
 		currentColor.bind();
 		postdraw();
 	}
@@ -696,6 +793,7 @@ public class Graphics {
 	 * anywhere on the screen
 	 */
 	public void clearClip() {
+		flushCapturedImages();
 		clip = null;
 		predraw();
 		GL.glDisable(SGL.GL_SCISSOR_TEST);
@@ -718,6 +816,7 @@ public class Graphics {
 	 *            The height of the allowed area
 	 */
 	public void setWorldClip(float x, float y, float width, float height) {
+		flushCapturedImages();
 		predraw();
 		worldClipRecord = new Rectangle(x, y, width, height);
 		
@@ -741,6 +840,7 @@ public class Graphics {
 	 * Clear world clipping setup. This does not effect screen clipping
 	 */
 	public void clearWorldClip() {
+		flushCapturedImages();
 		predraw();
 		worldClipRecord = null;
 		GL.glDisable(SGL.GL_CLIP_PLANE0);
@@ -790,6 +890,7 @@ public class Graphics {
 	 *            The height of the allowed area
 	 */
 	public void setClip(int x, int y, int width, int height) {
+		flushCapturedImages();
 		predraw();
 		
 		if (clip == null) {
@@ -1380,7 +1481,7 @@ public class Graphics {
 	 *            The color to apply to the image as a filter
 	 */
 	public void drawImage(Image image, float x, float y, Color col) {
-		predraw();
+		predrawImage();
 		image.draw(x, y, col);
 		currentColor.bind();
 		postdraw();
@@ -1413,7 +1514,7 @@ public class Graphics {
 	 *            The color to apply to the animation as a filter
 	 */
 	public void drawAnimation(Animation anim, float x, float y, Color col) {
-		predraw();
+		predrawImage();
 		anim.draw(x, y, col);
 		currentColor.bind();
 		postdraw();
@@ -1462,7 +1563,7 @@ public class Graphics {
 	 */
 	public void drawImage(Image image, float x, float y, float x2, float y2,
 			float srcx, float srcy, float srcx2, float srcy2) {
-		predraw();
+		predrawImage();
 		image.draw(x, y, x2, y2, srcx, srcy, srcx2, srcy2);
 		currentColor.bind();
 		postdraw();
@@ -1509,6 +1610,8 @@ public class Graphics {
 	 *            The y position to copy from
 	 */
 	public void copyArea(Image target, int x, int y) {
+		flushCapturedImages();
+		
 		int format = target.getTexture().hasAlpha() ? SGL.GL_RGBA : SGL.GL_RGB;
 		target.bind();
 		GL.glCopyTexImage2D(SGL.GL_TEXTURE_2D, 0, format, x, screenHeight
@@ -1605,7 +1708,7 @@ public class Graphics {
 	 */
 	public void drawImage(Image image, float x, float y, float x2, float y2,
 			float srcx, float srcy, float srcx2, float srcy2, Color col) {
-		predraw();
+		predrawImage();
 		image.draw(x, y, x2, y2, srcx, srcy, srcx2, srcy2, col);
 		currentColor.bind();
 		postdraw();
@@ -1742,7 +1845,14 @@ public class Graphics {
 			buffer = (FloatBuffer) stack.get(stackIndex);
 		}
 		
-		GL.glGetFloat(SGL.GL_MODELVIEW_MATRIX, buffer);
+		if (softwareTransform) {
+			float[] matrix = transform.getMatrixPosition();
+			for (int i=0;i<6;i++) {
+				buffer.put(i, matrix[i]);
+			}
+		} else {
+			GL.glGetFloat(SGL.GL_MODELVIEW_MATRIX, buffer);
+		}
 		buffer.put(16, sx);
 		buffer.put(17, sy);
 		stackIndex++;
@@ -1758,12 +1868,19 @@ public class Graphics {
 		if (stackIndex == 0) {
 			throw new RuntimeException("Attempt to pop a transform that hasn't be pushed");
 		}
+		flushCapturedImages();
 		
 		predraw();
 		
 		stackIndex--;
 		FloatBuffer oldBuffer = (FloatBuffer) stack.get(stackIndex);
-		GL.glLoadMatrix(oldBuffer);
+		if (softwareTransform) {
+			transform = new Transform(oldBuffer.get(0), oldBuffer.get(1), oldBuffer.get(2),
+									  oldBuffer.get(3), oldBuffer.get(4), oldBuffer.get(5));
+			GL.setTransform(transform);
+		} else {
+			GL.glLoadMatrix(oldBuffer);
+		}
 		sx = oldBuffer.get(16);
 		sy = oldBuffer.get(17);
 		
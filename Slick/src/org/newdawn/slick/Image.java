@@ -32,6 +32,8 @@ public class Image implements Renderable {
 	
 	/** The sprite sheet currently in use */
 	protected static Image inUse;
+	/** The sprite batch recording image draws or null if they're drawn immediately */
+	static SpriteBatch batch;
 	/** Use Linear Filtering */
 	public static final int FILTER_LINEAR = 1;
 	/** Use Nearest Filtering */
@@ -502,6 +504,11 @@ public class Image implements Renderable {
 			height = texture.getImageHeight();
 			textureOffsetX = 0;
 			textureOffsetY = 0;
+			if (texture instanceof TextureImpl) {
+				// textures packed into an atlas share their page with other images
+				textureOffsetX = ((TextureImpl) texture).getTextureOffsetX();
+				textureOffsetY = ((TextureImpl) texture).getTextureOffsetY();
+			}
 			textureWidth = texture.getWidth();
 			textureHeight = texture.getHeight();
 		}
@@ -570,6 +577,12 @@ public class Image implements Renderable {
 	public void drawEmbedded(float x,float y,float width,float height) {
 		init();
 		
+		if (isCapturing()) {
+			batch.add(this, x, y, width, height, textureOffsetX, textureOffsetY, textureWidth, textureHeight,
+					  0, 0, 0, 1, null, corners, batch.getDepth());
+			return;
+		}
+		
 		if (corners == null) {
 		    GL.glTexCoord2f(textureOffsetX, textureOffsetY);
 			GL.glVertex3f(x, y, 0);
@@ -765,6 +778,12 @@ public class Image implements Renderable {
     		filter = new Color(filter);
     		filter.a *= alpha;
     	}
+    	if (isCapturing()) {
+    		init();
+    		batch.add(this, x, y, width, height, textureOffsetX, textureOffsetY, textureWidth, textureHeight,
+    				  angle, centerX, centerY, 1, filter, corners, batch.getDepth());
+    		return;
+    	}
         if (filter != null) { 
             filter.bind(); 
         } 
@@ -1029,6 +1048,10 @@ public class Image implements Renderable {
     		
     		filter = new Color(filter);
     		filter.a *= alpha;
+    	}
+    	if (isCapturing()) {
+    		drawEmbedded(x,y,x2,y2,srcx,srcy,srcx2,srcy2,filter,angle);
+    		return;
     	}
 		filter.bind();
 		texture.bind();
@@ -1088,6 +1111,10 @@ public class Image implements Renderable {
 	 * @param filter The colour filter to apply when drawing
 	 */
 	public void drawEmbedded(float x, float y, float x2, float y2, float srcx, float srcy, float srcx2, float srcy2, Color filter) {
+		if (isCapturing()) {
+			drawEmbedded(x,y,x2,y2,srcx,srcy,srcx2,srcy2,filter,0);
+			return;
+		}
 		if (filter != null) {
 			filter.bind();
 		}
@@ -1119,6 +1146,47 @@ public class Image implements Renderable {
 		GL.glVertex3f((x + mywidth),y, 0.0f);
 	}
 	
+	/**
+	 * Check if image draws are being recorded into a sprite batch rather than
+	 * drawn. They aren't while a display list is being compiled, so that they
+	 * end up in the list.
+	 * 
+	 * @return True if image draws are being recorded into a sprite batch
+	 */
+	static boolean isCapturing() {
+		return (batch != null) && batch.canCapture();
+	}
+	
+	/**
+	 * Record a section of this image into the sprite batch capturing image draws
+	 * 
+	 * @param x The x position to draw the image
+	 * @param y The y position to draw the image
+	 * @param x2 The x position of the bottom right corner of the drawn image
+	 * @param y2 The y position of the bottom right corner of the drawn image
+	 * @param srcx The x position of the rectangle to draw from this image (i.e. relative to this image)
+	 * @param srcy The y position of the rectangle to draw from this image (i.e. relative to this image)
+	 * @param srcx2 The x position of the bottom right cornder of rectangle to draw from this image (i.e. relative to this image)
+	 * @param srcy2 The t position of the bottom right cornder of rectangle to draw from this image (i.e. relative to this image)
+	 * @param filter The colour filter to apply when drawing or null to use the current colour
+	 * @param rotation The rotation to apply about the centre of this image
+	 */
+	private void drawEmbedded(float x, float y, float x2, float y2, float srcx, float srcy, float srcx2, float srcy2, Color filter, float rotation) {
+		init();
+		
+		float newTextureOffsetX = (((srcx) / (width)) * textureWidth)
+				+ textureOffsetX;
+		float newTextureOffsetY = (((srcy) / (height)) * textureHeight)
+				+ textureOffsetY;
+		float newTextureWidth = (((srcx2 - srcx)) / (width))
+				* textureWidth;
+		float newTextureHeight = (((srcy2 - srcy)) / (height))
+				* textureHeight;
+		
+		batch.add(this, x, y, x2 - x, y2 - y, newTextureOffsetX, newTextureOffsetY, newTextureWidth, newTextureHeight,
+				  rotation, centerX, centerY, 1, filter, null, batch.getDepth());
+	}
+	
 	/**
 	 * Draw the image in a warper rectangle. The effects this can 
 	 * have are many and varied, might be interesting though.
@@ -1267,7 +1335,9 @@ public class Image implements Renderable {
 			throw new RuntimeException("The sprite sheet is not currently in use");
 		}
 		inUse = null;
-		GL.glEnd();
+		if (!isCapturing()) {
+			GL.glEnd();
+		}
 	}
 	
 	/**
@@ -1284,8 +1354,10 @@ public class Image implements Renderable {
 		init();
 
 		Color.white.bind();
-		texture.bind();
-		GL.glBegin(SGL.GL_QUADS);
+		if (!isCapturing()) {
+			texture.bind();
+			GL.glBegin(SGL.GL_QUADS);
+		}
 	}
 	
 	/**
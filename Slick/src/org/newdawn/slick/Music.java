@@ -22,14 +22,15 @@ public class Music {
 	
 	/**
 	 * Poll the state of the current music. This causes streaming music
-	 * to stream and checks listeners. Note that if you're using a game container
-	 * this will be auto-magically called for you.
+	 * to stream, frees the sources of finished sound effects and checks 
+	 * listeners. Note that if you're using a game container this will be 
+	 * auto-magically called for you.
 	 * 
 	 * @param delta The amount of time since last poll
 	 */
 	public static void poll(int delta) {
+		SoundStore.get().poll(delta);
 		if (currentMusic != null) {
-			SoundStore.get().poll(delta);
 			if (!SoundStore.get().isMusicPlaying()) {
 				if (!currentMusic.positioning) {
 					Music oldMusic = currentMusic;
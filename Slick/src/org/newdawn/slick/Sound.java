@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.net.URL;
 
 import org.newdawn.slick.openal.Audio;
+import org.newdawn.slick.openal.AudioImpl;
 import org.newdawn.slick.openal.SoundStore;
 import org.newdawn.slick.util.Log;
 
@@ -172,4 +173,42 @@ public class Sound {
 	public void stop() {
 		sound.stop();
 	}
+	
+	/**
+	 * Release the sound's data. Sounds loaded from the same resource share
+	 * their data, which can be unloaded once they've all been released. The
+	 * sound shouldn't be played after it's released.
+	 * 
+	 * @see org.newdawn.slick.openal.SoundStore#setSoundBufferBudget(int)
+	 */
+	public void release() {
+		if (sound instanceof AudioImpl) {
+			((AudioImpl) sound).release();
+		}
+	}
+	
+	/**
+	 * Set the priority of this sound effect. When every source is in use a 
+	 * sound will stop sounds of a lower priority to play, but never sounds of 
+	 * a higher priority. The default is 0.
+	 * 
+	 * @param priority The priority of this sound effect
+	 */
+	public void setPriority(int priority) {
+		if (sound instanceof AudioImpl) {
+			((AudioImpl) sound).setPriority(priority);
+		}
+	}
+	
+	/**
+	 * Set the maximum number of copies of this sound effect that can play at
+	 * once. Playing the sound once the limit is reached restarts the oldest copy.
+	 * 
+	 * @param maxInstances The maximum number of copies to play at once, or 0 for no limit
+	 */
+	public void setMaxInstances(int maxInstances) {
+		if (sound instanceof AudioImpl) {
+			((AudioImpl) sound).setMaxInstances(maxInstances);
+		}
+	}
 }
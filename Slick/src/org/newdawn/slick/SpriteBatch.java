@@ -0,0 +1,586 @@
+package org.newdawn.slick;
+
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.renderer.DeferredDraws;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * A batch of image draws that are recorded and then drawn together. Between
+ * begin() and end() each draw is stored along with its position, rotation,
+ * scale, colour and depth. At end() the sprites are sorted by depth, blend
+ * function and texture, and each run of sprites sharing a blend function
+ * and texture is drawn with a single call to the renderer.
+ *
+ * Sprites at a lower depth are drawn first. Sprites at the same depth are
+ * grouped by texture so their order relative to each other is only kept
+ * when they share a texture and blend function - give overlapping sprites
+ * different depths if their order matters.
+ *
+ * Existing code can opt in by starting the batch with begin(true). Until
+ * end() is called any Image.draw(), Image.drawEmbedded() or
+ * SpriteSheet.renderInUse() calls are recorded into the batch at the current
+ * depth rather than being drawn immediately. So that such code draws as it
+ * did before, sprites at the same depth are then kept in the order they were
+ * recorded, only runs of sprites that happen to share a texture being drawn
+ * together. The sprites recorded so far are drawn whenever the transform is 
+ * changed, whether through Graphics or straight through the renderer, before
+ * a display list is called, before anything other than an image is drawn 
+ * through Graphics and whenever the Graphics clip, draw mode or context 
+ * changes. Depth only orders sprites recorded between such changes. Images
+ * drawn while a display list is being compiled are never recorded, so they're
+ * compiled into the list.
+ *
+ * @author kevin
+ */
+public class SpriteBatch {
+	/** The renderer to use for all GL operations */
+	protected static SGL GL = Renderer.get();
+
+	/** The number of sprites allocated when the batch is created */
+	private static final int INITIAL_SPRITES = 100;
+
+	/** The x,y pairs of each sprite's corners */
+	private float[] verts = new float[INITIAL_SPRITES * 8];
+	/** The u,v pairs of each sprite's corners */
+	private float[] texs = new float[INITIAL_SPRITES * 8];
+	/** The r,g,b,a components of each sprite's corners */
+	private float[] cols = new float[INITIAL_SPRITES * 16];
+	/** The texture each sprite is drawn with */
+	private Texture[] textures = new Texture[INITIAL_SPRITES];
+	/** The depth of each sprite */
+	private float[] depths = new float[INITIAL_SPRITES];
+	/** The index of the blend function each sprite is drawn with */
+	private int[] blends = new int[INITIAL_SPRITES];
+	/** The number of sprites recorded */
+	private int count;
+
+	/** The order the sprites should be drawn in */
+	private int[] order = new int[INITIAL_SPRITES];
+	/** Scratch space for sorting the draw order */
+	private int[] sorted = new int[INITIAL_SPRITES];
+
+	/** The x,y pairs of the vertices of the group being drawn */
+	private float[] groupVerts = new float[INITIAL_SPRITES * 8];
+	/** The u,v pairs of the vertices of the group being drawn */
+	private float[] groupTexs = new float[INITIAL_SPRITES * 8];
+	/** The r,g,b,a components of the vertices of the group being drawn */
+	private float[] groupCols = new float[INITIAL_SPRITES * 16];
+
+	/** The source factors of the blend functions used, the first is the default */
+	private int[] blendSrc = new int[] {SGL.GL_SRC_ALPHA};
+	/** The destination factors of the blend functions used, the first is the default */
+	private int[] blendDst = new int[] {SGL.GL_ONE_MINUS_SRC_ALPHA};
+	/** The index of the blend function new sprites are drawn with */
+	private int blend;
+
+	/** The depth new sprites are recorded at */
+	private float depth;
+	/** True if we're between begin() and end() */
+	private boolean drawing;
+	/** True if image draws are being captured, in which case the recorded order is kept */
+	private boolean capturing;
+	/** True if a display list is being compiled, in which case image draws aren't captured */
+	private boolean compiling;
+	/** The hook the renderer uses to draw the captured sprites before its state changes */
+	private DeferredDraws captured = new DeferredDraws() {
+		public void drawDeferred() {
+			flushCaptured();
+		}
+
+		public void setCompiling(boolean compiling) {
+			SpriteBatch.this.compiling = compiling;
+		}
+	};
+	/** The number of draw calls made since the last begin() */
+	private int drawCalls;
+	/** The scratch colour used for sprites drawn with the current colour */
+	private Color current = new Color(1,1,1,1);
+
+	/**
+	 * Create a new empty sprite batch
+	 */
+	public SpriteBatch() {
+	}
+
+	/**
+	 * Start recording sprites into this batch
+	 */
+	public void begin() {
+		begin(false);
+	}
+
+	/**
+	 * Start recording sprites into this batch
+	 *
+	 * @param captureImages True if draws made through Image and SpriteSheet
+	 * should be recorded into this batch until end() is called
+	 */
+	public void begin(boolean captureImages) {
+		if (drawing) {
+			throw new RuntimeException("Attempt to begin a sprite batch that is already in use - see end()");
+		}
+		if (captureImages) {
+			if (Image.batch != null) {
+				throw new RuntimeException("Attempt to capture image draws while another sprite batch is capturing them");
+			}
+			Image.batch = this;
+			GL.setDeferredDraws(captured);
+		}
+
+		drawing = true;
+		capturing = captureImages;
+		count = 0;
+		drawCalls = 0;
+	}
+
+	/**
+	 * Check if this batch is between begin() and end()
+	 *
+	 * @return True if this batch is recording sprites
+	 */
+	public boolean isDrawing() {
+		return drawing;
+	}
+
+	/**
+	 * Stop recording and draw all the sprites recorded since begin(). The
+	 * blend function is reset to the default if any other was used.
+	 */
+	public void end() {
+		if (!drawing) {
+			throw new RuntimeException("The sprite batch is not currently in use - see begin()");
+		}
+		drawing = false;
+		if (Image.batch == this) {
+			Image.batch = null;
+			GL.setDeferredDraws(null);
+		}
+
+		flush();
+	}
+
+	/**
+	 * Draw the image draws captured so far, for instance before the transform
+	 * they were recorded under changes. Recording continues afterwards.
+	 */
+	void flushCaptured() {
+		if (drawing) {
+			flush();
+		}
+	}
+
+	/**
+	 * Check if image draws can be captured into this batch at the moment
+	 *
+	 * @return True if image draws can be captured, false while a display list
+	 * is being compiled
+	 */
+	boolean canCapture() {
+		return !compiling;
+	}
+
+	/**
+	 * Set the depth sprites are recorded at when no depth is given, including
+	 * those captured from Image draws. Lower depths are drawn first.
+	 *
+	 * @param depth The depth to record sprites at
+	 */
+	public void setDepth(float depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Get the depth sprites are recorded at when no depth is given
+	 *
+	 * @return The depth sprites are recorded at
+	 */
+	public float getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Set the blend function sprites recorded from now on should be drawn with.
+	 * Sprites using the default, GL_SRC_ALPHA and GL_ONE_MINUS_SRC_ALPHA, are
+	 * drawn with whatever blend function is current when end() is called.
+	 *
+	 * @param src The source factor, e.g. SGL.GL_SRC_ALPHA
+	 * @param dst The destination factor, e.g. SGL.GL_ONE
+	 */
+	public void setBlendFunc(int src, int dst) {
+		for (int i=0;i<blendSrc.length;i++) {
+			if ((blendSrc[i] == src) && (blendDst[i] == dst)) {
+				blend = i;
+				return;
+			}
+		}
+
+		int[] newSrc = new int[blendSrc.length + 1];
+		int[] newDst = new int[blendDst.length + 1];
+		System.arraycopy(blendSrc, 0, newSrc, 0, blendSrc.length);
+		System.arraycopy(blendDst, 0, newDst, 0, blendDst.length);
+		newSrc[blendSrc.length] = src;
+		newDst[blendDst.length] = dst;
+		blend = blendSrc.length;
+		blendSrc = newSrc;
+		blendDst = newDst;
+	}
+
+	/**
+	 * Get the number of sprites recorded and not yet drawn
+	 *
+	 * @return The number of sprites recorded
+	 */
+	public int getSpriteCount() {
+		return count;
+	}
+
+	/**
+	 * Get the number of draw calls made since begin(), including those made
+	 * to draw captured sprites before end() was called
+	 *
+	 * @return The number of draw calls made to draw the last batch
+	 */
+	public int getDrawCallCount() {
+		return drawCalls;
+	}
+
+	/**
+	 * Record an image at a given location
+	 *
+	 * @param image The image to draw
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 */
+	public void draw(Image image, float x, float y) {
+		draw(image, x, y, Color.white);
+	}
+
+	/**
+	 * Record an image at a given location
+	 *
+	 * @param image The image to draw
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 * @param filter The color to filter with while drawing
+	 */
+	public void draw(Image image, float x, float y, Color filter) {
+		draw(image, x, y, image.getWidth(), image.getHeight(), filter);
+	}
+
+	/**
+	 * Record an image at a given location and size. The rotation, centre of
+	 * rotation and alpha set on the image are applied as Image.draw() would.
+	 *
+	 * @param image The image to draw
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 * @param width The width to render the image at
+	 * @param height The height to render the image at
+	 * @param filter The color to filter with while drawing
+	 */
+	public void draw(Image image, float x, float y, float width, float height, Color filter) {
+		image.init();
+		add(image, x, y, width, height, image.textureOffsetX, image.textureOffsetY,
+			image.textureWidth, image.textureHeight, image.angle, image.centerX, image.centerY,
+			image.alpha, filter, image.corners, depth);
+	}
+
+	/**
+	 * Record a rotated and scaled image. The image is rotated about its
+	 * centre of rotation, scaled along with the image, in addition to any
+	 * rotation set on the image itself.
+	 *
+	 * @param image The image to draw
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 * @param rotation The rotation to apply in degrees
+	 * @param scaleX The scale to apply on the horizontal axis
+	 * @param scaleY The scale to apply on the vertical axis
+	 * @param filter The color to filter with while drawing
+	 * @param z The depth of the sprite, lower depths are drawn first
+	 */
+	public void draw(Image image, float x, float y, float rotation, float scaleX, float scaleY, Color filter, float z) {
+		image.init();
+		add(image, x, y, image.getWidth() * scaleX, image.getHeight() * scaleY,
+			image.textureOffsetX, image.textureOffsetY, image.textureWidth, image.textureHeight,
+			image.angle + rotation, image.centerX * scaleX, image.centerY * scaleY,
+			image.alpha, filter, image.corners, z);
+	}
+
+	/**
+	 * Record a sprite into the batch
+	 *
+	 * @param image The image whose texture the sprite is drawn with
+	 * @param x The x location of the top left of the sprite
+	 * @param y The y location of the top left of the sprite
+	 * @param width The width of the sprite
+	 * @param height The height of the sprite
+	 * @param u The left texture coordinate
+	 * @param v The top texture coordinate
+	 * @param texWidth The width of the sprite in texture coordinates
+	 * @param texHeight The height of the sprite in texture coordinates
+	 * @param rotation The rotation of the sprite in degrees
+	 * @param centerX The x offset from the top left of the centre of rotation
+	 * @param centerY The y offset from the top left of the centre of rotation
+	 * @param alpha The alpha to apply in addition to the filter
+	 * @param filter The colour of the sprite or null to use the current colour
+	 * @param corners The colour of each corner or null to use the filter
+	 * @param z The depth of the sprite
+	 */
+	void add(Image image, float x, float y, float width, float height,
+			 float u, float v, float texWidth, float texHeight,
+			 float rotation, float centerX, float centerY, float alpha,
+			 Color filter, Color[] corners, float z) {
+		if (!drawing) {
+			throw new RuntimeException("The sprite batch is not currently in use - see begin()");
+		}
+		if (count == textures.length) {
+			grow(count * 2);
+		}
+
+		int sprite = count++;
+		textures[sprite] = image.getTexture();
+		depths[sprite] = z;
+		blends[sprite] = blend;
+
+		// corners are stored in the same order Image.drawEmbedded() emits them,
+		// top left, bottom left, bottom right and top right
+		int vi = sprite * 8;
+		verts[vi] = x;
+		verts[vi+1] = y;
+		verts[vi+2] = x;
+		verts[vi+3] = y + height;
+		verts[vi+4] = x + width;
+		verts[vi+5] = y + height;
+		verts[vi+6] = x + width;
+		verts[vi+7] = y;
+
+		if (rotation != 0) {
+			float rad = (float) Math.toRadians(rotation);
+			float cos = (float) Math.cos(rad);
+			float sin = (float) Math.sin(rad);
+			float ox = x + centerX;
+			float oy = y + centerY;
+
+			for (int i=0;i<8;i+=2) {
+				float dx = verts[vi+i] - ox;
+				float dy = verts[vi+i+1] - oy;
+				verts[vi+i] = ox + (dx * cos) - (dy * sin);
+				verts[vi+i+1] = oy + (dx * sin) + (dy * cos);
+			}
+		}
+
+		texs[vi] = u;
+		texs[vi+1] = v;
+		texs[vi+2] = u;
+		texs[vi+3] = v + texHeight;
+		texs[vi+4] = u + texWidth;
+		texs[vi+5] = v + texHeight;
+		texs[vi+6] = u + texWidth;
+		texs[vi+7] = v;
+
+		int ci = sprite * 16;
+		if (corners != null) {
+			setColor(ci, corners[Image.TOP_LEFT], alpha);
+			setColor(ci+4, corners[Image.BOTTOM_LEFT], alpha);
+			setColor(ci+8, corners[Image.BOTTOM_RIGHT], alpha);
+			setColor(ci+12, corners[Image.TOP_RIGHT], alpha);
+		} else {
+			if (filter == null) {
+				float[] col = GL.getCurrentColor();
+				current.r = col[0];
+				current.g = col[1];
+				current.b = col[2];
+				current.a = col[3];
+				filter = current;
+			}
+			for (int i=0;i<16;i+=4) {
+				setColor(ci+i, filter, alpha);
+			}
+		}
+	}
+
+	/**
+	 * Set the colour of a single corner of a sprite
+	 *
+	 * @param index The index of the corner's red component
+	 * @param color The colour to apply
+	 * @param alpha The alpha to apply in addition to the colour's
+	 */
+	private void setColor(int index, Color color, float alpha) {
+		cols[index] = color.r;
+		cols[index+1] = color.g;
+		cols[index+2] = color.b;
+		cols[index+3] = color.a * alpha;
+	}
+
+	/**
+	 * Grow the sprite storage
+	 *
+	 * @param size The number of sprites to be able to hold
+	 */
+	private void grow(int size) {
+		verts = copy(verts, size * 8);
+		texs = copy(texs, size * 8);
+		cols = copy(cols, size * 16);
+		depths = copy(depths, size);
+
+		Texture[] newTextures = new Texture[size];
+		System.arraycopy(textures, 0, newTextures, 0, count);
+		textures = newTextures;
+		int[] newBlends = new int[size];
+		System.arraycopy(blends, 0, newBlends, 0, count);
+		blends = newBlends;
+
+		order = new int[size];
+		sorted = new int[size];
+	}
+
+	/**
+	 * Copy an array into a larger one
+	 *
+	 * @param data The array to copy
+	 * @param size The size of the new array
+	 * @return The new array
+	 */
+	private float[] copy(float[] data, int size) {
+		float[] result = new float[size];
+		System.arraycopy(data, 0, result, 0, data.length);
+		return result;
+	}
+
+	/**
+	 * Sort and draw the sprites recorded
+	 */
+	private void flush() {
+		if (count == 0) {
+			return;
+		}
+
+		for (int i=0;i<count;i++) {
+			order[i] = i;
+		}
+		sort(0, count);
+
+		int applied = 0;
+		int start = 0;
+		while (start < count) {
+			int first = order[start];
+			int end = start + 1;
+			while ((end < count) && (blends[order[end]] == blends[first])
+					&& (textures[order[end]].getTextureID() == textures[first].getTextureID())) {
+				end++;
+			}
+
+			if (blends[first] != applied) {
+				applied = blends[first];
+				GL.glBlendFunc(blendSrc[applied], blendDst[applied]);
+			}
+			drawGroup(start, end);
+			start = end;
+		}
+
+		if (applied != 0) {
+			GL.glBlendFunc(blendSrc[0], blendDst[0]);
+		}
+
+		for (int i=0;i<count;i++) {
+			textures[i] = null;
+		}
+		count = 0;
+	}
+
+	/**
+	 * Draw a run of sorted sprites that share a texture and blend function
+	 *
+	 * @param start The index in the draw order of the first sprite
+	 * @param end The index in the draw order after the last sprite
+	 */
+	private void drawGroup(int start, int end) {
+		int sprites = end - start;
+		if (groupVerts.length < sprites * 8) {
+			groupVerts = new float[sprites * 8];
+			groupTexs = new float[sprites * 8];
+			groupCols = new float[sprites * 16];
+		}
+
+		for (int i=0;i<sprites;i++) {
+			int sprite = order[start+i];
+			System.arraycopy(verts, sprite * 8, groupVerts, i * 8, 8);
+			System.arraycopy(texs, sprite * 8, groupTexs, i * 8, 8);
+			System.arraycopy(cols, sprite * 16, groupCols, i * 16, 16);
+		}
+
+		textures[order[start]].bind();
+		GL.drawArrays(SGL.GL_QUADS, groupVerts, groupTexs, groupCols, sprites * 4);
+		drawCalls++;
+	}
+
+	/**
+	 * Merge sort a range of the draw order. The sort is stable so sprites
+	 * that can't be told apart are drawn in the order they were recorded.
+	 *
+	 * @param start The first index to sort
+	 * @param end The index after the last one to sort
+	 */
+	private void sort(int start, int end) {
+		if (end - start < 2) {
+			return;
+		}
+
+		int mid = (start + end) / 2;
+		sort(start, mid);
+		sort(mid, end);
+		if (compare(order[mid-1], order[mid]) <= 0) {
+			return;
+		}
+
+		int a = start;
+		int b = mid;
+		int i = start;
+		while ((a < mid) && (b < end)) {
+			if (compare(order[b], order[a]) < 0) {
+				sorted[i++] = order[b++];
+			} else {
+				sorted[i++] = order[a++];
+			}
+		}
+		while (a < mid) {
+			sorted[i++] = order[a++];
+		}
+		while (b < end) {
+			sorted[i++] = order[b++];
+		}
+		System.arraycopy(sorted, start, order, start, end - start);
+	}
+
+	/**
+	 * Compare two sprites by depth, then blend function and then texture. 
+	 * When image draws are being captured only the depth is compared so the
+	 * recorded order is kept.
+	 *
+	 * @param a The index of the first sprite
+	 * @param b The index of the second sprite
+	 * @return Less than zero if a should be drawn before b, greater than zero
+	 * if b should be drawn first and zero if it doesn't matter
+	 */
+	private int compare(int a, int b) {
+		if (depths[a] != depths[b]) {
+			return depths[a] < depths[b] ? -1 : 1;
+		}
+		if (capturing) {
+			return 0;
+		}
+		if (blends[a] != blends[b]) {
+			return blends[a] - blends[b];
+		}
+
+		int ta = textures[a].getTextureID();
+		int tb = textures[b].getTextureID();
+		if (ta != tb) {
+			return ta < tb ? -1 : 1;
+		}
+		return 0;
+	}
+}
@@ -1,5 +1,6 @@
 package org.newdawn.slick.loading;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 import org.newdawn.slick.openal.SoundStore;
@@ -97,6 +98,70 @@ public class LoadingList {
 		return deferred.size();
 	}
 	
+	/**
+	 * Get the number of remaining resources that are ready to be loaded without
+	 * waiting on background work
+	 * 
+	 * @see PreparedResource
+	 * @return The number of resources that are ready to be loaded
+	 */
+	public int getPreparedResources() {
+		int count = 0;
+		for (int i=0;i<deferred.size();i++) {
+			Object resource = deferred.get(i);
+			if (!(resource instanceof PreparedResource) || ((PreparedResource) resource).isPrepared()) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Load the resources that are ready within a budget, normally called once 
+	 * per frame from a loading screen. Resources still being prepared in the 
+	 * background, e.g. textures being decoded, are skipped until they're ready 
+	 * so resources may be loaded out of order. At least one ready resource is 
+	 * loaded each call, even if it's bigger than the byte budget.
+	 * 
+	 * @param maxMillis The maximum time to spend loading in milliseconds
+	 * @param maxBytes The maximum number of bytes to upload, as reported by PreparedResource
+	 * @return The number of resources loaded
+	 * @throws IOException Indicates a failure to load a resource
+	 */
+	public int update(int maxMillis, int maxBytes) throws IOException {
+		long end = System.currentTimeMillis() + maxMillis;
+		int bytes = 0;
+		int loaded = 0;
+		
+		for (int i=0;i<deferred.size();) {
+			DeferredResource resource = (DeferredResource) deferred.get(i);
+			if (resource instanceof PreparedResource) {
+				PreparedResource prepared = (PreparedResource) resource;
+				if (!prepared.isPrepared()) {
+					i++;
+					continue;
+				}
+				
+				int size = prepared.getLoadSize();
+				if ((loaded > 0) && (bytes + size > maxBytes)) {
+					break;
+				}
+				bytes += size;
+			}
+			
+			deferred.remove(i);
+			resource.load();
+			loaded++;
+			
+			if (System.currentTimeMillis() >= end) {
+				break;
+			}
+		}
+		
+		return loaded;
+	}
+	
 	/**
 	 * Get the next resource that requries loading
 	 * 
@@ -0,0 +1,29 @@
+package org.newdawn.slick.loading;
+
+/**
+ * A deferred resource that is prepared in the background before it's loaded,
+ * for instance a texture decoded by a worker thread that only has to be
+ * uploaded to the card once it's ready. The LoadingList uses this to load
+ * resources as they become ready rather than strictly in order.
+ *
+ * @see LoadingList#update(int, int)
+ * @author kevin
+ */
+public interface PreparedResource extends DeferredResource {
+
+	/**
+	 * Check if the resource has been prepared and can be loaded without
+	 * waiting for the background work
+	 *
+	 * @return True if the resource is ready to load
+	 */
+	public boolean isPrepared();
+
+	/**
+	 * Get the number of bytes that loading the resource will transfer, for
+	 * instance to the card. Only valid once the resource has been prepared.
+	 *
+	 * @return The number of bytes loading the resource will transfer
+	 */
+	public int getLoadSize();
+}
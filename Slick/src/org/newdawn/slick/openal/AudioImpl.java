@@ -1,7 +1,10 @@
 package org.newdawn.slick.openal;
 
+import java.io.IOException;
+
 import org.lwjgl.openal.AL10;
 import org.lwjgl.openal.AL11;
+import org.newdawn.slick.util.Log;
 
 /**
  * A sound that can be played through OpenAL
@@ -14,8 +17,18 @@ public class AudioImpl implements Audio {
 	private SoundStore store;
 	/** The buffer containing the sound */
 	private int buffer;
+	/** The cache entry for the buffer or null if the buffer isn't cached */
+	private SoundBufferCache.Entry entry;
+	/** True if this sound has released its buffer */
+	private boolean released;
 	/** The index of the source being used to play this sound */
 	private int index = -1;
+	/** The ID of the play that started the sound on the source */
+	private int play;
+	/** The priority of this sound when sources run out */
+	private int priority;
+	/** The maximum number of copies of this sound to play at once, 0 for no limit */
+	private int maxInstances;
 	
 	/** The length of the audio */
 	private float length;
@@ -24,11 +37,13 @@ public class AudioImpl implements Audio {
 	 * Create a new sound
 	 * 
 	 * @param store The sound store from which the sound was created
-	 * @param buffer The buffer containing the sound data
+	 * @param entry The cache entry for the buffer containing the sound data
 	 */
-	AudioImpl(SoundStore store, int buffer) {
+	AudioImpl(SoundStore store, SoundBufferCache.Entry entry) {
 		this.store = store;
-		this.buffer = buffer;
+		this.entry = entry;
+		store.retainBuffer(entry);
+		buffer = entry.getBufferID();
 		
 		int bytes = AL10.alGetBufferi(buffer, AL10.AL_SIZE);
 		int bits = AL10.alGetBufferi(buffer, AL10.AL_BITS);
@@ -46,9 +61,39 @@ public class AudioImpl implements Audio {
 	 * @return The ID of the OpenAL buffer holding this data 
 	 */
 	public int getBufferID() {
+		return getBuffer();
+	}
+	
+	/**
+	 * Get the buffer to play, reloading it if it's been evicted from the cache
+	 * 
+	 * @return The ID of the OpenAL buffer holding this data or 0 if it couldn't be reloaded
+	 */
+	private int getBuffer() {
+		if ((entry != null) && (!released)) {
+			try {
+				buffer = store.getBuffer(entry);
+			} catch (IOException e) {
+				Log.error("Failed to reload sound", e);
+				return 0;
+			}
+		}
+		
 		return buffer;
 	}
 	
+	/**
+	 * Release this sound's reference to its buffer. Once every sound loaded 
+	 * from the same resource has been released the buffer can be unloaded 
+	 * from the cache. The sound shouldn't be played after it's released.
+	 */
+	public void release() {
+		if ((entry != null) && (!released)) {
+			released = true;
+			store.releaseBuffer(entry);
+		}
+	}
+	
 	/**
 	 *
 	 */
@@ -61,7 +106,7 @@ public class AudioImpl implements Audio {
 	 */
 	public void stop() {
 		if (index != -1) {
-			store.stopSource(index);
+			store.stopSource(index, play);
 			index = -1;
 		}
 	}
@@ -71,7 +116,7 @@ public class AudioImpl implements Audio {
 	 */
 	public boolean isPlaying() {
 		if (index != -1) {
-			return store.isPlaying(index);
+			return store.isPlaying(index, play);
 		}
 		
 		return false;
@@ -81,8 +126,7 @@ public class AudioImpl implements Audio {
 	 * @see org.newdawn.slick.openal.Audio#playAsSoundEffect(float, float, boolean)
 	 */
 	public int playAsSoundEffect(float pitch, float gain, boolean loop) {
-		index = store.playAsSound(buffer, pitch, gain, loop);
-		return store.getSource(index);
+		return playAsSoundEffect(pitch, gain, loop, 0, 0, 0);
 	}
 
 
@@ -90,16 +134,57 @@ public class AudioImpl implements Audio {
 	 * @see org.newdawn.slick.openal.Audio#playAsSoundEffect(float, float, boolean, float, float, float)
 	 */
 	public int playAsSoundEffect(float pitch, float gain, boolean loop, float x, float y, float z) {
-		index = store.playAsSoundAt(buffer, pitch, gain, loop, x, y, z);
+		index = store.playAsSoundAt(getBuffer(), pitch, gain, loop, x, y, z, priority, maxInstances);
+		play = store.getPlay(index);
 		return store.getSource(index);
 	}
 	
+	/**
+	 * Set the priority of this sound. When every source is in use a sound 
+	 * will stop sounds of a lower priority to play, but never sounds of a 
+	 * higher priority. The default is 0.
+	 * 
+	 * @param priority The priority of this sound
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * Get the priority of this sound
+	 * 
+	 * @return The priority of this sound
+	 */
+	public int getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * Set the maximum number of copies of this sound that can play at once. 
+	 * Playing the sound once the limit is reached restarts the oldest copy.
+	 * 
+	 * @param maxInstances The maximum number of copies to play at once, or 0 for no limit
+	 */
+	public void setMaxInstances(int maxInstances) {
+		this.maxInstances = maxInstances;
+	}
+	
+	/**
+	 * Get the maximum number of copies of this sound that can play at once
+	 * 
+	 * @return The maximum number of copies to play at once, or 0 for no limit
+	 */
+	public int getMaxInstances() {
+		return maxInstances;
+	}
+	
 	/**
 	 * @see org.newdawn.slick.openal.Audio#playAsMusic(float, float, boolean)
 	 */
 	public int playAsMusic(float pitch, float gain, boolean loop) {
-		store.playAsMusic(buffer, pitch, gain, loop);
+		store.playAsMusic(getBuffer(), pitch, gain, loop);
 		index = 0;
+		play = 0;
 		return store.getSource(0);
 	}
 	
@@ -1,6 +1,7 @@
 package org.newdawn.slick.openal;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * The description of an input stream that supplied audio data suitable for
@@ -54,6 +55,17 @@ interface AudioInputStream {
 	 */
 	public int read(byte[] data, int ofs, int len) throws IOException;
 
+	/**
+	 * Read as many bytes as will fit into the remaining space in a buffer,
+	 * advancing its position. Decoders can transfer data straight into the
+	 * buffer rather than through an intermediate array.
+	 * 
+	 * @param data The buffer to read into
+	 * @return The number of bytes read or -1 to indicate no more bytes are available
+	 * @throws IOException Indicates a failure to read the underlying media
+	 */
+	public int read(ByteBuffer data) throws IOException;
+
 	/**
 	 * Check if the stream is at the end, i.e. end of file or URL 
 	 * 
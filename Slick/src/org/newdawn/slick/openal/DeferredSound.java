@@ -104,6 +104,40 @@ public class DeferredSound extends AudioImpl implements DeferredResource {
 			}
 		}
 		SoundStore.get().setDeferredLoading(before);
+		
+		if (target instanceof AudioImpl) {
+			((AudioImpl) target).setPriority(getPriority());
+			((AudioImpl) target).setMaxInstances(getMaxInstances());
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.slick.openal.AudioImpl#release()
+	 */
+	public void release() {
+		if (target instanceof AudioImpl) {
+			((AudioImpl) target).release();
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.slick.openal.AudioImpl#setPriority(int)
+	 */
+	public void setPriority(int priority) {
+		super.setPriority(priority);
+		if (target instanceof AudioImpl) {
+			((AudioImpl) target).setPriority(priority);
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.slick.openal.AudioImpl#setMaxInstances(int)
+	 */
+	public void setMaxInstances(int maxInstances) {
+		super.setMaxInstances(maxInstances);
+		if (target instanceof AudioImpl) {
+			((AudioImpl) target).setMaxInstances(maxInstances);
+		}
 	}
 
 	/**
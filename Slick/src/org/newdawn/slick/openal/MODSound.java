@@ -40,13 +40,15 @@ public class MODSound extends AudioImpl {
 	 * @see org.newdawn.slick.openal.AudioImpl#playAsMusic(float, float, boolean)
 	 */
 	public int playAsMusic(float pitch, float gain, boolean loop) {
-		cleanUpSource();
-
-		player.play(module, store.getSource(0), loop, SoundStore.get().isMusicOn());
-		player.setup(pitch, 1.0f);
-		store.setCurrentMusicVolume(gain);
-		
-		store.setMOD(this);
+		synchronized (store) {
+			cleanUpSource();
+	
+			player.play(module, store.getSource(0), loop, SoundStore.get().isMusicOn());
+			player.setup(pitch, 1.0f);
+			store.setCurrentMusicVolume(gain);
+			
+			store.setMOD(this);
+		}
 		
 		return store.getSource(0);
 	}
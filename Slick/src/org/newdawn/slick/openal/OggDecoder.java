@@ -310,9 +310,9 @@ public class OggDecoder {
 
 		OggInputStream oggInput = new OggInputStream(input);
 		
-		boolean done = false;
-		while (!oggInput.atEnd()) {
-			dataout.write(oggInput.read());
+		int count;
+		while ((count = oggInput.read(convbuffer)) != -1) {
+			dataout.write(convbuffer, 0, count);
 		}
 	
 		OggData ogg = new OggData();
@@ -67,8 +67,18 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 	private int readIndex;
 	/** The byte array store used to hold the data read from the ogg */
 	private ByteBuffer pcmBuffer = BufferUtils.createByteBuffer(4096 * 500);
+	/** A view of the PCM buffer used to copy out decoded data in bulk */
+	private ByteBuffer pcmView = pcmBuffer.duplicate();
 	/** The total number of bytes */
 	private int total;
+	/** The number of bytes read from the underlying stream so far */
+	private long inputOffset;
+	/** The offset in the underlying stream of the first page of audio */
+	private long dataStart;
+	/** The PCM data output by the decoder */
+	private float[][][] pcmOut = new float[1][][];
+	/** The index into the PCM data of the first sample for each channel */
+	private int[] pcmIndex;
 	
 	/**
 	 * Create a new stream to decode OGG data
@@ -158,6 +168,9 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 			endOfStream = true;
 			return false;
 		}
+		if (bytes > 0) {
+			inputOffset += bytes;
+		}
 		syncState.wrote(bytes);
 
 		// Get the first page.
@@ -264,10 +277,16 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 				endOfStream = true;
 				return false;
 			}
+			if (bytes > 0) {
+				inputOffset += bytes;
+			}
 			syncState.wrote(bytes);
 		}
 
 		convsize = 4096 / oggInfo.channels;
+		pcmIndex = new int[oggInfo.channels];
+		// the audio starts on the page after the headers
+		dataStart = getSyncOffset();
 
 		// OK, got and parsed all three headers. Initialize the Vorbis
 		//  packet->PCM decoder.
@@ -302,8 +321,6 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 				return;
 			}
 			
-			float[][][] _pcm = new float[1][][];
-			int[] _index = new int[oggInfo.channels];
 			// The rest is just a straight decode loop until end of stream
 			while (!endOfBitStream) {
 				while (!endOfBitStream) {
@@ -316,76 +333,8 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 					if (result == -1) { // missing or corrupt data at this page position
 						Log.error("Corrupt or missing data in bitstream; continuing...");
 					} else {
-						streamState.pagein(page); // can safely ignore errors at
-						// this point
-						while (true) {
-							result = streamState.packetout(packet);
-
-							if (result == 0)
-								break; // need more data
-							if (result == -1) { // missing or corrupt data at this page position
-								// no reason to complain; already complained above
-							} else {
-								// we have a packet.  Decode it
-								int samples;
-								if (vorbisBlock.synthesis(packet) == 0) { // test for success!
-									dspState.synthesis_blockin(vorbisBlock);
-								}
-
-								// **pcm is a multichannel float vector.  In stereo, for
-								// example, pcm[0] is left, and pcm[1] is right.  samples is
-								// the size of each channel.  Convert the float values
-								// (-1.<=range<=1.) to whatever PCM format and write it out
-
-								while ((samples = dspState.synthesis_pcmout(_pcm,
-										_index)) > 0) {
-									float[][] pcm = _pcm[0];
-									//boolean clipflag = false;
-									int bout = (samples < convsize ? samples
-											: convsize);
-
-									// convert floats to 16 bit signed ints (host order) and
-									// interleave
-									for (int i = 0; i < oggInfo.channels; i++) {
-										int ptr = i * 2;
-										//int ptr=i;
-										int mono = _index[i];
-										for (int j = 0; j < bout; j++) {
-											int val = (int) (pcm[i][mono + j] * 32767.);
-											// might as well guard against clipping
-											if (val > 32767) {
-												val = 32767;
-											}
-											if (val < -32768) {
-												val = -32768;
-											}
-											if (val < 0)
-												val = val | 0x8000;
-				
-											if (bigEndian) {
-												convbuffer[ptr] = (byte) (val >>> 8);
-												convbuffer[ptr + 1] = (byte) (val);
-											} else {
-												convbuffer[ptr] = (byte) (val);
-												convbuffer[ptr + 1] = (byte) (val >>> 8);
-											}
-											ptr += 2 * (oggInfo.channels);
-										}
-									}
-
-									int bytesToWrite = 2 * oggInfo.channels * bout;
-									if (bytesToWrite >= pcmBuffer.remaining()) {
-										Log.warn("Read block from OGG that was too big to be buffered: " + bytesToWrite);
-									} else {
-										pcmBuffer.put(convbuffer, 0, bytesToWrite);
-									}
-									
-									wrote = true;
-									dspState.synthesis_read(bout); // tell libvorbis how
-									// many samples we
-									// actually consumed
-								}
-							}
+						if (decodePage()) {
+							wrote = true;
 						}
 						if (page.eos() != 0) {
 							endOfBitStream = true;
@@ -410,6 +359,9 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 							endOfStream = true;
 							return;
 						}
+						if (bytes > 0) {
+							inputOffset += bytes;
+						}
 					} else {
 						bytes = 0;
 					}
@@ -438,15 +390,225 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 	}
 	
 	/**
-	 * @see java.io.InputStream#read()
+	 * Decode the packets on the current page into the PCM buffer
+	 * 
+	 * @return True if any PCM data was written to the buffer
 	 */
-	public int read() throws IOException {
-		if (readIndex >= pcmBuffer.position()) {
+	private boolean decodePage() {
+		boolean wrote = false;
+		
+		streamState.pagein(page); // can safely ignore errors at
+		// this point
+		while (true) {
+			int result = streamState.packetout(packet);
+
+			if (result == 0)
+				break; // need more data
+			if (result == -1) { // missing or corrupt data at this page position
+				// no reason to complain; already complained above
+			} else {
+				// we have a packet.  Decode it
+				int samples;
+				if (vorbisBlock.synthesis(packet) == 0) { // test for success!
+					dspState.synthesis_blockin(vorbisBlock);
+				}
+
+				// **pcm is a multichannel float vector.  In stereo, for
+				// example, pcm[0] is left, and pcm[1] is right.  samples is
+				// the size of each channel.  Convert the float values
+				// (-1.<=range<=1.) to whatever PCM format and write it out
+
+				while ((samples = dspState.synthesis_pcmout(pcmOut,
+						pcmIndex)) > 0) {
+					float[][] pcm = pcmOut[0];
+					//boolean clipflag = false;
+					int bout = (samples < convsize ? samples
+							: convsize);
+
+					// convert floats to 16 bit signed ints (host order) and
+					// interleave
+					for (int i = 0; i < oggInfo.channels; i++) {
+						int ptr = i * 2;
+						//int ptr=i;
+						int mono = pcmIndex[i];
+						for (int j = 0; j < bout; j++) {
+							int val = (int) (pcm[i][mono + j] * 32767.);
+							// might as well guard against clipping
+							if (val > 32767) {
+								val = 32767;
+							}
+							if (val < -32768) {
+								val = -32768;
+							}
+							if (val < 0)
+								val = val | 0x8000;
+
+							if (bigEndian) {
+								convbuffer[ptr] = (byte) (val >>> 8);
+								convbuffer[ptr + 1] = (byte) (val);
+							} else {
+								convbuffer[ptr] = (byte) (val);
+								convbuffer[ptr + 1] = (byte) (val >>> 8);
+							}
+							ptr += 2 * (oggInfo.channels);
+						}
+					}
+
+					int bytesToWrite = 2 * oggInfo.channels * bout;
+					if (bytesToWrite >= pcmBuffer.remaining()) {
+						Log.warn("Read block from OGG that was too big to be buffered: " + bytesToWrite);
+					} else {
+						pcmBuffer.put(convbuffer, 0, bytesToWrite);
+					}
+					
+					wrote = true;
+					dspState.synthesis_read(bout); // tell libvorbis how
+					// many samples we
+					// actually consumed
+				}
+			}
+		}
+		
+		return wrote;
+	}
+	
+	/**
+	 * Get the offset in the underlying stream of the next byte the sync state
+	 * will return
+	 * 
+	 * @return The offset of the next byte to be synced
+	 */
+	private long getSyncOffset() {
+		return inputOffset - (syncState.getBufferOffset() - syncState.getDataOffset());
+	}
+	
+	/**
+	 * Move the stream to a given sample without decoding the audio before it.
+	 * The underlying stream is skipped forward to the page the seek table gives 
+	 * for the sample and only that page onwards is decoded. The underlying 
+	 * stream can't be rewound, so seeking to a sample behind the data already 
+	 * read fails and a new stream has to be opened to seek from.
+	 * 
+	 * @param sample The sample (per channel) to move to
+	 * @param table The seek table built for the OGG being read
+	 * @return True if the stream was moved, false if a new stream is needed to reach the sample
+	 * @throws IOException Indicates a failure to read from the supplied stream
+	 */
+	public boolean seek(long sample, OggSeekTable table) throws IOException {
+		if (endOfStream || endOfBitStream) {
+			return false;
+		}
+		
+		long target = Math.max(table.getPageOffset(sample), dataStart);
+		if (target < getSyncOffset()) {
+			return false;
+		}
+		
+		if (target >= inputOffset) {
+			syncState.reset();
+			skipInput(target - inputOffset);
+		} else {
+			// the page has already been read, drop the pages before it 
+			while (getSyncOffset() < target) {
+				if (syncState.pageout(page) == 0) {
+					return false;
+				}
+			}
+		}
+		
+		// restart the decoder at the new page
+		streamState.reset();
+		dspState.synthesis_init(oggInfo);
+		vorbisBlock.init(dspState);
+		pcmBuffer.clear();
+		readIndex = 0;
+		
+		int frameSize = 2 * oggInfo.channels;
+		while (true) {
+			int result = syncState.pageout(page);
+			if (result == 0) {
+				int index = syncState.buffer(4096);
+				bytes = input.read(syncState.data, index, 4096);
+				if (bytes <= 0) {
+					endOfBitStream = true;
+					return true;
+				}
+				inputOffset += bytes;
+				syncState.wrote(bytes);
+				continue;
+			}
+			if (result < 0) {
+				continue;
+			}
+			
+			decodePage();
+			
+			// the granule gives the sample reached at the end of the page, so
+			// we can work out where the decoded data starts and drop the data
+			// before the sample we want
+			long granule = page.granulepos();
+			if (granule >= 0) {
+				long start = granule - (pcmBuffer.position() / frameSize);
+				if (granule > sample) {
+					readIndex = (int) Math.max(0, sample - start) * frameSize;
+					// the sample may be on the last page, there's nothing more 
+					// to read after it
+					if (page.eos() != 0) {
+						endOfBitStream = true;
+					}
+					return true;
+				}
+				pcmBuffer.clear();
+			}
+			if (page.eos() != 0) {
+				endOfBitStream = true;
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Skip forward on the underlying stream
+	 * 
+	 * @param count The number of bytes to skip
+	 * @throws IOException Indicates a failure to read from the supplied stream
+	 */
+	private void skipInput(long count) throws IOException {
+		while (count > 0) {
+			long skipped = input.skip(count);
+			if (skipped <= 0) {
+				if (input.read() < 0) {
+					throw new IOException("Attempt to seek past the end of the OGG");
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+			inputOffset += skipped;
+		}
+	}
+	
+	/**
+	 * Make sure there is decoded data waiting to be read, decoding more of
+	 * the stream if all the current data has been read
+	 * 
+	 * @return The number of bytes of decoded data waiting, 0 if the stream has ended
+	 * @throws IOException Indicates a failure to read from the supplied stream
+	 */
+	private int fill() throws IOException {
+		while ((readIndex >= pcmBuffer.position()) && (!endOfStream)) {
 			pcmBuffer.clear();
-			readPCM();
 			readIndex = 0;
+			readPCM();
 		}
-		if (readIndex >= pcmBuffer.position()) {
+		
+		return Math.max(0, pcmBuffer.position() - readIndex);
+	}
+	
+	/**
+	 * @see java.io.InputStream#read()
+	 */
+	public int read() throws IOException {
+		if (fill() == 0) {
 			return -1;
 		}
 
@@ -470,25 +632,50 @@ public class OggInputStream extends InputStream implements AudioInputStream {
 	 * @see java.io.InputStream#read(byte[], int, int)
 	 */
 	public int read(byte[] b, int off, int len) throws IOException {
-		for (int i=0;i<len;i++) {
-			try {
-				int value = read();
-				if (value >= 0) {
-					b[i] = (byte) value;
-				} else {
-					if (i == 0) {						
-						return -1;
-					} else {
-						return i;
-					}
-				}
-			} catch (IOException e) {
-				Log.error(e);
-				return i;
+		int read = 0;
+		while (read < len) {
+			int available = fill();
+			if (available == 0) {
+				break;
 			}
+			
+			int count = Math.min(available, len - read);
+			pcmView.limit(readIndex + count);
+			pcmView.position(readIndex);
+			pcmView.get(b, off + read, count);
+			readIndex += count;
+			read += count;
 		}
 		
-		return len;
+		if ((read == 0) && (len > 0)) {
+			return -1;
+		}
+		return read;
+	}
+
+	/**
+	 * @see org.newdawn.slick.openal.AudioInputStream#read(java.nio.ByteBuffer)
+	 */
+	public int read(ByteBuffer data) throws IOException {
+		int read = 0;
+		while (data.hasRemaining()) {
+			int available = fill();
+			if (available == 0) {
+				break;
+			}
+			
+			int count = Math.min(available, data.remaining());
+			pcmView.limit(readIndex + count);
+			pcmView.position(readIndex);
+			data.put(pcmView);
+			readIndex += count;
+			read += count;
+		}
+		
+		if ((read == 0) && (data.hasRemaining())) {
+			return -1;
+		}
+		return read;
 	}
 
 	/**
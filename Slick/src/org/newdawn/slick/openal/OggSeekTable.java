@@ -0,0 +1,244 @@
+package org.newdawn.slick.openal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * A table of the pages in an OGG file and the sample position reached at the
+ * end of each, used to seek streamed music without decoding everything up to
+ * the new position. The table is built by reading only the page headers of
+ * the file, skipping the audio, and is then searched by bisection to find the
+ * page to start decoding from.
+ *
+ * Tables are cached for each resource, so the headers only need to be read
+ * once. They can be built ahead of time by calling get() as the music is
+ * loaded rather than on the first seek.
+ *
+ * @see OggInputStream#seek(long, OggSeekTable)
+ * @author kevin
+ */
+public class OggSeekTable {
+	/** The tables built so far, keyed on the resource they were built from */
+	private static HashMap cache = new HashMap();
+
+	/**
+	 * Get the seek table for a resource, building it if it's not been seen before
+	 *
+	 * @param ref The reference to the OGG file
+	 * @return The seek table for the file
+	 * @throws IOException Indicates a failure to read the file
+	 */
+	public static OggSeekTable get(String ref) throws IOException {
+		synchronized (cache) {
+			OggSeekTable table = (OggSeekTable) cache.get(ref);
+			if (table == null) {
+				table = new OggSeekTable(ResourceLoader.getResourceAsStream(ref));
+				cache.put(ref, table);
+			}
+
+			return table;
+		}
+	}
+
+	/**
+	 * Get the seek table for a resource, building it if it's not been seen before
+	 *
+	 * @param url The location of the OGG file
+	 * @return The seek table for the file
+	 * @throws IOException Indicates a failure to read the file
+	 */
+	public static OggSeekTable get(URL url) throws IOException {
+		synchronized (cache) {
+			String ref = url.toString();
+			OggSeekTable table = (OggSeekTable) cache.get(ref);
+			if (table == null) {
+				table = new OggSeekTable(url.openStream());
+				cache.put(ref, table);
+			}
+
+			return table;
+		}
+	}
+
+	/**
+	 * Clear the cache of seek tables
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/** The byte offset of the start of each page in the file */
+	private long[] offsets = new long[64];
+	/** The sample position reached at the end of each page */
+	private long[] granules = new long[64];
+	/** The number of pages in the table */
+	private int pages;
+
+	/**
+	 * Create a new seek table by reading the page headers of an OGG file. The
+	 * stream is closed once read.
+	 *
+	 * @param input The stream to read the OGG file from
+	 * @throws IOException Indicates a failure to read the file
+	 */
+	public OggSeekTable(InputStream input) throws IOException {
+		if (input == null) {
+			throw new IOException("Failed to read OGG, source does not exist?");
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		try {
+			byte[] header = new byte[27];
+			byte[] segments = new byte[255];
+			int serial = 0;
+			long offset = 0;
+
+			while (true) {
+				try {
+					in.readFully(header);
+				} catch (EOFException e) {
+					break;
+				}
+				if ((header[0] != 'O') || (header[1] != 'g') || (header[2] != 'g') || (header[3] != 'S')) {
+					throw new IOException("Corrupt OGG page at offset "+offset);
+				}
+
+				long granule = readLong(header, 6);
+				int pageSerial = (int) readLong(header, 14);
+				int segmentCount = header[26] & 0xFF;
+				in.readFully(segments, 0, segmentCount);
+				int bodyLength = 0;
+				for (int i=0;i<segmentCount;i++) {
+					bodyLength += segments[i] & 0xFF;
+				}
+
+				if (offset == 0) {
+					serial = pageSerial;
+				}
+				// only the first logical stream is indexed
+				if (pageSerial != serial) {
+					break;
+				}
+				if (granule != -1) {
+					add(offset, granule);
+				}
+				if ((header[5] & 4) != 0) {
+					break;
+				}
+
+				skip(in, bodyLength);
+				offset += header.length + segmentCount + bodyLength;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read a little endian value from a page header
+	 *
+	 * @param data The page header
+	 * @param index The index of the first byte of the value
+	 * @return The value read
+	 */
+	private long readLong(byte[] data, int index) {
+		long value = 0;
+		for (int i=7;i>=0;i--) {
+			value = (value << 8) | (data[index + i] & 0xFF);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Skip bytes on a stream
+	 *
+	 * @param in The stream to skip bytes on
+	 * @param count The number of bytes to skip
+	 * @throws IOException Indicates a failure to read the stream or the end of the stream was reached
+	 */
+	private void skip(DataInputStream in, int count) throws IOException {
+		while (count > 0) {
+			int skipped = in.skipBytes(count);
+			if (skipped <= 0) {
+				throw new EOFException("OGG page truncated");
+			}
+			count -= skipped;
+		}
+	}
+
+	/**
+	 * Add a page to the table
+	 *
+	 * @param offset The byte offset of the page in the file
+	 * @param granule The sample position reached at the end of the page
+	 */
+	private void add(long offset, long granule) {
+		if (pages == offsets.length) {
+			long[] newOffsets = new long[pages * 2];
+			long[] newGranules = new long[pages * 2];
+			System.arraycopy(offsets, 0, newOffsets, 0, pages);
+			System.arraycopy(granules, 0, newGranules, 0, pages);
+			offsets = newOffsets;
+			granules = newGranules;
+		}
+
+		offsets[pages] = offset;
+		granules[pages] = granule;
+		pages++;
+	}
+
+	/**
+	 * Get the number of pages in the table
+	 *
+	 * @return The number of pages in the table
+	 */
+	public int getPageCount() {
+		return pages;
+	}
+
+	/**
+	 * Get the length of the audio
+	 *
+	 * @return The number of samples (per channel) in the audio
+	 */
+	public long getSampleCount() {
+		return pages == 0 ? 0 : granules[pages - 1];
+	}
+
+	/**
+	 * Get the offset of the page to start decoding from to reach a given
+	 * sample. This is the last page that ends before the sample, so decoding
+	 * from it is guaranteed to produce the sample.
+	 *
+	 * @param sample The sample position to reach
+	 * @return The byte offset of the page in the file, or 0 if the sample is
+	 * in the first page of audio
+	 */
+	public long getPageOffset(long sample) {
+		int low = 0;
+		int high = pages - 1;
+		int found = -1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (granules[mid] < sample) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		return found < 0 ? 0 : offsets[found];
+	}
+}
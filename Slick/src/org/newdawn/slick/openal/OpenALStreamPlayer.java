@@ -21,15 +21,15 @@ import org.newdawn.slick.util.ResourceLoader;
  * @author Rockstar play and setPosition cleanup 
  */
 public class OpenALStreamPlayer {
-	/** The number of buffers to maintain */
+	/** The default number of buffers to maintain */
 	public static final int BUFFER_COUNT = 3;
 	/** The size of the sections to stream from the stream */
 	private static final int sectionSize = 4096 * 20;
 	
-	/** The buffer read from the data stream */
-	private byte[] buffer = new byte[sectionSize];
 	/** Holds the OpenAL buffer names */
 	private IntBuffer bufferNames;
+	/** The number of buffers queued on the source */
+	private int bufferCount;
 	/** The byte buffer passed to OpenAL containing the section */
 	private ByteBuffer bufferData = BufferUtils.createByteBuffer(sectionSize);
 	/** The buffer holding the names of the OpenAL buffer thats been fully played back */
@@ -43,7 +43,7 @@ public class OpenALStreamPlayer {
 	/** True if we've completed play back */
 	private boolean done = true;
 	/** The stream we're currently reading from */
-	private AudioInputStream audio;
+	private OggInputStream audio;
 	/** The source of the data */
 	private String ref;
 	/** The source of the data */
@@ -52,6 +52,8 @@ public class OpenALStreamPlayer {
 	private float pitch;
 	/** Position in seconds of the previously played buffers */
 	private float positionOffset;
+	/** The table used to seek in the stream, built on the first seek */
+	private OggSeekTable seekTable;
 	
 	/**
 	 * Create a new player to work on an audio stream
@@ -63,7 +65,8 @@ public class OpenALStreamPlayer {
 		this.source = source;
 		this.ref = ref;
 		
-		bufferNames = BufferUtils.createIntBuffer(BUFFER_COUNT);
+		bufferCount = SoundStore.get().getStreamBufferCount();
+		bufferNames = BufferUtils.createIntBuffer(bufferCount);
 		AL10.alGenBuffers(bufferNames);
 	}
 
@@ -77,7 +80,8 @@ public class OpenALStreamPlayer {
 		this.source = source;
 		this.url = url;
 
-		bufferNames = BufferUtils.createIntBuffer(BUFFER_COUNT);
+		bufferCount = SoundStore.get().getStreamBufferCount();
+		bufferNames = BufferUtils.createIntBuffer(bufferCount);
 		AL10.alGenBuffers(bufferNames);
 	}
 	
@@ -218,11 +222,10 @@ public class OpenALStreamPlayer {
 	 */
 	public boolean stream(int bufferId) {
 		try {
-			int count = audio.read(buffer);
+			bufferData.clear();
+			int count = audio.read(bufferData);
 			
 			if (count != -1) {
-				bufferData.clear();
-				bufferData.put(buffer,0,count);
 				bufferData.flip();
 
 				int format = audio.getChannels() > 1 ? AL10.AL_FORMAT_STEREO16 : AL10.AL_FORMAT_MONO16;
@@ -250,16 +253,69 @@ public class OpenALStreamPlayer {
 	}
 
 	/**
-	 * Seeks to a position in the music.
+	 * Get the table used to seek in the stream, building it if this is the
+	 * first seek
+	 * 
+	 * @return The table used to seek in the stream
+	 * @throws IOException Indicates a failure to read the stream
+	 */
+	private OggSeekTable getSeekTable() throws IOException {
+		if (seekTable == null) {
+			if (url != null) {
+				seekTable = OggSeekTable.get(url);
+			} else {
+				seekTable = OggSeekTable.get(ref);
+			}
+		}
+		
+		return seekTable;
+	}
+	
+	/**
+	 * Seeks to a position in the music. The stream is moved straight to the 
+	 * page holding the position rather than decoding the audio before it.
 	 * 
 	 * @param position Position in seconds.
 	 * @return True if the setting of the position was successful
 	 */
 	public boolean setPosition(float position) {
 		try {
-			if (getPosition() > position) {
+			OggSeekTable table = getSeekTable();
+			long sample = (long) (position * audio.getRate());
+			if (sample >= table.getSampleCount()) {
+				if (loop) {
+					initStreams();
+				} else {
+					done = true;
+				}
+				return false;
+			}
+			
+			if (!audio.seek(sample, table)) {
 				initStreams();
+				audio.seek(sample, table);
 			}
+			positionOffset = position;
+
+			startPlayback(); 
+
+			return true;
+		} catch (IOException e) {
+			Log.error("Failed to seek in stream, decoding to the position instead", e);
+			return decodeToPosition(position);
+		}
+	}
+	
+	/**
+	 * Seeks to a position in the music by decoding and discarding the audio
+	 * up to it, used if the seek table can't be read
+	 * 
+	 * @param position Position in seconds.
+	 * @return True if the setting of the position was successful
+	 */
+	private boolean decodeToPosition(float position) {
+		try {
+			initStreams();
 
 			float sampleRate = audio.getRate();
 			float sampleSize;
@@ -270,7 +326,8 @@ public class OpenALStreamPlayer {
 			}
 
 			while (positionOffset < position) {
-				int count = audio.read(buffer);
+				bufferData.clear();
+				int count = audio.read(bufferData);
 				if (count != -1) {
 					float bufferLength = (count / sampleSize) / sampleRate;
 					positionOffset += bufferLength;
@@ -300,9 +357,9 @@ public class OpenALStreamPlayer {
 		AL10.alSourcei(source, AL10.AL_LOOPING, AL10.AL_FALSE);
 		AL10.alSourcef(source, AL10.AL_PITCH, pitch);
 
-		remainingBufferCount = BUFFER_COUNT;
+		remainingBufferCount = bufferCount;
 
-		for (int i = 0; i < BUFFER_COUNT; i++) {
+		for (int i = 0; i < bufferCount; i++) {
 			stream(bufferNames.get(i));
 		}
 
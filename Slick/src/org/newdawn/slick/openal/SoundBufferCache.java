@@ -0,0 +1,282 @@
+package org.newdawn.slick.openal;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.lwjgl.openal.AL10;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * The OpenAL buffers holding decoded sounds, keyed on the resource they were
+ * loaded from. Sounds loaded more than once share a buffer.
+ *
+ * The cache can be given a budget in bytes. Once the buffers exceed it the
+ * least recently played buffers that aren't playing are deleted, those no
+ * longer referenced by any sound first. A sound whose buffer has been
+ * deleted reloads it from its resource the next time it's played, so only
+ * buffers loaded from a resource reference (rather than a stream) are
+ * deleted while still referenced.
+ *
+ * @see SoundStore#setSoundBufferBudget(int)
+ * @author kevin
+ */
+class SoundBufferCache {
+	/** The store the buffers are played through */
+	private SoundStore store;
+	/** The entries in least recently used order, keyed on resource reference */
+	private LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+	/** The maximum number of bytes to keep in buffers or 0 for no limit */
+	private int budget;
+	/** The number of bytes currently held in buffers */
+	private int bytes;
+	/** The number of times a sound was found in the cache */
+	private int hits;
+	/** The number of times a sound had to be loaded */
+	private int misses;
+	/** The number of buffers deleted to stay within the budget */
+	private int evictions;
+
+	/**
+	 * Create a new cache
+	 *
+	 * @param store The store the buffers are played through
+	 */
+	public SoundBufferCache(SoundStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Set the maximum number of bytes to keep in buffers
+	 *
+	 * @param budget The maximum number of bytes or 0 for no limit
+	 */
+	public void setBudget(int budget) {
+		this.budget = Math.max(0, budget);
+		trim(null);
+	}
+
+	/**
+	 * Get the maximum number of bytes to keep in buffers
+	 *
+	 * @return The maximum number of bytes or 0 for no limit
+	 */
+	public int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the number of bytes currently held in buffers
+	 *
+	 * @return The number of bytes held in buffers
+	 */
+	public int getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Get the number of times a sound was found already loaded
+	 *
+	 * @return The number of cache hits
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of times a sound had to be loaded or reloaded
+	 *
+	 * @return The number of cache misses
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of buffers deleted to stay within the budget
+	 *
+	 * @return The number of evictions
+	 */
+	public int getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Find the entry for a resource that's already been loaded
+	 *
+	 * @param ref The reference the sound was loaded from
+	 * @return The entry for the sound or null if it's not in the cache
+	 * @throws IOException Indicates a failure to reload an evicted buffer
+	 */
+	public Entry get(String ref) throws IOException {
+		Entry entry = (Entry) entries.get(ref);
+		if (entry != null) {
+			getBuffer(entry);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Add a newly loaded buffer to the cache
+	 *
+	 * @param ref The reference the sound was loaded from
+	 * @param type The type of the sound, e.g. DeferredSound.OGG
+	 * @param buffer The ID of the OpenAL buffer holding the sound
+	 * @return The entry for the sound
+	 */
+	public Entry add(String ref, int type, int buffer) {
+		Entry entry = new Entry(ref, type);
+		entry.reloadable = ResourceLoader.resourceExists(ref);
+		entries.put(ref, entry);
+
+		misses++;
+		setBuffer(entry, buffer);
+		return entry;
+	}
+
+	/**
+	 * Get the ID of the buffer holding a sound, reloading it if it's been
+	 * evicted, and mark it as the most recently used
+	 *
+	 * @param entry The entry for the sound
+	 * @return The ID of the OpenAL buffer holding the sound
+	 * @throws IOException Indicates a failure to reload the sound
+	 */
+	public int getBuffer(Entry entry) throws IOException {
+		// touch the entry to move it to the end of the LRU order
+		if (entries.get(entry.ref) != entry) {
+			entries.put(entry.ref, entry);
+		}
+
+		if (entry.buffer != -1) {
+			hits++;
+			return entry.buffer;
+		}
+
+		Log.info("Reloading evicted sound: "+entry.ref);
+		misses++;
+		setBuffer(entry, store.loadBuffer(entry.type, ResourceLoader.getResourceAsStream(entry.ref), entry.ref));
+		return entry.buffer;
+	}
+
+	/**
+	 * Record the buffer now holding a sound
+	 *
+	 * @param entry The entry for the sound
+	 * @param buffer The ID of the OpenAL buffer holding the sound
+	 */
+	private void setBuffer(Entry entry, int buffer) {
+		entry.buffer = buffer;
+		entry.size = AL10.alGetBufferi(buffer, AL10.AL_SIZE);
+		bytes += entry.size;
+
+		trim(entry);
+	}
+
+	/**
+	 * Notification that a sound has taken a reference to a buffer
+	 *
+	 * @param entry The entry for the buffer
+	 */
+	public void retain(Entry entry) {
+		entry.refs++;
+	}
+
+	/**
+	 * Notification that a sound no longer needs a buffer
+	 *
+	 * @param entry The entry for the buffer
+	 */
+	public void release(Entry entry) {
+		entry.refs--;
+		if ((entry.refs <= 0) && (entry.buffer == -1)) {
+			entries.remove(entry.ref);
+		}
+
+		trim(null);
+	}
+
+	/**
+	 * Delete the least recently used buffers until the cache is within its
+	 * budget. Buffers no longer referenced go first, then buffers that can be
+	 * reloaded. Buffers that are playing are never deleted.
+	 *
+	 * @param keep The entry to keep regardless, e.g. the one just loaded, or null if none
+	 */
+	private void trim(Entry keep) {
+		if (budget <= 0) {
+			return;
+		}
+
+		for (int pass=0;pass<2;pass++) {
+			Iterator i = entries.values().iterator();
+			while ((bytes > budget) && (i.hasNext())) {
+				Entry entry = (Entry) i.next();
+				if ((entry == keep) || (entry.buffer == -1)) {
+					continue;
+				}
+				if ((pass == 0) && (entry.refs > 0)) {
+					continue;
+				}
+				if ((pass == 1) && (!entry.reloadable)) {
+					continue;
+				}
+				if (store.isBufferPlaying(entry.buffer)) {
+					continue;
+				}
+
+				store.deleteBuffer(entry.buffer);
+				bytes -= entry.size;
+				entry.buffer = -1;
+				entry.size = 0;
+				evictions++;
+
+				if (entry.refs <= 0) {
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A single decoded sound held in the cache
+	 *
+	 * @author kevin
+	 */
+	static class Entry {
+		/** The reference the sound was loaded from */
+		private String ref;
+		/** The type of the sound, e.g. DeferredSound.OGG */
+		private int type;
+		/** The ID of the OpenAL buffer holding the sound or -1 if it's been evicted */
+		private int buffer = -1;
+		/** The size of the buffer in bytes */
+		private int size;
+		/** The number of sounds referencing the buffer */
+		private int refs;
+		/** True if the sound can be reloaded from its reference */
+		private boolean reloadable;
+
+		/**
+		 * Create a new entry
+		 *
+		 * @param ref The reference the sound was loaded from
+		 * @param type The type of the sound, e.g. DeferredSound.OGG
+		 */
+		public Entry(String ref, int type) {
+			this.ref = ref;
+			this.type = type;
+		}
+
+		/**
+		 * Get the ID of the buffer holding the sound
+		 *
+		 * @return The ID of the OpenAL buffer or -1 if it's been evicted
+		 */
+		public int getBufferID() {
+			return buffer;
+		}
+	}
+}
@@ -8,7 +8,6 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.HashMap;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.Sys;
@@ -21,6 +20,14 @@ import org.newdawn.slick.util.ResourceLoader;
 /**
  * Responsible for holding and playing the sounds used in the game.
  * 
+ * Streamed music (OGG streams and MODs) is normally refilled from poll(), 
+ * called each frame by Music.poll(). If the game loop stalls for longer than 
+ * the queued buffers last, e.g. while loading a level, the music drops out. 
+ * setStreamingThread(true) moves the refilling onto a background thread so
+ * music keeps playing however long a frame takes. The streaming state is 
+ * guarded by the store's monitor so the thread and the game never update it 
+ * at the same time.
+ * 
  * @author Kevin Glass
  * @author Rockstar setVolume cleanup 
  */
@@ -37,8 +44,8 @@ public class SoundStore {
 	private boolean soundWorks;
 	/** The number of sound sources enabled - default 8 */
 	private int sourceCount;
-	/** The map of references to IDs of previously loaded sounds */
-	private HashMap loaded = new HashMap();
+	/** The buffers holding previously loaded sounds */
+	private SoundBufferCache buffers = new SoundBufferCache(this);
 	/** The ID of the buffer containing the music currently being played */
 	private int currentMusic = -1;
 	/** The OpenGL AL sound sources in use */
@@ -71,6 +78,13 @@ public class SoundStore {
     
     /** The maximum number of sources */
     private int maxSources = 64;
+    /** The sources available for sound effects */
+    private VoicePool voices;
+    
+    /** The thread streaming music in the background or null if it's streamed from poll() */
+    private StreamingThread streamingThread;
+    /** The number of buffers queued for each music stream */
+    private int streamBufferCount = OpenALStreamPlayer.BUFFER_COUNT;
     
 	/**
 	 * Create a new sound store
@@ -82,6 +96,7 @@ public class SoundStore {
 	 * Clear out the sound store contents
 	 */
 	public void clear() {
+		setStreamingThread(false);
 		store = new SoundStore();
 	}
 
@@ -111,6 +126,66 @@ public class SoundStore {
     	return deferred;
     }
     
+    /**
+     * Indicate whether music should be streamed by a background thread, 
+     * refilling every 10 milliseconds
+     * 
+     * @see #setStreamingThread(boolean, int)
+     * @param enabled True if music should be streamed by a background thread
+     */
+    public void setStreamingThread(boolean enabled) {
+    	setStreamingThread(enabled, 10);
+    }
+    
+    /**
+     * Indicate whether music should be streamed by a background thread. While
+     * the thread is running poll() no longer streams the music, so frames that
+     * take a long time don't starve the music of data.
+     * 
+     * @param enabled True if music should be streamed by a background thread
+     * @param interval The time in milliseconds between refills of the music buffers
+     */
+    public synchronized void setStreamingThread(boolean enabled, int interval) {
+    	if (streamingThread != null) {
+    		streamingThread.finish();
+    		streamingThread = null;
+    	}
+    	if (enabled) {
+    		streamingThread = new StreamingThread(interval);
+    		streamingThread.start();
+    	}
+    }
+    
+    /**
+     * Check if music is being streamed by a background thread
+     * 
+     * @return True if music is being streamed by a background thread
+     */
+    public boolean isStreamingThread() {
+    	return streamingThread != null;
+    }
+    
+    /**
+     * Set the number of buffers queued for each music stream. More buffers 
+     * means the music can play for longer without being refilled at the cost 
+     * of memory and latency when seeking. Only applies to streams created 
+     * after the change. 
+     * 
+     * @param count The number of buffers to queue, at least 2
+     */
+    public void setStreamBufferCount(int count) {
+    	streamBufferCount = Math.max(2, count);
+    }
+    
+    /**
+     * Get the number of buffers queued for each music stream
+     * 
+     * @return The number of buffers queued for each music stream
+     */
+    public int getStreamBufferCount() {
+    	return streamBufferCount;
+    }
+    
 	/**
 	 * Inidicate whether music should be playing
 	 * 
@@ -349,6 +424,9 @@ public class SoundStore {
 				AL10.alListener(AL10.AL_POSITION, listenerPos);
 				AL10.alListener(AL10.AL_VELOCITY, listenerVel);
 				AL10.alListener(AL10.AL_ORIENTATION, listenerOri);
+				
+				// the first source is kept for music
+				voices = new VoicePool(sources, 1, sourceCount - 1);
    			 
 				Log.info("- Sounds source generated");
 			}
@@ -364,6 +442,37 @@ public class SoundStore {
 		AL10.alSourceStop(sources.get(index));
 	}
 	
+	/**
+	 * Stop a sound effect if its source hasn't since been given to another sound
+	 * 
+	 * @param index The index of the source to stop
+	 * @param play The ID of the play that started the sound, as given by getPlay()
+	 */
+	void stopSource(int index, int play) {
+		if (index == 0) {
+			stopSource(0);
+		} else if (voices.isCurrent(index, play)) {
+			stopSource(index);
+			voices.stopped(index, play);
+		}
+	}
+	
+	/**
+	 * Get the ID of the play that started the sound on a source. Sounds can 
+	 * have their source stolen by more important sounds, the ID identifies 
+	 * whether the source is still playing the same sound.
+	 * 
+	 * @param index The index of the source
+	 * @return The ID of the play using the source
+	 */
+	int getPlay(int index) {
+		if ((index <= 0) || (voices == null)) {
+			return 0;
+		}
+		
+		return voices.getPlay(index);
+	}
+	
 	/**
 	 * Play the specified buffer as a sound effect with the specified
 	 * pitch and gain.
@@ -392,13 +501,33 @@ public class SoundStore {
 	 * @return source The source that will be used
 	 */
 	int playAsSoundAt(int buffer,float pitch,float gain,boolean loop,float x, float y, float z) {
+		return playAsSoundAt(buffer, pitch, gain, loop, x, y, z, 0, 0);
+	}
+	
+	/**
+	 * Play the specified buffer as a sound effect with the specified
+	 * pitch and gain. If all the sources are in use the least important 
+	 * sound playing is stopped to make room.
+	 * 
+	 * @param buffer The ID of the buffer to play
+	 * @param pitch The pitch to play at
+	 * @param gain The gain to play at
+	 * @param loop True if the sound should loop
+	 * @param x The x position to play the sound from
+	 * @param y The y position to play the sound from
+	 * @param z The z position to play the sound from
+	 * @param priority The priority of the sound, sounds of a higher priority are kept over lower ones
+	 * @param maxInstances The maximum number of copies of the sound to play at once, or 0 for no limit
+	 * @return source The source that will be used or -1 if the sound wasn't played
+	 */
+	int playAsSoundAt(int buffer,float pitch,float gain,boolean loop,float x, float y, float z, int priority, int maxInstances) {
 		gain *= soundVolume;
 		if (gain == 0) {
 			gain = 0.001f;
 		}
 		if (soundWorks) {
 			if (sounds) {
-				int nextSource = findFreeSource();
+				int nextSource = voices.allocate(buffer, priority, maxInstances, (x*x)+(y*y)+(z*z));
 				if (nextSource == -1) {
 					return -1;
 				}
@@ -440,20 +569,31 @@ public class SoundStore {
 	}
 	
 	/**
-	 * Find a free sound source
+	 * Check if a sound effect is still playing on its source
 	 * 
-	 * @return The index of the free sound source
+	 * @param index The index of the source to check
+	 * @param play The ID of the play that started the sound, as given by getPlay()
+	 * @return True if the sound is still playing
 	 */
-	private int findFreeSource() {
-		for (int i=1;i<sourceCount-1;i++) {
-			int state = AL10.alGetSourcei(sources.get(i), AL10.AL_SOURCE_STATE);
-			
-			if ((state != AL10.AL_PLAYING) && (state != AL10.AL_PAUSED)) {
-				return i;
-			}
+	boolean isPlaying(int index, int play) {
+		if ((index != 0) && (!voices.isCurrent(index, play))) {
+			return false;
 		}
 		
-		return -1;
+		return isPlaying(index);
+	}
+	
+	/**
+	 * Get the number of sources currently in use by sound effects
+	 * 
+	 * @return The number of sources in use by sound effects
+	 */
+	public int getPlayingSoundCount() {
+		if (voices == null) {
+			return 0;
+		}
+		
+		return voices.getBusyCount();
 	}
 	
 	/**
@@ -513,7 +653,7 @@ public class SoundStore {
 	/**
 	 * Pause the music loop that is currently playing
 	 */
-	public void pauseLoop() {
+	public synchronized void pauseLoop() {
 		if ((soundWorks) && (currentMusic != -1)){
 			paused = true;
 			AL10.alSourcePause(currentMusic);
@@ -523,7 +663,7 @@ public class SoundStore {
 	/**
 	 * Restart the music loop that is currently paused
 	 */
-	public void restartLoop() {
+	public synchronized void restartLoop() {
 		if ((music) && (soundWorks) && (currentMusic != -1)){
 			paused = false;
 			AL10.alSourcePlay(currentMusic);
@@ -629,34 +769,12 @@ public class SoundStore {
 			return new DeferredSound(ref, in, DeferredSound.AIF);
 		}
 		
-		int buffer = -1;
-		
-		if (loaded.get(ref) != null) {
-			buffer = ((Integer) loaded.get(ref)).intValue();
-		} else {
-			try {
-				IntBuffer buf = BufferUtils.createIntBuffer(1);
-				
-				AiffData data = AiffData.create(in);
-				AL10.alGenBuffers(buf);
-				AL10.alBufferData(buf.get(0), data.format, data.data, data.samplerate);
-				
-				loaded.put(ref,new Integer(buf.get(0)));
-				buffer = buf.get(0);
-			} catch (Exception e) {
-				Log.error(e);
-				IOException x = new IOException("Failed to load: "+ref);
-				x.initCause(e);
-				
-				throw x;
-			}
+		SoundBufferCache.Entry entry = buffers.get(ref);
+		if (entry == null) {
+			entry = buffers.add(ref, DeferredSound.AIF, loadBuffer(DeferredSound.AIF, in, ref));
 		}
 		
-		if (buffer == -1) {
-			throw new IOException("Unable to load: "+ref);
-		}
-		
-		return new AudioImpl(this, buffer);
+		return new AudioImpl(this, entry);
 	}
 	
 
@@ -702,34 +820,12 @@ public class SoundStore {
 			return new DeferredSound(ref, in, DeferredSound.WAV);
 		}
 		
-		int buffer = -1;
-		
-		if (loaded.get(ref) != null) {
-			buffer = ((Integer) loaded.get(ref)).intValue();
-		} else {
-			try {
-				IntBuffer buf = BufferUtils.createIntBuffer(1);
-				
-				WaveData data = WaveData.create(in);
-				AL10.alGenBuffers(buf);
-				AL10.alBufferData(buf.get(0), data.format, data.data, data.samplerate);
-				
-				loaded.put(ref,new Integer(buf.get(0)));
-				buffer = buf.get(0);
-			} catch (Exception e) {
-				Log.error(e);
-				IOException x = new IOException("Failed to load: "+ref);
-				x.initCause(e);
-				
-				throw x;
-			}
-		}
-		
-		if (buffer == -1) {
-			throw new IOException("Unable to load: "+ref);
+		SoundBufferCache.Entry entry = buffers.get(ref);
+		if (entry == null) {
+			entry = buffers.add(ref, DeferredSound.WAV, loadBuffer(DeferredSound.WAV, in, ref));
 		}
 		
-		return new AudioImpl(this, buffer);
+		return new AudioImpl(this, entry);
 	}
 
 	/**
@@ -823,35 +919,180 @@ public class SoundStore {
 			return new DeferredSound(ref, in, DeferredSound.OGG);
 		}
 		
-		int buffer = -1;
+		SoundBufferCache.Entry entry = buffers.get(ref);
+		if (entry == null) {
+			entry = buffers.add(ref, DeferredSound.OGG, loadBuffer(DeferredSound.OGG, in, ref));
+		}
 		
-		if (loaded.get(ref) != null) {
-			buffer = ((Integer) loaded.get(ref)).intValue();
-		} else {
-			try {
-				IntBuffer buf = BufferUtils.createIntBuffer(1);
-				
+		return new AudioImpl(this, entry);
+	}
+	
+	/**
+	 * Decode a sound into a new OpenAL buffer
+	 * 
+	 * @param type The type of the sound, e.g. DeferredSound.OGG
+	 * @param in The stream to read the sound from
+	 * @param ref The reference the sound is loaded from
+	 * @return The ID of the buffer created
+	 * @throws IOException Indicates a failure to load the sound
+	 */
+	int loadBuffer(int type, InputStream in, String ref) throws IOException {
+		try {
+			IntBuffer buf = BufferUtils.createIntBuffer(1);
+			
+			switch (type) {
+			case DeferredSound.AIF:
+				AiffData aiff = AiffData.create(new BufferedInputStream(in));
+				AL10.alGenBuffers(buf);
+				AL10.alBufferData(buf.get(0), aiff.format, aiff.data, aiff.samplerate);
+				break;
+			case DeferredSound.WAV:
+				WaveData wav = WaveData.create(in);
+				AL10.alGenBuffers(buf);
+				AL10.alBufferData(buf.get(0), wav.format, wav.data, wav.samplerate);
+				break;
+			case DeferredSound.OGG:
 				OggDecoder decoder = new OggDecoder();
 				OggData ogg = decoder.getData(in);
-				
 				AL10.alGenBuffers(buf);
 				AL10.alBufferData(buf.get(0), ogg.channels > 1 ? AL10.AL_FORMAT_STEREO16 : AL10.AL_FORMAT_MONO16, ogg.data, ogg.rate);
-				
-				loaded.put(ref,new Integer(buf.get(0)));
-				                     
-				buffer = buf.get(0);
-			} catch (Exception e) {
-				Log.error(e);
+				break;
+			default:
+				throw new IOException("Unrecognised sound type: "+type);
+			}
+			
+			return buf.get(0);
+		} catch (Exception e) {
+			Log.error(e);
+			if (type == DeferredSound.OGG) {
 				Sys.alert("Error","Failed to load: "+ref+" - "+e.getMessage());
-				throw new IOException("Unable to load: "+ref);
 			}
+			IOException x = new IOException("Failed to load: "+ref);
+			x.initCause(e);
+			
+			throw x;
+		}
+	}
+	
+	/**
+	 * Check if a buffer is being played on any source
+	 * 
+	 * @param buffer The ID of the buffer to check
+	 * @return True if the buffer is being played
+	 */
+	boolean isBufferPlaying(int buffer) {
+		if ((voices != null) && (voices.isPlaying(buffer))) {
+			return true;
 		}
 		
-		if (buffer == -1) {
-			throw new IOException("Unable to load: "+ref);
+		return (AL10.alGetSourcei(sources.get(0), AL10.AL_BUFFER) == buffer) && (isMusicPlaying());
+	}
+	
+	/**
+	 * Delete a buffer, detaching it from any sources that last played it
+	 * 
+	 * @param buffer The ID of the buffer to delete
+	 */
+	void deleteBuffer(int buffer) {
+		for (int i=0;i<sourceCount;i++) {
+			if (AL10.alGetSourcei(sources.get(i), AL10.AL_BUFFER) == buffer) {
+				AL10.alSourceStop(sources.get(i));
+				AL10.alSourcei(sources.get(i), AL10.AL_BUFFER, 0);
+			}
 		}
 		
-		return new AudioImpl(this, buffer);
+		IntBuffer buf = BufferUtils.createIntBuffer(1);
+		buf.put(buffer).flip();
+		AL10.alDeleteBuffers(buf);
+	}
+	
+	/**
+	 * Get the buffer holding a loaded sound, reloading it if it's been evicted
+	 * from the cache
+	 * 
+	 * @param entry The cache entry for the sound
+	 * @return The ID of the buffer holding the sound
+	 * @throws IOException Indicates a failure to reload the sound
+	 */
+	int getBuffer(SoundBufferCache.Entry entry) throws IOException {
+		return buffers.getBuffer(entry);
+	}
+	
+	/**
+	 * Notification that a sound has taken a reference to a buffer
+	 * 
+	 * @param entry The cache entry for the buffer
+	 */
+	void retainBuffer(SoundBufferCache.Entry entry) {
+		buffers.retain(entry);
+	}
+	
+	/**
+	 * Notification that a sound no longer needs a buffer
+	 * 
+	 * @param entry The cache entry for the buffer
+	 */
+	void releaseBuffer(SoundBufferCache.Entry entry) {
+		buffers.release(entry);
+	}
+	
+	/**
+	 * Set the maximum number of bytes of decoded sound to keep loaded. Once
+	 * it's exceeded the least recently played sounds are unloaded, and are
+	 * reloaded from their resource the next time they're played. Sounds 
+	 * loaded from a stream rather than a reference can't be reloaded so are 
+	 * only unloaded once released. 
+	 * 
+	 * @param budget The maximum number of bytes to keep loaded or 0 for no limit
+	 */
+	public void setSoundBufferBudget(int budget) {
+		buffers.setBudget(budget);
+	}
+	
+	/**
+	 * Get the maximum number of bytes of decoded sound to keep loaded
+	 * 
+	 * @return The maximum number of bytes to keep loaded or 0 for no limit
+	 */
+	public int getSoundBufferBudget() {
+		return buffers.getBudget();
+	}
+	
+	/**
+	 * Get the number of bytes of decoded sound currently loaded
+	 * 
+	 * @return The number of bytes of decoded sound loaded
+	 */
+	public int getSoundBufferBytes() {
+		return buffers.getBytes();
+	}
+	
+	/**
+	 * Get the number of times a sound was found already loaded, either when
+	 * it was requested or played
+	 * 
+	 * @return The number of sound buffer cache hits
+	 */
+	public int getSoundBufferHits() {
+		return buffers.getHits();
+	}
+	
+	/**
+	 * Get the number of times a sound had to be loaded or reloaded
+	 * 
+	 * @return The number of sound buffer cache misses
+	 */
+	public int getSoundBufferMisses() {
+		return buffers.getMisses();
+	}
+	
+	/**
+	 * Get the number of sounds unloaded to stay within the budget
+	 * 
+	 * @return The number of sound buffers evicted
+	 */
+	public int getSoundBufferEvictions() {
+		return buffers.getEvictions();
 	}
 	
 	/**
@@ -859,7 +1100,7 @@ public class SoundStore {
 	 * 
 	 * @param sound The mod being streamed
 	 */
-	void setMOD(MODSound sound) {
+	synchronized void setMOD(MODSound sound) {
 		if (!soundWorks) {
 			return;
 		}
@@ -879,7 +1120,7 @@ public class SoundStore {
 	 * 
 	 * @param stream The stream being streamed
 	 */
-	void setStream(OpenALStreamPlayer stream) {
+	synchronized void setStream(OpenALStreamPlayer stream) {
 		if (!soundWorks) {
 			return;
 		}
@@ -893,11 +1134,27 @@ public class SoundStore {
 	}
 	
 	/**
-	 * Poll the streaming system
+	 * Poll the streaming system and free the sources of sound effects that
+	 * have finished. Music isn't streamed here while it's being streamed by a
+	 * background thread.
 	 * 
 	 * @param delta The amount of time passed since last poll (in milliseconds)
 	 */
 	public void poll(int delta) {
+		if (voices != null) {
+			voices.update();
+		}
+		if (streamingThread != null) {
+			return;
+		}
+		
+		updateStreams();
+	}
+	
+	/**
+	 * Refill the buffers of the music being streamed
+	 */
+	synchronized void updateStreams() {
 		if (!soundWorks) {
 			return;
 		}
@@ -971,4 +1228,54 @@ public class SoundStore {
 	public int getSourceCount() {
 		return sourceCount;
 	}
+	
+	/**
+	 * A thread refilling the music buffers in the background
+	 * 
+	 * @author kevin
+	 */
+	private class StreamingThread extends Thread {
+		/** The time in milliseconds between refills */
+		private int interval;
+		/** True if the thread should keep streaming */
+		private volatile boolean running = true;
+		
+		/**
+		 * Create a new streaming thread
+		 * 
+		 * @param interval The time in milliseconds between refills
+		 */
+		public StreamingThread(int interval) {
+			super("SoundStore-Streaming");
+			this.interval = interval;
+			setDaemon(true);
+		}
+		
+		/**
+		 * Stop the thread streaming once the current refill is complete
+		 */
+		public void finish() {
+			running = false;
+			interrupt();
+		}
+		
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (running) {
+				try {
+					updateStreams();
+				} catch (RuntimeException e) {
+					Log.error("Failure streaming music", e);
+				}
+				
+				try {
+					Thread.sleep(interval);
+				} catch (InterruptedException e) {
+					// woken to finish
+				}
+			}
+		}
+	}
 }
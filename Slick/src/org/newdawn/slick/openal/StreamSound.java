@@ -39,14 +39,16 @@ public class StreamSound extends AudioImpl {
 	 * @see org.newdawn.slick.openal.AudioImpl#playAsMusic(float, float, boolean)
 	 */
 	public int playAsMusic(float pitch, float gain, boolean loop) {
-		try {
-			cleanUpSource();
-			
-			player.setup(pitch);
-			player.play(loop);
-			SoundStore.get().setStream(player);
-		} catch (IOException e) {
-			Log.error("Failed to read OGG source: "+player.getSource());
+		synchronized (SoundStore.get()) {
+			try {
+				cleanUpSource();
+				
+				player.setup(pitch);
+				player.play(loop);
+				SoundStore.get().setStream(player);
+			} catch (IOException e) {
+				Log.error("Failed to read OGG source: "+player.getSource());
+			}
 		}
 		
 		return SoundStore.get().getSource(0);
@@ -96,7 +98,9 @@ public class StreamSound extends AudioImpl {
 	 * @see org.newdawn.slick.openal.AudioImpl#setPosition(float)
 	 */
 	public boolean setPosition(float position) {
-		return player.setPosition(position);
+		synchronized (SoundStore.get()) {
+			return player.setPosition(position);
+		}
 	}
 
 	/**
@@ -0,0 +1,257 @@
+package org.newdawn.slick.openal;
+
+import java.nio.IntBuffer;
+
+import org.lwjgl.openal.AL10;
+
+/**
+ * The sources available for sound effects and the sounds playing on them.
+ * Free sources are kept on a list so finding one doesn't need to query
+ * OpenAL; sources are returned to the list when update() finds they've
+ * finished playing, normally once a frame.
+ *
+ * When every source is busy a new sound steals the source of the weakest
+ * sound playing - the one with the lowest priority, then the furthest from
+ * the listener, then the one that started first. Sounds of a higher priority
+ * than the new sound are never stolen, so unimportant sounds can't cut off
+ * important ones. Each sound can also limit the number of copies of itself
+ * playing at once, in which case its oldest copy is restarted.
+ *
+ * @author kevin
+ */
+class VoicePool {
+	/** The OpenAL sources held by the sound store */
+	private IntBuffer sources;
+	/** The index of the first source used for sound effects */
+	private int first;
+	/** True if the voice is in use */
+	private boolean[] busy;
+	/** The buffer playing on each voice */
+	private int[] buffers;
+	/** The priority of the sound playing on each voice */
+	private int[] priorities;
+	/** The squared distance from the listener of the sound playing on each voice */
+	private float[] distances;
+	/** The order in which the sounds on each voice were started */
+	private long[] ages;
+	/** The ID of the play currently using each voice */
+	private int[] plays;
+	/** The voices not in use */
+	private int[] free;
+	/** The number of voices on the free list */
+	private int freeCount;
+	/** The number of sounds started, used to order them */
+	private long started;
+	/** The ID to give the next play */
+	private int nextPlay = 1;
+
+	/**
+	 * Create a new pool of voices
+	 *
+	 * @param sources The OpenAL sources held by the sound store
+	 * @param first The index of the first source used for sound effects
+	 * @param count The number of sources used for sound effects
+	 */
+	public VoicePool(IntBuffer sources, int first, int count) {
+		this.sources = sources;
+		this.first = first;
+
+		count = Math.max(0, count);
+		busy = new boolean[count];
+		buffers = new int[count];
+		priorities = new int[count];
+		distances = new float[count];
+		ages = new long[count];
+		plays = new int[count];
+		free = new int[count];
+		for (int i=count-1;i>=0;i--) {
+			free[freeCount++] = i;
+		}
+	}
+
+	/**
+	 * Find the voices whose sounds have finished and return them to the free
+	 * list. This is the only place the voices are polled, normally once a frame.
+	 */
+	public void update() {
+		for (int i=0;i<busy.length;i++) {
+			if (busy[i]) {
+				int state = AL10.alGetSourcei(sources.get(first + i), AL10.AL_SOURCE_STATE);
+				if ((state != AL10.AL_PLAYING) && (state != AL10.AL_PAUSED)) {
+					release(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Allocate a voice to play a sound on
+	 *
+	 * @param buffer The buffer holding the sound to play
+	 * @param priority The priority of the sound, higher priorities are kept over lower ones
+	 * @param maxInstances The maximum number of copies of the sound to play at once, or 0 for no limit
+	 * @param distance The squared distance of the sound from the listener
+	 * @return The index of the source to play the sound on or -1 if the sound
+	 * isn't important enough to play
+	 */
+	public int allocate(int buffer, int priority, int maxInstances, float distance) {
+		if (maxInstances > 0) {
+			int instances = 0;
+			int oldest = -1;
+			for (int i=0;i<busy.length;i++) {
+				if ((busy[i]) && (buffers[i] == buffer)) {
+					instances++;
+					if ((oldest < 0) || (ages[i] < ages[oldest])) {
+						oldest = i;
+					}
+				}
+			}
+
+			if (instances >= maxInstances) {
+				return take(oldest, buffer, priority, distance);
+			}
+		}
+
+		// sounds may have finished since the last update
+		if (freeCount == 0) {
+			update();
+		}
+		if (freeCount > 0) {
+			int voice = free[--freeCount];
+			return take(voice, buffer, priority, distance);
+		}
+
+		int weakest = -1;
+		for (int i=0;i<busy.length;i++) {
+			if ((weakest < 0) || (isWeaker(i, weakest))) {
+				weakest = i;
+			}
+		}
+		if ((weakest < 0) || (priorities[weakest] > priority)) {
+			return -1;
+		}
+		if ((priorities[weakest] == priority) && (distances[weakest] < distance)) {
+			return -1;
+		}
+
+		return take(weakest, buffer, priority, distance);
+	}
+
+	/**
+	 * Check if the sound on one voice should be stolen before the sound on another
+	 *
+	 * @param a The index of the first voice
+	 * @param b The index of the second voice
+	 * @return True if the sound on the first voice is less important
+	 */
+	private boolean isWeaker(int a, int b) {
+		if (priorities[a] != priorities[b]) {
+			return priorities[a] < priorities[b];
+		}
+		if (distances[a] != distances[b]) {
+			return distances[a] > distances[b];
+		}
+		return ages[a] < ages[b];
+	}
+
+	/**
+	 * Record a sound starting on a voice
+	 *
+	 * @param voice The index of the voice
+	 * @param buffer The buffer holding the sound
+	 * @param priority The priority of the sound
+	 * @param distance The squared distance of the sound from the listener
+	 * @return The index of the source to play the sound on
+	 */
+	private int take(int voice, int buffer, int priority, float distance) {
+		busy[voice] = true;
+		buffers[voice] = buffer;
+		priorities[voice] = priority;
+		distances[voice] = distance;
+		ages[voice] = started++;
+		plays[voice] = nextPlay++;
+
+		return first + voice;
+	}
+
+	/**
+	 * Return a voice to the free list
+	 *
+	 * @param voice The index of the voice
+	 */
+	private void release(int voice) {
+		busy[voice] = false;
+		plays[voice] = 0;
+		free[freeCount++] = voice;
+	}
+
+	/**
+	 * Notification that a sound has been stopped
+	 *
+	 * @param source The index of the source the sound was playing on
+	 * @param play The ID of the play that was stopped
+	 */
+	public void stopped(int source, int play) {
+		int voice = source - first;
+		if (isCurrent(source, play)) {
+			release(voice);
+		}
+	}
+
+	/**
+	 * Check if a source is still playing the sound a play started, rather
+	 * than having finished or been stolen
+	 *
+	 * @param source The index of the source
+	 * @param play The ID of the play
+	 * @return True if the source is still in use by the play
+	 */
+	public boolean isCurrent(int source, int play) {
+		int voice = source - first;
+		if ((voice < 0) || (voice >= busy.length)) {
+			return false;
+		}
+
+		return busy[voice] && (plays[voice] == play);
+	}
+
+	/**
+	 * Get the ID of the play using a source
+	 *
+	 * @param source The index of the source
+	 * @return The ID of the play using the source or 0 if it's not in use
+	 */
+	public int getPlay(int source) {
+		int voice = source - first;
+		if ((voice < 0) || (voice >= busy.length)) {
+			return 0;
+		}
+
+		return plays[voice];
+	}
+
+	/**
+	 * Check if a buffer is being played on any voice
+	 *
+	 * @param buffer The ID of the buffer to check
+	 * @return True if the buffer is being played
+	 */
+	public boolean isPlaying(int buffer) {
+		for (int i=0;i<busy.length;i++) {
+			if ((busy[i]) && (buffers[i] == buffer)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the number of voices in use
+	 *
+	 * @return The number of voices in use
+	 */
+	public int getBusyCount() {
+		return busy.length - freeCount;
+	}
+}
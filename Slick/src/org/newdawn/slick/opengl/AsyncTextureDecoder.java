@@ -0,0 +1,124 @@
+package org.newdawn.slick.opengl;
+
+import java.util.LinkedList;
+
+/**
+ * A pool of worker threads that decode deferred textures in the background.
+ * Only the decoding of the image data into a buffer is done by the workers,
+ * the upload to the card is left to the thread holding the GL context when
+ * the texture is loaded from the LoadingList.
+ *
+ * @see InternalTextureLoader#setAsyncLoading(boolean)
+ * @author kevin
+ */
+class AsyncTextureDecoder {
+	/** The textures waiting to be decoded */
+	private LinkedList pending = new LinkedList();
+	/** The worker threads decoding textures */
+	private Thread[] workers;
+	/** True if the pool has been shutdown */
+	private boolean shutdown;
+
+	/**
+	 * Create a new pool of decoding threads
+	 *
+	 * @param threads The number of worker threads to decode with
+	 */
+	public AsyncTextureDecoder(int threads) {
+		workers = new Thread[threads];
+		for (int i=0;i<threads;i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Submit a texture to be decoded
+	 *
+	 * @param texture The texture to be decoded
+	 */
+	public void submit(DeferredTexture texture) {
+		synchronized (pending) {
+			pending.add(texture);
+			pending.notify();
+		}
+	}
+
+	/**
+	 * Take a texture back from the pool if no worker has started decoding it yet
+	 *
+	 * @param texture The texture to remove
+	 * @return True if the texture was still waiting and the caller should decode
+	 * it, false if a worker has already taken it
+	 */
+	public boolean remove(DeferredTexture texture) {
+		synchronized (pending) {
+			return pending.remove(texture);
+		}
+	}
+
+	/**
+	 * Check if the pool is still decoding textures
+	 *
+	 * @return True if the pool is still decoding textures
+	 */
+	public boolean isRunning() {
+		synchronized (pending) {
+			return !shutdown;
+		}
+	}
+
+	/**
+	 * Shutdown the worker threads. Textures not yet decoded are left in the pool
+	 * to be taken back and decoded as they're loaded.
+	 */
+	public void shutdown() {
+		synchronized (pending) {
+			shutdown = true;
+			pending.notifyAll();
+		}
+	}
+
+	/**
+	 * A worker thread decoding textures as they're submitted
+	 *
+	 * @author kevin
+	 */
+	private class Worker extends Thread {
+		/**
+		 * Create a new worker
+		 *
+		 * @param index The index of the worker, used to name the thread
+		 */
+		public Worker(int index) {
+			super("AsyncTextureDecoder-"+index);
+			setDaemon(true);
+		}
+
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (true) {
+				DeferredTexture texture;
+
+				synchronized (pending) {
+					while (pending.isEmpty() && !shutdown) {
+						try {
+							pending.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (shutdown) {
+						return;
+					}
+
+					texture = (DeferredTexture) pending.removeFirst();
+				}
+
+				texture.decode();
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.newdawn.slick.opengl;
+
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * A texture that is a region of a page in a TextureAtlas. Binding the texture
+ * binds the whole page, so images using it must offset their texture coordinates
+ * into the region, which Image does based on getTextureOffsetX() and
+ * getTextureOffsetY().
+ *
+ * @see TextureAtlas
+ * @author kevin
+ */
+public class AtlasTexture extends TextureImpl {
+	/** The atlas holding the page this region is on */
+	private TextureAtlas atlas;
+	/** The page texture this region is on */
+	private TextureImpl page;
+	/** The x position of the region on the page in pixels */
+	private int x;
+	/** The y position of the region on the page in pixels */
+	private int y;
+	/** The name the texture has in the cache */
+	private String cacheName;
+	/** True if this region has been released */
+	private boolean released;
+
+	/**
+	 * Create a new region of an atlas page
+	 *
+	 * @param atlas The atlas holding the page
+	 * @param page The page texture the region is on
+	 * @param ref The reference the image in the region was loaded from
+	 * @param x The x position of the region on the page in pixels
+	 * @param y The y position of the region on the page in pixels
+	 * @param width The width of the region in pixels
+	 * @param height The height of the region in pixels
+	 */
+	AtlasTexture(TextureAtlas atlas, TextureImpl page, String ref, int x, int y, int width, int height) {
+		super(ref, SGL.GL_TEXTURE_2D, page.getTextureID());
+
+		this.atlas = atlas;
+		this.page = page;
+		this.x = x;
+		this.y = y;
+
+		setTextureWidth(page.getTextureWidth());
+		setTextureHeight(page.getTextureHeight());
+		setWidth(width);
+		setHeight(height);
+		setAlpha(true);
+	}
+
+	/**
+	 * Get the page texture this region is on
+	 *
+	 * @return The page texture this region is on
+	 */
+	public Texture getPage() {
+		return page;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#getTextureOffsetX()
+	 */
+	public float getTextureOffsetX() {
+		return ((float) x) / getTextureWidth();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#getTextureOffsetY()
+	 */
+	public float getTextureOffsetY() {
+		return ((float) y) / getTextureHeight();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#bind()
+	 */
+	public void bind() {
+		page.bind();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#getTextureID()
+	 */
+	public int getTextureID() {
+		return page.getTextureID();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#setCacheName(java.lang.String)
+	 */
+	public void setCacheName(String cacheName) {
+		super.setCacheName(cacheName);
+		this.cacheName = cacheName;
+	}
+
+	/**
+	 * Release this region. The page is only released once all the regions on it
+	 * have been.
+	 *
+	 * @see org.newdawn.slick.opengl.TextureImpl#release()
+	 */
+	public void release() {
+		if (released) {
+			return;
+		}
+		released = true;
+
+		if (cacheName != null) {
+			InternalTextureLoader.get().clear(cacheName);
+		} else {
+			InternalTextureLoader.get().clear(getTextureRef());
+		}
+		atlas.release(page);
+	}
+
+	/**
+	 * Changing the filter of a region changes the filter of the whole page
+	 *
+	 * @see org.newdawn.slick.opengl.TextureImpl#setTextureFilter(int)
+	 */
+	public void setTextureFilter(int textureFilter) {
+		page.setTextureFilter(textureFilter);
+	}
+}
@@ -1,19 +1,23 @@
 package org.newdawn.slick.opengl;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
-import org.newdawn.slick.loading.DeferredResource;
 import org.newdawn.slick.loading.LoadingList;
+import org.newdawn.slick.loading.PreparedResource;
 import org.newdawn.slick.opengl.renderer.SGL;
 
 /**
  * A texture proxy that can be used to load a texture at a later date while still
- * allowing elements to reference it
+ * allowing elements to reference it. If asynchronous loading is enabled the
+ * image data is decoded by a background thread as soon as the texture is 
+ * created, leaving only the upload to be done when it's loaded.
  *
  * @author kevin
  */
-public class DeferredTexture extends TextureImpl implements DeferredResource {
+public class DeferredTexture extends TextureImpl implements PreparedResource {
 	/** The stream to read the texture from */
 	private InputStream in;
 	/** The name of the resource to load */
@@ -26,6 +30,16 @@ public class DeferredTexture extends TextureImpl implements DeferredResource {
 	private TextureImpl target;
 	/** The color to be transparent */
 	private int[] trans;
+	/** The pool decoding this texture in the background or null if it's decoded as it's loaded */
+	private AsyncTextureDecoder decoder;
+	/** True once the image data has been decoded in the background */
+	private boolean decoded;
+	/** The description of the decoded image */
+	private LoadableImageData imageData;
+	/** The decoded pixels of the image */
+	private ByteBuffer pixels;
+	/** The failure that occured decoding the image or null if it decoded */
+	private IOException failure;
 	
 	/**
 	 * Create a new deferred texture
@@ -44,18 +58,113 @@ public class DeferredTexture extends TextureImpl implements DeferredResource {
 		this.trans = trans;
 		
 		LoadingList.get().add(this);
+		
+		decoder = InternalTextureLoader.get().getDecoder();
+		if (decoder != null) {
+			decoder.submit(this);
+		}
 	}
 
+	/**
+	 * Decode the image data ready to be uploaded. Called from the decoding threads.
+	 */
+	void decode() {
+		LoadableImageData data = null;
+		ByteBuffer buffer = null;
+		IOException error = null;
+		
+		try {
+			data = ImageDataFactory.getImageDataFor(resourceName);
+			buffer = data.loadImage(new BufferedInputStream(in), flipped, trans);
+		} catch (IOException e) {
+			error = e;
+		} catch (RuntimeException e) {
+			error = new IOException("Failed to decode texture: "+resourceName);
+			error.initCause(e);
+		} finally {
+			if ((buffer == null) && (error == null)) {
+				error = new IOException("Failed to decode texture: "+resourceName);
+			}
+			
+			synchronized (this) {
+				imageData = data;
+				pixels = buffer;
+				failure = error;
+				decoded = true;
+				notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.slick.loading.PreparedResource#isPrepared()
+	 */
+	public synchronized boolean isPrepared() {
+		return decoded || (decoder == null) || !decoder.isRunning();
+	}
+
+	/**
+	 * @see org.newdawn.slick.loading.PreparedResource#getLoadSize()
+	 */
+	public synchronized int getLoadSize() {
+		if (imageData == null) {
+			return 0;
+		}
+		
+		return imageData.getTexWidth() * imageData.getTexHeight() * (imageData.getDepth() / 8);
+	}
+	
 	/**
 	 * @see org.newdawn.slick.loading.DeferredResource#load()
 	 */
 	public void load() throws IOException {
+		if (decoder != null) {
+			loadDecoded();
+			return;
+		}
+		
 		boolean before = InternalTextureLoader.get().isDeferredLoading();
 		InternalTextureLoader.get().setDeferredLoading(false);
 		target = InternalTextureLoader.get().getTexture(in, resourceName, flipped, filter, trans);
 		InternalTextureLoader.get().setDeferredLoading(before);
 	}
 	
+	/**
+	 * Load the texture from the image data decoded in the background, waiting
+	 * for the decoding to finish if it's in progress
+	 * 
+	 * @throws IOException Indicates a failure to decode or upload the texture
+	 */
+	private void loadDecoded() throws IOException {
+		// if no worker has got to it yet it's quicker to decode it here
+		if (decoder.remove(this)) {
+			decode();
+		}
+		
+		synchronized (this) {
+			while (!decoded) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted waiting for texture to decode: "+resourceName);
+				}
+			}
+		}
+		
+		if (failure != null) {
+			throw failure;
+		}
+		
+		try {
+			target = InternalTextureLoader.get().getTexture(imageData, pixels, resourceName, flipped, filter, trans);
+		} finally {
+			synchronized (this) {
+				imageData = null;
+				pixels = null;
+			}
+		}
+	}
+	
 	/**
 	 * Check if the target has been obtained already
 	 */
@@ -121,6 +230,22 @@ public class DeferredTexture extends TextureImpl implements DeferredResource {
 		return target.getTextureID();
 	}
 
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#getTextureOffsetX()
+	 */
+	public float getTextureOffsetX() {
+		checkTarget();
+		return target.getTextureOffsetX();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#getTextureOffsetY()
+	 */
+	public float getTextureOffsetY() {
+		checkTarget();
+		return target.getTextureOffsetY();
+	}
+
 	/**
 	 * @see org.newdawn.slick.opengl.TextureImpl#getTextureRef()
 	 */
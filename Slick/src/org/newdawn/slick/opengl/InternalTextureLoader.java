@@ -50,6 +50,20 @@ public class InternalTextureLoader {
     private boolean deferred;
     /** True if we should hold texture data */
     private boolean holdTextureData;
+    /** True if small images should be packed into shared atlas pages */
+    private boolean atlasing;
+    /** The width and height of each atlas page */
+    private int atlasPageSize = 1024;
+    /** The number of pixels of padding around each image in an atlas */
+    private int atlasPadding = 1;
+    /** The largest width or height of an image that will be packed into an atlas */
+    private int atlasMaxImageSize = 256;
+    /** The atlas used for images loaded with linear filtering */
+    private TextureAtlas atlasLinear;
+    /** The atlas used for images loaded with nearest filtering */
+    private TextureAtlas atlasNearest;
+    /** The pool decoding deferred textures in the background or null if they're decoded as loaded */
+    private AsyncTextureDecoder decoder;
     
     /** 
      * Create a new texture loader based on the game panel
@@ -86,6 +100,119 @@ public class InternalTextureLoader {
     	return deferred;
     }
     
+    /**
+     * Indicate whether deferred textures should be decoded in the background, 
+     * using a thread for each processor. 
+     * 
+     * @see #setAsyncLoading(boolean, int)
+     * @param async True if deferred textures should be decoded in the background
+     */
+    public void setAsyncLoading(boolean async) {
+    	setAsyncLoading(async, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Indicate whether deferred textures should be decoded in the background. 
+     * While deferred loading is in use each texture requested is handed to a
+     * pool of worker threads that decode the image data as soon as it's 
+     * requested. Loading the texture from the LoadingList then only has to 
+     * upload the decoded data to the card, see LoadingList.update().
+     * 
+     * @param async True if deferred textures should be decoded in the background
+     * @param threads The number of worker threads to decode with
+     */
+    public void setAsyncLoading(boolean async, int threads) {
+    	if (decoder != null) {
+    		decoder.shutdown();
+    		decoder = null;
+    	}
+    	if (async) {
+    		decoder = new AsyncTextureDecoder(Math.max(1, threads));
+    	}
+    }
+    
+    /**
+     * Check if deferred textures are decoded in the background
+     * 
+     * @return True if deferred textures are decoded in the background
+     */
+    public boolean isAsyncLoading() {
+    	return decoder != null;
+    }
+    
+    /**
+     * Get the pool decoding deferred textures in the background
+     * 
+     * @return The pool decoding textures or null if textures are decoded as they're loaded
+     */
+    AsyncTextureDecoder getDecoder() {
+    	return decoder;
+    }
+    
+    /**
+     * Indicate whether small images loaded from now on should be packed into 
+     * shared texture atlas pages rather than each being given their own 
+     * texture. Images drawn from the same page don't need a texture switch 
+     * between them. 
+     * 
+     * Images larger than the maximum atlas image size, images created empty or
+     * from image data and all images while texture data is being held are still 
+     * given their own texture. Images in an atlas shouldn't be used as 
+     * render targets since their graphics context would cover the whole page.
+     * 
+     * @param atlasing True if small images should be packed into atlas pages
+     */
+    public void setAtlasing(boolean atlasing) {
+    	this.atlasing = atlasing;
+    }
+    
+    /**
+     * Check if small images are being packed into shared texture atlas pages
+     * 
+     * @return True if small images are being packed into atlas pages
+     */
+    public boolean isAtlasing() {
+    	return atlasing;
+    }
+    
+    /**
+     * Configure the texture atlas pages. Pages already created keep their 
+     * settings, the new settings apply to the pages created from now on.
+     * 
+     * @param pageSize The width and height of each page, rounded up to a power of two
+     * @param padding The number of pixels around each image filled with copies
+     * of its edges to prevent neighbouring images bleeding in when filtered
+     * @param maxImageSize The largest width or height of an image that will
+     * be packed into a page, larger images are given their own texture
+     */
+    public void setAtlasConfiguration(int pageSize, int padding, int maxImageSize) {
+    	atlasPageSize = pageSize;
+    	atlasPadding = padding;
+    	atlasMaxImageSize = maxImageSize;
+    	atlasLinear = null;
+    	atlasNearest = null;
+    }
+    
+    /**
+     * Get the atlas that images loaded with a given filter are packed into
+     * 
+     * @param filter The filter the images are loaded with
+     * @return The atlas for the given filter
+     */
+    private TextureAtlas getAtlas(int filter) {
+    	if (filter == SGL.GL_NEAREST) {
+    		if (atlasNearest == null) {
+    			atlasNearest = new TextureAtlas(atlasPageSize, atlasPadding, filter, dstPixelFormat);
+    		}
+    		return atlasNearest;
+    	}
+    	
+    	if (atlasLinear == null) {
+    		atlasLinear = new TextureAtlas(atlasPageSize, atlasPadding, filter, dstPixelFormat);
+    	}
+    	return atlasLinear;
+    }
+    
     /**
      * Remove a particular named image from the cache
      * 
@@ -216,6 +343,43 @@ public class InternalTextureLoader {
 	    	return new DeferredTexture(in, resourceName, flipped, filter, transparent);
 	    }
     	
+    	return getTexture(in, null, null, resourceName, flipped, filter, transparent);
+    }
+    
+    /**
+     * Get a texture from image data that has already been decoded, for instance
+     * by a background thread
+     * 
+     * @param imageData The description of the decoded image
+     * @param textureBuffer The decoded pixels of the image
+     * @param resourceName The name to give this image in the internal cache
+     * @param flipped True if the image was flipped on the y-axis while decoding
+     * @param filter The filter to use when scaling the texture
+	 * @param transparent The colour interpreted as transparent or null if none
+     * @return The texture loaded
+     * @throws IOException Indicates a failure to create the texture
+     */
+    TextureImpl getTexture(LoadableImageData imageData, ByteBuffer textureBuffer, String resourceName, 
+    					   boolean flipped, int filter, int[] transparent) throws IOException {
+    	return getTexture(null, imageData, textureBuffer, resourceName, flipped, filter, transparent);
+    }
+    
+    /**
+     * Get a texture from the cache or, if it's not there, load it and add it 
+     * to the cache
+     * 
+     * @param in The stream from which we can load the image or null if it's been decoded
+     * @param imageData The description of the decoded image or null if it's to be read from the stream
+     * @param textureBuffer The decoded pixels of the image or null if it's to be read from the stream
+     * @param resourceName The name to give this image in the internal cache
+     * @param flipped True if we should flip the image on the y-axis while loading
+     * @param filter The filter to use when scaling the texture
+	 * @param transparent The colour to interpret as transparent or null if none
+     * @return The texture loaded
+     * @throws IOException Indicates a failure to load the image
+     */
+    private TextureImpl getTexture(InputStream in, LoadableImageData imageData, ByteBuffer textureBuffer, 
+    							   String resourceName, boolean flipped, int filter, int[] transparent) throws IOException {
     	HashMap hash = texturesLinear;
         if (filter == SGL.GL_NEAREST) {
         	hash = texturesNearest;
@@ -251,10 +415,15 @@ public class InternalTextureLoader {
         	throw new RuntimeException("Image based resources must be loaded as part of init() or the game loop. They cannot be loaded before initialisation.");
         }
         
-        TextureImpl tex = getTexture(in, resourceName,
+        TextureImpl tex;
+        if (imageData == null) {
+        	tex = getTexture(in, resourceName,
                          SGL.GL_TEXTURE_2D, 
                          filter, 
                          filter, flipped, transparent);
+        } else {
+        	tex = upload(imageData, textureBuffer, resourceName, SGL.GL_TEXTURE_2D, filter, filter);
+        }
         
         tex.setCacheName(resName);
         if (holdTextureData) {
@@ -285,12 +454,38 @@ public class InternalTextureLoader {
                               int magFilter, 
                               int minFilter, boolean flipped, int[] transparent) throws IOException 
     { 
-        // create the texture ID for this texture 
         ByteBuffer textureBuffer;
         
         LoadableImageData imageData = ImageDataFactory.getImageDataFor(resourceName);
     	textureBuffer = imageData.loadImage(new BufferedInputStream(in), flipped, transparent);
 
+    	return upload(imageData, textureBuffer, resourceName, target, magFilter, minFilter);
+    }
+    
+    /**
+     * Upload decoded image data to a new texture
+     * 
+     * @param imageData The description of the decoded image
+     * @param textureBuffer The decoded pixels of the image
+     * @param resourceName The name to give this image in the internal cache
+     * @param target The texture target we're loading this texture into
+     * @param magFilter The scaling up filter
+     * @param minFilter The scaling down filter
+     * @return The texture created
+     * @throws IOException Indicates the texture is too big for the hardware
+     */
+    private TextureImpl upload(LoadableImageData imageData, ByteBuffer textureBuffer, String resourceName,
+    						   int target, int magFilter, int minFilter) throws IOException 
+    {
+    	if (atlasing && !holdTextureData && (target == SGL.GL_TEXTURE_2D) && (minFilter == magFilter)
+    			&& (imageData.getWidth() <= atlasMaxImageSize) && (imageData.getHeight() <= atlasMaxImageSize)) {
+    		TextureImpl region = getAtlas(minFilter).add(resourceName, imageData, textureBuffer);
+    		if (region != null) {
+    			return region;
+    		}
+    	}
+    	
+        // create the texture ID for this texture 
         int textureID = createTextureID(); 
         TextureImpl texture = new TextureImpl(resourceName, target, textureID); 
         // bind this texture 
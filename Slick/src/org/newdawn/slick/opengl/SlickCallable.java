@@ -87,6 +87,9 @@ public abstract class SlickCallable {
 		GL11.glPopMatrix();
 		GL11.glPopClientAttrib();
 		GL11.glPopAttrib();
+		// the state has been restored behind the renderer's back, and the
+		// context may have been switched, so anything it tracked is stale
+		Renderer.get().flush();
 		
 		if (lastUsed != null) {
 			lastUsed.bind();
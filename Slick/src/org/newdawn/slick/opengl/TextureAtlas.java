@@ -0,0 +1,283 @@
+package org.newdawn.slick.opengl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.lwjgl.BufferUtils;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.newdawn.slick.util.Log;
+
+/**
+ * A set of power of two texture pages that small images are packed into so
+ * they can be drawn without switching textures. Each image is given an
+ * AtlasTexture describing its region of a page.
+ *
+ * Images are packed onto shelves across each page. Each image is surrounded
+ * by a border of padding pixels copied from its own edges so that filtering
+ * at the edge of the image doesn't bleed in pixels from its neighbours.
+ *
+ * @see InternalTextureLoader#setAtlasing(boolean)
+ * @author kevin
+ */
+public class TextureAtlas {
+	/** The renderer to use for all GL operations */
+	protected static SGL GL = Renderer.get();
+
+	/** The width and height of each page in pixels */
+	private int pageSize;
+	/** The number of pixels of padding around each image */
+	private int padding;
+	/** The filter applied to the pages */
+	private int filter;
+	/** The pixel format of the pages */
+	private int dstPixelFormat;
+	/** The pages in the atlas (Page) */
+	private ArrayList pages = new ArrayList();
+	/** The scratch buffer used to upload images */
+	private ByteBuffer scratch;
+
+	/**
+	 * Create a new empty atlas
+	 *
+	 * @param pageSize The width and height of each page, a power of two
+	 * @param padding The number of pixels of padding around each image
+	 * @param filter The filter to apply to the pages
+	 * @param dstPixelFormat The pixel format of the pages, e.g. SGL.GL_RGBA8
+	 */
+	public TextureAtlas(int pageSize, int padding, int filter, int dstPixelFormat) {
+		this.pageSize = InternalTextureLoader.get2Fold(pageSize);
+		this.padding = padding;
+		this.filter = filter;
+		this.dstPixelFormat = dstPixelFormat;
+	}
+
+	/**
+	 * Get the width and height of each page
+	 *
+	 * @return The width and height of each page in pixels
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Get the number of pages in use
+	 *
+	 * @return The number of pages in use
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Check if an image of a given size could be packed into this atlas
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return True if the image would fit on a page
+	 */
+	public boolean fits(int width, int height) {
+		return (width + (padding * 2) <= pageSize) && (height + (padding * 2) <= pageSize);
+	}
+
+	/**
+	 * Pack an image into the atlas
+	 *
+	 * @param ref The reference the image was loaded from
+	 * @param data The description of the image
+	 * @param pixels The pixels of the image as loaded from the image data
+	 * @return The region of the atlas the image was placed in or null if the
+	 * image is too big to fit on a page
+	 */
+	public AtlasTexture add(String ref, ImageData data, ByteBuffer pixels) {
+		int width = data.getWidth();
+		int height = data.getHeight();
+		if (!fits(width, height)) {
+			return null;
+		}
+
+		int paddedWidth = width + (padding * 2);
+		int paddedHeight = height + (padding * 2);
+
+		Page page = null;
+		int position = -1;
+		for (int i=0;i<pages.size();i++) {
+			page = (Page) pages.get(i);
+			position = page.allocate(paddedWidth, paddedHeight);
+			if (position >= 0) {
+				break;
+			}
+		}
+		if (position < 0) {
+			page = new Page();
+			pages.add(page);
+			position = page.allocate(paddedWidth, paddedHeight);
+		}
+
+		int x = position % pageSize;
+		int y = position / pageSize;
+		upload(page, x, y, data, pixels);
+		page.regions++;
+
+		return new AtlasTexture(this, page.texture, ref, x + padding, y + padding, width, height);
+	}
+
+	/**
+	 * Copy an image into its place on a page, extending its edges into the
+	 * padding around it
+	 *
+	 * @param page The page to copy the image onto
+	 * @param x The x position of the padded image on the page
+	 * @param y The y position of the padded image on the page
+	 * @param data The description of the image
+	 * @param pixels The pixels of the image
+	 */
+	private void upload(Page page, int x, int y, ImageData data, ByteBuffer pixels) {
+		int width = data.getWidth();
+		int height = data.getHeight();
+		int paddedWidth = width + (padding * 2);
+		int paddedHeight = height + (padding * 2);
+		int components = data.getDepth() == 32 ? 4 : 3;
+		int stride = data.getTexWidth() * components;
+
+		int size = paddedWidth * paddedHeight * 4;
+		if ((scratch == null) || (scratch.capacity() < size)) {
+			scratch = BufferUtils.createByteBuffer(size);
+		}
+		scratch.clear();
+
+		for (int py=0;py<paddedHeight;py++) {
+			int sy = Math.min(Math.max(py - padding, 0), height - 1);
+			for (int px=0;px<paddedWidth;px++) {
+				int sx = Math.min(Math.max(px - padding, 0), width - 1);
+				int offset = (sy * stride) + (sx * components);
+
+				scratch.put(pixels.get(offset));
+				scratch.put(pixels.get(offset+1));
+				scratch.put(pixels.get(offset+2));
+				scratch.put(components == 4 ? pixels.get(offset+3) : (byte) 255);
+			}
+		}
+		scratch.flip();
+
+		page.texture.bind();
+		GL.glTexSubImage2D(SGL.GL_TEXTURE_2D, 0, x, y, paddedWidth, paddedHeight,
+						   SGL.GL_RGBA, SGL.GL_UNSIGNED_BYTE, scratch);
+	}
+
+	/**
+	 * Notification that a region on a page has been released. Once every
+	 * region on a page has been released the page itself is released.
+	 *
+	 * @param texture The texture of the page holding the region
+	 */
+	void release(TextureImpl texture) {
+		for (int i=0;i<pages.size();i++) {
+			Page page = (Page) pages.get(i);
+			if (page.texture == texture) {
+				page.regions--;
+				if (page.regions == 0) {
+					pages.remove(i);
+					texture.release();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A single texture page. Images are placed on horizontal shelves, each new
+	 * image going on the shelf that wastes the least height.
+	 *
+	 * @author kevin
+	 */
+	private class Page {
+		/** The texture holding the page */
+		private TextureImpl texture;
+		/** The number of regions on this page not yet released */
+		private int regions;
+		/** The y position of each shelf */
+		private int[] shelfY = new int[8];
+		/** The height of each shelf */
+		private int[] shelfHeight = new int[8];
+		/** The amount of each shelf already filled */
+		private int[] shelfX = new int[8];
+		/** The number of shelves on the page */
+		private int shelves;
+		/** The y position the next shelf will start at */
+		private int nextY;
+
+		/**
+		 * Create a new empty page
+		 */
+		public Page() {
+			int textureID = InternalTextureLoader.createTextureID();
+			texture = new TextureImpl("atlas:"+pageSize+":"+pages.size(), SGL.GL_TEXTURE_2D, textureID);
+			texture.setTextureWidth(pageSize);
+			texture.setTextureHeight(pageSize);
+			texture.setWidth(pageSize);
+			texture.setHeight(pageSize);
+			texture.setAlpha(true);
+
+			texture.bind();
+			GL.glTexParameteri(SGL.GL_TEXTURE_2D, SGL.GL_TEXTURE_MIN_FILTER, filter);
+			GL.glTexParameteri(SGL.GL_TEXTURE_2D, SGL.GL_TEXTURE_MAG_FILTER, filter);
+			GL.glTexImage2D(SGL.GL_TEXTURE_2D, 0, dstPixelFormat, pageSize, pageSize, 0,
+							SGL.GL_RGBA, SGL.GL_UNSIGNED_BYTE, BufferUtils.createByteBuffer(pageSize * pageSize * 4));
+
+			Log.debug("Created "+pageSize+"x"+pageSize+" texture atlas page");
+		}
+
+		/**
+		 * Find space on this page for an image
+		 *
+		 * @param width The width of the image including its padding
+		 * @param height The height of the image including its padding
+		 * @return The position of the space as y * pageSize + x or -1 if there
+		 * is no room on this page
+		 */
+		public int allocate(int width, int height) {
+			int best = -1;
+			for (int i=0;i<shelves;i++) {
+				if ((shelfHeight[i] >= height) && (shelfX[i] + width <= pageSize)) {
+					if ((best < 0) || (shelfHeight[i] < shelfHeight[best])) {
+						best = i;
+					}
+				}
+			}
+
+			if (best < 0) {
+				if (nextY + height > pageSize) {
+					return -1;
+				}
+				if (shelves == shelfY.length) {
+					shelfY = grow(shelfY);
+					shelfHeight = grow(shelfHeight);
+					shelfX = grow(shelfX);
+				}
+				best = shelves++;
+				shelfY[best] = nextY;
+				shelfHeight[best] = height;
+				shelfX[best] = 0;
+				nextY += height;
+			}
+
+			int position = (shelfY[best] * pageSize) + shelfX[best];
+			shelfX[best] += width;
+			return position;
+		}
+
+		/**
+		 * Double the size of an array
+		 *
+		 * @param data The array to grow
+		 * @return The new larger array
+		 */
+		private int[] grow(int[] data) {
+			int[] result = new int[data.length * 2];
+			System.arraycopy(data, 0, result, 0, data.length);
+			return result;
+		}
+	}
+}
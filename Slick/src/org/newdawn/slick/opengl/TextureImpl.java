@@ -192,6 +192,26 @@ public class TextureImpl implements Texture {
         return widthRatio;
     }
     
+    /**
+     * Get the offset into the texture of the left edge of the image. This is 
+     * zero unless the image shares its texture with others.
+     * 
+     * @return The offset as a proportion of the texture width
+     */
+    public float getTextureOffsetX() {
+    	return 0;
+    }
+    
+    /**
+     * Get the offset into the texture of the top edge of the image. This is 
+     * zero unless the image shares its texture with others.
+     * 
+     * @return The offset as a proportion of the texture height
+     */
+    public float getTextureOffsetY() {
+    	return 0;
+    }
+    
     /**
 	 * @see org.newdawn.slick.opengl.Texture#getTextureHeight()
 	 */
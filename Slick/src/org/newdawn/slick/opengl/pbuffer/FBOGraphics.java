@@ -168,6 +168,8 @@ public class FBOGraphics extends Graphics {
 		
 		bind();
 		initGL();
+		// initGL sets the state directly, forget anything the renderer tracked
+		GL.flush();
 	}
 	
 	/**
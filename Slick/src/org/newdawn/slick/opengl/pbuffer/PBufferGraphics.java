@@ -108,6 +108,8 @@ public class PBufferGraphics extends Graphics {
 			}
 
 			pbuffer.makeCurrent();
+			// forget any state tracked against the old context
+			GL.flush();
 		} catch (Exception e) {
 			Log.error("Failed to recreate the PBuffer");
 			throw new RuntimeException(e);
@@ -118,6 +120,7 @@ public class PBufferGraphics extends Graphics {
 		pbuffer.releaseTexImage(Pbuffer.FRONT_LEFT_BUFFER);
 		TextureImpl.unbind();
 		initGL();
+		GL.flush();
 	}
 	
 	/**
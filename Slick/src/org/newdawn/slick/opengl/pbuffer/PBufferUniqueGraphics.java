@@ -104,6 +104,8 @@ public class PBufferUniqueGraphics extends Graphics {
 			}
 
 			pbuffer.makeCurrent();
+			// forget any state tracked against the old context
+			GL.flush();
 		} catch (Exception e) {
 			Log.error("Failed to recreate the PBuffer");
 			Log.error(e);
@@ -113,6 +115,7 @@ public class PBufferUniqueGraphics extends Graphics {
 		// Put the renderer contents to the texture
 		TextureImpl.unbind();
 		initGL();
+		GL.flush();
 	}
 	
 	/**
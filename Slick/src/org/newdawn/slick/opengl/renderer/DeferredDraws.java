@@ -0,0 +1,26 @@
+package org.newdawn.slick.opengl.renderer;
+
+/**
+ * Draws held back above the renderer so they can be drawn together later, 
+ * such as the image draws captured by a sprite batch. The renderer has them
+ * drawn before any call that would change where or whether they'd appear had
+ * they been drawn straight away.
+ * 
+ * @author kevin
+ * @see SGL#setDeferredDraws(DeferredDraws)
+ */
+public interface DeferredDraws {
+	/**
+	 * Draw everything held back so far
+	 */
+	public abstract void drawDeferred();
+	
+	/**
+	 * Notification that a display list has started or stopped being compiled.
+	 * Nothing may be held back while a list is compiled, otherwise it would 
+	 * be missing from the list.
+	 * 
+	 * @param compiling True if a display list is being compiled
+	 */
+	public abstract void setCompiling(boolean compiling);
+}
@@ -5,9 +5,11 @@ import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.EXTSecondaryColor;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GLContext;
+import org.newdawn.slick.geom.Transform;
 
 /**
  * The default OpenGL renderer, uses immediate mode for everything
@@ -23,6 +25,29 @@ public class ImmediateModeOGLRenderer implements SGL {
 	private float[] current = new float[] {1,1,1,1};
 	/** The global colour scale */
 	protected float alphaScale = 1;
+	/** The buffer used to pass batched vertex positions to the card */
+	private FloatBuffer arrayVerts = BufferUtils.createFloatBuffer(0);
+	/** The buffer used to pass batched texture coordinates to the card */
+	private FloatBuffer arrayTexs = BufferUtils.createFloatBuffer(0);
+	/** The buffer used to pass batched vertex colours to the card */
+	private FloatBuffer arrayCols = BufferUtils.createFloatBuffer(0);
+	
+	/** True if vertices are being transformed on the CPU */
+	protected boolean transforming;
+	/** The affine transform applied to vertices on the CPU as m00, m01, m02, m10, m11, m12 */
+	protected float[] transform = new float[] {1,0,0,0,1,0};
+	/** The transforms pushed while transforming on the CPU */
+	private float[] transformStack = new float[6 * 8];
+	/** The number of transforms pushed while transforming on the CPU */
+	private int transformDepth;
+	/** True if a display list is being compiled */
+	private boolean compiling;
+	/** The display list to call once it's compiled, or -1 if none */
+	private int executeList = -1;
+	/** The buffer used to pass the CPU transform to GL when calling display lists */
+	private FloatBuffer transformBuffer = BufferUtils.createFloatBuffer(16);
+	/** The draws held back above the renderer or null if there are none */
+	private DeferredDraws deferred;
 	
 	/**
 	 * @see org.newdawn.slick.opengl.renderer.SGL#initDisplay(int, int)
@@ -86,6 +111,22 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glCallList(int)
 	 */
 	public void glCallList(int id) {
+		drawDeferred();
+		if (transforming) {
+			transformBuffer.clear();
+			transformBuffer.put(transform[0]).put(transform[3]).put(0).put(0);
+			transformBuffer.put(transform[1]).put(transform[4]).put(0).put(0);
+			transformBuffer.put(0).put(0).put(1).put(0);
+			transformBuffer.put(transform[2]).put(transform[5]).put(0).put(1);
+			transformBuffer.flip();
+			
+			GL11.glPushMatrix();
+			GL11.glMultMatrix(transformBuffer);
+			GL11.glCallList(id);
+			GL11.glPopMatrix();
+			return;
+		}
+		
 		GL11.glCallList(id);
 	}
 
@@ -170,7 +211,17 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glEndList()
 	 */
 	public void glEndList() {
+		compiling = false;
 		GL11.glEndList();
+		if (deferred != null) {
+			deferred.setCompiling(false);
+		}
+		
+		if (executeList >= 0) {
+			int id = executeList;
+			executeList = -1;
+			glCallList(id);
+		}
 	}
 
 	/**
@@ -212,6 +263,17 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadIdentity()
 	 */
 	public void glLoadIdentity() {
+		drawDeferred();
+		if (transforming && !compiling) {
+			transform[0] = 1;
+			transform[1] = 0;
+			transform[2] = 0;
+			transform[3] = 0;
+			transform[4] = 1;
+			transform[5] = 0;
+			return;
+		}
+		
 		GL11.glLoadIdentity();
 	}
 
@@ -219,6 +281,17 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glNewList(int, int)
 	 */
 	public void glNewList(int id, int option) {
+		drawDeferred();
+		compiling = true;
+		if (deferred != null) {
+			deferred.setCompiling(true);
+		}
+		// vertices executed as they're compiled wouldn't be transformed, so only
+		// compile the list and call it with the transform once it's complete
+		if (transforming && (option == GL11.GL_COMPILE_AND_EXECUTE)) {
+			executeList = id;
+			option = GL11.GL_COMPILE;
+		}
 		GL11.glNewList(id, option);
 	}
 
@@ -233,6 +306,15 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glPopMatrix()
 	 */
 	public void glPopMatrix() {
+		drawDeferred();
+		if (transforming && !compiling) {
+			if (transformDepth > 0) {
+				transformDepth--;
+				System.arraycopy(transformStack, transformDepth * 6, transform, 0, 6);
+			}
+			return;
+		}
+		
 		GL11.glPopMatrix();
 	}
 
@@ -240,6 +322,17 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glPushMatrix()
 	 */
 	public void glPushMatrix() {
+		if (transforming && !compiling) {
+			if ((transformDepth + 1) * 6 > transformStack.length) {
+				float[] stack = new float[transformStack.length * 2];
+				System.arraycopy(transformStack, 0, stack, 0, transformStack.length);
+				transformStack = stack;
+			}
+			System.arraycopy(transform, 0, transformStack, transformDepth * 6, 6);
+			transformDepth++;
+			return;
+		}
+		
 		GL11.glPushMatrix();
 	}
 
@@ -254,6 +347,23 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glRotatef(float, float, float, float)
 	 */
 	public void glRotatef(float angle, float x, float y, float z) {
+		drawDeferred();
+		if (transforming && !compiling) {
+			float rad = (float) Math.toRadians(z < 0 ? -angle : angle);
+			float cos = (float) Math.cos(rad);
+			float sin = (float) Math.sin(rad);
+			float m00 = transform[0];
+			float m01 = transform[1];
+			float m10 = transform[3];
+			float m11 = transform[4];
+			
+			transform[0] = (m00 * cos) + (m01 * sin);
+			transform[1] = (m01 * cos) - (m00 * sin);
+			transform[3] = (m10 * cos) + (m11 * sin);
+			transform[4] = (m11 * cos) - (m10 * sin);
+			return;
+		}
+		
 		GL11.glRotatef(angle, x, y, z);
 	}
 
@@ -261,6 +371,15 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glScalef(float, float, float)
 	 */
 	public void glScalef(float x, float y, float z) {
+		drawDeferred();
+		if (transforming && !compiling) {
+			transform[0] *= x;
+			transform[3] *= x;
+			transform[1] *= y;
+			transform[4] *= y;
+			return;
+		}
+		
 		GL11.glScalef(x, y, z);
 	}
 
@@ -289,6 +408,13 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glTranslatef(float, float, float)
 	 */
 	public void glTranslatef(float x, float y, float z) {
+		drawDeferred();
+		if (transforming && !compiling) {
+			transform[2] += (transform[0] * x) + (transform[1] * y);
+			transform[5] += (transform[3] * x) + (transform[4] * y);
+			return;
+		}
+		
 		GL11.glTranslatef(x, y, z);
 	}
 
@@ -296,6 +422,11 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex2f(float, float)
 	 */
 	public void glVertex2f(float x, float y) {
+		if (transforming && !compiling) {
+			GL11.glVertex2f(transformX(x, y), transformY(x, y));
+			return;
+		}
+		
 		GL11.glVertex2f(x, y);
 	}
 
@@ -303,13 +434,76 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex3f(float, float, float)
 	 */
 	public void glVertex3f(float x, float y, float z) {
+		if (transforming && !compiling) {
+			GL11.glVertex3f(transformX(x, y), transformY(x, y), z);
+			return;
+		}
+		
 		GL11.glVertex3f(x, y, z);
 	}
+	
+	/**
+	 * Apply the CPU transform to a vertex position
+	 * 
+	 * @param x The x coordinate of the vertex
+	 * @param y The y coordinate of the vertex
+	 * @return The transformed x coordinate
+	 */
+	protected final float transformX(float x, float y) {
+		return (transform[0] * x) + (transform[1] * y) + transform[2];
+	}
+	
+	/**
+	 * Apply the CPU transform to a vertex position
+	 * 
+	 * @param x The x coordinate of the vertex
+	 * @param y The y coordinate of the vertex
+	 * @return The transformed y coordinate
+	 */
+	protected final float transformY(float x, float y) {
+		return (transform[3] * x) + (transform[4] * y) + transform[5];
+	}
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setTransform(org.newdawn.slick.geom.Transform)
+	 */
+	public void setTransform(Transform transform) {
+		drawDeferred();
+		transformDepth = 0;
+		if (transform == null) {
+			transforming = false;
+			return;
+		}
+		
+		System.arraycopy(transform.getMatrixPosition(), 0, this.transform, 0, 6);
+		transforming = true;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setDeferredDraws(org.newdawn.slick.opengl.renderer.DeferredDraws)
+	 */
+	public void setDeferredDraws(DeferredDraws draws) {
+		deferred = draws;
+		if (deferred != null) {
+			deferred.setCompiling(compiling);
+		}
+	}
+	
+	/**
+	 * Draw anything held back above the renderer, before a call that would
+	 * change how it's drawn
+	 */
+	protected final void drawDeferred() {
+		if (deferred != null) {
+			deferred.drawDeferred();
+		}
+	}
 
 	/**
 	 * @see org.newdawn.slick.opengl.renderer.SGL#flush()
 	 */
 	public void flush() {
+		drawDeferred();
 	}
 
 	/**
@@ -365,6 +559,18 @@ public class ImmediateModeOGLRenderer implements SGL {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
 	 */
 	public void glLoadMatrix(FloatBuffer buffer) {
+		drawDeferred();
+		if (transforming && !compiling) {
+			int base = buffer.position();
+			transform[0] = buffer.get(base);
+			transform[1] = buffer.get(base + 4);
+			transform[2] = buffer.get(base + 12);
+			transform[3] = buffer.get(base + 1);
+			transform[4] = buffer.get(base + 5);
+			transform[5] = buffer.get(base + 13);
+			return;
+		}
+		
 		GL11.glLoadMatrix(buffer);
 	}
 
@@ -400,6 +606,74 @@ public class ImmediateModeOGLRenderer implements SGL {
 		GL11.glTexSubImage2D(glTexture2d, i, pageX, pageY, width, height, glBgra, glUnsignedByte, scratchByteBuffer);
 	}
 
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#drawArrays(int, float[], float[], float[], int)
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+		
+		submitArrays(geomType, verts, texCoords, colors, count);
+		
+		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+	}
+	
+	/**
+	 * Pass a batch of vertices to the card as vertex arrays and draw them. The 
+	 * client states for vertex, texture coordinate and colour arrays must 
+	 * already be enabled.
+	 * 
+	 * @param geomType The type of geometry to draw, e.g. GL_QUADS
+	 * @param verts The x,y pairs of the vertex positions
+	 * @param texCoords The u,v pairs of the vertex texture coordinates
+	 * @param colors The r,g,b,a components of the vertex colours
+	 * @param count The number of vertices to draw
+	 */
+	protected void submitArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		if (count == 0) {
+			return;
+		}
+		if (arrayVerts.capacity() < count * 2) {
+			arrayVerts = BufferUtils.createFloatBuffer(count * 2);
+			arrayTexs = BufferUtils.createFloatBuffer(count * 2);
+			arrayCols = BufferUtils.createFloatBuffer(count * 4);
+		}
+		
+		arrayVerts.clear();
+		arrayTexs.clear();
+		arrayCols.clear();
+		if (transforming) {
+			for (int i=0;i<count * 2;i+=2) {
+				arrayVerts.put(transformX(verts[i], verts[i+1]));
+				arrayVerts.put(transformY(verts[i], verts[i+1]));
+			}
+		} else {
+			arrayVerts.put(verts, 0, count * 2);
+		}
+		arrayTexs.put(texCoords, 0, count * 2);
+		arrayCols.put(colors, 0, count * 4);
+		if (alphaScale != 1) {
+			for (int i=3;i<count * 4;i+=4) {
+				arrayCols.put(i, colors[i] * alphaScale);
+			}
+		}
+		arrayVerts.flip();
+		arrayTexs.flip();
+		arrayCols.flip();
+		
+		GL11.glVertexPointer(2, 0, arrayVerts);
+		GL11.glTexCoordPointer(2, 0, arrayTexs);
+		GL11.glColorPointer(4, 0, arrayCols);
+		GL11.glDrawArrays(geomType, 0, count);
+		
+		// the current colour is undefined after drawing with a colour array
+		float[] col = getCurrentColor();
+		GL11.glColor4f(col[0], col[1], col[2], col[3]);
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.newdawn.slick.opengl.renderer.SGL#canTextureMirrorClamp()
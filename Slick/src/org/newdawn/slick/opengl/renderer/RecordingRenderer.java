@@ -0,0 +1,599 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+
+import org.newdawn.slick.geom.Transform;
+
+/**
+ * A renderer that doesn't talk to OpenGL at all but counts the calls made to 
+ * it instead. This allows the cost of rendering, both in CPU time and in the
+ * number of vertices, draw calls and state changes sent to the card, to be 
+ * measured on a machine with no display.
+ * 
+ * The renderer has to be installed before any other Slick class is used, for
+ * instance:
+ * <code>Renderer.setRenderer(new RecordingRenderer());</code>
+ * 
+ * Texture and display list names are handed out as they would be by a real 
+ * driver. The calls made while compiling a display list are recorded against 
+ * the list and counted again each time the list is called.
+ * 
+ * @author kevin
+ */
+public class RecordingRenderer implements SGL {
+	/** The counter index for vertices */
+	public static final int VERTICES = 0;
+	/** The counter index for draw calls, i.e. glEnd() and drawArrays() */
+	public static final int DRAW_CALLS = 1;
+	/** The counter index for changes to GL state other than colour and textures */
+	public static final int STATE_CHANGES = 2;
+	/** The counter index for texture binds */
+	public static final int TEXTURE_BINDS = 3;
+	/** The counter index for colour changes */
+	public static final int COLORS = 4;
+	/** The counter index for changes to the model view matrix */
+	public static final int MATRIX_OPS = 5;
+	/** The counter index for texture data uploaded */
+	public static final int TEXTURE_UPLOADS = 6;
+	/** The counter index for display lists called */
+	public static final int LIST_CALLS = 7;
+	/** The number of counters */
+	public static final int COUNTERS = 8;
+	
+	/** The names of the counters */
+	private static final String[] NAMES = {"vertices", "draw calls", "state changes", 
+		"texture binds", "colors", "matrix ops", "texture uploads", "list calls"};
+	
+	/** The number of calls of each kind made */
+	private long[] counts = new long[COUNTERS];
+	/** The number of calls of each kind made while compiling the current list */
+	private long[] listCounts = new long[COUNTERS];
+	/** The counts recorded against each display list (Integer to long[]) */
+	private HashMap lists = new HashMap();
+	/** The display list being compiled or -1 if none is */
+	private int compiling = -1;
+	/** True if the list being compiled is also being executed */
+	private boolean executing;
+	/** The draws held back above the renderer or null if there are none */
+	private DeferredDraws deferred;
+	
+	/** The next texture name to hand out */
+	private int nextTexture = 1;
+	/** The next display list name to hand out */
+	private int nextList = 1;
+	/** The maximum texture size reported */
+	private int maxTextureSize = 4096;
+	
+	/** The current colour */
+	private float[] current = new float[] {1,1,1,1};
+	/** The scale applied to the alpha of every colour */
+	private float alphaScale = 1;
+	/** The colour the screen is cleared to */
+	private float[] clearColor = new float[4];
+	
+	/**
+	 * Create a new renderer counting calls
+	 */
+	public RecordingRenderer() {
+	}
+	
+	/**
+	 * Get the number of calls of a given kind that have been made
+	 * 
+	 * @param counter The kind of call, e.g. DRAW_CALLS
+	 * @return The number of calls made since the counters were last reset
+	 */
+	public long getCount(int counter) {
+		return counts[counter];
+	}
+	
+	/**
+	 * Get a readable name for a counter
+	 * 
+	 * @param counter The kind of call, e.g. DRAW_CALLS
+	 * @return The name of the counter
+	 */
+	public static String getCounterName(int counter) {
+		return NAMES[counter];
+	}
+	
+	/**
+	 * Reset all the counters to zero. Counts recorded against display lists 
+	 * are kept.
+	 */
+	public void resetCounters() {
+		for (int i=0;i<COUNTERS;i++) {
+			counts[i] = 0;
+		}
+	}
+	
+	/**
+	 * Set the maximum texture size reported through glGetInteger()
+	 * 
+	 * @param size The maximum texture size to report
+	 */
+	public void setMaxTextureSize(int size) {
+		maxTextureSize = size;
+	}
+	
+	/**
+	 * Note that calls of a given kind were made
+	 * 
+	 * @param counter The kind of call made
+	 * @param amount The number of calls made
+	 */
+	private void count(int counter, long amount) {
+		if (compiling >= 0) {
+			listCounts[counter] += amount;
+			if (!executing) {
+				return;
+			}
+		}
+		counts[counter] += amount;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		for (int i=0;i<COUNTERS;i++) {
+			if (i > 0) {
+				buffer.append(", ");
+			}
+			buffer.append(NAMES[i]+"="+counts[i]);
+		}
+		return buffer.toString();
+	}
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#flush()
+	 */
+	public void flush() {
+		drawDeferred();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#initDisplay(int, int)
+	 */
+	public void initDisplay(int width, int height) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#enterOrtho(int, int)
+	 */
+	public void enterOrtho(int xsize, int ysize) {
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearColor(float, float, float, float)
+	 */
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		clearColor[0] = red;
+		clearColor[1] = green;
+		clearColor[2] = blue;
+		clearColor[3] = alpha;
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClipPlane(int, java.nio.DoubleBuffer)
+	 */
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScissor(int, int, int, int)
+	 */
+	public void glScissor(int x, int y, int width, int height) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLineWidth(float)
+	 */
+	public void glLineWidth(float width) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClear(int)
+	 */
+	public void glClear(int value) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColorMask(boolean, boolean, boolean, boolean)
+	 */
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadIdentity()
+	 */
+	public void glLoadIdentity() {
+		drawDeferred();
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetInteger(int, java.nio.IntBuffer)
+	 */
+	public void glGetInteger(int id, IntBuffer ret) {
+		if (id == SGL.GL_MAX_TEXTURE_SIZE) {
+			ret.put(ret.position(), maxTextureSize);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetFloat(int, java.nio.FloatBuffer)
+	 */
+	public void glGetFloat(int id, FloatBuffer ret) {
+		if (id == SGL.GL_COLOR_CLEAR_VALUE) {
+			for (int i=0;i<4;i++) {
+				ret.put(ret.position()+i, clearColor[i]);
+			}
+		} else if (id == SGL.GL_MODELVIEW_MATRIX) {
+			for (int i=0;i<16;i++) {
+				ret.put(ret.position()+i, (i % 5) == 0 ? 1 : 0);
+			}
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnable(int)
+	 */
+	public void glEnable(int item) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDisable(int)
+	 */
+	public void glDisable(int item) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBindTexture(int, int)
+	 */
+	public void glBindTexture(int target, int id) {
+		count(TEXTURE_BINDS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetTexImage(int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteTextures(java.nio.IntBuffer)
+	 */
+	public void glDeleteTextures(IntBuffer buffer) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColor4f(float, float, float, float)
+	 */
+	public void glColor4f(float r, float g, float b, float a) {
+		a *= alphaScale;
+		
+		current[0] = r;
+		current[1] = g;
+		current[2] = b;
+		current[3] = a;
+		count(COLORS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexCoord2f(float, float)
+	 */
+	public void glTexCoord2f(float u, float v) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex3f(float, float, float)
+	 */
+	public void glVertex3f(float x, float y, float z) {
+		count(VERTICES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex2f(float, float)
+	 */
+	public void glVertex2f(float x, float y) {
+		count(VERTICES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glRotatef(float, float, float, float)
+	 */
+	public void glRotatef(float angle, float x, float y, float z) {
+		drawDeferred();
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTranslatef(float, float, float)
+	 */
+	public void glTranslatef(float x, float y, float z) {
+		drawDeferred();
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBegin(int)
+	 */
+	public void glBegin(int geomType) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnd()
+	 */
+	public void glEnd() {
+		count(DRAW_CALLS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexEnvi(int, int, int)
+	 */
+	public void glTexEnvi(int target, int mode, int value) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPointSize(float)
+	 */
+	public void glPointSize(float size) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScalef(float, float, float)
+	 */
+	public void glScalef(float x, float y, float z) {
+		drawDeferred();
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPushMatrix()
+	 */
+	public void glPushMatrix() {
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPopMatrix()
+	 */
+	public void glPopMatrix() {
+		drawDeferred();
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBlendFunc(int, int)
+	 */
+	public void glBlendFunc(int src, int dest) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenLists(int)
+	 */
+	public int glGenLists(int count) {
+		int id = nextList;
+		nextList += count;
+		return id;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glNewList(int, int)
+	 */
+	public void glNewList(int id, int option) {
+		drawDeferred();
+		compiling = id;
+		if (deferred != null) {
+			deferred.setCompiling(true);
+		}
+		executing = option == SGL.GL_COMPILE_AND_EXECUTE;
+		for (int i=0;i<COUNTERS;i++) {
+			listCounts[i] = 0;
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEndList()
+	 */
+	public void glEndList() {
+		if (compiling >= 0) {
+			lists.put(new Integer(compiling), listCounts.clone());
+			compiling = -1;
+		}
+		if (deferred != null) {
+			deferred.setCompiling(false);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCallList(int)
+	 */
+	public void glCallList(int id) {
+		drawDeferred();
+		count(LIST_CALLS, 1);
+		
+		long[] recorded = (long[]) lists.get(new Integer(id));
+		if (recorded != null) {
+			for (int i=0;i<COUNTERS;i++) {
+				if (i != LIST_CALLS) {
+					count(i, recorded[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCopyTexImage2D(int, int, int, int, int, int, int, int)
+	 */
+	public void glCopyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
+		count(TEXTURE_UPLOADS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glReadPixels(int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, ByteBuffer pixels) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexParameteri(int, int, int)
+	 */
+	public void glTexParameteri(int target, int param, int value) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#getCurrentColor()
+	 */
+	public float[] getCurrentColor() {
+		return current;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteLists(int, int)
+	 */
+	public void glDeleteLists(int list, int count) {
+		for (int i=0;i<count;i++) {
+			lists.remove(new Integer(list+i));
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthMask(boolean)
+	 */
+	public void glDepthMask(boolean mask) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearDepth(float)
+	 */
+	public void glClearDepth(float value) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthFunc(int)
+	 */
+	public void glDepthFunc(int func) {
+		count(STATE_CHANGES, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setGlobalAlphaScale(float)
+	 */
+	public void setGlobalAlphaScale(float alphaScale) {
+		this.alphaScale = alphaScale;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
+	 */
+	public void glLoadMatrix(FloatBuffer buffer) {
+		drawDeferred();
+		count(MATRIX_OPS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenTextures(java.nio.IntBuffer)
+	 */
+	public void glGenTextures(IntBuffer ids) {
+		for (int i=ids.position();i<ids.limit();i++) {
+			ids.put(i, nextTexture++);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetError()
+	 */
+	public void glGetError() {
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexImage2D(int target, int i, int dstPixelFormat, int get2Fold, int get2Fold2, int j, int srcPixelFormat, int glUnsignedByte, ByteBuffer textureBuffer) {
+		count(TEXTURE_UPLOADS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexSubImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY, int width, int height, int glBgra, int glUnsignedByte, ByteBuffer scratchByteBuffer) {
+		count(TEXTURE_UPLOADS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#drawArrays(int, float[], float[], float[], int)
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		count(VERTICES, count);
+		count(DRAW_CALLS, 1);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setTransform(org.newdawn.slick.geom.Transform)
+	 */
+	public void setTransform(Transform transform) {
+		drawDeferred();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setDeferredDraws(org.newdawn.slick.opengl.renderer.DeferredDraws)
+	 */
+	public void setDeferredDraws(DeferredDraws draws) {
+		deferred = draws;
+		if (deferred != null) {
+			deferred.setCompiling(compiling >= 0);
+		}
+	}
+	
+	/**
+	 * Draw anything held back above the renderer, as a real renderer would
+	 * before a call that changes how it's drawn
+	 */
+	private void drawDeferred() {
+		if (deferred != null) {
+			deferred.drawDeferred();
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canTextureMirrorClamp()
+	 */
+	public boolean canTextureMirrorClamp() {
+		return false;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canSecondaryColor()
+	 */
+	public boolean canSecondaryColor() {
+		return false;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glSecondaryColor3ubEXT(byte, byte, byte)
+	 */
+	public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+		count(COLORS, 1);
+	}
+}
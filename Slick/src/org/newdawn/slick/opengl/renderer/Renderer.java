@@ -12,6 +12,8 @@ public class Renderer {
 	public static final int IMMEDIATE_RENDERER = 1;
 	/** The indicator for vertex array based rendering */
 	public static final int VERTEX_ARRAY_RENDERER = 2;
+	/** The indicator for rendering streamed through vertex buffer objects */
+	public static final int VBO_RENDERER = 5;
 	
 	/** The indicator for direct GL line renderer (the default) */
 	public static final int DEFAULT_LINE_STRIP_RENDERER = 3;
@@ -37,6 +39,9 @@ public class Renderer {
 			case VERTEX_ARRAY_RENDERER:
 				setRenderer(new VAOGLRenderer());
 				return;
+			case VBO_RENDERER:
+				setRenderer(new VBOGLRenderer());
+				return;
 		}
 		
 		throw new RuntimeException("Unknown renderer type: "+type);
@@ -9,6 +9,7 @@ import org.lwjgl.opengl.EXTSecondaryColor;
 import org.lwjgl.opengl.EXTTextureMirrorClamp;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
+import org.newdawn.slick.geom.Transform;
 
 /**
  * The description of the OpenGL functions used Slick. Any other rendering method will
@@ -522,6 +523,47 @@ public interface SGL {
 			int width, int height, int glBgra, int glUnsignedByte,
 			ByteBuffer scratchByteBuffer);
 
+	/**
+	 * Draw a batch of vertices in a single call. Each vertex has a 2D position, 
+	 * a texture coordinate and a colour. The colours are subject to the global
+	 * alpha scale in the same way as glColor4f(). The current colour is
+	 * restored once the batch has been drawn.
+	 * 
+	 * @param geomType The type of geometry to draw, e.g. GL_QUADS
+	 * @param verts The x,y pairs of the vertex positions
+	 * @param texCoords The u,v pairs of the vertex texture coordinates
+	 * @param colors The r,g,b,a components of the vertex colours
+	 * @param count The number of vertices to draw
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count);
+
+	/**
+	 * Set a 2D transform to apply to vertices on the CPU before they're passed
+	 * to GL. While a transform is set glTranslatef(), glRotatef(), glScalef(), 
+	 * glLoadIdentity(), glLoadMatrix(), glPushMatrix() and glPopMatrix() change
+	 * it rather than the GL modelview matrix, so transformed geometry can still
+	 * be batched. Rotations are always about the z axis. Vertices compiled into
+	 * display lists are not transformed, and translations, rotations, scales,
+	 * pushes and pops made while compiling are compiled into the list. The 
+	 * transform is applied when the list is called instead, including when a 
+	 * list compiled with GL_COMPILE_AND_EXECUTE is first executed.
+	 * 
+	 * @param transform The transform to apply, or null to use the GL modelview 
+	 * matrix again
+	 */
+	public void setTransform(Transform transform);
+	
+	/**
+	 * Set the draws being held back above the renderer. They're drawn before
+	 * the transform is changed by glTranslatef(), glRotatef(), glScalef(), 
+	 * glLoadIdentity(), glLoadMatrix(), glPopMatrix() or setTransform(), 
+	 * before a display list is called or compiled and when the renderer is 
+	 * flushed. They're told when a display list is being compiled.
+	 * 
+	 * @param draws The draws being held back or null if there are none
+	 */
+	public void setDeferredDraws(DeferredDraws draws);
+	
 	/**
 	 * Check if the mirror clamp extension is available
 	 * 
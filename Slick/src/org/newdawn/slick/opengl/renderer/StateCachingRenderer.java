@@ -0,0 +1,665 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.newdawn.slick.geom.Transform;
+
+/**
+ * A renderer that wraps another and drops calls that wouldn't change the GL
+ * state. The bound texture, blend function, enabled capabilities, current
+ * colour, line width and point size are tracked, and a call that sets one of
+ * them to its current value isn't passed on. The number of calls filtered
+ * and passed on is counted for each kind of state.
+ * 
+ * The renderer has to be installed before the game starts, for instance:
+ * <code>Renderer.setRenderer(new StateCachingRenderer(new VAOGLRenderer()));</code>
+ * 
+ * Any code that changes GL state without going through the renderer must 
+ * call flush() before doing so, as SlickCallable does, since flushing forgets
+ * all the tracked state. Calling a display list also forgets the state.
+ * Nothing is tracked while a display list is being compiled, and the state
+ * is forgotten when it ends since a list compiled with GL_COMPILE_AND_EXECUTE
+ * has changed the GL state behind the cache.
+ * 
+ * @author kevin
+ */
+public class StateCachingRenderer implements SGL {
+	/** The counter index for texture binds */
+	public static final int TEXTURE_BINDS = 0;
+	/** The counter index for blend function changes */
+	public static final int BLEND_FUNCS = 1;
+	/** The counter index for enabling and disabling capabilities */
+	public static final int CAPABILITIES = 2;
+	/** The counter index for colour changes */
+	public static final int COLORS = 3;
+	/** The counter index for line width changes */
+	public static final int LINE_WIDTHS = 4;
+	/** The counter index for point size changes */
+	public static final int POINT_SIZES = 5;
+	/** The number of counters */
+	private static final int COUNTERS = 6;
+	
+	/** The value used for state that isn't known */
+	private static final int UNKNOWN = -1;
+	/** The capability state indicating it's enabled */
+	private static final byte ENABLED = 1;
+	/** The capability state indicating it's disabled */
+	private static final byte DISABLED = 2;
+	
+	/** The renderer calls are passed on to */
+	private SGL renderer;
+	
+	/** The number of calls of each kind that were dropped */
+	private long[] filtered = new long[COUNTERS];
+	/** The number of calls of each kind that were passed on */
+	private long[] passed = new long[COUNTERS];
+	
+	/** The texture bound to GL_TEXTURE_2D */
+	private int boundTexture = UNKNOWN;
+	/** The source factor of the blend function */
+	private int blendSrc = UNKNOWN;
+	/** The destination factor of the blend function */
+	private int blendDest = UNKNOWN;
+	/** The current colour */
+	private float[] color = new float[4];
+	/** True if the current colour is known */
+	private boolean colorKnown;
+	/** The line width */
+	private float lineWidth = UNKNOWN;
+	/** The point size */
+	private float pointSize = UNKNOWN;
+	/** The capabilities that have been enabled or disabled */
+	private int[] capabilities = new int[16];
+	/** The state of each capability that has been enabled or disabled */
+	private byte[] capabilityStates = new byte[16];
+	/** The number of capabilities tracked */
+	private int capabilityCount;
+	/** The depth of display lists being compiled */
+	private int compiling;
+	
+	/**
+	 * Create a new renderer dropping redundant state changes
+	 * 
+	 * @param renderer The renderer to pass calls on to 
+	 */
+	public StateCachingRenderer(SGL renderer) {
+		this.renderer = renderer;
+	}
+	
+	/**
+	 * Get the renderer calls are passed on to
+	 * 
+	 * @return The renderer calls are passed on to
+	 */
+	public SGL getRenderer() {
+		return renderer;
+	}
+	
+	/**
+	 * Forget all the tracked state so that the next call setting each piece 
+	 * of state is passed on
+	 */
+	public void invalidate() {
+		boundTexture = UNKNOWN;
+		blendSrc = UNKNOWN;
+		blendDest = UNKNOWN;
+		colorKnown = false;
+		lineWidth = UNKNOWN;
+		pointSize = UNKNOWN;
+		capabilityCount = 0;
+	}
+	
+	/**
+	 * Get the number of calls of a given kind that were dropped
+	 * 
+	 * @param counter The kind of call, e.g. TEXTURE_BINDS
+	 * @return The number of calls that were dropped
+	 */
+	public long getFilteredCount(int counter) {
+		return filtered[counter];
+	}
+	
+	/**
+	 * Get the number of calls of a given kind that were passed on
+	 * 
+	 * @param counter The kind of call, e.g. TEXTURE_BINDS
+	 * @return The number of calls that were passed on
+	 */
+	public long getPassedCount(int counter) {
+		return passed[counter];
+	}
+	
+	/**
+	 * Get the total number of calls that were dropped
+	 * 
+	 * @return The total number of calls that were dropped
+	 */
+	public long getFilteredTotal() {
+		long total = 0;
+		for (int i=0;i<COUNTERS;i++) {
+			total += filtered[i];
+		}
+		return total;
+	}
+	
+	/**
+	 * Reset all the counters to zero
+	 */
+	public void resetCounters() {
+		for (int i=0;i<COUNTERS;i++) {
+			filtered[i] = 0;
+			passed[i] = 0;
+		}
+	}
+	
+	/**
+	 * Note that a call was dropped
+	 * 
+	 * @param counter The kind of call dropped
+	 */
+	private void filter(int counter) {
+		filtered[counter]++;
+	}
+	
+	/**
+	 * Note that a call was passed on
+	 * 
+	 * @param counter The kind of call passed on
+	 */
+	private void pass(int counter) {
+		passed[counter]++;
+	}
+	
+	/**
+	 * Record the state of a capability
+	 * 
+	 * @param item The capability being enabled or disabled
+	 * @param enabled True if the capability is being enabled
+	 * @return True if the call should be passed on
+	 */
+	private boolean setCapability(int item, boolean enabled) {
+		byte state = enabled ? ENABLED : DISABLED;
+		if (compiling > 0) {
+			pass(CAPABILITIES);
+			return true;
+		}
+		
+		for (int i=0;i<capabilityCount;i++) {
+			if (capabilities[i] == item) {
+				if (capabilityStates[i] == state) {
+					filter(CAPABILITIES);
+					return false;
+				}
+				capabilityStates[i] = state;
+				pass(CAPABILITIES);
+				return true;
+			}
+		}
+		
+		if (capabilityCount == capabilities.length) {
+			int[] newCapabilities = new int[capabilityCount * 2];
+			byte[] newStates = new byte[capabilityCount * 2];
+			System.arraycopy(capabilities, 0, newCapabilities, 0, capabilityCount);
+			System.arraycopy(capabilityStates, 0, newStates, 0, capabilityCount);
+			capabilities = newCapabilities;
+			capabilityStates = newStates;
+		}
+		capabilities[capabilityCount] = item;
+		capabilityStates[capabilityCount] = state;
+		capabilityCount++;
+		pass(CAPABILITIES);
+		return true;
+	}
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#flush()
+	 */
+	public void flush() {
+		renderer.flush();
+		invalidate();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#initDisplay(int, int)
+	 */
+	public void initDisplay(int width, int height) {
+		renderer.initDisplay(width, height);
+		invalidate();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#enterOrtho(int, int)
+	 */
+	public void enterOrtho(int xsize, int ysize) {
+		renderer.enterOrtho(xsize, ysize);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearColor(float, float, float, float)
+	 */
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		renderer.glClearColor(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClipPlane(int, java.nio.DoubleBuffer)
+	 */
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+		renderer.glClipPlane(plane, buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScissor(int, int, int, int)
+	 */
+	public void glScissor(int x, int y, int width, int height) {
+		renderer.glScissor(x, y, width, height);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLineWidth(float)
+	 */
+	public void glLineWidth(float width) {
+		if (compiling == 0) {
+			if (width == lineWidth) {
+				filter(LINE_WIDTHS);
+				return;
+			}
+			lineWidth = width;
+		}
+		pass(LINE_WIDTHS);
+		renderer.glLineWidth(width);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClear(int)
+	 */
+	public void glClear(int value) {
+		renderer.glClear(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColorMask(boolean, boolean, boolean, boolean)
+	 */
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		renderer.glColorMask(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadIdentity()
+	 */
+	public void glLoadIdentity() {
+		renderer.glLoadIdentity();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetInteger(int, java.nio.IntBuffer)
+	 */
+	public void glGetInteger(int id, IntBuffer ret) {
+		renderer.glGetInteger(id, ret);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetFloat(int, java.nio.FloatBuffer)
+	 */
+	public void glGetFloat(int id, FloatBuffer ret) {
+		renderer.glGetFloat(id, ret);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnable(int)
+	 */
+	public void glEnable(int item) {
+		if (setCapability(item, true)) {
+			renderer.glEnable(item);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDisable(int)
+	 */
+	public void glDisable(int item) {
+		if (setCapability(item, false)) {
+			renderer.glDisable(item);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBindTexture(int, int)
+	 */
+	public void glBindTexture(int target, int id) {
+		if (target == SGL.GL_TEXTURE_2D) {
+			if (compiling == 0) {
+				if (id == boundTexture) {
+					filter(TEXTURE_BINDS);
+					return;
+				}
+				boundTexture = id;
+			}
+			pass(TEXTURE_BINDS);
+		}
+		renderer.glBindTexture(target, id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetTexImage(int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+		renderer.glGetTexImage(target, level, format, type, pixels);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteTextures(java.nio.IntBuffer)
+	 */
+	public void glDeleteTextures(IntBuffer buffer) {
+		for (int i=buffer.position();i<buffer.limit();i++) {
+			if (buffer.get(i) == boundTexture) {
+				// the name may be reused by the next texture created
+				boundTexture = UNKNOWN;
+			}
+		}
+		renderer.glDeleteTextures(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColor4f(float, float, float, float)
+	 */
+	public void glColor4f(float r, float g, float b, float a) {
+		if (compiling == 0) {
+			if (colorKnown && (r == color[0]) && (g == color[1]) && (b == color[2]) && (a == color[3])) {
+				filter(COLORS);
+				return;
+			}
+			color[0] = r;
+			color[1] = g;
+			color[2] = b;
+			color[3] = a;
+			colorKnown = true;
+		}
+		pass(COLORS);
+		renderer.glColor4f(r, g, b, a);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexCoord2f(float, float)
+	 */
+	public void glTexCoord2f(float u, float v) {
+		renderer.glTexCoord2f(u, v);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex3f(float, float, float)
+	 */
+	public void glVertex3f(float x, float y, float z) {
+		renderer.glVertex3f(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex2f(float, float)
+	 */
+	public void glVertex2f(float x, float y) {
+		renderer.glVertex2f(x, y);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glRotatef(float, float, float, float)
+	 */
+	public void glRotatef(float angle, float x, float y, float z) {
+		renderer.glRotatef(angle, x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTranslatef(float, float, float)
+	 */
+	public void glTranslatef(float x, float y, float z) {
+		renderer.glTranslatef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBegin(int)
+	 */
+	public void glBegin(int geomType) {
+		renderer.glBegin(geomType);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnd()
+	 */
+	public void glEnd() {
+		renderer.glEnd();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexEnvi(int, int, int)
+	 */
+	public void glTexEnvi(int target, int mode, int value) {
+		renderer.glTexEnvi(target, mode, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPointSize(float)
+	 */
+	public void glPointSize(float size) {
+		if (compiling == 0) {
+			if (size == pointSize) {
+				filter(POINT_SIZES);
+				return;
+			}
+			pointSize = size;
+		}
+		pass(POINT_SIZES);
+		renderer.glPointSize(size);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScalef(float, float, float)
+	 */
+	public void glScalef(float x, float y, float z) {
+		renderer.glScalef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPushMatrix()
+	 */
+	public void glPushMatrix() {
+		renderer.glPushMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPopMatrix()
+	 */
+	public void glPopMatrix() {
+		renderer.glPopMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBlendFunc(int, int)
+	 */
+	public void glBlendFunc(int src, int dest) {
+		if (compiling == 0) {
+			if ((src == blendSrc) && (dest == blendDest)) {
+				filter(BLEND_FUNCS);
+				return;
+			}
+			blendSrc = src;
+			blendDest = dest;
+		}
+		pass(BLEND_FUNCS);
+		renderer.glBlendFunc(src, dest);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenLists(int)
+	 */
+	public int glGenLists(int count) {
+		return renderer.glGenLists(count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glNewList(int, int)
+	 */
+	public void glNewList(int id, int option) {
+		compiling++;
+		renderer.glNewList(id, option);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEndList()
+	 */
+	public void glEndList() {
+		compiling--;
+		renderer.glEndList();
+		invalidate();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCallList(int)
+	 */
+	public void glCallList(int id) {
+		renderer.glCallList(id);
+		invalidate();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCopyTexImage2D(int, int, int, int, int, int, int, int)
+	 */
+	public void glCopyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
+		renderer.glCopyTexImage2D(target, level, internalFormat, x, y, width, height, border);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glReadPixels(int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, ByteBuffer pixels) {
+		renderer.glReadPixels(x, y, width, height, format, type, pixels);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexParameteri(int, int, int)
+	 */
+	public void glTexParameteri(int target, int param, int value) {
+		renderer.glTexParameteri(target, param, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#getCurrentColor()
+	 */
+	public float[] getCurrentColor() {
+		return renderer.getCurrentColor();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteLists(int, int)
+	 */
+	public void glDeleteLists(int list, int count) {
+		renderer.glDeleteLists(list, count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthMask(boolean)
+	 */
+	public void glDepthMask(boolean mask) {
+		renderer.glDepthMask(mask);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearDepth(float)
+	 */
+	public void glClearDepth(float value) {
+		renderer.glClearDepth(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthFunc(int)
+	 */
+	public void glDepthFunc(int func) {
+		renderer.glDepthFunc(func);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setGlobalAlphaScale(float)
+	 */
+	public void setGlobalAlphaScale(float alphaScale) {
+		colorKnown = false;
+		renderer.setGlobalAlphaScale(alphaScale);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
+	 */
+	public void glLoadMatrix(FloatBuffer buffer) {
+		renderer.glLoadMatrix(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenTextures(java.nio.IntBuffer)
+	 */
+	public void glGenTextures(IntBuffer ids) {
+		renderer.glGenTextures(ids);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetError()
+	 */
+	public void glGetError() {
+		renderer.glGetError();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexImage2D(int target, int i, int dstPixelFormat, int get2Fold, int get2Fold2, int j, int srcPixelFormat, int glUnsignedByte, ByteBuffer textureBuffer) {
+		renderer.glTexImage2D(target, i, dstPixelFormat, get2Fold, get2Fold2, j, srcPixelFormat, glUnsignedByte, textureBuffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexSubImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY, int width, int height, int glBgra, int glUnsignedByte, ByteBuffer scratchByteBuffer) {
+		renderer.glTexSubImage2D(glTexture2d, i, pageX, pageY, width, height, glBgra, glUnsignedByte, scratchByteBuffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#drawArrays(int, float[], float[], float[], int)
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		renderer.drawArrays(geomType, verts, texCoords, colors, count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setTransform(org.newdawn.slick.geom.Transform)
+	 */
+	public void setTransform(Transform transform) {
+		renderer.setTransform(transform);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setDeferredDraws(org.newdawn.slick.opengl.renderer.DeferredDraws)
+	 */
+	public void setDeferredDraws(DeferredDraws draws) {
+		renderer.setDeferredDraws(draws);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canTextureMirrorClamp()
+	 */
+	public boolean canTextureMirrorClamp() {
+		return renderer.canTextureMirrorClamp();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canSecondaryColor()
+	 */
+	public boolean canSecondaryColor() {
+		return renderer.canSecondaryColor();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glSecondaryColor3ubEXT(byte, byte, byte)
+	 */
+	public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+		renderer.glSecondaryColor3ubEXT(b, c, d);
+	}
+}
@@ -208,6 +208,12 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 			return;
 		}
 		
+		if (transforming) {
+			float tx = transformX(x, y);
+			y = transformY(x, y);
+			x = tx;
+		}
+		
 		verts[(vertIndex*3)+0] = x;
 		verts[(vertIndex*3)+1] = y;
 		verts[(vertIndex*3)+2] = z;
@@ -268,6 +274,7 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glCallList(int)
 	 */
 	public void glCallList(int id) {
+		drawDeferred();
 		applyBuffer();
 		super.glCallList(id);
 	}
@@ -332,7 +339,10 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPopMatrix()
 	 */
 	public void glPopMatrix() {
-		applyBuffer();
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
 		super.glPopMatrix();
 	}
 
@@ -340,7 +350,9 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPushMatrix()
 	 */
 	public void glPushMatrix() {
-		applyBuffer();
+		if (!transforming) {
+			applyBuffer();
+		}
 		super.glPushMatrix();
 	}
 
@@ -348,7 +360,10 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glRotatef(float, float, float, float)
 	 */
 	public void glRotatef(float angle, float x, float y, float z) {
-		applyBuffer();
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
 		super.glRotatef(angle, x, y, z);
 	}
 
@@ -356,10 +371,24 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glScalef(float, float, float)
 	 */
 	public void glScalef(float x, float y, float z) {
-		applyBuffer();
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
 		super.glScalef(x, y, z);
 	}
 
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glLoadIdentity()
+	 */
+	public void glLoadIdentity() {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glLoadIdentity();
+	}
+
 	/**
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glScissor(int, int, int, int)
 	 */
@@ -380,7 +409,10 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glTranslatef(float, float, float)
 	 */
 	public void glTranslatef(float x, float y, float z) {
-		applyBuffer();
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
 		super.glTranslatef(x, y, z);
 	}
 
@@ -396,10 +428,21 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glNewList(int, int)
 	 */
 	public void glNewList(int id, int option) {
+		drawDeferred();
+		applyBuffer();
 		listMode++;
 		super.glNewList(id, option);
 	}
 
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#drawArrays(int, float[], float[], float[], int)
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		// the client states are always enabled by this renderer 
+		applyBuffer();
+		submitArrays(geomType, verts, texCoords, colors, count);
+	}
+
 	/**
 	 * @see org.newdawn.slick.opengl.renderer.SGL#getCurrentColor()
 	 */
@@ -411,7 +454,10 @@ public class VAOGLRenderer extends ImmediateModeOGLRenderer {
 	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
 	 */
 	public void glLoadMatrix(FloatBuffer buffer) {
-		flushBuffer();
+		drawDeferred();
+		if (!transforming) {
+			flushBuffer();
+		}
 		super.glLoadMatrix(buffer);
 	}
 }
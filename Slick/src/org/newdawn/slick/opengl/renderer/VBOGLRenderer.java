@@ -0,0 +1,727 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GLContext;
+import org.newdawn.slick.util.Log;
+
+/**
+ * A renderer that streams geometry through a ring of vertex buffer objects. Vertex
+ * data is written interleaved straight into a mapped buffer as it's specified and
+ * drawn from the buffer object when the batch is flushed, so there is no copy 
+ * through an intermediate array or client side buffer. 
+ * 
+ * Where map buffer range is available (OpenGL 3.0) batches are appended to the
+ * current buffer without synchronisation and the buffer is only orphaned once
+ * full. Otherwise each batch orphans the next buffer in the ring and maps the whole
+ * buffer. If vertex buffer objects aren't supported at all this renderer falls
+ * back to immediate mode.
+ * 
+ * Quads, triangles, lines and points from consecutive glBegin calls are drawn
+ * together, while each strip, fan, loop or polygon is drawn on its own. If one of
+ * those overflows a buffer the vertices it still needs are written again at the
+ * start of the next batch.
+ * 
+ * @author kevin
+ */
+public class VBOGLRenderer extends ImmediateModeOGLRenderer {
+	/** Indicates there is no current geometry buffer */
+	public static final int NONE = -1;
+	/** The maximum number of vertices held in each buffer object */
+	public static final int MAX_VERTS = 16384;
+	/** The number of buffer objects in the ring */
+	private static final int RING_SIZE = 3;
+	/** The minimum number of vertices that should be available when starting a batch */
+	private static final int MIN_VERTS = 256;
+	/** The size in bytes of each vertex - 3 floats of position, 2 floats of texture coordinate and 4 bytes of colour */
+	private static final int STRIDE = 24;
+	/** The offset of the texture coordinates in each vertex */
+	private static final int TEX_OFFSET = 12;
+	/** The offset of the colour in each vertex */
+	private static final int COLOR_OFFSET = 20;
+	/** The size in bytes of each buffer object */
+	private static final int BUFFER_SIZE = MAX_VERTS * STRIDE;
+	
+	/** The type of the geometry currently being built - i.e. GL_QUADS */
+	private int currentType = NONE;
+	/** The last colour applied */
+	private float[] color = new float[] {1f,1f,1f,1f};
+	/** The last colour applied, packed as bytes ready to be written to the buffer */
+	private byte[] packedColor = new byte[] {(byte) 255, (byte) 255, (byte) 255, (byte) 255};
+	/** The packed colour saved while drawing a batch of arrays */
+	private byte[] savedColor = new byte[4];
+	/** The last texture applied */
+	private float[] tex = new float[] {0f,0f};
+	/** The vertices carried over to the next batch when a primitive is split */
+	private byte[] carried = new byte[3 * STRIDE];
+	/** The first vertex of a line loop that has been split, written again to close it */
+	private byte[] loopStart = new byte[STRIDE];
+	/** True if the line loop being built has been split and needs closing when it ends */
+	private boolean loopSplit;
+	
+	/** The buffer objects in the ring */
+	private int[] buffers = new int[RING_SIZE];
+	/** The index of the buffer object currently in use */
+	private int current;
+	/** The offset in bytes in the current buffer object at which the next batch will be written */
+	private int offset;
+	/** The offset in bytes in the current buffer object of the batch being built */
+	private int batchOffset;
+	/** The memory mapped for the batch being built, null if no batch is mapped */
+	private ByteBuffer mapped;
+	/** The last buffer returned from mapping, passed back in so it may be reused */
+	private ByteBuffer lastMapped;
+	/** The number of vertices written to the batch being built */
+	private int vertIndex;
+	/** The number of vertices that can be written to the batch being built */
+	private int vertLimit;
+	
+	/** True if vertex buffer objects are supported */
+	private boolean supported;
+	/** True if map buffer range is supported */
+	private boolean mapRange;
+	/** The stack for entering list creation mode - when we're creating a list we can't use our VBOs */
+	private int listMode = 0;
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#initDisplay(int, int)
+	 */
+	public void initDisplay(int width, int height) {
+		super.initDisplay(width, height);
+		
+		ContextCapabilities caps = GLContext.getCapabilities();
+		supported = caps.OpenGL15;
+		mapRange = caps.OpenGL30;
+		if (!supported) {
+			Log.warn("Vertex buffer objects are not supported, falling back to immediate mode rendering");
+			return;
+		}
+		
+		for (int i=0;i<buffers.length;i++) {
+			buffers[i] = GL15.glGenBuffers();
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffers[i]);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, BUFFER_SIZE, GL15.GL_STREAM_DRAW);
+		}
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		current = 0;
+		offset = 0;
+		
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+	}
+	
+	/**
+	 * Check if calls should be passed straight through to immediate mode
+	 * 
+	 * @return True if calls should be passed straight through to immediate mode
+	 */
+	private boolean passThrough() {
+		return (listMode > 0) || !supported;
+	}
+	
+	/**
+	 * Map space in a buffer object for a new batch of vertices
+	 */
+	private void startBatch() {
+		if (mapRange) {
+			if (offset + (MIN_VERTS * STRIDE) > BUFFER_SIZE) {
+				// orphan the next buffer, the driver will give us fresh memory
+				// if the GPU is still reading from it
+				current = (current + 1) % buffers.length;
+				GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffers[current]);
+				GL15.glBufferData(GL15.GL_ARRAY_BUFFER, BUFFER_SIZE, GL15.GL_STREAM_DRAW);
+				offset = 0;
+			} else {
+				GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffers[current]);
+			}
+			
+			// nothing already written to this buffer will be overwritten so there's no need to wait
+			mapped = GL30.glMapBufferRange(GL15.GL_ARRAY_BUFFER, offset, BUFFER_SIZE - offset, 
+							GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_RANGE_BIT | GL30.GL_MAP_UNSYNCHRONIZED_BIT, 
+							lastMapped);
+			batchOffset = offset;
+		} else {
+			current = (current + 1) % buffers.length;
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffers[current]);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, BUFFER_SIZE, GL15.GL_STREAM_DRAW);
+			mapped = GL15.glMapBuffer(GL15.GL_ARRAY_BUFFER, GL15.GL_WRITE_ONLY, BUFFER_SIZE, lastMapped);
+			batchOffset = 0;
+		}
+		
+		lastMapped = mapped;
+		mapped.order(ByteOrder.nativeOrder());
+		vertIndex = 0;
+		vertLimit = (BUFFER_SIZE - batchOffset) / STRIDE;
+	}
+	
+	/**
+	 * Unmap the batch being built and draw it
+	 */
+	private void flushBuffer() {
+		if (mapped == null) {
+			return;
+		}
+		
+		if (!GL15.glUnmapBuffer(GL15.GL_ARRAY_BUFFER)) {
+			Log.warn("Vertex buffer contents lost while mapped");
+		}
+		mapped = null;
+		
+		if ((vertIndex > 0) && (currentType != NONE)) {
+			GL11.glVertexPointer(3, GL11.GL_FLOAT, STRIDE, batchOffset);
+			GL11.glTexCoordPointer(2, GL11.GL_FLOAT, STRIDE, batchOffset + TEX_OFFSET);
+			GL11.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, STRIDE, batchOffset + COLOR_OFFSET);
+			GL11.glDrawArrays(currentType, 0, vertIndex);
+			
+			offset = batchOffset + (vertIndex * STRIDE);
+		}
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		
+		vertIndex = 0;
+		currentType = NONE;
+	}
+	
+	/**
+	 * Apply the current batch and restart it
+	 */
+	private void applyBuffer() {
+		if (passThrough()) {
+			return;
+		}
+		
+		flushBuffer();
+		GL11.glColor4f(color[0], color[1], color[2], color[3]);
+	}
+	
+	/**
+	 * Write a vertex using the current colour and texture coordinate
+	 * 
+	 * @param x The x coordinate of the vertex
+	 * @param y The y coordinate of the vertex
+	 * @param z The z coordinate of the vertex
+	 */
+	private void writeVertex(float x, float y, float z) {
+		if (mapped == null) {
+			startBatch();
+		}
+		
+		if (transforming) {
+			float tx = transformX(x, y);
+			y = transformY(x, y);
+			x = tx;
+		}
+		
+		int pos = vertIndex * STRIDE;
+		mapped.putFloat(pos, x);
+		mapped.putFloat(pos + 4, y);
+		mapped.putFloat(pos + 8, z);
+		mapped.putFloat(pos + TEX_OFFSET, tex[0]);
+		mapped.putFloat(pos + TEX_OFFSET + 4, tex[1]);
+		mapped.put(pos + COLOR_OFFSET, packedColor[0]);
+		mapped.put(pos + COLOR_OFFSET + 1, packedColor[1]);
+		mapped.put(pos + COLOR_OFFSET + 2, packedColor[2]);
+		mapped.put(pos + COLOR_OFFSET + 3, packedColor[3]);
+		vertIndex++;
+		
+		if (((vertIndex > vertLimit - 50) && isSplittable(vertIndex, currentType)) || (vertIndex == vertLimit)) {
+			splitBatch();
+		}
+	}
+	
+	/**
+	 * Draw the batch being built and start another to continue the current 
+	 * geometry, carrying over any vertices the geometry still needs 
+	 */
+	private void splitBatch() {
+		int type = currentType;
+		if (type == GL11.GL_LINE_LOOP) {
+			// draw the loop as a strip, the first vertex is written again
+			// when it ends to close it
+			if (!loopSplit) {
+				saveVertex(0, loopStart, 0);
+				loopSplit = true;
+			}
+			type = GL11.GL_LINE_STRIP;
+			currentType = type;
+		}
+		
+		int carry = 0;
+		switch (type) {
+		case GL11.GL_LINE_STRIP:
+			carry = saveVertex(vertIndex - 1, carried, carry);
+			break;
+		case GL11.GL_TRIANGLE_FAN:
+		case GL11.GL_POLYGON:
+			carry = saveVertex(0, carried, carry);
+			carry = saveVertex(vertIndex - 1, carried, carry);
+			break;
+		case GL11.GL_TRIANGLE_STRIP:
+			// repeat a vertex if needed so the next triangle keeps its winding
+			if (vertIndex % 2 != 0) {
+				carry = saveVertex(vertIndex - 2, carried, carry);
+			}
+			carry = saveVertex(vertIndex - 2, carried, carry);
+			carry = saveVertex(vertIndex - 1, carried, carry);
+			break;
+		case GL11.GL_QUAD_STRIP:
+			// the next quad starts at the last complete pair
+			for (int i=vertIndex - 2 - (vertIndex % 2);i<vertIndex;i++) {
+				carry = saveVertex(i, carried, carry);
+			}
+			break;
+		}
+		
+		flushBuffer();
+		currentType = type;
+		
+		if (carry > 0) {
+			startBatch();
+			for (int i=0;i<carry * STRIDE;i++) {
+				mapped.put(i, carried[i]);
+			}
+			vertIndex = carry;
+		}
+	}
+	
+	/**
+	 * Copy a vertex out of the batch being built
+	 * 
+	 * @param index The index of the vertex in the batch
+	 * @param dest The array to copy the vertex into
+	 * @param slot The index of the vertex in the destination array
+	 * @return The index of the next free vertex in the destination array
+	 */
+	private int saveVertex(int index, byte[] dest, int slot) {
+		int pos = index * STRIDE;
+		int destPos = slot * STRIDE;
+		for (int i=0;i<STRIDE;i++) {
+			dest[destPos + i] = mapped.get(pos + i);
+		}
+		return slot + 1;
+	}
+	
+	/**
+	 * Write the first vertex of a line loop that was split to close it 
+	 */
+	private void closeLoop() {
+		if (!loopSplit) {
+			return;
+		}
+		
+		// there is always room for another vertex after writing one
+		int pos = vertIndex * STRIDE;
+		for (int i=0;i<STRIDE;i++) {
+			mapped.put(pos + i, loopStart[i]);
+		}
+		vertIndex++;
+		loopSplit = false;
+	}
+	
+	/**
+	 * Check if geometry of a given type can be drawn in the same batch as 
+	 * the geometry of the same type before it
+	 * 
+	 * @param type The type of geometry
+	 * @return True if the geometry can be added to the current batch
+	 */
+	private boolean isBatchable(int type) {
+		switch (type) {
+		case GL11.GL_QUADS:
+		case GL11.GL_TRIANGLES:
+		case GL11.GL_LINES:
+		case GL11.GL_POINTS:
+			return true;
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Check if the geometry being created can be split at the current index
+	 * 
+	 * @param count The current index
+	 * @param type The type of geometry being built
+	 * @return True if the geometry can be split at the current index
+	 */
+	private boolean isSplittable(int count, int type) {
+		switch (type) {
+		case GL11.GL_QUADS:
+			return count % 4 == 0;
+		case GL11.GL_TRIANGLES:
+			return count % 3 == 0;
+		case GL11.GL_LINES:
+			return count % 2 == 0;
+		case GL11.GL_POINTS:
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Pack a colour component into a byte
+	 * 
+	 * @param value The colour component between 0 and 1
+	 * @return The colour component packed into a byte
+	 */
+	private byte pack(float value) {
+		if (value <= 0) {
+			return 0;
+		}
+		if (value >= 1) {
+			return (byte) 255;
+		}
+		return (byte) ((value * 255) + 0.5f);
+	}
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#flush()
+	 */
+	public void flush() {
+		drawDeferred();
+		applyBuffer();
+		super.flush();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glBegin(int)
+	 */
+	public void glBegin(int geomType) {
+		if (passThrough()) {
+			super.glBegin(geomType);
+			return;
+		}
+		
+		// strips, fans and the like can't be joined to the last one, drawing
+		// each from a new batch also makes sure it starts with room to spare
+		if ((currentType != geomType) || !isBatchable(geomType)) {
+			applyBuffer();
+			currentType = geomType;
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glEnd()
+	 */
+	public void glEnd() {
+		if (passThrough()) {
+			super.glEnd();
+			return;
+		}
+		
+		closeLoop();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glColor4f(float, float, float, float)
+	 */
+	public void glColor4f(float r, float g, float b, float a) {
+		if (passThrough()) {
+			super.glColor4f(r,g,b,a);
+			if (!supported) {
+				return;
+			}
+		}
+		
+		a *= alphaScale;
+		
+		color[0] = r;
+		color[1] = g;
+		color[2] = b;
+		color[3] = a;
+		packedColor[0] = pack(r);
+		packedColor[1] = pack(g);
+		packedColor[2] = pack(b);
+		packedColor[3] = pack(a);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glTexCoord2f(float, float)
+	 */
+	public void glTexCoord2f(float u, float v) {
+		if (passThrough()) {
+			super.glTexCoord2f(u,v);
+			return;
+		}
+		
+		tex[0] = u;
+		tex[1] = v;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glVertex2f(float, float)
+	 */
+	public void glVertex2f(float x, float y) {
+		if (passThrough()) {
+			super.glVertex2f(x,y);
+			return;
+		}
+		
+		writeVertex(x,y,0);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glVertex3f(float, float, float)
+	 */
+	public void glVertex3f(float x, float y, float z) {
+		if (passThrough()) {
+			super.glVertex3f(x,y,z);
+			return;
+		}
+		
+		writeVertex(x,y,z);
+	}
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#drawArrays(int, float[], float[], float[], int)
+	 */
+	public void drawArrays(int geomType, float[] verts, float[] texCoords, float[] colors, int count) {
+		if (passThrough()) {
+			if (supported) {
+				// the client states stay enabled for our own batches, so don't let
+				// the immediate mode version disable them after it's drawn
+				submitArrays(geomType, verts, texCoords, colors, count);
+			} else {
+				super.drawArrays(geomType, verts, texCoords, colors, count);
+			}
+			return;
+		}
+		
+		applyBuffer();
+		
+		float r = color[0];
+		float g = color[1];
+		float b = color[2];
+		float a = color[3];
+		System.arraycopy(packedColor, 0, savedColor, 0, 4);
+		
+		currentType = geomType;
+		for (int i=0;i<count;i++) {
+			glColor4f(colors[i*4], colors[(i*4)+1], colors[(i*4)+2], colors[(i*4)+3]);
+			tex[0] = texCoords[i*2];
+			tex[1] = texCoords[(i*2)+1];
+			writeVertex(verts[i*2], verts[(i*2)+1], 0);
+		}
+		closeLoop();
+		
+		applyBuffer();
+		
+		// restore the colour that was current before the batch
+		color[0] = r;
+		color[1] = g;
+		color[2] = b;
+		color[3] = a;
+		System.arraycopy(savedColor, 0, packedColor, 0, 4);
+		GL11.glColor4f(r, g, b, a);
+	}
+	
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glBindTexture(int, int)
+	 */
+	public void glBindTexture(int target, int id) {
+		applyBuffer();
+		super.glBindTexture(target, id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glBlendFunc(int, int)
+	 */
+	public void glBlendFunc(int src, int dest) {
+		applyBuffer();
+		super.glBlendFunc(src, dest);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glCallList(int)
+	 */
+	public void glCallList(int id) {
+		drawDeferred();
+		applyBuffer();
+		super.glCallList(id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glClear(int)
+	 */
+	public void glClear(int value) {
+		applyBuffer();
+		super.glClear(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glClipPlane(int, java.nio.DoubleBuffer)
+	 */
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+		applyBuffer();
+		super.glClipPlane(plane, buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glColorMask(boolean, boolean, boolean, boolean)
+	 */
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		applyBuffer();
+		super.glColorMask(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glDisable(int)
+	 */
+	public void glDisable(int item) {
+		applyBuffer();
+		super.glDisable(item);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glEnable(int)
+	 */
+	public void glEnable(int item) {
+		applyBuffer();
+		super.glEnable(item);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glLineWidth(float)
+	 */
+	public void glLineWidth(float width) {
+		applyBuffer();
+		super.glLineWidth(width);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPointSize(float)
+	 */
+	public void glPointSize(float size) {
+		applyBuffer();
+		super.glPointSize(size);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPopMatrix()
+	 */
+	public void glPopMatrix() {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glPopMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glPushMatrix()
+	 */
+	public void glPushMatrix() {
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glPushMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glLoadIdentity()
+	 */
+	public void glLoadIdentity() {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glLoadIdentity();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glRotatef(float, float, float, float)
+	 */
+	public void glRotatef(float angle, float x, float y, float z) {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glRotatef(angle, x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glScalef(float, float, float)
+	 */
+	public void glScalef(float x, float y, float z) {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glScalef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glScissor(int, int, int, int)
+	 */
+	public void glScissor(int x, int y, int width, int height) {
+		applyBuffer();
+		super.glScissor(x, y, width, height);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glTexEnvi(int, int, int)
+	 */
+	public void glTexEnvi(int target, int mode, int value) {
+		applyBuffer();
+		super.glTexEnvi(target, mode, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glTranslatef(float, float, float)
+	 */
+	public void glTranslatef(float x, float y, float z) {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glTranslatef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glLoadMatrix(java.nio.FloatBuffer)
+	 */
+	public void glLoadMatrix(FloatBuffer buffer) {
+		drawDeferred();
+		if (!transforming) {
+			applyBuffer();
+		}
+		super.glLoadMatrix(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glEndList()
+	 */
+	public void glEndList() {
+		listMode--;
+		super.glEndList();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer#glNewList(int, int)
+	 */
+	public void glNewList(int id, int option) {
+		drawDeferred();
+		applyBuffer();
+		listMode++;
+		super.glNewList(id, option);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#getCurrentColor()
+	 */
+	public float[] getCurrentColor() {
+		if (!supported) {
+			return super.getCurrentColor();
+		}
+		
+		return color;
+	}
+}
@@ -0,0 +1,27 @@
+package org.newdawn.slick.particles;
+
+/**
+ * An emitter that can update all of its particles in a single pass when the
+ * particle system is storing particles in arrays. When the system is in this
+ * mode the emitter should spawn particles using
+ * ParticleSystem.getNewParticleIndex() and will not receive calls to
+ * updateParticle().
+ *
+ * @see ParticleSystem#setUseParticleArrays(boolean)
+ * @author kevin
+ */
+public interface BulkParticleEmitter extends ParticleEmitter {
+	/**
+	 * Update a range of the particles this emitter produced. The system will age
+	 * and move the particles once this method returns. When the system is 
+	 * updating in parallel, disjoint ranges of the same buffer may be updated 
+	 * from different threads at the same time, otherwise the whole buffer is 
+	 * updated in one call.
+	 *
+	 * @param particles The buffer holding the particles to be updated
+	 * @param start The index in the live list of the first particle to update
+	 * @param end The index in the live list after the last particle to update
+	 * @param delta The amount of time in millisecond since last particle update
+	 */
+	public void updateParticles(ParticleBuffer particles, int start, int end, int delta);
+}
@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Image;
@@ -20,9 +21,11 @@ import org.newdawn.slick.util.Log;
  * 
  * @author kevin
  */
-public class ConfigurableEmitter implements ParticleEmitter {
+public class ConfigurableEmitter implements BulkParticleEmitter {
 	/** The path from which the images should be loaded */
 	private static String relativePath = "";
+	/** The number of intervals sampled into each lookup table */
+	private static final int LOOKUP_SIZE = 256;
 
 	/**
 	 * Set the path from which images should be loaded
@@ -107,6 +110,21 @@ public class ConfigurableEmitter implements ParticleEmitter {
 	/** True if the image needs updating */
 	private boolean updateImage;
 
+	/** The source of the random values used to spawn particles */
+	private Random random = new Random();
+	/** True if values and colours should be sampled from lookup tables */
+	private boolean useLookupTables;
+	/** The colour range sampled into a table, null if the table needs to be built */
+	private float[] colorTable;
+	/** The colour calculated for the particle being updated */
+	private float[] particleColor = new float[3];
+	/** The colour calculated for each particle in a bulk update, per thread since ranges may be updated in parallel */
+	private ThreadLocal bulkColor = new ThreadLocal() {
+		protected Object initialValue() {
+			return new float[3];
+		}
+	};
+
 	/** True if the emitter is enabled */
 	private boolean enabled = true;
 	/** The x coordinate of the position of this emitter */
@@ -193,6 +211,16 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		}
 	}
 	
+	/**
+	 * Seed the random values used by this emitter. Emitters given the same seed
+	 * and configuration will produce the same particles.
+	 * 
+	 * @param seed The seed for the random values used by this emitter
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
 	/**
 	 * The name of the image to load
 	 * 
@@ -279,6 +307,9 @@ public class ConfigurableEmitter implements ParticleEmitter {
 	 */
 	public void update(ParticleSystem system, int delta) {
 		this.engine = system;
+		if (useLookupTables) {
+			buildLookupTables();
+		}
 
 		if (!adjust) {
 			adjustx = 0;
@@ -327,36 +358,41 @@ public class ConfigurableEmitter implements ParticleEmitter {
 			nextSpawn = (int) spawnInterval.random();
 			int count = (int) spawnCount.random();
 
+			ParticleBuffer buffer = system.getParticleBuffer(this);
 			for (int i = 0; i < count; i++) {
-				Particle p = system.getNewParticle(this, initialLife.random());
-				p.setSize(initialSize.random());
-				p.setPosition(x + xOffset.random(), y + yOffset.random());
-				p.setVelocity(0, 0, 0);
-
-				float dist = initialDistance.random();
-				float power = speed.random();
-				if ((dist != 0) || (power != 0)) {
-					float s = spread.getValue(0);
-					float ang = (s + angularOffset.getValue(0) - (spread
-							.getValue() / 2)) - 90;
-					float xa = (float) FastTrig.cos(Math.toRadians(ang)) * dist;
-					float ya = (float) FastTrig.sin(Math.toRadians(ang)) * dist;
-					p.adjustPosition(xa, ya);
-
-					float xv = (float) FastTrig.cos(Math.toRadians(ang));
-					float yv = (float) FastTrig.sin(Math.toRadians(ang));
-					p.setVelocity(xv, yv, power * 0.001f);
-				}
+				if (buffer != null) {
+					spawnParticle(system, buffer);
+				} else {
+					Particle p = system.getNewParticle(this, initialLife.random());
+					p.setSize(initialSize.random());
+					p.setPosition(x + xOffset.random(), y + yOffset.random());
+					p.setVelocity(0, 0, 0);
+
+					float dist = initialDistance.random();
+					float power = speed.random();
+					if ((dist != 0) || (power != 0)) {
+						float s = spread.getValue(0);
+						float ang = (s + angularOffset.getValue(0) - (spread
+								.getValue() / 2)) - 90;
+						float xa = (float) FastTrig.cos(Math.toRadians(ang)) * dist;
+						float ya = (float) FastTrig.sin(Math.toRadians(ang)) * dist;
+						p.adjustPosition(xa, ya);
+
+						float xv = (float) FastTrig.cos(Math.toRadians(ang));
+						float yv = (float) FastTrig.sin(Math.toRadians(ang));
+						p.setVelocity(xv, yv, power * 0.001f);
+					}
 
-				if (image != null) {
-					p.setImage(image);
-				}
+					if (image != null) {
+						p.setImage(image);
+					}
 
-				ColorRecord start = (ColorRecord) colors.get(0);
-				p.setColor(start.col.r, start.col.g, start.col.b, startAlpha
-						.getValue(0) / 255.0f);
-				p.setUsePoint(usePoints);
-				p.setOriented(useOriented);
+					ColorRecord start = (ColorRecord) colors.get(0);
+					p.setColor(start.col.r, start.col.g, start.col.b, startAlpha
+							.getValue(0) / 255.0f);
+					p.setUsePoint(usePoints);
+					p.setOriented(useOriented);
+				}
 
 				if (emitCount.isEnabled()) {
 					leftToEmit--;
@@ -368,6 +404,109 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		}
 	}
 
+	/**
+	 * Spawn a new particle into the buffer holding this emitter's particles
+	 * 
+	 * @param system The particle system the particle is spawned in
+	 * @param buffer The buffer holding this emitter's particles
+	 */
+	private void spawnParticle(ParticleSystem system, ParticleBuffer buffer) {
+		int p = system.getNewParticleIndex(this, initialLife.random());
+		if (p < 0) {
+			return;
+		}
+		
+		buffer.size[p] = initialSize.random();
+		buffer.x[p] = x + xOffset.random();
+		buffer.y[p] = y + yOffset.random();
+
+		float dist = initialDistance.random();
+		float power = speed.random();
+		if ((dist != 0) || (power != 0)) {
+			float s = spread.getValue(0);
+			float ang = (s + angularOffset.getValue(0) - (spread
+					.getValue() / 2)) - 90;
+			float xa = (float) FastTrig.cos(Math.toRadians(ang)) * dist;
+			float ya = (float) FastTrig.sin(Math.toRadians(ang)) * dist;
+			buffer.x[p] += xa;
+			buffer.y[p] += ya;
+
+			float xv = (float) FastTrig.cos(Math.toRadians(ang));
+			float yv = (float) FastTrig.sin(Math.toRadians(ang));
+			buffer.velx[p] = xv * (power * 0.001f);
+			buffer.vely[p] = yv * (power * 0.001f);
+		}
+
+		ColorRecord start = (ColorRecord) colors.get(0);
+		buffer.r[p] = start.col.r;
+		buffer.g[p] = start.col.g;
+		buffer.b[p] = start.col.b;
+		buffer.a[p] = startAlpha.getValue(0) / 255.0f;
+	}
+	
+	/**
+	 * @see org.newdawn.slick.particles.BulkParticleEmitter#updateParticles(org.newdawn.slick.particles.ParticleBuffer, int, int, int)
+	 */
+	public void updateParticles(ParticleBuffer particles, int start, int end, int delta) {
+		int[] live = particles.live;
+		if (start == 0) {
+			// only one range starts at the front so the count isn't shared between threads
+			particleCount += particles.getCount();
+		}
+		
+		float windx = windFactor.getValue(0) * 0.00005f * delta;
+		float gravityy = gravityFactor.getValue(0) * 0.00005f * delta;
+		float growth = delta * growthFactor.getValue(0) * 0.001f;
+		float startA = startAlpha.getValue(0) / 255.0f;
+		float endA = endAlpha.getValue(0) / 255.0f;
+		
+		float[] rgb = (float[]) bulkColor.get();
+		
+		for (int n=start;n<end;n++) {
+			int p = live[n];
+			
+			// adjust the particles if required
+			particles.x[p] += adjustx;
+			particles.y[p] += adjusty;
+	
+			particles.velx[p] += windx;
+			particles.vely[p] += gravityy;
+			
+			float offset = particles.life[p] / particles.originalLife[p];
+			float inv = 1 - offset;
+	
+			if (getColor(inv, rgb)) {
+				particles.r[p] = rgb[0];
+				particles.g[p] = rgb[1];
+				particles.b[p] = rgb[2];
+	
+				if (alpha.isActive()) {
+					particles.a[p] = getValue(alpha, inv) / 255.0f;
+				} else {
+					particles.a[p] = (startA * offset) + (endA * inv);
+				}
+			}
+	
+			if (size.isActive()) {
+				particles.size[p] = getValue(size, inv);
+			} else {
+				particles.size[p] = Math.max(0, particles.size[p] + growth);
+			}
+	
+			if (velocity.isActive()) {
+				float speed = getValue(velocity, inv);
+				float currentSpeed = (float) Math.sqrt((particles.velx[p]*particles.velx[p]) + 
+													   (particles.vely[p]*particles.vely[p]));
+				particles.velx[p] = (particles.velx[p] * speed) / currentSpeed;
+				particles.vely[p] = (particles.vely[p] * speed) / currentSpeed;
+			}
+	
+			if (scaleY.isActive()) {
+				particles.scaleY[p] = getValue(scaleY, inv);
+			}
+		}
+	}
+
 	/**
 	 * @see org.newdawn.slick.particles.ParticleEmitter#updateParticle(org.newdawn.slick.particles.Particle,
 	 *      int)
@@ -384,6 +523,76 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		
 		float offset = particle.getLife() / particle.getOriginalLife();
 		float inv = 1 - offset;
+
+		if (getColor(inv, particleColor)) {
+			float a;
+			if (alpha.isActive()) {
+				a = getValue(alpha, inv) / 255.0f;
+			} else {
+				a = ((startAlpha.getValue(0) / 255.0f) * offset)
+						+ ((endAlpha.getValue(0) / 255.0f) * inv);
+			}
+			particle.setColor(particleColor[0], particleColor[1], particleColor[2], a);
+		}
+
+		if (size.isActive()) {
+			float s = getValue(size, inv);
+			particle.setSize(s);
+		} else {
+			particle.adjustSize(delta * growthFactor.getValue(0) * 0.001f);
+		}
+
+		if (velocity.isActive()) {
+			particle.setSpeed(getValue(velocity, inv));
+		}
+
+		if (scaleY.isActive()) {
+			particle.setScaleY(getValue(scaleY, inv));
+		}
+	}
+
+	/**
+	 * Get the colour of a particle at a point in its life from the colour range
+	 * 
+	 * @param inv The proportion of the particle's life that has passed
+	 * @param rgb The array to fill with the red, green and blue components
+	 * @return True if the colour range covers the given point in the particle's life
+	 */
+	private boolean getColor(float inv, float[] rgb) {
+		if (useLookupTables) {
+			float[] table = colorTable;
+			if (table == null) {
+				table = buildColorTable();
+			}
+			
+			float f = inv * LOOKUP_SIZE;
+			if ((f >= 0) && (f <= LOOKUP_SIZE)) {
+				int i = Math.min((int) f, LOOKUP_SIZE - 1);
+				float frac = f - i;
+				int k = i * 3;
+				// samples outside the colour range are marked with NaN 
+				if (!Float.isNaN(table[k]) && !Float.isNaN(table[k + 3])) {
+					rgb[0] = table[k] + ((table[k + 3] - table[k]) * frac);
+					rgb[1] = table[k + 1] + ((table[k + 4] - table[k + 1]) * frac);
+					rgb[2] = table[k + 2] + ((table[k + 5] - table[k + 2]) * frac);
+					return true;
+				}
+			}
+		}
+		
+		return getExactColor(inv, rgb, 0);
+	}
+	
+	/**
+	 * Get the colour of a particle at a point in its life by interpolating 
+	 * the colour range directly, without the lookup table
+	 * 
+	 * @param inv The proportion of the particle's life that has passed
+	 * @param rgb The array to fill with the red, green and blue components
+	 * @param offset The index in the array to write the red component at
+	 * @return True if the colour range covers the given point in the particle's life
+	 */
+	private boolean getExactColor(float inv, float[] rgb, int offset) {
 		float colOffset = 0;
 		float colInv = 1;
 
@@ -405,35 +614,97 @@ public class ConfigurableEmitter implements ParticleEmitter {
 			}
 		}
 
-		if (startColor != null) {
-			float r = (startColor.r * colOffset) + (endColor.r * colInv);
-			float g = (startColor.g * colOffset) + (endColor.g * colInv);
-			float b = (startColor.b * colOffset) + (endColor.b * colInv);
-
-			float a;
-			if (alpha.isActive()) {
-				a = alpha.getValue(inv) / 255.0f;
-			} else {
-				a = ((startAlpha.getValue(0) / 255.0f) * offset)
-						+ ((endAlpha.getValue(0) / 255.0f) * inv);
-			}
-			particle.setColor(r, g, b, a);
+		if (startColor == null) {
+			return false;
 		}
-
-		if (size.isActive()) {
-			float s = size.getValue(inv);
-			particle.setSize(s);
-		} else {
-			particle.adjustSize(delta * growthFactor.getValue(0) * 0.001f);
+		
+		rgb[offset] = (startColor.r * colOffset) + (endColor.r * colInv);
+		rgb[offset + 1] = (startColor.g * colOffset) + (endColor.g * colInv);
+		rgb[offset + 2] = (startColor.b * colOffset) + (endColor.b * colInv);
+		return true;
+	}
+	
+	/**
+	 * Get the value of an interpolated value at a point in a particle's life
+	 * 
+	 * @param value The interpolated value to evaluate
+	 * @param inv The proportion of the particle's life that has passed
+	 * @return The value at the given point
+	 */
+	private float getValue(LinearInterpolator value, float inv) {
+		if (useLookupTables) {
+			return value.getTableValue(inv);
 		}
-
-		if (velocity.isActive()) {
-			particle.setSpeed(velocity.getValue(inv));
+		
+		return value.getValue(inv);
+	}
+	
+	/**
+	 * Indicate if the interpolated values and the colour range should be sampled 
+	 * into lookup tables rather than being evaluated for every particle on every
+	 * update. The tables are rebuilt when the curves or colours are replaced 
+	 * through setCurve() or addColorPoint(). If the points or colour records are
+	 * modified in place invalidateLookupTables() should be called.
+	 * 
+	 * @param useLookupTables True if lookup tables should be used
+	 */
+	public void setUseLookupTables(boolean useLookupTables) {
+		this.useLookupTables = useLookupTables;
+		invalidateLookupTables();
+	}
+	
+	/**
+	 * Check if lookup tables are being used for the interpolated values and colours
+	 * 
+	 * @return True if lookup tables are being used
+	 */
+	public boolean isUsingLookupTables() {
+		return useLookupTables;
+	}
+	
+	/**
+	 * Discard the lookup tables so they are rebuilt from the current 
+	 * configuration the next time they're required.
+	 */
+	public void invalidateLookupTables() {
+		colorTable = null;
+		alpha.invalidate();
+		size.invalidate();
+		velocity.invalidate();
+		scaleY.invalidate();
+	}
+	
+	/**
+	 * Build any lookup tables that have been discarded. This is done from update() 
+	 * so that the tables are in place before the particles are updated, possibly
+	 * on other threads.
+	 */
+	private void buildLookupTables() {
+		if (colorTable == null) {
+			buildColorTable();
 		}
-
-		if (scaleY.isActive()) {
-			particle.setScaleY(scaleY.getValue(inv));
+		alpha.getTableValue(0);
+		size.getTableValue(0);
+		velocity.getTableValue(0);
+		scaleY.getTableValue(0);
+	}
+	
+	/**
+	 * Sample the colour range into a lookup table 
+	 * 
+	 * @return The table of red, green and blue components at each sample
+	 */
+	private float[] buildColorTable() {
+		float[] table = new float[(LOOKUP_SIZE + 1) * 3];
+		
+		for (int i=0;i<=LOOKUP_SIZE;i++) {
+			if (!getExactColor(i / (float) LOOKUP_SIZE, table, i * 3)) {
+				table[i * 3] = Float.NaN;
+			}
 		}
+		
+		colorTable = table;
+		return table;
 	}
 
 	/**
@@ -599,7 +870,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		 * @return The currently configured value
 		 */
 		public float getValue(float time) {
-			return (float) (Math.random() * value);
+			return (float) (random.nextDouble() * value);
 		}
 
 		/**
@@ -636,6 +907,8 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		private int min;
 		/** The maximum value in the data set */
 		private int max;
+		/** The curve sampled into a lookup table, null if the table needs to be built */
+		private float[] table;
 
 		/**
 		 * Create a new interpolated value
@@ -658,6 +931,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		 */
 		public void setCurve(ArrayList curve) {
 			this.curve = curve;
+			table = null;
 		}
 
 		/**
@@ -698,6 +972,41 @@ public class ConfigurableEmitter implements ParticleEmitter {
 			return 0;
 		}
 
+		/**
+		 * Get the value to use at a given time value from a lookup table sampled
+		 * from the curve. The table is built the first time it's required. 
+		 * 
+		 * @param t The time value (expecting t in [0,1])
+		 * @return The value to use at the specified time
+		 */
+		public float getTableValue(float t) {
+			float[] table = this.table;
+			if (table == null) {
+				table = new float[LOOKUP_SIZE + 1];
+				for (int i=0;i<=LOOKUP_SIZE;i++) {
+					table[i] = getValue(i / (float) LOOKUP_SIZE);
+				}
+				this.table = table;
+			}
+			
+			float f = t * LOOKUP_SIZE;
+			if ((f < 0) || (f > LOOKUP_SIZE)) {
+				return getValue(t);
+			}
+			
+			int i = Math.min((int) f, LOOKUP_SIZE - 1);
+			return table[i] + ((table[i + 1] - table[i]) * (f - i));
+		}
+		
+		/**
+		 * Discard the lookup table so it's rebuilt from the curve the next time
+		 * it's required. This should be called if the points on the curve 
+		 * are modified.
+		 */
+		public void invalidate() {
+			table = null;
+		}
+
 		/**
 		 * Check if this interpolated value should be used
 		 * 
@@ -788,6 +1097,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 	 */
 	public void addColorPoint(float pos, Color col) {
 		colors.add(new ColorRecord(pos, col));
+		colorTable = null;
 	}
 
 	/**
@@ -822,7 +1132,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		 * @return The random number from the range
 		 */
 		public float random() {
-			return (float) (min + (Math.random() * (max - min)));
+			return (float) (min + (random.nextDouble() * (max - min)));
 		}
 
 		/**
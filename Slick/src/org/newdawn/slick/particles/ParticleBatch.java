@@ -0,0 +1,230 @@
+package org.newdawn.slick.particles;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * A batch of particle geometry built on the CPU so that all the particles of 
+ * an emitter can be passed to the renderer in a single call. 
+ *
+ * @author kevin
+ */
+class ParticleBatch {
+	/** The number of vertices allocated when the batch is created */
+	private static final int INITIAL_VERTS = 400;
+	
+	/** The x,y pairs of the vertex positions */
+	private float[] verts = new float[INITIAL_VERTS * 2];
+	/** The u,v pairs of the vertex texture coordinates */
+	private float[] texs = new float[INITIAL_VERTS * 2];
+	/** The r,g,b,a components of the vertex colours */
+	private float[] cols = new float[INITIAL_VERTS * 4];
+	/** The number of vertices in the batch */
+	private int count;
+	
+	/** The left texture coordinate of the image being drawn */
+	private float u;
+	/** The top texture coordinate of the image being drawn */
+	private float v;
+	/** The right texture coordinate of the image being drawn */
+	private float u2;
+	/** The bottom texture coordinate of the image being drawn */
+	private float v2;
+	/** True if the image being drawn is rotated */
+	private boolean rotated;
+	/** The cosine of the rotation of the image being drawn */
+	private float imageCos;
+	/** The sine of the rotation of the image being drawn */
+	private float imageSin;
+	/** The x coordinate of the centre of rotation of the image being drawn */
+	private float centerX;
+	/** The y coordinate of the centre of rotation of the image being drawn */
+	private float centerY;
+	
+	/**
+	 * Set the image whose texture coordinates should be applied to quads
+	 * 
+	 * @param image The image being drawn for each particle
+	 */
+	public void setImage(Image image) {
+		u = image.getTextureOffsetX();
+		v = image.getTextureOffsetY();
+		u2 = u + image.getTextureWidth();
+		v2 = v + image.getTextureHeight();
+		
+		rotated = image.getRotation() != 0;
+		if (rotated) {
+			double angle = Math.toRadians(image.getRotation());
+			imageCos = (float) Math.cos(angle);
+			imageSin = (float) Math.sin(angle);
+			centerX = image.getCenterOfRotationX();
+			centerY = image.getCenterOfRotationY();
+		}
+	}
+	
+	/**
+	 * Get the number of vertices in the batch
+	 * 
+	 * @return The number of vertices in the batch
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Add a single point to the batch
+	 * 
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @param r The red component of the point's colour
+	 * @param g The green component of the point's colour
+	 * @param b The blue component of the point's colour
+	 * @param a The alpha component of the point's colour
+	 */
+	public void addPoint(float x, float y, float r, float g, float b, float a) {
+		ensureCapacity(count + 1);
+		addVertex(x, y, 0, 0, r, g, b, a);
+	}
+	
+	/**
+	 * Add the quad for a particle to the batch. The quad is placed in the same
+	 * way as Particle.render() would draw it, including the rotation for 
+	 * oriented particles and the scale on the y axis. As with Particle.render()
+	 * the rotation of the image is only applied to oriented or scaled particles.
+	 * 
+	 * @param x The x coordinate of the centre of the particle
+	 * @param y The y coordinate of the centre of the particle
+	 * @param size The size of the particle in pixels
+	 * @param scaleY The scalar applied on the y axis
+	 * @param oriented True if the particle should be rotated 
+	 * @param r The red component of the particle's colour
+	 * @param g The green component of the particle's colour
+	 * @param b The blue component of the particle's colour
+	 * @param a The alpha component of the particle's colour
+	 */
+	public void addQuad(float x, float y, float size, float scaleY, boolean oriented, 
+						float r, float g, float b, float a) {
+		ensureCapacity(count + 4);
+		
+		if (!oriented && (scaleY == 1.0f)) {
+			float x1 = (int) (x - (size / 2));
+			float y1 = (int) (y - (size / 2));
+			float x2 = x1 + (int) size;
+			float y2 = y1 + (int) size;
+			
+			addVertex(x1, y1, u, v, r, g, b, a);
+			addVertex(x1, y2, u, v2, r, g, b, a);
+			addVertex(x2, y2, u2, v2, r, g, b, a);
+			addVertex(x2, y1, u2, v, r, g, b, a);
+			return;
+		}
+		
+		float cos = 1;
+		float sin = 0;
+		if (oriented) {
+			double angle = Math.atan2(y, x);
+			cos = (float) Math.cos(angle);
+			sin = (float) Math.sin(angle);
+		}
+		
+		float offset = (int) (-(size / 2));
+		float extent = (int) size;
+		
+		addCorner(x, y, offset, 0, 0, scaleY, cos, sin, u, v, r, g, b, a);
+		addCorner(x, y, offset, 0, extent, scaleY, cos, sin, u, v2, r, g, b, a);
+		addCorner(x, y, offset, extent, extent, scaleY, cos, sin, u2, v2, r, g, b, a);
+		addCorner(x, y, offset, extent, 0, scaleY, cos, sin, u2, v, r, g, b, a);
+	}
+	
+	/**
+	 * Add a corner of a transformed particle quad to the batch, applying the 
+	 * transforms in the same order as Particle.render() and Image.draw()
+	 * 
+	 * @param x The x coordinate of the centre of the particle
+	 * @param y The y coordinate of the centre of the particle
+	 * @param offset The offset of the image from the centre of the particle
+	 * @param px The x coordinate of the corner within the image
+	 * @param py The y coordinate of the corner within the image
+	 * @param scaleY The scalar applied on the y axis
+	 * @param cos The cosine of the particle's orientation
+	 * @param sin The sine of the particle's orientation
+	 * @param tu The u texture coordinate of the corner
+	 * @param tv The v texture coordinate of the corner
+	 * @param r The red component of the particle's colour
+	 * @param g The green component of the particle's colour
+	 * @param b The blue component of the particle's colour
+	 * @param a The alpha component of the particle's colour
+	 */
+	private void addCorner(float x, float y, float offset, float px, float py, float scaleY, 
+						   float cos, float sin, float tu, float tv, float r, float g, float b, float a) {
+		if (rotated) {
+			float dx = px - centerX;
+			float dy = py - centerY;
+			px = centerX + (imageCos * dx) - (imageSin * dy);
+			py = centerY + (imageSin * dx) + (imageCos * dy);
+		}
+		
+		float lx = offset + px;
+		float ly = (offset + py) * scaleY;
+		addVertex(x + (cos * lx) - (sin * ly), y + (sin * lx) + (cos * ly), tu, tv, r, g, b, a);
+	}
+	
+	/**
+	 * Add a vertex to the batch, space must already be available
+	 * 
+	 * @param x The x coordinate of the vertex
+	 * @param y The y coordinate of the vertex
+	 * @param tu The u texture coordinate of the vertex
+	 * @param tv The v texture coordinate of the vertex
+	 * @param r The red component of the vertex colour
+	 * @param g The green component of the vertex colour
+	 * @param b The blue component of the vertex colour
+	 * @param a The alpha component of the vertex colour
+	 */
+	private void addVertex(float x, float y, float tu, float tv, float r, float g, float b, float a) {
+		verts[count * 2] = x;
+		verts[(count * 2) + 1] = y;
+		texs[count * 2] = tu;
+		texs[(count * 2) + 1] = tv;
+		cols[count * 4] = r;
+		cols[(count * 4) + 1] = g;
+		cols[(count * 4) + 2] = b;
+		cols[(count * 4) + 3] = a;
+		count++;
+	}
+	
+	/**
+	 * Make sure the batch can hold a given number of vertices
+	 * 
+	 * @param required The number of vertices the batch must be able to hold
+	 */
+	private void ensureCapacity(int required) {
+		if (required * 2 <= verts.length) {
+			return;
+		}
+		
+		int size = Math.max(required, verts.length);
+		float[] newVerts = new float[size * 2];
+		float[] newTexs = new float[size * 2];
+		float[] newCols = new float[size * 4];
+		System.arraycopy(verts, 0, newVerts, 0, count * 2);
+		System.arraycopy(texs, 0, newTexs, 0, count * 2);
+		System.arraycopy(cols, 0, newCols, 0, count * 4);
+		verts = newVerts;
+		texs = newTexs;
+		cols = newCols;
+	}
+	
+	/**
+	 * Draw the contents of the batch and empty it
+	 * 
+	 * @param GL The renderer to draw with
+	 * @param geomType The type of geometry in the batch, e.g. GL_QUADS
+	 */
+	public void flush(SGL GL, int geomType) {
+		if (count > 0) {
+			GL.drawArrays(geomType, verts, texs, cols, count);
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package org.newdawn.slick.particles;
+
+/**
+ * The particles produced by a single emitter stored as a set of packed arrays
+ * rather than one object per particle. Each particle occupies a slot and its
+ * properties are held at that index in each of the arrays. The slots currently
+ * alive are listed densely at the start of the <code>live</code> array so updates
+ * and rendering only visit particles in use.
+ *
+ * Emitters implementing BulkParticleEmitter are given the buffer holding their
+ * particles to update them all in one pass.
+ *
+ * @see BulkParticleEmitter
+ * @see ParticleSystem#setUseParticleArrays(boolean)
+ * @author kevin
+ */
+public class ParticleBuffer {
+	/** The x coordinate of each particle */
+	public float[] x;
+	/** The y coordinate of each particle */
+	public float[] y;
+	/** The x component of the velocity of each particle */
+	public float[] velx;
+	/** The y component of the velocity of each particle */
+	public float[] vely;
+	/** The current size in pixels of each particle */
+	public float[] size;
+	/** The life left in each particle */
+	public float[] life;
+	/** The original life of each particle */
+	public float[] originalLife;
+	/** The red component of the colour of each particle */
+	public float[] r;
+	/** The green component of the colour of each particle */
+	public float[] g;
+	/** The blue component of the colour of each particle */
+	public float[] b;
+	/** The alpha component of the colour of each particle */
+	public float[] a;
+	/** The scalar applied on the y axis of each particle */
+	public float[] scaleY;
+
+	/** The slots of the particles alive, only the first getCount() are valid */
+	public int[] live;
+	/** The number of particles alive */
+	private int count;
+	/** The slots not currently in use */
+	private int[] free;
+	/** The number of slots not currently in use */
+	private int freeCount;
+
+	/**
+	 * Create a new buffer
+	 *
+	 * @param capacity The maximum number of particles held in the buffer
+	 */
+	public ParticleBuffer(int capacity) {
+		x = new float[capacity];
+		y = new float[capacity];
+		velx = new float[capacity];
+		vely = new float[capacity];
+		size = new float[capacity];
+		life = new float[capacity];
+		originalLife = new float[capacity];
+		r = new float[capacity];
+		g = new float[capacity];
+		b = new float[capacity];
+		a = new float[capacity];
+		scaleY = new float[capacity];
+
+		live = new int[capacity];
+		free = new int[capacity];
+		clear();
+	}
+
+	/**
+	 * Get the maximum number of particles held in this buffer
+	 *
+	 * @return The maximum number of particles held in this buffer
+	 */
+	public int getCapacity() {
+		return live.length;
+	}
+
+	/**
+	 * Get the number of particles alive in this buffer
+	 *
+	 * @return The number of particles alive
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Release all the particles in this buffer
+	 */
+	public void clear() {
+		count = 0;
+		freeCount = free.length;
+		for (int i=0;i<free.length;i++) {
+			// hand out the lowest slots first
+			free[i] = free.length - 1 - i;
+			life[i] = 0;
+		}
+	}
+
+	/**
+	 * Create a new particle in this buffer. The particle is placed at the
+	 * origin with no velocity, a size of 10 and a white colour.
+	 *
+	 * @param particleLife The life the particle should have (in milliseconds)
+	 * @return The slot of the new particle or -1 if the buffer is full
+	 */
+	public int spawn(float particleLife) {
+		if (freeCount == 0) {
+			return -1;
+		}
+
+		int slot = free[--freeCount];
+		live[count++] = slot;
+
+		x[slot] = 0;
+		y[slot] = 0;
+		velx[slot] = 0;
+		vely[slot] = 0;
+		size[slot] = 10;
+		life[slot] = particleLife;
+		originalLife[slot] = particleLife;
+		r[slot] = 1;
+		g[slot] = 1;
+		b[slot] = 1;
+		a[slot] = 1;
+		scaleY[slot] = 1;
+
+		return slot;
+	}
+
+	/**
+	 * Move all the particles in this buffer a fixed amount
+	 *
+	 * @param dx The amount to move the particles on the horizontal axis
+	 * @param dy The amount to move the particles on the vertical axis
+	 */
+	public void move(float dx, float dy) {
+		for (int i=0;i<count;i++) {
+			int slot = live[i];
+			x[slot] += dx;
+			y[slot] += dy;
+		}
+	}
+
+	/**
+	 * Age the particles and move them along their velocity. Particles whose life
+	 * has run out are released and the list of live particles compacted,
+	 * keeping the remaining particles in the order they were spawned.
+	 *
+	 * @param delta The amount of time in milliseconds since the last update
+	 */
+	public void update(int delta) {
+		age(0, count, delta);
+		compact();
+	}
+
+	/**
+	 * Age a range of the live particles and move those still alive along their
+	 * velocity. Disjoint ranges may be aged from different threads at the same 
+	 * time. Particles whose life runs out stay in the live list until compact()
+	 * is called.
+	 *
+	 * @param start The index in the live list of the first particle to age
+	 * @param end The index in the live list after the last particle to age
+	 * @param delta The amount of time in milliseconds since the last update
+	 */
+	public void age(int start, int end, int delta) {
+		for (int i=start;i<end;i++) {
+			int slot = live[i];
+			life[slot] -= delta;
+
+			if (life[slot] > 0) {
+				x[slot] += delta * velx[slot];
+				y[slot] += delta * vely[slot];
+			}
+		}
+	}
+
+	/**
+	 * Release the particles whose life has run out and compact the list of
+	 * live particles, keeping the remaining particles in the order they were 
+	 * spawned.
+	 */
+	public void compact() {
+		int alive = 0;
+		for (int i=0;i<count;i++) {
+			int slot = live[i];
+			if (life[slot] > 0) {
+				live[alive++] = slot;
+			} else {
+				free[freeCount++] = slot;
+			}
+		}
+		count = alive;
+	}
+}
@@ -36,8 +36,13 @@ public class ParticleSystem {
 	/** The default number of particles in the system */
 	private static final int DEFAULT_PARTICLES = 100;
 
+	/** The number of particles from a buffer updated by each task in a parallel update */
+	private static final int PARALLEL_CHUNK = 2048;
+
 	/** List of emitters to be removed */
 	private ArrayList removeMe = new ArrayList();
+	/** The emitters being updated this frame, reused to avoid copying the list each frame */
+	private ArrayList updating = new ArrayList();
 	
 	/**
 	 * Set the path from which images should be loaded
@@ -102,6 +107,10 @@ public class ParticleSystem {
 	 * each emitter
 	 */
 	protected HashMap particlesByEmitter = new HashMap();
+	/** A map from emitter to the buffer holding its particles when particle arrays are in use */
+	private HashMap buffersByEmitter = new HashMap();
+	/** True if bulk emitters should have their particles stored in arrays */
+	private boolean useArrays;
 	/** The maximum number of particles allows per emitter */
 	protected int maxParticlesPerEmitter;
 	
@@ -131,6 +140,20 @@ public class ParticleSystem {
 	private String defaultImageName;
 	/** The mask used to make the particle image background transparent if any */
 	private Color mask;
+	/** The colour used to filter particles drawn from buffers */
+	private Color filter = new Color(1,1,1,1f);
+	/** True if the particles of each emitter should be drawn in batches */
+	private boolean batchRendering;
+	/** The batch of quads being built for the emitter being rendered */
+	private ParticleBatch quads;
+	/** The batch of points being built for the emitter being rendered */
+	private ParticleBatch points;
+	/** The size of the points in the current batch of points */
+	private float pointSize;
+	/** The pool of threads used to update particles in parallel, null if updating on the calling thread */
+	private ParticleUpdatePool updatePool;
+	/** The tasks used to update the particles in parallel */
+	private UpdateTask[] tasks = new UpdateTask[0];
 	
 	/**
 	 * Create a new particle system
@@ -159,6 +182,11 @@ public class ParticleSystem {
 			ParticlePool pool = (ParticlePool) pools.next();
 			pool.reset(this);
 		}
+		Iterator buffers = buffersByEmitter.values().iterator();
+		while (buffers.hasNext()) {
+			ParticleBuffer buffer = (ParticleBuffer) buffers.next();
+			buffer.clear();
+		}
 		
 		for (int i=0;i<emitters.size();i++) {
 			ParticleEmitter emitter = (ParticleEmitter) emitters.get(i);
@@ -213,6 +241,94 @@ public class ParticleSystem {
 		return usePoints;
 	}
 
+	/**
+	 * Indicate if particles of emitters implementing BulkParticleEmitter should
+	 * be stored in packed arrays and updated in bulk rather than as individual
+	 * Particle objects. Other emitters continue to use particle objects. Changing 
+	 * this setting releases any particles currently in use.
+	 * 
+	 * @param useArrays True if particles should be stored in arrays where possible
+	 */
+	public void setUseParticleArrays(boolean useArrays) {
+		if (this.useArrays == useArrays) {
+			return;
+		}
+		
+		this.useArrays = useArrays;
+		particlesByEmitter.clear();
+		buffersByEmitter.clear();
+		for (int i=0;i<emitters.size();i++) {
+			createStorage((ParticleEmitter) emitters.get(i));
+		}
+	}
+	
+	/**
+	 * Check if particles of bulk emitters are being stored in arrays
+	 * 
+	 * @return True if particles of bulk emitters are being stored in arrays
+	 */
+	public boolean isUsingParticleArrays() {
+		return useArrays;
+	}
+
+	/**
+	 * Indicate if the particles of each emitter should be rendered in batches. In
+	 * this mode the geometry for every particle of an emitter is calculated up front 
+	 * and passed to the renderer as a single set of vertex arrays rather than 
+	 * drawing each particle individually. Points are batched while they share 
+	 * the same size.
+	 * 
+	 * @param batchRendering True if particles should be rendered in batches
+	 */
+	public void setUseBatchRendering(boolean batchRendering) {
+		this.batchRendering = batchRendering;
+		if (batchRendering && (quads == null)) {
+			quads = new ParticleBatch();
+			points = new ParticleBatch();
+		}
+	}
+	
+	/**
+	 * Check if the particles of each emitter are being rendered in batches
+	 * 
+	 * @return True if particles are being rendered in batches
+	 */
+	public boolean isUsingBatchRendering() {
+		return batchRendering;
+	}
+
+	/**
+	 * Indicate if particles should be updated in parallel using the shared 
+	 * ParticleUpdatePool. Emitters are still updated on the calling thread, but 
+	 * the particles of different emitters and ranges of the particles held in
+	 * buffers are updated at the same time on different threads. Emitters must
+	 * not share state between each other when this is enabled.
+	 * 
+	 * @param parallel True if the particles should be updated in parallel
+	 */
+	public void setUseParallelUpdate(boolean parallel) {
+		setUpdatePool(parallel ? ParticleUpdatePool.getDefault() : null);
+	}
+	
+	/**
+	 * Set the pool of threads used to update particles in parallel
+	 * 
+	 * @param pool The pool of threads to use or null to update particles on 
+	 * the thread calling update()
+	 */
+	public void setUpdatePool(ParticleUpdatePool pool) {
+		updatePool = pool;
+	}
+	
+	/**
+	 * Check if particles are being updated in parallel
+	 * 
+	 * @return True if particles are being updated in parallel
+	 */
+	public boolean isUsingParallelUpdate() {
+		return updatePool != null;
+	}
+
 	/**
 	 * Create a new particle system
 	 * 
@@ -318,9 +434,21 @@ public class ParticleSystem {
 	 */
 	public void addEmitter(ParticleEmitter emitter) {
 		emitters.add(emitter);
-		
-		ParticlePool pool= new ParticlePool( this, maxParticlesPerEmitter );
-		particlesByEmitter.put( emitter, pool );
+		createStorage(emitter);
+	}
+	
+	/**
+	 * Create the pool or buffer that will hold the particles for an emitter
+	 * 
+	 * @param emitter The emitter whose particles will be held
+	 */
+	private void createStorage(ParticleEmitter emitter) {
+		if (useArrays && (emitter instanceof BulkParticleEmitter)) {
+			buffersByEmitter.put(emitter, new ParticleBuffer(maxParticlesPerEmitter));
+		} else {
+			ParticlePool pool= new ParticlePool( this, maxParticlesPerEmitter );
+			particlesByEmitter.put( emitter, pool );
+		}
 	}
 	
 	/**
@@ -331,6 +459,7 @@ public class ParticleSystem {
 	public void removeEmitter(ParticleEmitter emitter) {
 		emitters.remove(emitter);
 		particlesByEmitter.remove(emitter);
+		buffersByEmitter.remove(emitter);
 	}
 	
 	/**
@@ -420,25 +549,10 @@ public class ParticleSystem {
 				GL.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE);
 			}
 			
-			// now get the particle pool for this emitter and render all particles that are in use
-			ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
-			Image image = emitter.getImage();
-			if (image == null) {
-				image = this.sprite;
-			}
-			
-			if (!emitter.isOriented() && !emitter.usePoints(this)) {
-				image.startUse();
-			}
-			
-			for (int i = 0; i < pool.particles.length; i++)
-			{
-				if (pool.particles[i].inUse())
-					pool.particles[i].render();
-			} 
-			
-			if (!emitter.isOriented() && !emitter.usePoints(this)) {
-				image.endUse();
+			if (batchRendering) {
+				renderBatched(emitter);
+			} else {
+				renderIndividually(emitter);
 			}
 
 			// reset additive blend mode
@@ -458,6 +572,185 @@ public class ParticleSystem {
 		GL.glTranslatef(-x,-y,0);
 	}
 	
+	/**
+	 * Get the image used to draw the particles of an emitter
+	 * 
+	 * @param emitter The emitter whose particles are being drawn
+	 * @return The image to draw for each particle
+	 */
+	private Image getParticleImage(ParticleEmitter emitter) {
+		Image image = emitter.getImage();
+		if (image == null) {
+			image = this.sprite;
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Render the particles of an emitter one at a time
+	 * 
+	 * @param emitter The emitter whose particles should be rendered
+	 */
+	private void renderIndividually(ParticleEmitter emitter) {
+		// now get the particle pool for this emitter and render all particles that are in use
+		Image image = getParticleImage(emitter);
+		
+		if (!emitter.isOriented() && !emitter.usePoints(this)) {
+			image.startUse();
+		}
+		
+		ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+		if (buffer != null) {
+			renderBuffer(emitter, buffer, image);
+		} else {
+			ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+			for (int i = 0; i < pool.particles.length; i++)
+			{
+				if (pool.particles[i].inUse())
+					pool.particles[i].render();
+			} 
+		}
+		
+		if (!emitter.isOriented() && !emitter.usePoints(this)) {
+			image.endUse();
+		}
+	}
+	
+	/**
+	 * Render the particles of an emitter by building their geometry on the CPU
+	 * and drawing it with a single call for the quads and a call for each size
+	 * of point.
+	 * 
+	 * @param emitter The emitter whose particles should be rendered
+	 */
+	private void renderBatched(ParticleEmitter emitter) {
+		Image image = getParticleImage(emitter);
+		quads.setImage(image);
+		
+		ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+		if (buffer != null) {
+			boolean usePoints = emitter.usePoints(this);
+			boolean oriented = emitter.isOriented();
+			int[] live = buffer.live;
+			
+			for (int i=0;i<buffer.getCount();i++) {
+				int p = live[i];
+				if (usePoints) {
+					addPoint(buffer.x[p], buffer.y[p], buffer.size[p], 
+							 buffer.r[p], buffer.g[p], buffer.b[p], buffer.a[p]);
+				} else {
+					quads.addQuad(buffer.x[p], buffer.y[p], buffer.size[p], buffer.scaleY[p], oriented, 
+								  buffer.r[p], buffer.g[p], buffer.b[p], buffer.a[p]);
+				}
+			}
+		} else {
+			ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+			for (int i=0;i<pool.particles.length;i++) {
+				Particle particle = pool.particles[i];
+				if (!particle.inUse()) {
+					continue;
+				}
+				
+				Color col = particle.color;
+				if ((usePoints() && (particle.usePoints == Particle.INHERIT_POINTS))
+						|| (particle.usePoints == Particle.USE_POINTS)) {
+					addPoint(particle.x, particle.y, particle.size, col.r, col.g, col.b, col.a);
+				} else {
+					quads.addQuad(particle.x, particle.y, particle.size, particle.scaleY, particle.oriented,
+								  col.r, col.g, col.b, col.a);
+				}
+			}
+		}
+		
+		if (quads.getCount() > 0) {
+			image.getTexture().bind();
+			quads.flush(GL, SGL.GL_QUADS);
+		}
+		flushPoints();
+	}
+	
+	/**
+	 * Add a point to the batch of points being built, drawing the current 
+	 * batch if the point is a different size
+	 * 
+	 * @param px The x coordinate of the point
+	 * @param py The y coordinate of the point
+	 * @param size The size of the particle the point represents
+	 * @param r The red component of the point's colour
+	 * @param g The green component of the point's colour
+	 * @param b The blue component of the point's colour
+	 * @param a The alpha component of the point's colour
+	 */
+	private void addPoint(float px, float py, float size, float r, float g, float b, float a) {
+		if (pointSize != size / 2) {
+			flushPoints();
+			pointSize = size / 2;
+		}
+		points.addPoint(px, py, r, g, b, a);
+	}
+	
+	/**
+	 * Draw the current batch of points 
+	 */
+	private void flushPoints() {
+		if (points.getCount() > 0) {
+			TextureImpl.bindNone();
+			GL.glEnable(SGL.GL_POINT_SMOOTH);
+			GL.glPointSize(pointSize);
+			points.flush(GL, SGL.GL_POINTS);
+		}
+	}
+	
+	/**
+	 * Render the particles held in a buffer. This matches the rendering of 
+	 * the individual particles in Particle.render()
+	 * 
+	 * @param emitter The emitter that produced the particles
+	 * @param buffer The buffer holding the particles
+	 * @param image The image to draw for each particle
+	 */
+	private void renderBuffer(ParticleEmitter emitter, ParticleBuffer buffer, Image image) {
+		boolean points = emitter.usePoints(this);
+		boolean oriented = emitter.isOriented();
+		int[] live = buffer.live;
+		
+		for (int i=0;i<buffer.getCount();i++) {
+			int p = live[i];
+			float px = buffer.x[p];
+			float py = buffer.y[p];
+			float size = buffer.size[p];
+			
+			if (points) {
+				TextureImpl.bindNone();
+				GL.glEnable(SGL.GL_POINT_SMOOTH);
+				GL.glPointSize(size / 2);
+				GL.glColor4f(buffer.r[p], buffer.g[p], buffer.b[p], buffer.a[p]);
+				GL.glBegin(SGL.GL_POINTS);
+				GL.glVertex2f(px, py);
+				GL.glEnd();
+			} else if (oriented || buffer.scaleY[p] != 1.0f) {
+				GL.glPushMatrix();
+				GL.glTranslatef(px, py, 0f);
+				if (oriented) {
+					float angle = (float) (Math.atan2(py, px) * 180 / Math.PI);
+					GL.glRotatef(angle, 0f, 0f, 1.0f);
+				}
+				GL.glScalef(1.0f, buffer.scaleY[p], 1.0f);
+				
+				filter.r = buffer.r[p];
+				filter.g = buffer.g[p];
+				filter.b = buffer.b[p];
+				filter.a = buffer.a[p];
+				image.draw((int) (-(size / 2)), (int) (-(size / 2)), (int) size, (int) size, filter);
+				GL.glPopMatrix();
+			} else {
+				GL.glColor4f(buffer.r[p], buffer.g[p], buffer.b[p], buffer.a[p]);
+				image.drawEmbedded((int) (px - (size / 2)), (int) (py - (size / 2)), (int) size, (int) size);
+			}
+		}
+	}
+	
 	/**
 	 * Load the system particle image as the extension permissions
 	 */
@@ -490,23 +783,33 @@ public class ParticleSystem {
 		}
 		
 		removeMe.clear();
-		ArrayList emitters = new ArrayList(this.emitters);
+		updating.clear();
 		for (int i=0;i<emitters.size();i++) {
-			ParticleEmitter emitter = (ParticleEmitter) emitters.get(i);
+			updating.add(emitters.get(i));
+		}
+		for (int i=0;i<updating.size();i++) {
+			ParticleEmitter emitter = (ParticleEmitter) updating.get(i);
 			if (emitter.isEnabled()) {
 				emitter.update(this, delta);
 				if (removeCompletedEmitters) {
 					if (emitter.completed()) {
 						removeMe.add(emitter);
 						particlesByEmitter.remove(emitter);
+						buffersByEmitter.remove(emitter);
 					}
 				}
 			}
 		}
 		this.emitters.removeAll(removeMe);
+		updating.clear();
 		
 		pCount = 0;
 		
+		if (updatePool != null) {
+			updateParallel(delta);
+			return;
+		}
+		
 		if (!particlesByEmitter.isEmpty())
 		{
 			Iterator it= particlesByEmitter.keySet().iterator();
@@ -515,17 +818,164 @@ public class ParticleSystem {
 				ParticleEmitter emitter = (ParticleEmitter) it.next();
 				if (emitter.isEnabled()) {
 					ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
-					for (int i=0;i<pool.particles.length;i++) {
-						if (pool.particles[i].life > 0) {
-							pool.particles[i].update(delta);
-							pCount++;
-						}
+					pCount += updatePool(pool, delta);
+				}
+			}
+		}
+		
+		if (!buffersByEmitter.isEmpty())
+		{
+			Iterator it = buffersByEmitter.keySet().iterator();
+			while (it.hasNext())
+			{
+				BulkParticleEmitter emitter = (BulkParticleEmitter) it.next();
+				if (emitter.isEnabled()) {
+					ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+					if (buffer.getCount() > 0) {
+						pCount += buffer.getCount();
+						emitter.updateParticles(buffer, 0, buffer.getCount(), delta);
+						buffer.update(delta);
 					}
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Update the particles in a pool
+	 * 
+	 * @param pool The pool holding the particles to update
+	 * @param delta The amount of time thats passed since last update in milliseconds
+	 * @return The number of particles updated
+	 */
+	private int updatePool(ParticlePool pool, int delta) {
+		int count = 0;
+		for (int i=0;i<pool.particles.length;i++) {
+			if (pool.particles[i].life > 0) {
+				pool.particles[i].update(delta);
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Update the particles using the pool of threads. Each pool of particles is
+	 * updated as a single task while buffers are split into ranges.
+	 * 
+	 * @param delta The amount of time thats passed since last update in milliseconds
+	 */
+	private void updateParallel(int delta) {
+		int taskCount = 0;
+		
+		Iterator it = particlesByEmitter.keySet().iterator();
+		while (it.hasNext()) {
+			ParticleEmitter emitter = (ParticleEmitter) it.next();
+			if (emitter.isEnabled()) {
+				UpdateTask task = getTask(taskCount++);
+				task.pool = (ParticlePool) particlesByEmitter.get(emitter);
+				task.delta = delta;
+			}
+		}
+		
+		it = buffersByEmitter.keySet().iterator();
+		while (it.hasNext()) {
+			BulkParticleEmitter emitter = (BulkParticleEmitter) it.next();
+			if (emitter.isEnabled()) {
+				ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+				int count = buffer.getCount();
+				pCount += count;
+				
+				for (int start=0;start<count;start+=PARALLEL_CHUNK) {
+					UpdateTask task = getTask(taskCount++);
+					task.emitter = emitter;
+					task.buffer = buffer;
+					task.start = start;
+					task.end = Math.min(count, start + PARALLEL_CHUNK);
+					task.delta = delta;
+				}
+			}
+		}
+		
+		try {
+			updatePool.run(tasks, taskCount);
+		} finally {
+			for (int i=0;i<taskCount;i++) {
+				UpdateTask task = tasks[i];
+				if ((task.buffer != null) && (task.start == 0)) {
+					task.buffer.compact();
+				}
+				pCount += task.updated;
+				task.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Get the task at a given index, creating it if required
+	 * 
+	 * @param index The index of the task to retrieve
+	 * @return The task at the given index
+	 */
+	private UpdateTask getTask(int index) {
+		if (index >= tasks.length) {
+			UpdateTask[] newTasks = new UpdateTask[Math.max(8, tasks.length * 2)];
+			System.arraycopy(tasks, 0, newTasks, 0, tasks.length);
+			for (int i=tasks.length;i<newTasks.length;i++) {
+				newTasks[i] = new UpdateTask();
+			}
+			tasks = newTasks;
+		}
+		
+		return tasks[index];
+	}
+	
+	/**
+	 * A single unit of work in a parallel update, either a whole pool of particles
+	 * or a range of the particles held in a buffer
+	 * 
+	 * @author kevin
+	 */
+	private class UpdateTask implements Runnable {
+		/** The pool of particles to update, or null if updating a buffer */
+		private ParticlePool pool;
+		/** The emitter that owns the buffer being updated */
+		private BulkParticleEmitter emitter;
+		/** The buffer of particles to update, or null if updating a pool */
+		private ParticleBuffer buffer;
+		/** The index in the buffer's live list of the first particle to update */
+		private int start;
+		/** The index in the buffer's live list after the last particle to update */
+		private int end;
+		/** The amount of time thats passed since last update in milliseconds */
+		private int delta;
+		/** The number of particles from the pool that were updated */
+		private int updated;
+		
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			if (pool != null) {
+				updated = updatePool(pool, delta);
+			} else {
+				emitter.updateParticles(buffer, start, end, delta);
+				buffer.age(start, end, delta);
+			}
+		}
+		
+		/**
+		 * Clear the task so it holds no references once the update is complete
+		 */
+		public void clear() {
+			pool = null;
+			emitter = null;
+			buffer = null;
+			updated = 0;
+		}
+	}
+	
 	/**
 	 * Get the number of particles in use in this system
 	 * 
@@ -546,6 +996,10 @@ public class ParticleSystem {
 	public Particle getNewParticle(ParticleEmitter emitter, float life)
 	{
 		ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+		if (pool == null) {
+			Log.warn("Particles for this emitter are held in a buffer, use getNewParticleIndex()");
+			return dummy;
+		}
 		ArrayList available = pool.available;
 		if (available.size() > 0)
 		{
@@ -560,6 +1014,37 @@ public class ParticleSystem {
 		return dummy;
 	}
 	
+	/**
+	 * Get the buffer holding the particles of an emitter when particle arrays
+	 * are in use.
+	 * 
+	 * @param emitter The emitter whose particles are required
+	 * @return The buffer holding the emitter's particles or null if the emitter
+	 * uses particle objects
+	 */
+	public ParticleBuffer getParticleBuffer(ParticleEmitter emitter) {
+		return (ParticleBuffer) buffersByEmitter.get(emitter);
+	}
+	
+	/**
+	 * Get a new particle from the buffer of the given emitter. This should be used 
+	 * by bulk emitters to request particles when particle arrays are in use.
+	 * 
+	 * @param emitter The emitter requesting the particle
+	 * @param life The time the new particle should live for
+	 * @return The slot of the new particle in the emitter's buffer or -1 if 
+	 * no more particles are available
+	 */
+	public int getNewParticleIndex(ParticleEmitter emitter, float life) {
+		ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+		int index = buffer.spawn(life);
+		if (index < 0) {
+			Log.warn("Ran out of particles (increase the limit)!");
+		}
+		
+		return index;
+	}
+	
 	/**
 	 * Release a particle back to the system once it has expired
 	 * 
@@ -579,6 +1064,11 @@ public class ParticleSystem {
 	 * @param emitter The emitter owning the particles that should be released
 	 */
 	public void releaseAll(ParticleEmitter emitter) {
+		ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+		if (buffer != null) {
+			buffer.clear();
+		}
+		
 		if( !particlesByEmitter.isEmpty() )
 		{
 			Iterator it= particlesByEmitter.values().iterator();
@@ -605,6 +1095,12 @@ public class ParticleSystem {
 	 * @param y The amount on the y axis to move the particles
 	 */
 	public void moveAll(ParticleEmitter emitter, float x, float y) {
+		ParticleBuffer buffer = (ParticleBuffer) buffersByEmitter.get(emitter);
+		if (buffer != null) {
+			buffer.move(x, y);
+			return;
+		}
+		
 		ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
 		for (int i=0;i<pool.particles.length;i++) {
 			if (pool.particles[i].inUse()) {
@@ -636,6 +1132,9 @@ public class ParticleSystem {
 			ParticleIO.saveConfiguredSystem(bout, this);
 			ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
 			theCopy = ParticleIO.loadConfiguredSystem(bin);
+			theCopy.setUseParticleArrays(useArrays);
+			theCopy.setUseBatchRendering(batchRendering);
+			theCopy.setUpdatePool(updatePool);
 		} catch (IOException e) {
 			Log.error("Failed to duplicate particle system");
 			throw new SlickException("Unable to duplicated particle system", e);
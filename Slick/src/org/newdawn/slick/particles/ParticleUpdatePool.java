@@ -0,0 +1,211 @@
+package org.newdawn.slick.particles;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * A set of worker threads used to update particles in parallel. The thread
+ * requesting the update takes part in the work and is blocked until every task
+ * given has been run. A single pool is shared by all particle systems using
+ * parallel updates unless one is explicitly supplied.
+ *
+ * @see ParticleSystem#setUseParallelUpdate(boolean)
+ * @author kevin
+ */
+public class ParticleUpdatePool {
+	/** The pool shared by particle systems by default */
+	private static ParticleUpdatePool defaultPool;
+	
+	/**
+	 * Get the pool shared by particle systems, creating it if required. The 
+	 * shared pool has a worker for each available processor other than the one
+	 * running the game thread.
+	 * 
+	 * @return The shared pool
+	 */
+	public static synchronized ParticleUpdatePool getDefault() {
+		if (defaultPool == null) {
+			defaultPool = new ParticleUpdatePool(Runtime.getRuntime().availableProcessors() - 1);
+		}
+		
+		return defaultPool;
+	}
+	
+	/** The worker threads running tasks */
+	private Thread[] workers;
+	/** The lock controlling access to the tasks being run */
+	private Object lock = new Object();
+	/** The tasks currently being run */
+	private Runnable[] tasks;
+	/** The number of tasks being run */
+	private int taskCount;
+	/** The index of the next task to be taken */
+	private int next;
+	/** The number of tasks that have not yet completed */
+	private int remaining;
+	/** The first failure thrown by a task in the current run */
+	private Throwable failure;
+	/** True if the pool has been shutdown */
+	private boolean shutdown;
+	
+	/**
+	 * Create a new pool
+	 * 
+	 * @param threads The number of worker threads to create. With no workers
+	 * all tasks are run by the calling thread.
+	 */
+	public ParticleUpdatePool(int threads) {
+		workers = new Thread[Math.max(0, threads)];
+		for (int i=0;i<workers.length;i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+	}
+	
+	/**
+	 * Get the number of worker threads in this pool
+	 * 
+	 * @return The number of worker threads in this pool
+	 */
+	public int getThreadCount() {
+		return workers.length;
+	}
+	
+	/**
+	 * Run a set of tasks and wait for all of them to complete. If any task 
+	 * fails the first exception or error thrown is rethrown once all tasks have
+	 * finished.
+	 * 
+	 * @param tasks The tasks to run
+	 * @param count The number of tasks from the start of the array to run
+	 */
+	public synchronized void run(Runnable[] tasks, int count) {
+		if ((workers.length == 0) || (count <= 1)) {
+			for (int i=0;i<count;i++) {
+				tasks[i].run();
+			}
+			return;
+		}
+		
+		synchronized (lock) {
+			if (shutdown) {
+				throw new IllegalStateException("ParticleUpdatePool has been shutdown");
+			}
+			this.tasks = tasks;
+			this.taskCount = count;
+			this.next = 0;
+			this.remaining = count;
+			this.failure = null;
+			lock.notifyAll();
+		}
+		
+		while (runNextTask()) {
+		}
+		
+		Throwable failed;
+		synchronized (lock) {
+			while (remaining > 0) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					// keep waiting, the tasks refer to state owned by the caller
+				}
+			}
+			this.tasks = null;
+			failed = failure;
+		}
+		
+		if (failed instanceof Error) {
+			throw (Error) failed;
+		}
+		if (failed instanceof RuntimeException) {
+			throw (RuntimeException) failed;
+		}
+		if (failed != null) {
+			throw new RuntimeException(failed);
+		}
+	}
+	
+	/**
+	 * Take the next task waiting and run it
+	 * 
+	 * @return True if a task was run, false if there were none waiting
+	 */
+	private boolean runNextTask() {
+		Runnable task;
+		synchronized (lock) {
+			if ((tasks == null) || (next >= taskCount)) {
+				return false;
+			}
+			task = tasks[next++];
+		}
+		
+		Throwable failed = null;
+		try {
+			task.run();
+		} catch (Throwable e) {
+			failed = e;
+		} finally {
+			// always count the task off, otherwise the caller waits forever
+			synchronized (lock) {
+				if ((failed != null) && (failure == null)) {
+					failure = failed;
+				}
+				remaining--;
+				if (remaining == 0) {
+					lock.notifyAll();
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Shutdown the worker threads in this pool
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * A worker thread running tasks given to the pool
+	 * 
+	 * @author kevin
+	 */
+	private class Worker extends Thread {
+		/**
+		 * Create a new worker
+		 * 
+		 * @param index The index of the worker, used to name the thread
+		 */
+		public Worker(int index) {
+			super("ParticleUpdatePool-"+index);
+			setDaemon(true);
+		}
+		
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (true) {
+				synchronized (lock) {
+					while (((tasks == null) || (next >= taskCount)) && !shutdown) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							Log.warn("Particle update worker interrupted");
+							return;
+						}
+					}
+					if (shutdown) {
+						return;
+					}
+				}
+				
+				runNextTask();
+			}
+		}
+	}
+}
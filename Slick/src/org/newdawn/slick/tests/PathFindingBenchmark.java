@@ -0,0 +1,242 @@
+package org.newdawn.slick.tests;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.tiled.TiledMap;
+import org.newdawn.slick.util.ResourceLoader;
+import org.newdawn.slick.util.pathfinding.AStarPathFinder;
+import org.newdawn.slick.util.pathfinding.IndexedAStarPathFinder;
+import org.newdawn.slick.util.pathfinding.JumpPointPathFinder;
+import org.newdawn.slick.util.pathfinding.Path;
+import org.newdawn.slick.util.pathfinding.PathFinder;
+import org.newdawn.slick.util.pathfinding.PathFindingContext;
+import org.newdawn.slick.util.pathfinding.UniformCostMap;
+
+/**
+ * A benchmark comparing the path finders on the maps used by the NavMeshTest
+ * and TileMapTest. Each map is also repeated across a larger area to give
+ * longer searches. This doesn't need a display and simply prints its results.
+ *
+ * @author kevin
+ */
+public class PathFindingBenchmark {
+	/** The number of searches timed for each map and path finder */
+	private static final int SEARCHES = 100;
+	/** The maximum search distance given to the path finders */
+	private static final int MAX_SEARCH = 500;
+
+	/**
+	 * Run the benchmark over a map
+	 *
+	 * @param name The name of the map to report
+	 * @param map The map to search
+	 * @param diagonal True if diaganol movement should be allowed
+	 */
+	private static void benchmark(String name, BlockedMap map, boolean diagonal) {
+		System.out.println(name+" ("+map.getWidthInTiles()+"x"+map.getHeightInTiles()+
+						   (diagonal ? ", diagonal" : ", no diagonal")+")");
+
+		int[] queries = new int[SEARCHES * 4];
+		Random random = new Random(12345);
+		for (int i=0;i<SEARCHES;i++) {
+			queries[i*4] = random.nextInt(map.getWidthInTiles());
+			queries[(i*4)+1] = random.nextInt(map.getHeightInTiles());
+			queries[(i*4)+2] = random.nextInt(map.getWidthInTiles());
+			queries[(i*4)+3] = random.nextInt(map.getHeightInTiles());
+		}
+
+		run("AStarPathFinder", new AStarPathFinder(map, MAX_SEARCH, diagonal), map, queries);
+		run("IndexedAStarPathFinder", new IndexedAStarPathFinder(map, MAX_SEARCH, diagonal), map, queries);
+		run("JumpPointPathFinder", new JumpPointPathFinder(map, MAX_SEARCH, diagonal), map, queries);
+		System.out.println();
+	}
+
+	/**
+	 * Time a single path finder over a set of queries
+	 *
+	 * @param name The name of the path finder to report
+	 * @param finder The path finder to time
+	 * @param map The map being searched
+	 * @param queries The start and target coordinates of each search
+	 */
+	private static void run(String name, PathFinder finder, BlockedMap map, int[] queries) {
+		// warm up
+		for (int i=0;i<queries.length / 4;i++) {
+			finder.findPath(null, queries[i*4], queries[(i*4)+1], queries[(i*4)+2], queries[(i*4)+3]);
+		}
+
+		map.visited = 0;
+		int found = 0;
+		long steps = 0;
+		long start = System.currentTimeMillis();
+		for (int i=0;i<queries.length / 4;i++) {
+			Path path = finder.findPath(null, queries[i*4], queries[(i*4)+1], queries[(i*4)+2], queries[(i*4)+3]);
+			if (path != null) {
+				found++;
+				steps += path.getLength();
+			}
+		}
+		long time = System.currentTimeMillis() - start;
+
+		System.out.println("  "+name+": "+time+"ms, "+found+" paths, "+steps+" steps, "+map.visited+" tiles visited");
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the application
+	 * @throws Exception Indicates a failure to load the maps
+	 */
+	public static void main(String[] argv) throws Exception {
+		BlockedMap navMap = loadDataMap("testdata/map.dat", 50, 50);
+		BlockedMap tileMap = loadTiledMap("testdata/testmap.tmx");
+
+		for (int d=0;d<2;d++) {
+			boolean diagonal = d == 0;
+			benchmark("map.dat", navMap, diagonal);
+			benchmark("map.dat repeated", navMap.repeat(4, 4), diagonal);
+			benchmark("testmap.tmx", tileMap, diagonal);
+			benchmark("testmap.tmx repeated", tileMap.repeat(4, 4), diagonal);
+		}
+	}
+
+	/**
+	 * Load the raw map used by the NavMeshTest
+	 *
+	 * @param ref The location of the map data
+	 * @param width The width of the map in tiles
+	 * @param height The height of the map in tiles
+	 * @return The map loaded
+	 * @throws IOException Indicates a failure to read the map data
+	 */
+	private static BlockedMap loadDataMap(String ref, int width, int height) throws IOException {
+		byte[] data = new byte[width*height];
+		ResourceLoader.getResourceAsStream(ref).read(data);
+
+		BlockedMap map = new BlockedMap(width, height);
+		for (int x=0;x<width;x++) {
+			for (int y=0;y<height;y++) {
+				map.blocked[x][y] = data[x+(y*width)] != 0;
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Load the TilED map used by the TileMapTest. The most common tile on the
+	 * first layer, the walls, is considered blocked.
+	 *
+	 * @param ref The location of the map
+	 * @return The map loaded
+	 * @throws SlickException Indicates a failure to read the map
+	 */
+	private static BlockedMap loadTiledMap(String ref) throws SlickException {
+		TiledMap tiled = new TiledMap(ref, false);
+
+		HashMap counts = new HashMap();
+		Integer wall = null;
+		int most = 0;
+		for (int x=0;x<tiled.getWidth();x++) {
+			for (int y=0;y<tiled.getHeight();y++) {
+				Integer id = new Integer(tiled.getTileId(x, y, 0));
+				if (id.intValue() == 0) {
+					continue;
+				}
+				Integer count = (Integer) counts.get(id);
+				int value = count == null ? 1 : count.intValue() + 1;
+				counts.put(id, new Integer(value));
+				if (value > most) {
+					most = value;
+					wall = id;
+				}
+			}
+		}
+
+		BlockedMap map = new BlockedMap(tiled.getWidth(), tiled.getHeight());
+		for (int x=0;x<tiled.getWidth();x++) {
+			for (int y=0;y<tiled.getHeight();y++) {
+				map.blocked[x][y] = new Integer(tiled.getTileId(x, y, 0)).equals(wall);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * A simple uniform cost map for benchmarking
+	 *
+	 * @author kevin
+	 */
+	private static class BlockedMap implements UniformCostMap {
+		/** The blocked state of each tile */
+		private boolean[][] blocked;
+		/** The number of tiles visited by the path finders */
+		private int visited;
+
+		/**
+		 * Create a new empty map
+		 *
+		 * @param width The width of the map in tiles
+		 * @param height The height of the map in tiles
+		 */
+		public BlockedMap(int width, int height) {
+			blocked = new boolean[width][height];
+		}
+
+		/**
+		 * Create a larger map by repeating this one
+		 *
+		 * @param across The number of times to repeat the map across
+		 * @param down The number of times to repeat the map down
+		 * @return The new larger map
+		 */
+		public BlockedMap repeat(int across, int down) {
+			int width = getWidthInTiles();
+			int height = getHeightInTiles();
+			BlockedMap map = new BlockedMap(width * across, height * down);
+			for (int x=0;x<width * across;x++) {
+				for (int y=0;y<height * down;y++) {
+					map.blocked[x][y] = blocked[x % width][y % height];
+				}
+			}
+			return map;
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#blocked(org.newdawn.slick.util.pathfinding.PathFindingContext, int, int)
+		 */
+		public boolean blocked(PathFindingContext context, int tx, int ty) {
+			return blocked[tx][ty];
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getCost(org.newdawn.slick.util.pathfinding.PathFindingContext, int, int)
+		 */
+		public float getCost(PathFindingContext context, int tx, int ty) {
+			return 1;
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getHeightInTiles()
+		 */
+		public int getHeightInTiles() {
+			return blocked[0].length;
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getWidthInTiles()
+		 */
+		public int getWidthInTiles() {
+			return blocked.length;
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#pathFinderVisited(int, int)
+		 */
+		public void pathFinderVisited(int x, int y) {
+			visited++;
+		}
+	}
+}
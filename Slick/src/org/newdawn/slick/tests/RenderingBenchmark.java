@@ -0,0 +1,217 @@
+package org.newdawn.slick.tests;
+
+import java.awt.Font;
+
+import org.newdawn.slick.AngelCodeFont;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SpriteBatch;
+import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.font.effects.ColorEffect;
+import org.newdawn.slick.opengl.renderer.RecordingRenderer;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.particles.ParticleIO;
+import org.newdawn.slick.particles.ParticleSystem;
+import org.newdawn.slick.tiled.TiledMap;
+
+/**
+ * A benchmark of the CPU cost of the common rendering paths. Rendering is
+ * done against the RecordingRenderer so no display is needed, and the number
+ * of vertices, draw calls and state changes each path produces per frame is
+ * reported along with the time taken.
+ *
+ * @author kevin
+ */
+public class RenderingBenchmark {
+	/** The number of frames rendered before timing starts */
+	private static final int WARMUP = 200;
+	/** The number of frames timed for each case */
+	private static final int FRAMES = 1000;
+	/** The text drawn by the font cases */
+	private static final String TEXT = "The quick brown fox jumps over the lazy dog 0123456789";
+
+	/** The renderer counting the calls made */
+	private RecordingRenderer renderer;
+	/** The graphics context to render to */
+	private Graphics g;
+
+	/**
+	 * Create a new benchmark
+	 *
+	 * @param renderer The renderer counting the calls made
+	 */
+	public RenderingBenchmark(RecordingRenderer renderer) {
+		this.renderer = renderer;
+
+		g = new Graphics(800, 600);
+	}
+
+	/**
+	 * Run all the cases
+	 *
+	 * @throws Exception Indicates a failure to load the test data
+	 */
+	public void run() throws Exception {
+		run("Graphics primitives", new Case() {
+			public void render() {
+				for (int i=0;i<50;i++) {
+					g.setColor(i % 2 == 0 ? Color.red : Color.blue);
+					g.fillRect(i * 10, i * 5, 40, 30);
+					g.drawLine(0, i * 10, 800, 600 - (i * 10));
+					g.drawOval(i * 12, 100, 40, 60);
+					g.fillRoundRect(i * 12, 300, 40, 40, 8);
+				}
+			}
+		});
+
+		final Image rocket = new Image("testdata/rocket.png");
+		final Image logo = new Image("testdata/logo.png");
+		run("Image.draw", new Case() {
+			public void render() {
+				drawImages(rocket, logo);
+			}
+		});
+
+		final SpriteBatch batch = new SpriteBatch();
+		run("Image.draw in SpriteBatch", new Case() {
+			public void render() {
+				batch.begin(true);
+				drawImages(rocket, logo);
+				batch.end();
+			}
+		});
+
+		final TiledMap map = new TiledMap("testdata/testmap.tmx");
+		run("TiledMap.render", new Case() {
+			public void render() {
+				map.render(0, 0);
+			}
+		});
+
+		final TiledMap cachedMap = new TiledMap("testdata/testmap.tmx");
+		cachedMap.setLayerCaching(true);
+		run("TiledMap.render with layer caching", new Case() {
+			public void render() {
+				cachedMap.render(0, 0);
+			}
+		});
+
+		final ParticleSystem particles = ParticleIO.loadConfiguredSystem("testdata/system.xml");
+		for (int i=0;i<100;i++) {
+			particles.update(20);
+		}
+		run("ParticleSystem.render", new Case() {
+			public void render() {
+				particles.render(400, 300);
+			}
+		});
+
+		final AngelCodeFont angelCodeFont = new AngelCodeFont("testdata/hiero.fnt", "testdata/hiero.png");
+		run("AngelCodeFont.drawString", new Case() {
+			public void render() {
+				for (int i=0;i<20;i++) {
+					angelCodeFont.drawString(10, i * 30, TEXT);
+				}
+			}
+		});
+
+		final UnicodeFont unicodeFont = new UnicodeFont(new Font("SansSerif", Font.PLAIN, 24));
+		unicodeFont.addAsciiGlyphs();
+		unicodeFont.getEffects().add(new ColorEffect(java.awt.Color.white));
+		unicodeFont.loadGlyphs();
+		run("UnicodeFont.drawString", new Case() {
+			public void render() {
+				for (int i=0;i<20;i++) {
+					unicodeFont.drawString(10, i * 30, TEXT);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Draw a set of images in a mix of ways, alternating between two textures
+	 *
+	 * @param first The first image to draw
+	 * @param second The second image to draw
+	 */
+	private void drawImages(Image first, Image second) {
+		for (int i=0;i<200;i++) {
+			Image image = i % 2 == 0 ? first : second;
+			switch (i % 4) {
+				case 0:
+					image.draw(i * 4, i * 3);
+					break;
+				case 1:
+					image.draw(i * 4, i * 3, 0.5f);
+					break;
+				case 2:
+					image.draw(i * 4, i * 3, Color.red);
+					break;
+				default:
+					image.draw(i * 4, i * 3, 32, 32);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Time a single case and report the calls it made
+	 *
+	 * @param name The name of the case to report
+	 * @param test The case to time
+	 */
+	private void run(String name, Case test) {
+		for (int i=0;i<WARMUP;i++) {
+			test.render();
+		}
+
+		renderer.resetCounters();
+		long start = System.currentTimeMillis();
+		for (int i=0;i<FRAMES;i++) {
+			test.render();
+		}
+		long time = System.currentTimeMillis() - start;
+
+		StringBuffer counts = new StringBuffer();
+		for (int i=0;i<RecordingRenderer.COUNTERS;i++) {
+			if (i > 0) {
+				counts.append(", ");
+			}
+			counts.append(RecordingRenderer.getCounterName(i)+"="+(renderer.getCount(i) / FRAMES));
+		}
+
+		System.out.println(name+": "+(((float) time) / FRAMES)+"ms per frame");
+		System.out.println("  per frame: "+counts);
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the application
+	 * @throws Exception Indicates a failure to load the test data
+	 */
+	public static void main(String[] argv) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+
+		// the renderer has to be in place before any rendering class is loaded
+		RecordingRenderer renderer = new RecordingRenderer();
+		Renderer.setRenderer(renderer);
+		// the default line strip renderer was created against the old renderer
+		Renderer.setLineStripRenderer(Renderer.DEFAULT_LINE_STRIP_RENDERER);
+
+		new RenderingBenchmark(renderer).run();
+	}
+
+	/**
+	 * A single piece of rendering to be timed
+	 *
+	 * @author kevin
+	 */
+	private interface Case {
+		/**
+		 * Render a single frame
+		 */
+		public void render();
+	}
+}
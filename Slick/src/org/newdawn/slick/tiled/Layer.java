@@ -2,6 +2,8 @@ package org.newdawn.slick.tiled;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
 import java.util.Properties;
 import java.util.zip.GZIPInputStream;
 
@@ -44,6 +46,13 @@ public class Layer {
 	public String name;
 	/** The tile data representing this data, index 0 = tileset, index 1 = tile id */
 	public int[][][] data;
+	/** 
+	 * The global tile IDs of this layer row by row when the layer is stored 
+	 * compactly, in which case data is null
+	 * 
+	 * @see TiledMap#setCompactLayerStorage(boolean) 
+	 */
+	public int[] gids;
 	/** The width of this layer */
 	public int width;
 	/** The height of this layer */
@@ -51,6 +60,28 @@ public class Layer {
 	
 	/** the properties of this layer */
 	public Properties props;
+	/** The cache of this layer's geometry or null if it isn't being cached */
+	public LayerCache cache;
+	
+	/**
+	 * Create a new empty layer
+	 * 
+	 * @param map The map this layer is part of
+	 * @param name The name of the layer
+	 * @param width The width of the layer in tiles
+	 * @param height The height of the layer in tiles
+	 */
+	Layer(TiledMap map, String name, int width, int height) {
+		this.map = map;
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		if (map.compactLayers) {
+			gids = new int[width * height];
+		} else {
+			data = new int[width][height][3];
+		}
+	}
 	
 	/**
 	 * Create a new layer based on the XML definition
@@ -60,11 +91,8 @@ public class Layer {
 	 * @throws SlickException Indicates a failure to parse the XML layer
 	 */
 	public Layer(TiledMap map, Element element) throws SlickException {
-		this.map = map;
-		name = element.getAttribute("name");
-		width = Integer.parseInt(element.getAttribute("width"));
-		height = Integer.parseInt(element.getAttribute("height"));
-		data = new int[width][height][3];
+		this(map, element.getAttribute("name"), Integer.parseInt(element.getAttribute("width")),
+			 Integer.parseInt(element.getAttribute("height")));
 
 		// now read the layer properties
 		Element propsElement = (Element) element.getElementsByTagName("properties").item(0);
@@ -85,37 +113,24 @@ public class Layer {
 		Element dataNode = (Element) element.getElementsByTagName("data").item(0);
 		String encoding = dataNode.getAttribute("encoding");
 		String compression = dataNode.getAttribute("compression");
+		Node cdata = dataNode.getFirstChild();
 		
+		decode(encoding, compression, cdata == null ? new char[0] : cdata.getNodeValue().trim().toCharArray());
+	}
+	
+	/**
+	 * Decode the tile data of this layer as stored in the TilED XML
+	 * 
+	 * @param encoding The encoding of the data
+	 * @param compression The compression applied to the data
+	 * @param enc The encoded data
+	 * @throws SlickException Indicates a failure to decode the data
+	 */
+	void decode(String encoding, String compression, char[] enc) throws SlickException {
 		if (encoding.equals("base64") && compression.equals("gzip")) {
 			try {
-                Node cdata = dataNode.getFirstChild();
-                char[] enc = cdata.getNodeValue().trim().toCharArray();
                 byte[] dec = decodeBase64(enc);
-                GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(dec));
-                
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int tileId = 0;
-                        tileId |= is.read();
-                        tileId |= is.read() <<  8;
-                        tileId |= is.read() << 16;
-                        tileId |= is.read() << 24;
-
-                        if (tileId == 0) {
-	                        data[x][y][0] = -1;
-	                        data[x][y][1] = 0;
-	                        data[x][y][2] = 0;
-                        } else {
-	                        TileSet set = map.findTileSet(tileId);
-
-	                        if (set != null) {
-		                        data[x][y][0] = set.index;
-		                        data[x][y][1] = tileId - set.firstGID;
-	                        }
-	                        data[x][y][2] = tileId;
-                        }
-                    }
-                }
+                readTiles(new GZIPInputStream(new ByteArrayInputStream(dec)));
 			} catch (IOException e) {
 				Log.error(e);
 				throw new SlickException("Unable to decode base 64 block");
@@ -125,6 +140,79 @@ public class Layer {
 		}
 	}
 	
+	/**
+	 * Read the global IDs of every tile in this layer, row by row, each stored
+	 * as a little endian int
+	 * 
+	 * @param in The stream to read the tiles from
+	 * @throws IOException Indicates a failure to read enough tiles from the stream
+	 */
+	void readTiles(InputStream in) throws IOException {
+		byte[] bytes = new byte[width * height * 4];
+		int read = 0;
+		while (read < bytes.length) {
+			int count = in.read(bytes, read, bytes.length - read);
+			if (count < 0) {
+				throw new IOException("Layer data ended after "+(read / 4)+" tiles");
+			}
+			read += count;
+		}
+		
+		int offset = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int tileId = (bytes[offset] & 0xff) | ((bytes[offset+1] & 0xff) << 8) |
+							 ((bytes[offset+2] & 0xff) << 16) | ((bytes[offset+3] & 0xff) << 24);
+				offset += 4;
+				
+				setLoadedTile(x, y, tileId);
+			}
+		}
+	}
+	
+	/**
+	 * Read the global IDs of every tile in this layer, row by row
+	 * 
+	 * @param buffer The buffer to read the tiles from
+	 */
+	void readTiles(IntBuffer buffer) {
+		if (gids != null) {
+			buffer.get(gids);
+			return;
+		}
+		
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				setLoadedTile(x, y, buffer.get());
+			}
+		}
+	}
+	
+	/**
+	 * Store a tile read as the layer is loaded
+	 * 
+	 * @param x The x location of the tile
+	 * @param y The y location of the tile
+	 * @param tileId The global ID of the tile
+	 */
+	private void setLoadedTile(int x, int y, int tileId) {
+        if (gids != null) {
+        	gids[x + (y * width)] = tileId;
+        } else if (tileId == 0) {
+            data[x][y][0] = -1;
+            data[x][y][1] = 0;
+            data[x][y][2] = 0;
+        } else {
+            TileSet set = map.findTileSet(tileId);
+
+            if (set != null) {
+                data[x][y][0] = set.index;
+                data[x][y][1] = tileId - set.firstGID;
+            }
+            data[x][y][2] = tileId;
+        }
+	}
+	
 	/**
 	 * Get the gloal ID of the tile at the specified location in
 	 * this layer
@@ -134,9 +222,47 @@ public class Layer {
 	 * @return The global ID of the tile
 	 */
 	public int getTileID(int x, int y) {
+		if (gids != null) {
+			return gids[x + (y * width)];
+		}
 		return data[x][y][2];
 	}
 	
+	/**
+	 * Get the index of the tileset holding the tile at the specified location 
+	 * in this layer
+	 * 
+	 * @param x The x coorindate of the tile
+	 * @param y The y coorindate of the tile
+	 * @return The index of the tileset or -1 if there is no tile at the location
+	 */
+	public int getTileSetIndex(int x, int y) {
+		if (gids != null) {
+			return map.getTileSetIndex(gids[x + (y * width)]);
+		}
+		return data[x][y][0];
+	}
+	
+	/**
+	 * Get the tileset specific ID of the tile at the specified location in 
+	 * this layer
+	 * 
+	 * @param x The x coorindate of the tile
+	 * @param y The y coorindate of the tile
+	 * @return The ID of the tile within its tileset
+	 */
+	public int getLocalTileID(int x, int y) {
+		if (gids != null) {
+			int gid = gids[x + (y * width)];
+			int tileset = map.getTileSetIndex(gid);
+			if (tileset < 0) {
+				return 0;
+			}
+			return gid - map.getTileSet(tileset).firstGID;
+		}
+		return data[x][y][1];
+	}
+	
 	/**
 	 * Set the global tile ID at a specified location
 	 * 
@@ -145,7 +271,9 @@ public class Layer {
 	 * @param tile The tile value to set
 	 */
 	public void setTileID(int x, int y, int tile) {
-        if (tile == 0) {
+		if (gids != null) {
+			gids[x + (y * width)] = tile;
+		} else if (tile == 0) {
             data[x][y][0] = -1;
             data[x][y][1] = 0;
             data[x][y][2] = 0;
@@ -156,6 +284,10 @@ public class Layer {
             data[x][y][1] = tile - set.firstGID;
             data[x][y][2] = tile;
         }
+        
+        if (cache != null) {
+        	cache.invalidate(x, y);
+        }
 	}
 	
 	/**
@@ -189,14 +321,15 @@ public class Layer {
 					continue;
 				}
 				
-				if (data[sx+tx][sy+ty][0] == tileset) {
+				if (getTileSetIndex(sx+tx, sy+ty) == tileset) {
 					if (set == null) {
 						set = map.getTileSet(tileset);
 						set.tiles.startUse();
 					}
 					
-					int sheetX = set.getTileX(data[sx+tx][sy+ty][1]);
-					int sheetY = set.getTileY(data[sx+tx][sy+ty][1]);
+					int id = getLocalTileID(sx+tx, sy+ty);
+					int sheetX = set.getTileX(id);
+					int sheetY = set.getTileY(id);
 					
 					int tileOffsetY = set.tileHeight - mapTileHeight;
 					
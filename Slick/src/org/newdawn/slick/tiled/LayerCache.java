@@ -0,0 +1,294 @@
+package org.newdawn.slick.tiled;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * A cache of the geometry of a layer. The layer is split into square chunks
+ * of tiles and the quads for each chunk are built once for each tileset and
+ * kept as vertex arrays. Rendering a section of the layer draws each chunk
+ * that overlaps the section with one draw call per tileset used in the chunk,
+ * rather than a quad at a time. Changing a tile only rebuilds the chunk
+ * holding it.
+ *
+ * Chunks are drawn whole, so tiles up to a chunk outside the section
+ * requested may be drawn. Tiles taller than the map's tiles overlap their
+ * neighbours in chunk and tileset order rather than strictly line by line.
+ *
+ * @see TiledMap#setLayerCaching(boolean)
+ * @author kevin
+ */
+public class LayerCache {
+	/** The renderer to use for all GL operations */
+	protected static SGL GL = Renderer.get();
+
+	/** The map the layer belongs to */
+	private TiledMap map;
+	/** The layer being cached */
+	private Layer layer;
+	/** The width and height of each chunk in tiles */
+	private int chunkSize;
+	/** The number of chunks across the layer */
+	private int chunksAcross;
+	/** The number of chunks down the layer */
+	private int chunksDown;
+	/** The chunks of the layer, row by row */
+	private Chunk[] chunks;
+	/** The image of each tile in each tileset, built as they're needed */
+	private Image[][] sprites;
+
+	/**
+	 * Create a new cache of a layer's geometry
+	 *
+	 * @param map The map the layer belongs to
+	 * @param layer The layer to cache
+	 * @param chunkSize The width and height of each chunk in tiles
+	 */
+	public LayerCache(TiledMap map, Layer layer, int chunkSize) {
+		this.map = map;
+		this.layer = layer;
+		this.chunkSize = chunkSize;
+
+		chunksAcross = (layer.width + chunkSize - 1) / chunkSize;
+		chunksDown = (layer.height + chunkSize - 1) / chunkSize;
+		chunks = new Chunk[chunksAcross * chunksDown];
+		for (int i=0;i<chunks.length;i++) {
+			chunks[i] = new Chunk((i % chunksAcross) * chunkSize, (i / chunksAcross) * chunkSize);
+		}
+		sprites = new Image[map.getTileSetCount()][];
+	}
+
+	/**
+	 * Get the width and height of each chunk
+	 *
+	 * @return The width and height of each chunk in tiles
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Notification that a tile has changed, the chunk holding it will be rebuilt
+	 * next time it's drawn
+	 *
+	 * @param x The x location of the tile that changed
+	 * @param y The y location of the tile that changed
+	 */
+	public void invalidate(int x, int y) {
+		chunks[((y / chunkSize) * chunksAcross) + (x / chunkSize)].dirty = true;
+	}
+
+	/**
+	 * Rebuild every chunk next time it's drawn, for instance if the layer's data
+	 * has been changed directly
+	 */
+	public void invalidate() {
+		for (int i=0;i<chunks.length;i++) {
+			chunks[i].dirty = true;
+		}
+	}
+
+	/**
+	 * Render a section of the layer
+	 *
+	 * @param x The x location to render at
+	 * @param y The y location to render at
+	 * @param sx The x tile location to start rendering
+	 * @param sy The y tile location to start rendering
+	 * @param width The number of tiles across to render
+	 * @param height The number of tiles down to render
+	 * @param mapTileWidth the tile width specified in the map file
+	 * @param mapTileHeight the tile height specified in the map file
+	 */
+	public void render(int x, int y, int sx, int sy, int width, int height, int mapTileWidth, int mapTileHeight) {
+		if ((sx + width <= 0) || (sy + height <= 0)) {
+			return;
+		}
+		int startX = Math.max(sx, 0) / chunkSize;
+		int startY = Math.max(sy, 0) / chunkSize;
+		int endX = (Math.min(sx + width, layer.width) - 1) / chunkSize;
+		int endY = (Math.min(sy + height, layer.height) - 1) / chunkSize;
+
+		float offsetX = x - (sx * mapTileWidth);
+		float offsetY = y - (sy * mapTileHeight);
+		GL.glTranslatef(offsetX, offsetY, 0);
+		Color.white.bind();
+
+		for (int cy=startY;cy<=endY;cy++) {
+			for (int cx=startX;cx<=endX;cx++) {
+				Chunk chunk = chunks[(cy * chunksAcross) + cx];
+				if (chunk.dirty) {
+					chunk.build(mapTileWidth, mapTileHeight);
+				}
+
+				for (int tileset=0;tileset<chunk.counts.length;tileset++) {
+					if (chunk.counts[tileset] == 0) {
+						continue;
+					}
+
+					getTexture(tileset).bind();
+					GL.drawArrays(SGL.GL_QUADS, chunk.verts[tileset], chunk.texs[tileset],
+								  chunk.cols[tileset], chunk.counts[tileset]);
+				}
+			}
+		}
+
+		GL.glTranslatef(-offsetX, -offsetY, 0);
+	}
+
+	/**
+	 * Get the image used to draw a tile
+	 *
+	 * @param tileset The index of the tileset holding the tile
+	 * @param id The tileset specific ID of the tile
+	 * @return The image of the tile
+	 */
+	private Image getSprite(int tileset, int id) {
+		TileSet set = map.getTileSet(tileset);
+		if (sprites[tileset] == null) {
+			sprites[tileset] = new Image[set.tilesAcross * set.tilesDown];
+		}
+
+		Image sprite = sprites[tileset][id];
+		if (sprite == null) {
+			sprite = set.tiles.getSprite(set.getTileX(id), set.getTileY(id));
+			sprites[tileset][id] = sprite;
+		}
+		return sprite;
+	}
+
+	/**
+	 * Get the texture holding a tileset's tiles
+	 *
+	 * @param tileset The index of the tileset
+	 * @return The texture holding the tiles
+	 */
+	private Texture getTexture(int tileset) {
+		return getSprite(tileset, 0).getTexture();
+	}
+
+	/**
+	 * A square section of the layer and the geometry built for it
+	 *
+	 * @author kevin
+	 */
+	private class Chunk {
+		/** The x location of the first tile in the chunk */
+		private int x;
+		/** The y location of the first tile in the chunk */
+		private int y;
+		/** True if the chunk needs to be rebuilt before it's drawn */
+		private boolean dirty = true;
+		/** The number of vertices for each tileset */
+		private int[] counts;
+		/** The vertex positions for each tileset */
+		private float[][] verts;
+		/** The texture coordinates for each tileset */
+		private float[][] texs;
+		/** The vertex colours for each tileset */
+		private float[][] cols;
+
+		/**
+		 * Create a new chunk
+		 *
+		 * @param x The x location of the first tile in the chunk
+		 * @param y The y location of the first tile in the chunk
+		 */
+		public Chunk(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Build the geometry for the tiles in this chunk
+		 *
+		 * @param mapTileWidth the tile width specified in the map file
+		 * @param mapTileHeight the tile height specified in the map file
+		 */
+		public void build(int mapTileWidth, int mapTileHeight) {
+			int tilesets = map.getTileSetCount();
+			int endX = Math.min(x + chunkSize, layer.width);
+			int endY = Math.min(y + chunkSize, layer.height);
+
+			int[] quads = new int[tilesets];
+			for (int ty=y;ty<endY;ty++) {
+				for (int tx=x;tx<endX;tx++) {
+					int tileset = layer.getTileSetIndex(tx, ty);
+					if ((tileset >= 0) && (tileset < tilesets)) {
+						quads[tileset]++;
+					}
+				}
+			}
+
+			counts = new int[tilesets];
+			verts = new float[tilesets][];
+			texs = new float[tilesets][];
+			cols = new float[tilesets][];
+			for (int i=0;i<tilesets;i++) {
+				verts[i] = new float[quads[i] * 8];
+				texs[i] = new float[quads[i] * 8];
+				cols[i] = new float[quads[i] * 16];
+				for (int c=0;c<cols[i].length;c++) {
+					cols[i][c] = 1;
+				}
+			}
+
+			for (int ty=y;ty<endY;ty++) {
+				for (int tx=x;tx<endX;tx++) {
+					int tileset = layer.getTileSetIndex(tx, ty);
+					if ((tileset < 0) || (tileset >= tilesets)) {
+						continue;
+					}
+
+					TileSet set = map.getTileSet(tileset);
+					Image sprite = getSprite(tileset, layer.getLocalTileID(tx, ty));
+
+					float left = tx * mapTileWidth;
+					float top = (ty * mapTileHeight) - (set.tileHeight - mapTileHeight);
+					float right = left + set.tileWidth;
+					float bottom = top + set.tileHeight;
+					float u = sprite.getTextureOffsetX();
+					float v = sprite.getTextureOffsetY();
+					float u2 = u + sprite.getTextureWidth();
+					float v2 = v + sprite.getTextureHeight();
+
+					int index = counts[tileset] * 2;
+					put(verts[tileset], index, left, top, left, bottom, right, bottom, right, top);
+					put(texs[tileset], index, u, v, u, v2, u2, v2, u2, v);
+					counts[tileset] += 4;
+				}
+			}
+
+			dirty = false;
+		}
+
+		/**
+		 * Put the four corners of a quad into an array
+		 *
+		 * @param data The array to fill
+		 * @param index The index of the first value to put
+		 * @param x1 The x value of the top left corner
+		 * @param y1 The y value of the top left corner
+		 * @param x2 The x value of the bottom left corner
+		 * @param y2 The y value of the bottom left corner
+		 * @param x3 The x value of the bottom right corner
+		 * @param y3 The y value of the bottom right corner
+		 * @param x4 The x value of the top right corner
+		 * @param y4 The y value of the top right corner
+		 */
+		private void put(float[] data, int index, float x1, float y1, float x2, float y2,
+						 float x3, float y3, float x4, float y4) {
+			data[index] = x1;
+			data[index+1] = y1;
+			data[index+2] = x2;
+			data[index+3] = y2;
+			data[index+4] = x3;
+			data[index+5] = y3;
+			data[index+6] = x4;
+			data[index+7] = y4;
+		}
+	}
+}
@@ -1,13 +1,14 @@
 package org.newdawn.slick.tiled;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Properties;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
@@ -16,9 +17,10 @@ import org.newdawn.slick.util.ResourceLoader;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * This class is intended to parse TilED maps. TilED is a generic tool for tile map editing and can
@@ -44,6 +46,31 @@ public class TiledMap {
 		headless = h;
 	}
 	
+	/** True if maps loaded should store their layers compactly */
+	private static boolean compactLayerStorage;
+	
+	/**
+	 * Indicate whether maps loaded from now on should store their layers 
+	 * compactly. A compact layer holds only the global ID of each tile in a
+	 * single array, the tileset and local ID being looked up from the global
+	 * ID as needed, rather than an array of three values per tile. Large maps 
+	 * take a fraction of the memory but Layer.data isn't available.
+	 * 
+	 * @param compact True if layers should be stored compactly
+	 */
+	public static void setCompactLayerStorage(boolean compact) {
+		compactLayerStorage = compact;
+	}
+	
+	/**
+	 * Check if maps loaded will store their layers compactly
+	 * 
+	 * @return True if layers will be stored compactly
+	 */
+	public static boolean isCompactLayerStorage() {
+		return compactLayerStorage;
+	}
+	
 	/** The width of the map */
 	protected int width;
 	/** The height of the map */
@@ -76,6 +103,12 @@ public class TiledMap {
 
 	/** True if we want to load tilesets - including their image data */
 	private boolean loadTileSets = true;
+	/** The size of the chunks layers are cached in or zero if they aren't cached */
+	private int layerCacheChunkSize;
+	/** True if the layers of this map are stored compactly */
+	boolean compactLayers;
+	/** The index of the tileset holding each global ID, -1 if there isn't one */
+	private int[] tileSetIndices = new int[0];
 	
 	/**
 	 * Create a new tile map based on a given TMX file
@@ -132,6 +165,21 @@ public class TiledMap {
 		load(in, tileSetsLocation);
 	}
 	
+	/**
+	 * Load a tile map whose layer data has been stored separately
+	 * 
+	 * @see TiledMapCache
+	 * @param in The input stream to load the XML from
+	 * @param tileSetsLocation The location at which we can find tileset images
+	 * @param layerData The tiles of layers that have no data in the XML
+	 * @param loadTileSets True if we want to load tilesets - including their image data
+	 * @throws SlickException Indicates a failure to load the tilemap
+	 */
+	TiledMap(InputStream in, String tileSetsLocation, IntBuffer layerData, boolean loadTileSets) throws SlickException {
+		this.loadTileSets = loadTileSets;
+		load(in, tileSetsLocation, layerData);
+	}
+	
 	/**
 	 * Get the location of the tile images specified
 	 * 
@@ -173,12 +221,13 @@ public class TiledMap {
    public Image getTileImage(int x, int y, int layerIndex) {
       Layer layer = (Layer) layers.get(layerIndex);
       
-      int tileSetIndex = layer.data[x][y][0];
+      int tileSetIndex = layer.getTileSetIndex(x, y);
       if ((tileSetIndex >= 0) && (tileSetIndex < tileSets.size())) {
     	  TileSet tileSet = (TileSet) tileSets.get(tileSetIndex);
     	  
-          int sheetX = tileSet.getTileX(layer.data[x][y][1]);
-          int sheetY = tileSet.getTileY(layer.data[x][y][1]);
+          int id = layer.getLocalTileID(x, y);
+          int sheetX = tileSet.getTileX(id);
+          int sheetY = tileSet.getTileY(id);
           
           return tileSet.tiles.getSprite(sheetX, sheetY);
       }
@@ -311,6 +360,44 @@ public class TiledMap {
 		return props.getProperty(propertyName, def);
 	}
 	
+	/**
+	 * Indicate whether the geometry of each layer should be cached. When caching
+	 * orthogonal maps are drawn a chunk of 16x16 tiles at a time, each chunk 
+	 * being a single draw call per tileset, unless they're being rendered line
+	 * by line.
+	 * 
+	 * @see LayerCache
+	 * @param caching True if the layers should be cached
+	 */
+	public void setLayerCaching(boolean caching) {
+		setLayerCaching(caching, 16);
+	}
+	
+	/**
+	 * Indicate whether the geometry of each layer should be cached
+	 * 
+	 * @see LayerCache
+	 * @param caching True if the layers should be cached
+	 * @param chunkSize The width and height in tiles of the chunks cached
+	 */
+	public void setLayerCaching(boolean caching, int chunkSize) {
+		layerCacheChunkSize = caching ? chunkSize : 0;
+		
+		for (int i=0;i<layers.size();i++) {
+			Layer layer = (Layer) layers.get(i);
+			layer.cache = caching ? new LayerCache(this, layer, chunkSize) : null;
+		}
+	}
+	
+	/**
+	 * Check if the geometry of each layer is being cached
+	 * 
+	 * @return True if the layers are being cached
+	 */
+	public boolean isLayerCaching() {
+		return layerCacheChunkSize > 0;
+	}
+	
 	/**
 	 * Render the whole tile map at a given location
 	 * 
@@ -364,6 +451,10 @@ public class TiledMap {
 		
 		switch(orientation){
 		case ORTHOGONAL:
+			if ((layer.cache != null) && (!lineByLine)) {
+				layer.cache.render(x,y,sx,sy,width,height, tileWidth, tileHeight);
+				break;
+			}
 			for (int ty=0;ty<height;ty++) {
 				layer.render(x,y,sx,sy,width,ty,lineByLine, tileWidth, tileHeight);
 			}
@@ -391,6 +482,13 @@ public class TiledMap {
 	public void render(int x,int y,int sx,int sy,int width,int height, boolean lineByLine) {
 		switch(orientation){
 		case ORTHOGONAL:
+			if (isLayerCaching() && (!lineByLine)) {
+				for (int i=0;i<layers.size();i++) {
+					Layer layer = (Layer) layers.get(i);
+					layer.cache.render(x,y,sx,sy,width,height, tileWidth, tileHeight);
+				}
+				break;
+			}
 			for (int ty=0;ty<height;ty++) {
 				for (int i=0;i<layers.size();i++) {
 					Layer layer = (Layer) layers.get(i);
@@ -510,91 +608,31 @@ public class TiledMap {
 	 * @throws SlickException Indicates a failure to parse the map or find a tileset
 	 */
 	private void load(InputStream in, String tileSetsLocation) throws SlickException {
+		load(in, tileSetsLocation, null);
+	}
+	
+	/**
+	 * Load a TilED map. The map is streamed in with a SAX parser, decoding each 
+	 * layer straight into its storage, rather than building a DOM of the whole
+	 * map.
+	 * 
+	 * @param in The input stream from which to load the map
+	 * @param tileSetsLocation The location from which we can retrieve tileset images
+	 * @param layerData The tiles of layers that have no data in the XML, read from
+	 * a binary cache, or null if all layers are in the XML
+	 * @throws SlickException Indicates a failure to parse the map or find a tileset
+	 */
+	void load(InputStream in, String tileSetsLocation, IntBuffer layerData) throws SlickException {
 		tilesLocation = tileSetsLocation;
+		compactLayers = compactLayerStorage;
 		
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(false);
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			builder.setEntityResolver(new EntityResolver() {
-				public InputSource resolveEntity(String publicId,
-						String systemId) throws SAXException, IOException {					
-					return new InputSource(new ByteArrayInputStream(new byte[0]));
-				}
-			});
-			
-			Document doc = builder.parse(in);
-			Element docElement = doc.getDocumentElement();
+			SAXParser parser = factory.newSAXParser();
 			
-			if ( docElement.getAttribute("orientation").equals("orthogonal") )
-				orientation = ORTHOGONAL;
-			else 
-				orientation = ISOMETRIC;
-			/*
-			if (!orient.equals("orthogonal")) {
-				throw new SlickException("Only orthogonal maps supported, found: "+orient);
-			}*/
-			
-			width = parseInt(docElement.getAttribute("width"));
-			height = parseInt(docElement.getAttribute("height"));
-			tileWidth = parseInt(docElement.getAttribute("tilewidth"));
-			tileHeight = parseInt(docElement.getAttribute("tileheight"));
-			
-			// now read the map properties
-			Element propsElement = (Element) docElement.getElementsByTagName("properties").item(0);
-			if (propsElement != null) {
-				NodeList properties = propsElement.getElementsByTagName("property");
-				if (properties != null) {
-					props = new Properties();
-					for (int p = 0; p < properties.getLength();p++) {
-						Element propElement = (Element) properties.item(p);
-						
-						String name = propElement.getAttribute("name");
-						String value = propElement.getAttribute("value");		
-						props.setProperty(name, value);
-					}
-				}
-			}
-			
-			if (loadTileSets) {
-				TileSet tileSet = null;
-				TileSet lastSet = null;
-				
-				NodeList setNodes = docElement.getElementsByTagName("tileset");
-				for (int i=0;i<setNodes.getLength();i++) {
-					Element current = (Element) setNodes.item(i);
-					
-					tileSet = new TileSet(this, current, !headless);
-					tileSet.index = i;
-					
-					if (lastSet != null) {
-						lastSet.setLimit(tileSet.firstGID-1);
-					}
-					lastSet = tileSet;
-					
-					tileSets.add(tileSet);
-				}
-			}
-			
-			NodeList layerNodes = docElement.getElementsByTagName("layer");
-			for (int i=0;i<layerNodes.getLength();i++) {
-				Element current = (Element) layerNodes.item(i);
-				Layer layer = new Layer(this, current);
-				layer.index = i;
-				
-				layers.add(layer);
-			}
-			
-			// acquire object-groups
-			NodeList objectGroupNodes = docElement.getElementsByTagName("objectgroup");
-			     
-			for (int i=0;i<objectGroupNodes.getLength();i++) {
-				Element current = (Element) objectGroupNodes.item(i);
-				ObjectGroup objectGroup = new ObjectGroup(current);
-				objectGroup.index = i;
-			        
-				objectGroups.add(objectGroup);
-			}
+			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			parser.parse(in, new MapHandler(document, layerData));
 		} catch (Exception e) {
 			Log.error(e);
 			throw new SlickException("Failed to parse tilemap", e);
@@ -655,6 +693,40 @@ public class TiledMap {
 		
 		return null;
 	}
+
+	/**
+	 * Get the index of the tileset holding a given global ID
+	 * 
+	 * @param gid The global ID of the tile
+	 * @return The index of the tileset holding the tile or -1 if no tileset does
+	 */
+	int getTileSetIndex(int gid) {
+		if ((gid >= 0) && (gid < tileSetIndices.length)) {
+			return tileSetIndices[gid];
+		}
+		
+		TileSet set = findTileSet(gid);
+		return set == null ? -1 : set.index;
+	}
+	
+	/**
+	 * Build the table used to find the tileset holding each global ID
+	 */
+	private void buildTileSetIndices() {
+		int size = 1;
+		for (int i=0;i<tileSets.size();i++) {
+			TileSet set = (TileSet) tileSets.get(i);
+			int last = set.lastGID == Integer.MAX_VALUE ? set.firstGID : set.lastGID;
+			size = Math.max(size, last + 1);
+		}
+		
+		tileSetIndices = new int[size];
+		tileSetIndices[0] = -1;
+		for (int gid=1;gid<size;gid++) {
+			TileSet set = findTileSet(gid);
+			tileSetIndices[gid] = set == null ? -1 : set.index;
+		}
+	}
 	
 	/**
 	 * Overrideable to allow other sprites to be rendered between lines of the
@@ -969,4 +1041,204 @@ public class TiledMap {
 		}
 	}
 	   
+	
+	/**
+	 * The SAX handler that streams a map in. Layers are decoded into their
+	 * storage as they're read. Tilesets and object groups are small, so each is
+	 * collected into a DOM fragment and parsed the same way as before.
+	 *
+	 * @author kevin
+	 */
+	private class MapHandler extends DefaultHandler {
+		/** The document used to build fragments */
+		private Document document;
+		/** The current element of the fragment being built or null if none is */
+		private Element fragment;
+		/** The tiles of layers that have no data in the XML or null if there are none */
+		private IntBuffer layerData;
+		/** The layer being read or null if none is */
+		private Layer layer;
+		/** True if the layer being read had its data in the XML */
+		private boolean layerDecoded;
+		/** The encoded data of the layer being read or null if none is being read */
+		private StringBuffer data;
+		/** The encoding of the layer data being read */
+		private String encoding;
+		/** The compression of the layer data being read */
+		private String compression;
+		/** The properties being read or null if none are */
+		private Properties properties;
+		/** The last tileset loaded */
+		private TileSet lastSet;
+		/** True once the table of tilesets for each global ID has been built */
+		private boolean indexed;
+		
+		/**
+		 * Create a new handler
+		 * 
+		 * @param document The document used to build fragments
+		 * @param layerData The tiles of layers that have no data in the XML or null
+		 * if there are none
+		 */
+		public MapHandler(Document document, IntBuffer layerData) {
+			this.document = document;
+			this.layerData = layerData;
+		}
+		
+		/**
+		 * Get an attribute of an element, giving an empty string for missing 
+		 * attributes as the DOM does
+		 * 
+		 * @param attributes The attributes of the element
+		 * @param name The name of the attribute
+		 * @return The value of the attribute or an empty string if it's missing
+		 */
+		private String getAttribute(Attributes attributes, String name) {
+			String value = attributes.getValue(name);
+			return value == null ? "" : value;
+		}
+		
+		/**
+		 * @see org.xml.sax.helpers.DefaultHandler#resolveEntity(java.lang.String, java.lang.String)
+		 */
+		public InputSource resolveEntity(String publicId, String systemId) {
+			return new InputSource(new ByteArrayInputStream(new byte[0]));
+		}
+		
+		/**
+		 * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+		 */
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			if ((fragment != null) || qName.equals("tileset") || qName.equals("objectgroup")) {
+				Element element = document.createElement(qName);
+				for (int i=0;i<attributes.getLength();i++) {
+					element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+				}
+				if (fragment != null) {
+					fragment.appendChild(element);
+				}
+				fragment = element;
+			} else if (qName.equals("map")) {
+				if (getAttribute(attributes, "orientation").equals("orthogonal"))
+					orientation = ORTHOGONAL;
+				else 
+					orientation = ISOMETRIC;
+				
+				width = parseInt(getAttribute(attributes, "width"));
+				height = parseInt(getAttribute(attributes, "height"));
+				tileWidth = parseInt(getAttribute(attributes, "tilewidth"));
+				tileHeight = parseInt(getAttribute(attributes, "tileheight"));
+			} else if (qName.equals("layer")) {
+				if (!indexed) {
+					buildTileSetIndices();
+					indexed = true;
+				}
+				
+				layer = new Layer(TiledMap.this, getAttribute(attributes, "name"), 
+								  Integer.parseInt(getAttribute(attributes, "width")),
+								  Integer.parseInt(getAttribute(attributes, "height")));
+				layer.index = layers.size();
+				layerDecoded = false;
+			} else if (qName.equals("properties")) {
+				properties = new Properties();
+				if (layer != null) {
+					layer.props = properties;
+				} else {
+					props = properties;
+				}
+			} else if (qName.equals("property")) {
+				if (properties != null) {
+					properties.setProperty(getAttribute(attributes, "name"), getAttribute(attributes, "value"));
+				}
+			} else if (qName.equals("data") && (layer != null)) {
+				data = new StringBuffer();
+				encoding = getAttribute(attributes, "encoding");
+				compression = getAttribute(attributes, "compression");
+			}
+		}
+		
+		/**
+		 * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+		 */
+		public void characters(char[] ch, int start, int length) {
+			if (fragment != null) {
+				fragment.appendChild(document.createTextNode(new String(ch, start, length)));
+			} else if (data != null) {
+				data.append(ch, start, length);
+			}
+		}
+		
+		/**
+		 * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+		 */
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			try {
+				if (fragment != null) {
+					Element element = fragment;
+					fragment = (Element) element.getParentNode();
+					if (fragment == null) {
+						endFragment(element);
+					}
+				} else if (qName.equals("properties")) {
+					properties = null;
+				} else if (qName.equals("data") && (data != null)) {
+					char[] enc = new char[data.length()];
+					data.getChars(0, enc.length, enc, 0);
+					data = null;
+					
+					layer.decode(encoding, compression, enc);
+					layerDecoded = true;
+				} else if (qName.equals("layer")) {
+					if ((!layerDecoded) && (layerData != null)) {
+						int count = layerData.get();
+						if (count != layer.width * layer.height) {
+							throw new SlickException("Cached layer "+layer.name+" has "+count+" tiles, expected "+(layer.width * layer.height));
+						}
+						layer.readTiles(layerData);
+					}
+					
+					layers.add(layer);
+					layer = null;
+				}
+			} catch (SlickException e) {
+				throw new SAXException(e);
+			}
+		}
+		
+		/**
+		 * Parse a completed tileset or object group
+		 * 
+		 * @param element The root element of the fragment
+		 * @throws SlickException Indicates a failure to parse the fragment
+		 */
+		private void endFragment(Element element) throws SlickException {
+			if (element.getTagName().equals("tileset")) {
+				if (loadTileSets) {
+					TileSet tileSet = new TileSet(TiledMap.this, element, !headless);
+					tileSet.index = tileSets.size();
+					
+					if (lastSet != null) {
+						lastSet.setLimit(tileSet.firstGID-1);
+					}
+					lastSet = tileSet;
+					
+					tileSets.add(tileSet);
+				}
+			} else {
+				ObjectGroup objectGroup = new ObjectGroup(element);
+				objectGroup.index = objectGroups.size();
+			        
+				objectGroups.add(objectGroup);
+			}
+		}
+		
+		/**
+		 * @see org.xml.sax.helpers.DefaultHandler#endDocument()
+		 */
+		public void endDocument() {
+			if (!indexed) {
+				buildTileSetIndices();
+			}
+		}
+	}
 }
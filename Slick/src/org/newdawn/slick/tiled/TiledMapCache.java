@@ -0,0 +1,238 @@
+package org.newdawn.slick.tiled;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * A preprocessed binary form of a TilED map that loads without decoding any
+ * layer data. The file holds the map's XML with the layer data removed,
+ * followed by the global ID of every tile in each layer as raw ints. Loading
+ * a file memory maps it and copies the tiles straight into the layers'
+ * storage.
+ *
+ * Maps can be converted ahead of time from the command line:
+ * <code>java org.newdawn.slick.tiled.TiledMapCache level1.tmx level1.tmb</code>
+ *
+ * @author kevin
+ */
+public class TiledMapCache {
+	/** The identifier at the start of every file, "TMXB" */
+	private static final int MAGIC = 0x544D5842;
+	/** The version of the format written */
+	private static final int VERSION = 1;
+
+	/**
+	 * Write the binary form of a map
+	 *
+	 * @param ref The location of the TMX file to convert
+	 * @param file The file to write the binary form to
+	 * @throws SlickException Indicates a failure to read the map or write the file
+	 */
+	public static void write(String ref, File file) throws SlickException {
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				write(ref, out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Failed to write binary map: "+file, e);
+		}
+	}
+
+	/**
+	 * Write the binary form of a map
+	 *
+	 * @param ref The location of the TMX file to convert
+	 * @param out The stream to write the binary form to
+	 * @throws SlickException Indicates a failure to read the map or write the stream
+	 */
+	public static void write(String ref, OutputStream out) throws SlickException {
+		ref = ref.replace('\\','/');
+		TiledMap map = new TiledMap(ref, false);
+
+		try {
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			builder.setEntityResolver(new EntityResolver() {
+				public InputSource resolveEntity(String publicId, String systemId) {
+					return new InputSource(new ByteArrayInputStream(new byte[0]));
+				}
+			});
+			Document doc = builder.parse(ResourceLoader.getResourceAsStream(ref));
+
+			NodeList layers = doc.getElementsByTagName("layer");
+			for (int i=0;i<layers.getLength();i++) {
+				Element layer = (Element) layers.item(i);
+				Node data = layer.getElementsByTagName("data").item(0);
+				if (data != null) {
+					layer.removeChild(data);
+				}
+			}
+
+			ByteArrayOutputStream xml = new ByteArrayOutputStream();
+			TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(xml));
+
+			DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+			dout.writeInt(MAGIC);
+			dout.writeInt(VERSION);
+			dout.writeInt(xml.size());
+			dout.write(xml.toByteArray());
+			// keep the tiles aligned so they can be read as ints in place
+			for (int i=0;i<getPadding(xml.size());i++) {
+				dout.writeByte(0);
+			}
+
+			for (int l=0;l<map.getLayerCount();l++) {
+				Layer layer = (Layer) map.layers.get(l);
+				dout.writeInt(layer.width * layer.height);
+				for (int y=0;y<layer.height;y++) {
+					for (int x=0;x<layer.width;x++) {
+						dout.writeInt(layer.getTileID(x, y));
+					}
+				}
+			}
+			dout.flush();
+		} catch (Exception e) {
+			Log.error(e);
+			throw new SlickException("Failed to write binary map: "+ref, e);
+		}
+	}
+
+	/**
+	 * Load a map from its binary form, finding tileset images relative to the
+	 * file
+	 *
+	 * @param file The file holding the binary form of the map
+	 * @return The map loaded
+	 * @throws SlickException Indicates a failure to read the file or find a tileset
+	 */
+	public static TiledMap load(File file) throws SlickException {
+		String location = file.getParent();
+		return load(file, location == null ? "" : location.replace('\\','/'));
+	}
+
+	/**
+	 * Load a map from its binary form. The file is memory mapped rather than
+	 * read.
+	 *
+	 * @param file The file holding the binary form of the map
+	 * @param tileSetsLocation The location at which we can find tileset images
+	 * @return The map loaded
+	 * @throws SlickException Indicates a failure to read the file or find a tileset
+	 */
+	public static TiledMap load(File file, String tileSetsLocation) throws SlickException {
+		try {
+			FileInputStream in = new FileInputStream(file);
+			try {
+				FileChannel channel = in.getChannel();
+				return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), tileSetsLocation);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Failed to load binary map: "+file, e);
+		}
+	}
+
+	/**
+	 * Load a map from its binary form, for instance from a resource inside a jar
+	 *
+	 * @param in The stream to read the binary form of the map from
+	 * @param tileSetsLocation The location at which we can find tileset images
+	 * @return The map loaded
+	 * @throws SlickException Indicates a failure to read the stream or find a tileset
+	 */
+	public static TiledMap load(InputStream in, String tileSetsLocation) throws SlickException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, read);
+			}
+			return load(ByteBuffer.wrap(bytes.toByteArray()), tileSetsLocation);
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Failed to load binary map", e);
+		}
+	}
+
+	/**
+	 * Load a map from a buffer holding its binary form
+	 *
+	 * @param buffer The buffer holding the binary form of the map
+	 * @param tileSetsLocation The location at which we can find tileset images
+	 * @return The map loaded
+	 * @throws SlickException Indicates the buffer isn't a binary map or a
+	 * failure to find a tileset
+	 */
+	private static TiledMap load(ByteBuffer buffer, String tileSetsLocation) throws SlickException {
+		if (buffer.getInt() != MAGIC) {
+			throw new SlickException("Not a binary tile map");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new SlickException("Unsupported binary tile map version: "+version);
+		}
+
+		byte[] xml = new byte[buffer.getInt()];
+		buffer.get(xml);
+		buffer.position(buffer.position() + getPadding(xml.length));
+
+		return new TiledMap(new ByteArrayInputStream(xml), tileSetsLocation, buffer.asIntBuffer(), true);
+	}
+
+	/**
+	 * Get the number of bytes needed after the XML to align the tiles
+	 *
+	 * @param length The length of the XML in bytes
+	 * @return The number of bytes of padding
+	 */
+	private static int getPadding(int length) {
+		return (4 - (length % 4)) % 4;
+	}
+
+	/**
+	 * Entry point to convert a map ahead of time
+	 *
+	 * @param argv The arguments passed, the TMX file to read and the file to write
+	 * @throws SlickException Indicates a failure to read the map or write the file
+	 */
+	public static void main(String[] argv) throws SlickException {
+		if (argv.length != 2) {
+			System.out.println("Usage: TiledMapCache <map.tmx> <output>");
+			return;
+		}
+
+		write(argv[0], new File(argv[1]));
+	}
+}
@@ -0,0 +1,312 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * A service that finds paths for many requests in the background. Requests are
+ * shared out between a set of worker threads, each of which owns its own path
+ * finder and hence its own search state. Results can either be polled from
+ * the PathRequest or delivered to a PathRequestListener when update() is
+ * called, normally from the game's update so that listeners are always notified
+ * on the game thread.
+ *
+ * The map being searched will be queried from several threads at once, so its
+ * blocked() and getCost() methods must be safe to call concurrently. Changes to
+ * the map while requests are outstanding may be seen part way through a search.
+ * The pathFinderVisited() callback is also made from the worker threads. When
+ * the service creates its own path finders the callback is serialised on the
+ * map, otherwise the path finders given by the factory must ensure it's safe.
+ *
+ * @author kevin
+ */
+public class BatchPathFinder {
+	/** The requests waiting to be searched */
+	private LinkedList pending = new LinkedList();
+	/** The requests completed but whose listeners have not yet been notified */
+	private ArrayList completed = new ArrayList();
+	/** The requests completed being notified in the current update */
+	private ArrayList notifying = new ArrayList();
+	/** The worker threads searching for paths */
+	private Thread[] workers;
+	/** The number of requests currently being searched */
+	private int active;
+	/** True if the service has been shutdown */
+	private boolean shutdown;
+
+	/**
+	 * Create a new batch path finder that uses an IndexedAStarPathFinder per
+	 * worker thread and a thread per available processor.
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param heuristic The heuristic used to determine the search order of the map
+	 */
+	public BatchPathFinder(final TileBasedMap map, final int maxSearchDistance,
+						   final boolean allowDiagMovement, final AStarHeuristic heuristic) {
+		this(new PathFinderFactory() {
+			public PathFinder createPathFinder() {
+				return new IndexedAStarPathFinder(new SerialisedVisitMap(map), maxSearchDistance, allowDiagMovement, heuristic);
+			}
+		}, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a new batch path finder
+	 *
+	 * @param factory The factory used to create a path finder for each worker
+	 * @param threads The number of worker threads to search with
+	 */
+	public BatchPathFinder(PathFinderFactory factory, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one worker thread is required");
+		}
+
+		workers = new Thread[threads];
+		for (int i=0;i<threads;i++) {
+			workers[i] = new Worker(factory.createPathFinder(), i);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Submit a request for a path to be found
+	 *
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param listener The listener to notify on update() once the path is found, or null
+	 * @return The request submitted which can be polled for the result
+	 */
+	public PathRequest findPath(Mover mover, int sx, int sy, int tx, int ty, PathRequestListener listener) {
+		PathRequest request = new PathRequest(mover, sx, sy, tx, ty, listener);
+		submit(request);
+
+		return request;
+	}
+
+	/**
+	 * Submit a request for a path to be found
+	 *
+	 * @param request The request to be searched
+	 */
+	public void submit(PathRequest request) {
+		synchronized (pending) {
+			checkRunning();
+			pending.add(request);
+			pending.notifyAll();
+		}
+	}
+
+	/**
+	 * Submit a batch of requests for paths to be found
+	 *
+	 * @param requests The list of PathRequest objects to be searched
+	 */
+	public void submit(List requests) {
+		synchronized (pending) {
+			checkRunning();
+			pending.addAll(requests);
+			pending.notifyAll();
+		}
+	}
+
+	/**
+	 * Check the service is still accepting requests
+	 */
+	private void checkRunning() {
+		if (shutdown) {
+			throw new IllegalStateException("BatchPathFinder has been shutdown");
+		}
+	}
+
+	/**
+	 * Notify the listeners of any requests completed since the last update. This
+	 * should be called from the game thread, e.g. from Game.update().
+	 */
+	public void update() {
+		synchronized (completed) {
+			notifying.addAll(completed);
+			completed.clear();
+		}
+
+		for (int i=0;i<notifying.size();i++) {
+			PathRequest request = (PathRequest) notifying.get(i);
+			if (!request.isCancelled()) {
+				request.getListener().pathComplete(request, request.getPath());
+			}
+		}
+		notifying.clear();
+	}
+
+	/**
+	 * Get the number of requests waiting or being searched
+	 *
+	 * @return The number of requests outstanding
+	 */
+	public int getOutstandingCount() {
+		synchronized (pending) {
+			return pending.size() + active;
+		}
+	}
+
+	/**
+	 * Block the calling thread until all submitted requests have been searched
+	 *
+	 * @throws InterruptedException Indicates the thread was interrupted while waiting
+	 */
+	public void waitForAll() throws InterruptedException {
+		synchronized (pending) {
+			while ((pending.size() + active) > 0) {
+				pending.wait();
+			}
+		}
+	}
+
+	/**
+	 * Shutdown the worker threads. Requests not yet searched are cancelled.
+	 */
+	public void shutdown() {
+		synchronized (pending) {
+			shutdown = true;
+			for (int i=0;i<pending.size();i++) {
+				((PathRequest) pending.get(i)).cancel();
+			}
+			pending.clear();
+			pending.notifyAll();
+		}
+	}
+
+	/**
+	 * A view of a map that serialises the pathFinderVisited() notifications from
+	 * the worker threads, since map implementations generally record them in
+	 * unsynchronised state
+	 *
+	 * @author kevin
+	 */
+	private static class SerialisedVisitMap implements TileBasedMap {
+		/** The map being searched */
+		private TileBasedMap map;
+
+		/**
+		 * Create a new view of a map
+		 *
+		 * @param map The map being searched
+		 */
+		public SerialisedVisitMap(TileBasedMap map) {
+			this.map = map;
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getWidthInTiles()
+		 */
+		public int getWidthInTiles() {
+			return map.getWidthInTiles();
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getHeightInTiles()
+		 */
+		public int getHeightInTiles() {
+			return map.getHeightInTiles();
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#pathFinderVisited(int, int)
+		 */
+		public void pathFinderVisited(int x, int y) {
+			synchronized (map) {
+				map.pathFinderVisited(x, y);
+			}
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#blocked(org.newdawn.slick.util.pathfinding.PathFindingContext, int, int)
+		 */
+		public boolean blocked(PathFindingContext context, int tx, int ty) {
+			return map.blocked(context, tx, ty);
+		}
+
+		/**
+		 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getCost(org.newdawn.slick.util.pathfinding.PathFindingContext, int, int)
+		 */
+		public float getCost(PathFindingContext context, int tx, int ty) {
+			return map.getCost(context, tx, ty);
+		}
+	}
+
+	/**
+	 * A worker thread owning a path finder and searching for requested paths
+	 *
+	 * @author kevin
+	 */
+	private class Worker extends Thread {
+		/** The path finder owned by this worker */
+		private PathFinder finder;
+
+		/**
+		 * Create a new worker
+		 *
+		 * @param finder The path finder owned by this worker
+		 * @param index The index of the worker, used to name the thread
+		 */
+		public Worker(PathFinder finder, int index) {
+			super("BatchPathFinder-"+index);
+			this.finder = finder;
+			setDaemon(true);
+		}
+
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (true) {
+				PathRequest request;
+
+				synchronized (pending) {
+					while (pending.isEmpty() && !shutdown) {
+						try {
+							pending.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (shutdown) {
+						return;
+					}
+
+					request = (PathRequest) pending.removeFirst();
+					active++;
+				}
+
+				Path path = null;
+				try {
+					if (!request.isCancelled()) {
+						path = finder.findPath(request.getMover(), request.getSourceX(), request.getSourceY(),
+											   request.getTargetX(), request.getTargetY());
+					}
+				} catch (RuntimeException e) {
+					Log.error("Failed to find path", e);
+				} finally {
+					request.complete(path);
+					if (request.getListener() != null) {
+						synchronized (completed) {
+							completed.add(request);
+						}
+					}
+
+					synchronized (pending) {
+						active--;
+						pending.notifyAll();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,1080 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.ArrayList;
+
+import org.newdawn.slick.util.pathfinding.heuristics.ClosestHeuristic;
+
+/**
+ * A path finder that searches an abstract graph built over the tile map before
+ * refining the result into tile steps (HPA*). The map is split into square
+ * clusters. Where two neighbouring clusters can be crossed between, entrances
+ * are placed, and the cost of moving between each pair of entrances within a
+ * cluster is precomputed. A search then only runs A* over the entrances and
+ * plans tile steps within each cluster along the way.
+ *
+ * The paths found are close to, but not always exactly, the shortest. The
+ * abstract graph is built for the mover supplied at construction, the mover
+ * passed to findPath() is used when refining and when connecting the start
+ * and target into the graph.
+ *
+ * When diaganol movement is allowed entrances are also placed where a border
+ * can only be crossed diaganolly, including across the corners where four
+ * clusters meet.
+ *
+ * If the blocked or cost state of the map changes tileChanged() should be
+ * called for the effected tiles. Only the clusters and entrances touching
+ * those tiles are rebuilt, on the next call to findPath().
+ *
+ * @author kevin
+ */
+public class HierarchicalPathFinder implements PathFinder, PathFindingContext {
+	/** The length of an open run of border at which two entrances are placed rather than one */
+	private static final int ENTRANCE_SPLIT = 6;
+
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The size of each cluster in tiles */
+	private int clusterSize;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic we're applying to determine which entrances to search first */
+	private AStarHeuristic heuristic;
+	/** The mover the abstract graph is built for */
+	private Mover buildMover;
+
+	/** The number of clusters across the map */
+	private int clustersAcross;
+	/** The number of clusters down the map */
+	private int clustersDown;
+	/** The clusters making up the map */
+	private Cluster[][] clusters;
+	/** The entrances on the border to the right of each cluster */
+	private ArrayList[][] verticalBorders;
+	/** The entrances on the border below each cluster */
+	private ArrayList[][] horizontalBorders;
+	/** True if the border to the right of each cluster needs rebuilding */
+	private boolean[][] verticalDirty;
+	/** True if the border below each cluster needs rebuilding */
+	private boolean[][] horizontalDirty;
+	/** The entrances across the corner to the bottom right of each cluster */
+	private ArrayList[][] cornerBorders;
+	/** True if the corner to the bottom right of each cluster needs rebuilding */
+	private boolean[][] cornerDirty;
+	/** True if any part of the abstract graph needs rebuilding */
+	private boolean dirty;
+
+	/** The cost to each tile of the current local search */
+	private float[] localCost;
+	/** The tile we reached each tile from in the current local search */
+	private int[] localParent;
+	/** The generation each tile was last touched in by a local search */
+	private int[] localStamp;
+	/** The current local search generation */
+	private int localGeneration;
+	/** The heap of tiles making up the open list of the local search */
+	private int[] localHeap;
+	/** The position of each tile in the local heap, or -1 if closed */
+	private int[] localHeapIndex;
+	/** The number of tiles in the local heap */
+	private int localHeapSize;
+
+	/** The heap of entrances making up the open list of the abstract search */
+	private AbstractNode[] heap = new AbstractNode[64];
+	/** The number of entrances in the abstract heap */
+	private int heapSize;
+	/** The current abstract search generation */
+	private int generation;
+
+	/** The mover going through the path */
+	private Mover mover;
+	/** The x coordinate of the source tile we're moving from */
+	private int sourceX;
+	/** The y coordinate of the source tile we're moving from */
+	private int sourceY;
+	/** The distance searched so far */
+	private int distance;
+
+	/**
+	 * Create a hierarchical path finder with the default heuristic - closest to target.
+	 *
+	 * @param map The map to be searched
+	 * @param clusterSize The size of each cluster in tiles
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int clusterSize, boolean allowDiagMovement) {
+		this(map, clusterSize, allowDiagMovement, new ClosestHeuristic(), null);
+	}
+
+	/**
+	 * Create a hierarchical path finder
+	 *
+	 * @param map The map to be searched
+	 * @param clusterSize The size of each cluster in tiles
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param heuristic The heuristic used to determine the search order of the entrances
+	 * @param buildMover The mover the abstract graph should be built for, may be null
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int clusterSize, boolean allowDiagMovement,
+								  AStarHeuristic heuristic, Mover buildMover) {
+		if (clusterSize < 2) {
+			throw new IllegalArgumentException("Cluster size must be at least 2");
+		}
+
+		this.map = map;
+		this.clusterSize = clusterSize;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristic = heuristic;
+		this.buildMover = buildMover;
+
+		int width = map.getWidthInTiles();
+		int height = map.getHeightInTiles();
+		clustersAcross = (width + clusterSize - 1) / clusterSize;
+		clustersDown = (height + clusterSize - 1) / clusterSize;
+
+		clusters = new Cluster[clustersAcross][clustersDown];
+		verticalBorders = new ArrayList[clustersAcross][clustersDown];
+		horizontalBorders = new ArrayList[clustersAcross][clustersDown];
+		verticalDirty = new boolean[clustersAcross][clustersDown];
+		horizontalDirty = new boolean[clustersAcross][clustersDown];
+		cornerBorders = new ArrayList[clustersAcross][clustersDown];
+		cornerDirty = new boolean[clustersAcross][clustersDown];
+		for (int i=0;i<clustersAcross;i++) {
+			for (int j=0;j<clustersDown;j++) {
+				int x = i * clusterSize;
+				int y = j * clusterSize;
+				clusters[i][j] = new Cluster(x, y, Math.min(clusterSize, width - x), Math.min(clusterSize, height - y));
+				verticalBorders[i][j] = new ArrayList();
+				horizontalBorders[i][j] = new ArrayList();
+				cornerBorders[i][j] = new ArrayList();
+			}
+		}
+
+		int size = clusterSize * clusterSize;
+		localCost = new float[size];
+		localParent = new int[size];
+		localStamp = new int[size];
+		localHeap = new int[size];
+		localHeapIndex = new int[size];
+
+		invalidate();
+		rebuild();
+	}
+
+	/**
+	 * Notification that the blocked state or cost of a tile has changed. The
+	 * parts of the abstract graph effected will be rebuilt before the next search.
+	 *
+	 * @param x The x coordinate of the tile that changed
+	 * @param y The y coordinate of the tile that changed
+	 */
+	public void tileChanged(int x, int y) {
+		int i = x / clusterSize;
+		int j = y / clusterSize;
+
+		clusters[i][j].dirty = true;
+		if ((x % clusterSize == 0) && (i > 0)) {
+			verticalDirty[i-1][j] = true;
+		}
+		if ((x % clusterSize == clusterSize - 1) && (i < clustersAcross - 1)) {
+			verticalDirty[i][j] = true;
+		}
+		if ((y % clusterSize == 0) && (j > 0)) {
+			horizontalDirty[i][j-1] = true;
+		}
+		if ((y % clusterSize == clusterSize - 1) && (j < clustersDown - 1)) {
+			horizontalDirty[i][j] = true;
+		}
+		for (int ci=i-1;ci<=i;ci++) {
+			for (int cj=j-1;cj<=j;cj++) {
+				if ((ci >= 0) && (cj >= 0) && (ci < clustersAcross - 1) && (cj < clustersDown - 1)) {
+					cornerDirty[ci][cj] = true;
+				}
+			}
+		}
+		dirty = true;
+	}
+
+	/**
+	 * Mark the whole abstract graph as needing to be rebuilt before the next search
+	 */
+	public void invalidate() {
+		for (int i=0;i<clustersAcross;i++) {
+			for (int j=0;j<clustersDown;j++) {
+				clusters[i][j].dirty = true;
+				verticalDirty[i][j] = i < clustersAcross - 1;
+				horizontalDirty[i][j] = j < clustersDown - 1;
+				cornerDirty[i][j] = (i < clustersAcross - 1) && (j < clustersDown - 1);
+			}
+		}
+		dirty = true;
+	}
+
+	/**
+	 * Rebuild any parts of the abstract graph that have been marked as changed
+	 */
+	public void rebuild() {
+		if (!dirty) {
+			return;
+		}
+
+		mover = buildMover;
+		for (int i=0;i<clustersAcross;i++) {
+			for (int j=0;j<clustersDown;j++) {
+				if (verticalDirty[i][j]) {
+					buildVerticalBorder(i, j);
+					verticalDirty[i][j] = false;
+				}
+				if (horizontalDirty[i][j]) {
+					buildHorizontalBorder(i, j);
+					horizontalDirty[i][j] = false;
+				}
+				if (cornerDirty[i][j]) {
+					buildCorner(i, j);
+					cornerDirty[i][j] = false;
+				}
+			}
+		}
+		for (int i=0;i<clustersAcross;i++) {
+			for (int j=0;j<clustersDown;j++) {
+				if (clusters[i][j].dirty) {
+					buildCluster(clusters[i][j]);
+					clusters[i][j].dirty = false;
+				}
+			}
+		}
+		dirty = false;
+	}
+
+	/**
+	 * Get the number of entrances in the abstract graph
+	 *
+	 * @return The number of entrances in the abstract graph
+	 */
+	public int getEntranceCount() {
+		rebuild();
+
+		int count = 0;
+		for (int i=0;i<clustersAcross;i++) {
+			for (int j=0;j<clustersDown;j++) {
+				count += clusters[i][j].nodes.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Rebuild the entrances on the border between a cluster and the one to its right
+	 *
+	 * @param i The x index of the cluster to the left of the border
+	 * @param j The y index of the cluster to the left of the border
+	 */
+	private void buildVerticalBorder(int i, int j) {
+		Cluster left = clusters[i][j];
+		Cluster right = clusters[i+1][j];
+		ArrayList border = verticalBorders[i][j];
+		clearBorder(border);
+
+		int x0 = right.x - 1;
+		int x1 = right.x;
+		int start = -1;
+		for (int y=left.y;y<=left.y+left.height;y++) {
+			boolean open = (y < left.y+left.height) && crossable(x0, y, x1, y);
+			if (open && (start < 0)) {
+				start = y;
+			}
+			if (!open && (start >= 0)) {
+				int end = y - 1;
+				if (end - start + 1 >= ENTRANCE_SPLIT) {
+					addEntrance(border, left, x0, start, right, x1, start);
+					addEntrance(border, left, x0, end, right, x1, end);
+				} else {
+					int mid = (start + end) / 2;
+					addEntrance(border, left, x0, mid, right, x1, mid);
+				}
+				start = -1;
+			}
+		}
+
+		// where neither row of a pair can be crossed straight across, a
+		// diaganol step between them may still cross the border
+		if (allowDiagMovement) {
+			for (int y=left.y;y<left.y+left.height-1;y++) {
+				if (!crossable(x0, y, x1, y) && !crossable(x0, y+1, x1, y+1)) {
+					if (crossable(x0, y, x1, y+1)) {
+						addEntrance(border, left, x0, y, right, x1, y+1);
+					}
+					if (crossable(x0, y+1, x1, y)) {
+						addEntrance(border, left, x0, y+1, right, x1, y);
+					}
+				}
+			}
+		}
+
+		left.dirty = true;
+		right.dirty = true;
+	}
+
+	/**
+	 * Rebuild the entrances on the border between a cluster and the one below it
+	 *
+	 * @param i The x index of the cluster above the border
+	 * @param j The y index of the cluster above the border
+	 */
+	private void buildHorizontalBorder(int i, int j) {
+		Cluster top = clusters[i][j];
+		Cluster bottom = clusters[i][j+1];
+		ArrayList border = horizontalBorders[i][j];
+		clearBorder(border);
+
+		int y0 = bottom.y - 1;
+		int y1 = bottom.y;
+		int start = -1;
+		for (int x=top.x;x<=top.x+top.width;x++) {
+			boolean open = (x < top.x+top.width) && crossable(x, y0, x, y1);
+			if (open && (start < 0)) {
+				start = x;
+			}
+			if (!open && (start >= 0)) {
+				int end = x - 1;
+				if (end - start + 1 >= ENTRANCE_SPLIT) {
+					addEntrance(border, top, start, y0, bottom, start, y1);
+					addEntrance(border, top, end, y0, bottom, end, y1);
+				} else {
+					int mid = (start + end) / 2;
+					addEntrance(border, top, mid, y0, bottom, mid, y1);
+				}
+				start = -1;
+			}
+		}
+
+		// where neither column of a pair can be crossed straight across, a
+		// diaganol step between them may still cross the border
+		if (allowDiagMovement) {
+			for (int x=top.x;x<top.x+top.width-1;x++) {
+				if (!crossable(x, y0, x, y1) && !crossable(x+1, y0, x+1, y1)) {
+					if (crossable(x, y0, x+1, y1)) {
+						addEntrance(border, top, x, y0, bottom, x+1, y1);
+					}
+					if (crossable(x+1, y0, x, y1)) {
+						addEntrance(border, top, x+1, y0, bottom, x, y1);
+					}
+				}
+			}
+		}
+
+		top.dirty = true;
+		bottom.dirty = true;
+	}
+
+	/**
+	 * Rebuild the entrances across the corner where a cluster meets the clusters
+	 * to its right, below it and diaganolly below right. These can only be
+	 * crossed with diaganol movement.
+	 *
+	 * @param i The x index of the cluster above left of the corner
+	 * @param j The y index of the cluster above left of the corner
+	 */
+	private void buildCorner(int i, int j) {
+		Cluster topLeft = clusters[i][j];
+		Cluster topRight = clusters[i+1][j];
+		Cluster bottomLeft = clusters[i][j+1];
+		Cluster bottomRight = clusters[i+1][j+1];
+		ArrayList border = cornerBorders[i][j];
+		clearBorder(border);
+
+		if (allowDiagMovement) {
+			int x1 = topRight.x;
+			int y1 = bottomLeft.y;
+			int x0 = x1 - 1;
+			int y0 = y1 - 1;
+
+			if (crossable(x0, y0, x1, y1)) {
+				addEntrance(border, topLeft, x0, y0, bottomRight, x1, y1);
+			}
+			if (crossable(x1, y0, x0, y1)) {
+				addEntrance(border, topRight, x1, y0, bottomLeft, x0, y1);
+			}
+		}
+
+		topLeft.dirty = true;
+		topRight.dirty = true;
+		bottomLeft.dirty = true;
+		bottomRight.dirty = true;
+	}
+
+	/**
+	 * Remove all the entrances on a border from their clusters
+	 *
+	 * @param border The list of entrances on the border
+	 */
+	private void clearBorder(ArrayList border) {
+		for (int i=0;i<border.size();i++) {
+			AbstractNode node = (AbstractNode) border.get(i);
+			node.cluster.nodes.remove(node);
+		}
+		border.clear();
+	}
+
+	/**
+	 * Check if a border can be crossed in both directions between two tiles
+	 *
+	 * @param x0 The x coordinate of the first tile
+	 * @param y0 The y coordinate of the first tile
+	 * @param x1 The x coordinate of the second tile
+	 * @param y1 The y coordinate of the second tile
+	 * @return True if the border can be crossed between the two tiles
+	 */
+	private boolean crossable(int x0, int y0, int x1, int y1) {
+		sourceX = x0;
+		sourceY = y0;
+		if (map.blocked(this, x1, y1)) {
+			return false;
+		}
+		sourceX = x1;
+		sourceY = y1;
+		return !map.blocked(this, x0, y0);
+	}
+
+	/**
+	 * Add an entrance, a pair of connected nodes either side of a border
+	 *
+	 * @param border The list of entrances on the border
+	 * @param c0 The cluster on the first side of the border
+	 * @param x0 The x coordinate of the tile on the first side
+	 * @param y0 The y coordinate of the tile on the first side
+	 * @param c1 The cluster on the second side of the border
+	 * @param x1 The x coordinate of the tile on the second side
+	 * @param y1 The y coordinate of the tile on the second side
+	 */
+	private void addEntrance(ArrayList border, Cluster c0, int x0, int y0, Cluster c1, int x1, int y1) {
+		AbstractNode n0 = new AbstractNode(x0, y0, c0);
+		AbstractNode n1 = new AbstractNode(x1, y1, c1);
+
+		sourceX = x0;
+		sourceY = y0;
+		n0.exit = new Edge(n1, map.getCost(this, x1, y1));
+		sourceX = x1;
+		sourceY = y1;
+		n1.exit = new Edge(n0, map.getCost(this, x0, y0));
+
+		c0.nodes.add(n0);
+		c1.nodes.add(n1);
+		border.add(n0);
+		border.add(n1);
+	}
+
+	/**
+	 * Rebuild the paths between the entrances within a cluster
+	 *
+	 * @param cluster The cluster to rebuild
+	 */
+	private void buildCluster(Cluster cluster) {
+		ArrayList nodes = cluster.nodes;
+		for (int i=0;i<nodes.size();i++) {
+			AbstractNode node = (AbstractNode) nodes.get(i);
+			node.edges.clear();
+
+			localSearch(cluster, node.x, node.y, -1, -1, false, false);
+			for (int j=0;j<nodes.size();j++) {
+				if (i == j) {
+					continue;
+				}
+				AbstractNode other = (AbstractNode) nodes.get(j);
+				float cost = getLocalCost(cluster, other.x, other.y);
+				if (cost != Float.MAX_VALUE) {
+					node.edges.add(new Edge(other, cost));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		// we're already there, there's no path to take
+		if ((sx == tx) && (sy == ty)) {
+			return null;
+		}
+
+		rebuild();
+
+		// easy first check, if the destination is blocked, we can't get there
+		this.mover = mover;
+		this.sourceX = tx;
+		this.sourceY = ty;
+		this.distance = 0;
+
+		if (map.blocked(this, tx, ty)) {
+			return null;
+		}
+
+		Cluster startCluster = clusters[sx / clusterSize][sy / clusterSize];
+		Cluster targetCluster = clusters[tx / clusterSize][ty / clusterSize];
+
+		// if we're staying inside a single cluster try a plain local search first
+		if (startCluster == targetCluster) {
+			if (localSearch(startCluster, sx, sy, tx, ty, false, true)) {
+				Path path = new Path();
+				path.appendStep(sx, sy);
+				appendLocalPath(path, startCluster, sx, sy, tx, ty);
+				return path;
+			}
+		}
+
+		generation++;
+		heapSize = 0;
+
+		// connect the start into the graph
+		AbstractNode start = new AbstractNode(sx, sy, startCluster);
+		localSearch(startCluster, sx, sy, -1, -1, false, true);
+		for (int i=0;i<startCluster.nodes.size();i++) {
+			AbstractNode other = (AbstractNode) startCluster.nodes.get(i);
+			float cost = getLocalCost(startCluster, other.x, other.y);
+			if (cost != Float.MAX_VALUE) {
+				start.edges.add(new Edge(other, cost));
+			}
+		}
+
+		// connect the target into the graph, searching backwards from it so we
+		// know the cost of reaching it from each entrance
+		AbstractNode target = new AbstractNode(tx, ty, targetCluster);
+		localSearch(targetCluster, tx, ty, -1, -1, true, true);
+		for (int i=0;i<targetCluster.nodes.size();i++) {
+			AbstractNode other = (AbstractNode) targetCluster.nodes.get(i);
+			float cost = getLocalCost(targetCluster, other.x, other.y);
+			if (cost != Float.MAX_VALUE) {
+				other.targetCost = cost;
+				other.targetStamp = generation;
+			}
+		}
+
+		// A* across the abstract graph
+		start.touch(generation);
+		start.total = getHeuristicCost(mover, sx, sy, tx, ty);
+		addToOpen(start);
+
+		while (heapSize > 0) {
+			AbstractNode current = removeFirstFromOpen();
+			current.closed = true;
+
+			if (current == target) {
+				break;
+			}
+
+			for (int i=0;i<current.edges.size();i++) {
+				Edge edge = (Edge) current.edges.get(i);
+				relax(current, edge.target, edge.cost, tx, ty);
+			}
+			if (current.exit != null) {
+				relax(current, current.exit.target, current.exit.cost, tx, ty);
+			}
+			if (current.targetStamp == generation) {
+				relax(current, target, current.targetCost, tx, ty);
+			}
+		}
+
+		if ((target.stamp != generation) || (!target.closed)) {
+			return null;
+		}
+
+		// refine the abstract path into tile steps
+		ArrayList route = new ArrayList();
+		for (AbstractNode node = target;node != null;node = node.parent) {
+			route.add(0, node);
+		}
+
+		Path path = new Path();
+		path.appendStep(sx, sy);
+		for (int i=1;i<route.size();i++) {
+			AbstractNode from = (AbstractNode) route.get(i-1);
+			AbstractNode to = (AbstractNode) route.get(i);
+
+			if ((from.x == to.x) && (from.y == to.y)) {
+				continue;
+			}
+			if (from.cluster != to.cluster) {
+				path.appendStep(to.x, to.y);
+			} else {
+				if (!localSearch(from.cluster, from.x, from.y, to.x, to.y, false, true)) {
+					return null;
+				}
+				appendLocalPath(path, from.cluster, from.x, from.y, to.x, to.y);
+			}
+		}
+
+		return path;
+	}
+
+	/**
+	 * Consider reaching a node in the abstract search from another
+	 *
+	 * @param from The node we're moving from
+	 * @param to The node we're moving to
+	 * @param edgeCost The cost of moving between the nodes
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 */
+	private void relax(AbstractNode from, AbstractNode to, float edgeCost, int tx, int ty) {
+		to.touch(generation);
+		if (to.closed) {
+			return;
+		}
+
+		float cost = from.cost + edgeCost;
+		if ((to.heapIndex >= 0) && (cost >= to.cost)) {
+			return;
+		}
+
+		to.cost = cost;
+		to.total = cost + getHeuristicCost(mover, to.x, to.y, tx, ty);
+		to.parent = from;
+		if (to.heapIndex >= 0) {
+			siftUp(to.heapIndex);
+		} else {
+			addToOpen(to);
+		}
+	}
+
+	/**
+	 * Append the steps of the last local search, excluding its start, to a path
+	 *
+	 * @param path The path to append to
+	 * @param cluster The cluster the local search covered
+	 * @param sx The x coordinate the local search started at
+	 * @param sy The y coordinate the local search started at
+	 * @param tx The x coordinate of the target of the local search
+	 * @param ty The y coordinate of the target of the local search
+	 */
+	private void appendLocalPath(Path path, Cluster cluster, int sx, int sy, int tx, int ty) {
+		int insert = path.getLength();
+		int start = localIndex(cluster, sx, sy);
+		int step = localIndex(cluster, tx, ty);
+
+		Path local = new Path();
+		while (step != start) {
+			local.prependStep(cluster.x + (step % clusterSize), cluster.y + (step / clusterSize));
+			step = localParent[step];
+		}
+		for (int i=0;i<local.getLength();i++) {
+			path.appendStep(local.getX(i), local.getY(i));
+		}
+		distance = insert + local.getLength();
+	}
+
+	/**
+	 * Get the index of a tile within the local search state
+	 *
+	 * @param cluster The cluster being searched
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The index of the tile into the local search state
+	 */
+	private int localIndex(Cluster cluster, int x, int y) {
+		return (x - cluster.x) + ((y - cluster.y) * clusterSize);
+	}
+
+	/**
+	 * Get the cost to a tile found by the last local search
+	 *
+	 * @param cluster The cluster that was searched
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The cost of reaching the tile or Float.MAX_VALUE if it could not be reached
+	 */
+	private float getLocalCost(Cluster cluster, int x, int y) {
+		int index = localIndex(cluster, x, y);
+		if (localStamp[index] != localGeneration) {
+			return Float.MAX_VALUE;
+		}
+		return localCost[index];
+	}
+
+	/**
+	 * Search for the cheapest paths from a tile to the others in a cluster,
+	 * never leaving the cluster.
+	 *
+	 * @param cluster The cluster to search
+	 * @param sx The x coordinate of the tile to search from
+	 * @param sy The y coordinate of the tile to search from
+	 * @param tx The x coordinate of the tile to stop at, or -1 to search the whole cluster
+	 * @param ty The y coordinate of the tile to stop at, or -1 to search the whole cluster
+	 * @param reverse True if the search should find the cost of reaching the start from
+	 * each tile rather than reaching each tile from the start
+	 * @param visit True if the map should be notified of the tiles visited
+	 * @return True if the target was reached
+	 */
+	private boolean localSearch(Cluster cluster, int sx, int sy, int tx, int ty, boolean reverse, boolean visit) {
+		localGeneration++;
+		if (localGeneration == 0) {
+			for (int i=0;i<localStamp.length;i++) {
+				localStamp[i] = 0;
+			}
+			localGeneration = 1;
+		}
+		localHeapSize = 0;
+
+		int start = localIndex(cluster, sx, sy);
+		int target = tx < 0 ? -1 : localIndex(cluster, tx, ty);
+		localStamp[start] = localGeneration;
+		localCost[start] = 0;
+		localParent[start] = -1;
+		localHeapIndex[start] = 0;
+		localHeap[localHeapSize++] = start;
+
+		while (localHeapSize > 0) {
+			int current = localHeap[0];
+			removeFirstFromLocalOpen();
+			if (current == target) {
+				return true;
+			}
+
+			int cx = cluster.x + (current % clusterSize);
+			int cy = cluster.y + (current / clusterSize);
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					if ((x == 0) && (y == 0)) {
+						continue;
+					}
+					if ((!allowDiagMovement) && (x != 0) && (y != 0)) {
+						continue;
+					}
+
+					int xp = cx + x;
+					int yp = cy + y;
+					if ((xp < cluster.x) || (yp < cluster.y) ||
+						(xp >= cluster.x + cluster.width) || (yp >= cluster.y + cluster.height)) {
+						continue;
+					}
+
+					float stepCost;
+					if (reverse) {
+						sourceX = xp;
+						sourceY = yp;
+						if (map.blocked(this, cx, cy)) {
+							continue;
+						}
+						stepCost = map.getCost(this, cx, cy);
+					} else {
+						sourceX = cx;
+						sourceY = cy;
+						if (map.blocked(this, xp, yp)) {
+							continue;
+						}
+						stepCost = map.getCost(this, xp, yp);
+					}
+					if (visit) {
+						map.pathFinderVisited(xp, yp);
+					}
+
+					int neighbour = localIndex(cluster, xp, yp);
+					float cost = localCost[current] + stepCost;
+					if (localStamp[neighbour] != localGeneration) {
+						localStamp[neighbour] = localGeneration;
+						localCost[neighbour] = cost;
+						localParent[neighbour] = current;
+						localHeapIndex[neighbour] = localHeapSize;
+						localHeap[localHeapSize++] = neighbour;
+						siftUpLocal(localHeapIndex[neighbour]);
+					} else if ((localHeapIndex[neighbour] >= 0) && (cost < localCost[neighbour])) {
+						localCost[neighbour] = cost;
+						localParent[neighbour] = current;
+						siftUpLocal(localHeapIndex[neighbour]);
+					}
+				}
+			}
+		}
+
+		return target < 0;
+	}
+
+	/**
+	 * Remove the cheapest tile from the local open heap, marking it closed
+	 */
+	private void removeFirstFromLocalOpen() {
+		localHeapIndex[localHeap[0]] = -1;
+		localHeapSize--;
+		if (localHeapSize > 0) {
+			localHeap[0] = localHeap[localHeapSize];
+			localHeapIndex[localHeap[0]] = 0;
+
+			int pos = 0;
+			int node = localHeap[0];
+			while (true) {
+				int child = (pos << 1) + 1;
+				if (child >= localHeapSize) {
+					break;
+				}
+				if ((child + 1 < localHeapSize) && (localCost[localHeap[child + 1]] < localCost[localHeap[child]])) {
+					child++;
+				}
+				if (localCost[localHeap[child]] >= localCost[node]) {
+					break;
+				}
+				localHeap[pos] = localHeap[child];
+				localHeapIndex[localHeap[pos]] = pos;
+				pos = child;
+			}
+			localHeap[pos] = node;
+			localHeapIndex[node] = pos;
+		}
+	}
+
+	/**
+	 * Move a tile up the local open heap until it is ordered
+	 *
+	 * @param pos The position of the tile in the heap
+	 */
+	private void siftUpLocal(int pos) {
+		int node = localHeap[pos];
+		while (pos > 0) {
+			int up = (pos - 1) >> 1;
+			if (localCost[node] >= localCost[localHeap[up]]) {
+				break;
+			}
+			localHeap[pos] = localHeap[up];
+			localHeapIndex[localHeap[pos]] = pos;
+			pos = up;
+		}
+		localHeap[pos] = node;
+		localHeapIndex[node] = pos;
+	}
+
+	/**
+	 * Add a node to the abstract open heap
+	 *
+	 * @param node The node to add
+	 */
+	private void addToOpen(AbstractNode node) {
+		if (heapSize == heap.length) {
+			AbstractNode[] temp = new AbstractNode[heap.length * 2];
+			System.arraycopy(heap, 0, temp, 0, heap.length);
+			heap = temp;
+		}
+		heap[heapSize] = node;
+		node.heapIndex = heapSize;
+		heapSize++;
+		siftUp(node.heapIndex);
+	}
+
+	/**
+	 * Remove the node with the lowest total cost from the abstract open heap
+	 *
+	 * @return The node removed
+	 */
+	private AbstractNode removeFirstFromOpen() {
+		AbstractNode first = heap[0];
+		first.heapIndex = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			AbstractNode node = heap[heapSize];
+			int pos = 0;
+			while (true) {
+				int child = (pos << 1) + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if ((child + 1 < heapSize) && (heap[child + 1].total < heap[child].total)) {
+					child++;
+				}
+				if (heap[child].total >= node.total) {
+					break;
+				}
+				heap[pos] = heap[child];
+				heap[pos].heapIndex = pos;
+				pos = child;
+			}
+			heap[pos] = node;
+			node.heapIndex = pos;
+		}
+		heap[heapSize] = null;
+
+		return first;
+	}
+
+	/**
+	 * Move a node up the abstract open heap until it is ordered
+	 *
+	 * @param pos The position of the node in the heap
+	 */
+	private void siftUp(int pos) {
+		AbstractNode node = heap[pos];
+		while (pos > 0) {
+			int up = (pos - 1) >> 1;
+			if (node.total >= heap[up].total) {
+				break;
+			}
+			heap[pos] = heap[up];
+			heap[pos].heapIndex = pos;
+			pos = up;
+		}
+		heap[pos] = node;
+		node.heapIndex = pos;
+	}
+
+	/**
+	 * Get the heuristic cost for the given location. This determines in which
+	 * order the entrances are processed.
+	 *
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The heuristic cost assigned to the tile
+	 */
+	public float getHeuristicCost(Mover mover, int x, int y, int tx, int ty) {
+		return heuristic.getCost(map, mover, x, y, tx, ty);
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getMover()
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSearchDistance()
+	 */
+	public int getSearchDistance() {
+		return distance;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceX()
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceY()
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+
+	/**
+	 * A square section of the map
+	 *
+	 * @author kevin
+	 */
+	private class Cluster {
+		/** The x coordinate of the top left tile of the cluster */
+		private int x;
+		/** The y coordinate of the top left tile of the cluster */
+		private int y;
+		/** The width of the cluster in tiles */
+		private int width;
+		/** The height of the cluster in tiles */
+		private int height;
+		/** The entrance nodes within this cluster */
+		private ArrayList nodes = new ArrayList();
+		/** True if the paths between entrances need rebuilding */
+		private boolean dirty;
+
+		/**
+		 * Create a new cluster
+		 *
+		 * @param x The x coordinate of the top left tile of the cluster
+		 * @param y The y coordinate of the top left tile of the cluster
+		 * @param width The width of the cluster in tiles
+		 * @param height The height of the cluster in tiles
+		 */
+		public Cluster(int x, int y, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	/**
+	 * A node in the abstract graph, one side of an entrance between clusters
+	 *
+	 * @author kevin
+	 */
+	private class AbstractNode {
+		/** The x coordinate of the tile this node is at */
+		private int x;
+		/** The y coordinate of the tile this node is at */
+		private int y;
+		/** The cluster this node is in */
+		private Cluster cluster;
+		/** The edges to other nodes in the same cluster */
+		private ArrayList edges = new ArrayList();
+		/** The edge across the border to the other side of the entrance */
+		private Edge exit;
+
+		/** The search generation this node was last touched in */
+		private int stamp;
+		/** The path cost for this node */
+		private float cost;
+		/** The total (cost + heuristic) for this node */
+		private float total;
+		/** The node we reached this node from */
+		private AbstractNode parent;
+		/** True if this node has been fully searched */
+		private boolean closed;
+		/** The position of this node in the open heap, or -1 if not in it */
+		private int heapIndex = -1;
+		/** The cost of reaching the target from this node */
+		private float targetCost;
+		/** The search generation the target cost was set in */
+		private int targetStamp;
+
+		/**
+		 * Create a new node
+		 *
+		 * @param x The x coordinate of the tile this node is at
+		 * @param y The y coordinate of the tile this node is at
+		 * @param cluster The cluster this node is in
+		 */
+		public AbstractNode(int x, int y, Cluster cluster) {
+			this.x = x;
+			this.y = y;
+			this.cluster = cluster;
+		}
+
+		/**
+		 * Bring this node into the given search generation, resetting its state
+		 * if it was last touched by a previous search.
+		 *
+		 * @param generation The current search generation
+		 */
+		public void touch(int generation) {
+			if (stamp != generation) {
+				stamp = generation;
+				cost = 0;
+				total = 0;
+				parent = null;
+				closed = false;
+				heapIndex = -1;
+			}
+		}
+	}
+
+	/**
+	 * A connection between two nodes in the abstract graph
+	 *
+	 * @author kevin
+	 */
+	private class Edge {
+		/** The node at the end of the edge */
+		private AbstractNode target;
+		/** The cost of moving along the edge */
+		private float cost;
+
+		/**
+		 * Create a new edge
+		 *
+		 * @param target The node at the end of the edge
+		 * @param cost The cost of moving along the edge
+		 */
+		public Edge(AbstractNode target, float cost) {
+			this.target = target;
+			this.cost = cost;
+		}
+	}
+}
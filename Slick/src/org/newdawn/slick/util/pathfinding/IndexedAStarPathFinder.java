@@ -0,0 +1,488 @@
+package org.newdawn.slick.util.pathfinding;
+
+import org.newdawn.slick.util.pathfinding.heuristics.ClosestHeuristic;
+
+/**
+ * A path finder implementation that uses the AStar heuristic based algorithm
+ * to determine a path. This implementation produces exactly the same paths as
+ * the AStarPathFinder for a given heuristic but keeps all of its search state
+ * in primitive arrays. The open list is an indexed binary heap and each node is
+ * stamped with the search generation that last touched it, so no per-search
+ * reset of the whole map is required and no objects are created during the
+ * search except the resulting path.
+ *
+ * Each instance holds its own search state so a single instance must only be
+ * used by one thread at a time.
+ *
+ * @author kevin
+ */
+public class IndexedAStarPathFinder implements PathFinder, PathFindingContext {
+	/** The flag indicating a node is in the open list */
+	private static final byte OPEN = 1;
+	/** The flag indicating a node is in the closed list */
+	private static final byte CLOSED = 2;
+
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The maximum depth of search we're willing to accept before giving up */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic we're applying to determine which nodes to search first */
+	private AStarHeuristic heuristic;
+
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+
+	/** The search generation each node was last touched in */
+	private int[] stamp;
+	/** The current search generation */
+	private int generation;
+	/** The path cost for each node */
+	private float[] cost;
+	/** The total (cost + heuristic) for each node */
+	private float[] total;
+	/** The index of the node we reached each node from, or -1 for none */
+	private int[] parent;
+	/** The search depth of each node */
+	private int[] depth;
+	/** The open/closed flags of each node */
+	private byte[] state;
+	/** The order in which each node was added to the open list, used to break ties */
+	private int[] order;
+	/** The position of each node in the open heap */
+	private int[] heapIndex;
+
+	/** The binary heap of node indices making up the open list */
+	private int[] heap;
+	/** The number of nodes in the open heap */
+	private int heapSize;
+	/** The counter used to order entries to the open list */
+	private int insertions;
+
+	/** The node index we're currently searching from, or -1 for none */
+	private int current = -1;
+	/** The mover going through the path */
+	private Mover mover;
+	/** The x coordinate of the source tile we're moving from */
+	private int sourceX;
+	/** The y coordinate of the source tile we're moving from */
+	private int sourceY;
+	/** The distance searched so far */
+	private int distance;
+
+	/**
+	 * Create a path finder with the default heuristic - closest to target.
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public IndexedAStarPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this(map, maxSearchDistance, allowDiagMovement, new ClosestHeuristic());
+	}
+
+	/**
+	 * Create a path finder
+	 *
+	 * @param heuristic The heuristic used to determine the search order of the map
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public IndexedAStarPathFinder(TileBasedMap map, int maxSearchDistance,
+								  boolean allowDiagMovement, AStarHeuristic heuristic) {
+		this.heuristic = heuristic;
+		this.map = map;
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+
+		int size = width * height;
+		stamp = new int[size];
+		cost = new float[size];
+		total = new float[size];
+		parent = new int[size];
+		depth = new int[size];
+		state = new byte[size];
+		order = new int[size];
+		heapIndex = new int[size];
+		heap = new int[size];
+	}
+
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		current = -1;
+
+		// easy first check, if the destination is blocked, we can't get there
+		this.mover = mover;
+		this.sourceX = tx;
+		this.sourceY = ty;
+		this.distance = 0;
+
+		if (map.blocked(this, tx, ty)) {
+			return null;
+		}
+
+		// move on to a new generation rather than resetting every node, only
+		// when the counter wraps do we need to clear the stamps
+		generation++;
+		if (generation == 0) {
+			for (int i=0;i<stamp.length;i++) {
+				stamp[i] = 0;
+			}
+			generation = 1;
+		}
+		heapSize = 0;
+		insertions = 0;
+
+		int source = index(sx, sy);
+		int target = index(tx, ty);
+
+		// initial state for A*. The closed group is empty. Only the starting
+		// tile is in the open list and it's cost is zero, i.e. we're already there
+		touch(source);
+		addToOpen(source);
+		touch(target);
+		parent[target] = -1;
+
+		// while we haven't found the goal and haven't exceeded our max search depth
+		int maxDepth = 0;
+		while ((maxDepth < maxSearchDistance) && (heapSize != 0)) {
+			// pull out the first node in our open list, this is determined to
+			// be the most likely to be the next step based on our heuristic
+			int lx = sx;
+			int ly = sy;
+			if (current != -1) {
+				lx = current / height;
+				ly = current % height;
+			}
+
+			current = heap[0];
+			distance = depth[current];
+
+			if (current == target) {
+				if (isValidLocation(mover,lx,ly,tx,ty)) {
+					break;
+				}
+			}
+
+			removeFromOpen(current);
+			state[current] = CLOSED;
+
+			int cx = current / height;
+			int cy = current % height;
+
+			// search through all the neighbours of the current node evaluating
+			// them as next steps
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					// not a neighbour, its the current tile
+					if ((x == 0) && (y == 0)) {
+						continue;
+					}
+
+					// if we're not allowing diaganol movement then only
+					// one of x or y can be set
+					if (!allowDiagMovement) {
+						if ((x != 0) && (y != 0)) {
+							continue;
+						}
+					}
+
+					// determine the location of the neighbour and evaluate it
+					int xp = x + cx;
+					int yp = y + cy;
+
+					if (isValidLocation(mover,cx,cy,xp,yp)) {
+						float nextStepCost = cost[current] + getMovementCost(mover, cx, cy, xp, yp);
+						int neighbour = index(xp, yp);
+						touch(neighbour);
+						map.pathFinderVisited(xp, yp);
+
+						// if we've found a cheaper way to a node we've already seen
+						// then it needs to be re-evaluated
+						if (nextStepCost < cost[neighbour]) {
+							if (state[neighbour] == OPEN) {
+								removeFromOpen(neighbour);
+							}
+							state[neighbour] = 0;
+						}
+
+						if (state[neighbour] == 0) {
+							cost[neighbour] = nextStepCost;
+							total[neighbour] = getHeuristicCost(mover, xp, yp, tx, ty) + nextStepCost;
+							parent[neighbour] = current;
+							depth[neighbour] = depth[current] + 1;
+							maxDepth = Math.max(maxDepth, depth[neighbour]);
+							addToOpen(neighbour);
+						}
+					}
+				}
+			}
+		}
+
+		// since we've got an empty open list or we've run out of search
+		// there was no path. Just return null
+		if (parent[target] == -1) {
+			return null;
+		}
+
+		// At this point we've definitely found a path so we can uses the parent
+		// references of the nodes to find out way from the target location back
+		// to the start recording the nodes on the way.
+		Path path = new Path();
+		int step = target;
+		while (step != source) {
+			path.prependStep(step / height, step % height);
+			step = parent[step];
+		}
+		path.prependStep(sx,sy);
+
+		// thats it, we have our path
+		return path;
+	}
+
+	/**
+	 * Get the index of the node at a given location
+	 *
+	 * @param x The x coordinate of the node
+	 * @param y The y coordinate of the node
+	 * @return The index of the node into the state arrays
+	 */
+	private int index(int x, int y) {
+		return (x * height) + y;
+	}
+
+	/**
+	 * Bring a node into the current search generation, resetting its state
+	 * if it was last touched by a previous search.
+	 *
+	 * @param node The index of the node to touch
+	 */
+	private void touch(int node) {
+		if (stamp[node] != generation) {
+			stamp[node] = generation;
+			cost[node] = 0;
+			total[node] = 0;
+			depth[node] = 0;
+			state[node] = 0;
+			parent[node] = -1;
+		}
+	}
+
+	/**
+	 * Get the X coordinate of the node currently being evaluated
+	 *
+	 * @return The X coordinate of the node currently being evaluated
+	 */
+	public int getCurrentX() {
+		if (current == -1) {
+			return -1;
+		}
+
+		return current / height;
+	}
+
+	/**
+	 * Get the Y coordinate of the node currently being evaluated
+	 *
+	 * @return The Y coordinate of the node currently being evaluated
+	 */
+	public int getCurrentY() {
+		if (current == -1) {
+			return -1;
+		}
+
+		return current % height;
+	}
+
+	/**
+	 * Add a node to the open heap. Nodes of equal total cost are ordered by
+	 * insertion to match the ordering of the AStarPathFinder's open list.
+	 *
+	 * @param node The index of the node to add
+	 */
+	private void addToOpen(int node) {
+		state[node] = OPEN;
+		order[node] = insertions++;
+		heap[heapSize] = node;
+		heapIndex[node] = heapSize;
+		heapSize++;
+		siftUp(heapIndex[node]);
+	}
+
+	/**
+	 * Remove a node from the open heap
+	 *
+	 * @param node The index of the node to remove
+	 */
+	private void removeFromOpen(int node) {
+		state[node] = 0;
+		int pos = heapIndex[node];
+		heapSize--;
+		if (pos != heapSize) {
+			int moved = heap[heapSize];
+			heap[pos] = moved;
+			heapIndex[moved] = pos;
+			siftUp(pos);
+			if (heapIndex[moved] == pos) {
+				siftDown(pos);
+			}
+		}
+	}
+
+	/**
+	 * Check if one node should be searched before another
+	 *
+	 * @param a The index of the first node
+	 * @param b The index of the second node
+	 * @return True if node a comes before node b
+	 */
+	private boolean before(int a, int b) {
+		if (total[a] < total[b]) {
+			return true;
+		}
+		if (total[a] > total[b]) {
+			return false;
+		}
+
+		return order[a] < order[b];
+	}
+
+	/**
+	 * Move the heap entry at the given position up until the heap is ordered
+	 *
+	 * @param pos The position in the heap to start from
+	 */
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int up = (pos - 1) >> 1;
+			if (!before(node, heap[up])) {
+				break;
+			}
+			heap[pos] = heap[up];
+			heapIndex[heap[pos]] = pos;
+			pos = up;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * Move the heap entry at the given position down until the heap is ordered
+	 *
+	 * @param pos The position in the heap to start from
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = (pos << 1) + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if ((child + 1 < heapSize) && (before(heap[child + 1], heap[child]))) {
+				child++;
+			}
+			if (!before(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapIndex[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * Check if a given location is valid for the supplied mover
+	 *
+	 * @param mover The mover that would hold a given location
+	 * @param sx The starting x coordinate
+	 * @param sy The starting y coordinate
+	 * @param x The x coordinate of the location to check
+	 * @param y The y coordinate of the location to check
+	 * @return True if the location is valid for the given mover
+	 */
+	protected boolean isValidLocation(Mover mover, int sx, int sy, int x, int y) {
+		boolean invalid = (x < 0) || (y < 0) || (x >= width) || (y >= height);
+
+		if ((!invalid) && ((sx != x) || (sy != y))) {
+			this.mover = mover;
+			this.sourceX = sx;
+			this.sourceY = sy;
+			invalid = map.blocked(this, x, y);
+		}
+
+		return !invalid;
+	}
+
+	/**
+	 * Get the cost to move through a given location
+	 *
+	 * @param mover The entity that is being moved
+	 * @param sx The x coordinate of the tile whose cost is being determined
+	 * @param sy The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The cost of movement through the given tile
+	 */
+	public float getMovementCost(Mover mover, int sx, int sy, int tx, int ty) {
+		this.mover = mover;
+		this.sourceX = sx;
+		this.sourceY = sy;
+
+		return map.getCost(this, tx, ty);
+	}
+
+	/**
+	 * Get the heuristic cost for the given location. This determines in which
+	 * order the locations are processed.
+	 *
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The heuristic cost assigned to the tile
+	 */
+	public float getHeuristicCost(Mover mover, int x, int y, int tx, int ty) {
+		return heuristic.getCost(map, mover, x, y, tx, ty);
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getMover()
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSearchDistance()
+	 */
+	public int getSearchDistance() {
+		return distance;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceX()
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceY()
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+}
@@ -0,0 +1,621 @@
+package org.newdawn.slick.util.pathfinding;
+
+import org.newdawn.slick.util.pathfinding.heuristics.ClosestHeuristic;
+
+/**
+ * A path finder using Jump Point Search. On maps where every tile costs the same
+ * to move into, whole runs of tiles in a direction can be skipped until a tile
+ * with a neighbour that can't be reached more cheaply some other way is found.
+ * Only these jump points are added to the open list so far fewer nodes are
+ * searched than the AStarPathFinder would.
+ *
+ * Jump point search is only used when the map being searched implements
+ * UniformCostMap. For any other map the search falls back to an
+ * IndexedAStarPathFinder.
+ *
+ * The paths returned contain every tile step, as with the other path finders,
+ * not just the jump points. The maximum search distance is applied to the
+ * number of steps to each jump point.
+ *
+ * @see UniformCostMap
+ * @author kevin
+ */
+public class JumpPointPathFinder implements PathFinder, PathFindingContext {
+	/** The flag indicating a node is in the open list */
+	private static final byte OPEN = 1;
+	/** The flag indicating a node is in the closed list */
+	private static final byte CLOSED = 2;
+
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The maximum depth of search we're willing to accept before giving up */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic we're applying to determine which nodes to search first */
+	private AStarHeuristic heuristic;
+	/** The path finder used when the map is not of uniform cost */
+	private PathFinder fallback;
+
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+
+	/** The search generation each node was last touched in */
+	private int[] stamp;
+	/** The current search generation */
+	private int generation;
+	/** The path cost for each node */
+	private float[] cost;
+	/** The total (cost + heuristic) for each node */
+	private float[] total;
+	/** The index of the jump point we reached each node from, or -1 for none */
+	private int[] parent;
+	/** The number of steps taken to reach each node */
+	private int[] depth;
+	/** The open/closed flags of each node */
+	private byte[] state;
+	/** The position of each node in the open heap */
+	private int[] heapIndex;
+	/** The binary heap of node indices making up the open list */
+	private int[] heap;
+	/** The number of nodes in the open heap */
+	private int heapSize;
+
+	/** The x coordinate of the target of the current search */
+	private int targetX;
+	/** The y coordinate of the target of the current search */
+	private int targetY;
+	/** The directions to be searched from the current node, as x,y pairs */
+	private int[] directions = new int[16];
+
+	/** The node index we're currently searching from, or -1 for none */
+	private int current = -1;
+	/** The mover going through the path */
+	private Mover mover;
+	/** The x coordinate of the source tile we're moving from */
+	private int sourceX;
+	/** The y coordinate of the source tile we're moving from */
+	private int sourceY;
+	/** The distance searched so far */
+	private int distance;
+
+	/**
+	 * Create a path finder with the default heuristic - closest to target.
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public JumpPointPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this(map, maxSearchDistance, allowDiagMovement, new ClosestHeuristic());
+	}
+
+	/**
+	 * Create a path finder
+	 *
+	 * @param heuristic The heuristic used to determine the search order of the map
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public JumpPointPathFinder(TileBasedMap map, int maxSearchDistance,
+							   boolean allowDiagMovement, AStarHeuristic heuristic) {
+		this.heuristic = heuristic;
+		this.map = map;
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+
+		if (!(map instanceof UniformCostMap)) {
+			fallback = new IndexedAStarPathFinder(map, maxSearchDistance, allowDiagMovement, heuristic);
+			return;
+		}
+
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+
+		int size = width * height;
+		stamp = new int[size];
+		cost = new float[size];
+		total = new float[size];
+		parent = new int[size];
+		depth = new int[size];
+		state = new byte[size];
+		heapIndex = new int[size];
+		heap = new int[size];
+	}
+
+	/**
+	 * Check if this path finder is using jump point search, i.e. the map
+	 * is of uniform cost.
+	 *
+	 * @return True if jump point search is being used
+	 */
+	public boolean isJumping() {
+		return fallback == null;
+	}
+
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		if (fallback != null) {
+			return fallback.findPath(mover, sx, sy, tx, ty);
+		}
+
+		current = -1;
+
+		// easy first check, if the destination is blocked, we can't get there
+		this.mover = mover;
+		this.sourceX = tx;
+		this.sourceY = ty;
+		this.distance = 0;
+
+		if (map.blocked(this, tx, ty)) {
+			return null;
+		}
+		float stepCost = map.getCost(this, tx, ty);
+
+		generation++;
+		if (generation == 0) {
+			for (int i=0;i<stamp.length;i++) {
+				stamp[i] = 0;
+			}
+			generation = 1;
+		}
+		heapSize = 0;
+		targetX = tx;
+		targetY = ty;
+
+		int source = index(sx, sy);
+		int target = index(tx, ty);
+		touch(source);
+		addToOpen(source);
+		touch(target);
+
+		while (heapSize != 0) {
+			current = heap[0];
+			removeFromOpen(current);
+			state[current] = CLOSED;
+			distance = depth[current];
+
+			if (current == target) {
+				break;
+			}
+
+			int cx = current / height;
+			int cy = current % height;
+			int count = findDirections(cx, cy);
+			for (int i=0;i<count;i++) {
+				int dx = directions[i*2];
+				int dy = directions[(i*2)+1];
+				int jump = jump(cx + dx, cy + dy, dx, dy);
+				if (jump < 0) {
+					continue;
+				}
+
+				int jx = jump / height;
+				int jy = jump % height;
+				int steps = Math.max(Math.abs(jx - cx), Math.abs(jy - cy));
+				touch(jump);
+				if ((state[jump] == CLOSED) || (depth[current] + steps > maxSearchDistance)) {
+					continue;
+				}
+
+				float nextStepCost = cost[current] + (steps * stepCost);
+				if ((state[jump] != OPEN) || (nextStepCost < cost[jump])) {
+					cost[jump] = nextStepCost;
+					total[jump] = nextStepCost + getHeuristicCost(mover, jx, jy, tx, ty);
+					parent[jump] = current;
+					depth[jump] = depth[current] + steps;
+					map.pathFinderVisited(jx, jy);
+
+					if (state[jump] == OPEN) {
+						siftUp(heapIndex[jump]);
+					} else {
+						addToOpen(jump);
+					}
+				}
+			}
+		}
+
+		if ((source == target) || (parent[target] == -1)) {
+			return null;
+		}
+
+		// walk back through the jump points filling in the steps between them
+		Path path = new Path();
+		int step = target;
+		while (step != source) {
+			int x = step / height;
+			int y = step % height;
+			int px = parent[step] / height;
+			int py = parent[step] % height;
+			int dx = sign(px - x);
+			int dy = sign(py - y);
+
+			while ((x != px) || (y != py)) {
+				path.prependStep(x, y);
+				if (x != px) {
+					x += dx;
+				}
+				if (y != py) {
+					y += dy;
+				}
+			}
+			step = parent[step];
+		}
+		path.prependStep(sx,sy);
+
+		return path;
+	}
+
+	/**
+	 * Find the directions worth searching from a node, pruning those that can
+	 * be reached at least as cheaply without going through it.
+	 *
+	 * @param x The x coordinate of the node
+	 * @param y The y coordinate of the node
+	 * @return The number of directions found
+	 */
+	private int findDirections(int x, int y) {
+		int node = index(x, y);
+		int count = 0;
+
+		if (parent[node] == -1) {
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if ((dx == 0) && (dy == 0)) {
+						continue;
+					}
+					if ((!allowDiagMovement) && (dx != 0) && (dy != 0)) {
+						continue;
+					}
+					count = addDirection(count, dx, dy);
+				}
+			}
+			return count;
+		}
+
+		int dx = sign(x - (parent[node] / height));
+		int dy = sign(y - (parent[node] % height));
+
+		if (allowDiagMovement) {
+			if ((dx != 0) && (dy != 0)) {
+				if (walkable(x, y, x, y + dy)) {
+					count = addDirection(count, 0, dy);
+				}
+				if (walkable(x, y, x + dx, y)) {
+					count = addDirection(count, dx, 0);
+				}
+				if (walkable(x, y, x + dx, y + dy)) {
+					count = addDirection(count, dx, dy);
+				}
+				if (!walkable(x, y, x - dx, y)) {
+					count = addDirection(count, -dx, dy);
+				}
+				if (!walkable(x, y, x, y - dy)) {
+					count = addDirection(count, dx, -dy);
+				}
+			} else if (dx == 0) {
+				if (walkable(x, y, x, y + dy)) {
+					count = addDirection(count, 0, dy);
+				}
+				if (!walkable(x, y, x + 1, y)) {
+					count = addDirection(count, 1, dy);
+				}
+				if (!walkable(x, y, x - 1, y)) {
+					count = addDirection(count, -1, dy);
+				}
+			} else {
+				if (walkable(x, y, x + dx, y)) {
+					count = addDirection(count, dx, 0);
+				}
+				if (!walkable(x, y, x, y + 1)) {
+					count = addDirection(count, dx, 1);
+				}
+				if (!walkable(x, y, x, y - 1)) {
+					count = addDirection(count, dx, -1);
+				}
+			}
+		} else {
+			if (dx != 0) {
+				count = addDirection(count, 0, -1);
+				count = addDirection(count, 0, 1);
+				count = addDirection(count, dx, 0);
+			} else {
+				count = addDirection(count, -1, 0);
+				count = addDirection(count, 1, 0);
+				count = addDirection(count, 0, dy);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Add a direction to be searched
+	 *
+	 * @param count The number of directions already added
+	 * @param dx The x step of the direction
+	 * @param dy The y step of the direction
+	 * @return The new number of directions added
+	 */
+	private int addDirection(int count, int dx, int dy) {
+		directions[count*2] = dx;
+		directions[(count*2)+1] = dy;
+		return count + 1;
+	}
+
+	/**
+	 * Move from a location in the given direction until a jump point is found
+	 *
+	 * @param x The x coordinate of the first tile to move on to
+	 * @param y The y coordinate of the first tile to move on to
+	 * @param dx The x step of the direction to move in
+	 * @param dy The y step of the direction to move in
+	 * @return The index of the jump point found or -1 if none was found
+	 */
+	private int jump(int x, int y, int dx, int dy) {
+		while (true) {
+			if (!walkable(x - dx, y - dy, x, y)) {
+				return -1;
+			}
+			if ((x == targetX) && (y == targetY)) {
+				return index(x, y);
+			}
+
+			if (allowDiagMovement) {
+				if ((dx != 0) && (dy != 0)) {
+					if ((walkable(x, y, x - dx, y + dy) && !walkable(x, y, x - dx, y)) ||
+						(walkable(x, y, x + dx, y - dy) && !walkable(x, y, x, y - dy))) {
+						return index(x, y);
+					}
+					if ((jump(x + dx, y, dx, 0) >= 0) || (jump(x, y + dy, 0, dy) >= 0)) {
+						return index(x, y);
+					}
+				} else if (dx != 0) {
+					if ((walkable(x, y, x + dx, y + 1) && !walkable(x, y, x, y + 1)) ||
+						(walkable(x, y, x + dx, y - 1) && !walkable(x, y, x, y - 1))) {
+						return index(x, y);
+					}
+				} else {
+					if ((walkable(x, y, x + 1, y + dy) && !walkable(x, y, x + 1, y)) ||
+						(walkable(x, y, x - 1, y + dy) && !walkable(x, y, x - 1, y))) {
+						return index(x, y);
+					}
+				}
+			} else {
+				if (dx != 0) {
+					if ((walkable(x, y, x, y - 1) && !walkable(x, y, x - dx, y - 1)) ||
+						(walkable(x, y, x, y + 1) && !walkable(x, y, x - dx, y + 1))) {
+						return index(x, y);
+					}
+				} else {
+					if ((walkable(x, y, x - 1, y) && !walkable(x, y, x - 1, y - dy)) ||
+						(walkable(x, y, x + 1, y) && !walkable(x, y, x + 1, y - dy))) {
+						return index(x, y);
+					}
+					if ((jump(x + 1, y, 1, 0) >= 0) || (jump(x - 1, y, -1, 0) >= 0)) {
+						return index(x, y);
+					}
+				}
+			}
+
+			x += dx;
+			y += dy;
+		}
+	}
+
+	/**
+	 * Check if a location can be moved on to
+	 *
+	 * @param sx The x coordinate of the location being moved from
+	 * @param sy The y coordinate of the location being moved from
+	 * @param x The x coordinate of the location to check
+	 * @param y The y coordinate of the location to check
+	 * @return True if the location can be moved on to
+	 */
+	private boolean walkable(int sx, int sy, int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+			return false;
+		}
+
+		sourceX = sx;
+		sourceY = sy;
+		return !map.blocked(this, x, y);
+	}
+
+	/**
+	 * Get the sign of a value
+	 *
+	 * @param value The value to check
+	 * @return -1, 0 or 1 depending on the sign of the value
+	 */
+	private int sign(int value) {
+		if (value < 0) {
+			return -1;
+		}
+		if (value > 0) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the index of the node at a given location
+	 *
+	 * @param x The x coordinate of the node
+	 * @param y The y coordinate of the node
+	 * @return The index of the node into the state arrays
+	 */
+	private int index(int x, int y) {
+		return (x * height) + y;
+	}
+
+	/**
+	 * Bring a node into the current search generation, resetting its state
+	 * if it was last touched by a previous search.
+	 *
+	 * @param node The index of the node to touch
+	 */
+	private void touch(int node) {
+		if (stamp[node] != generation) {
+			stamp[node] = generation;
+			cost[node] = 0;
+			total[node] = 0;
+			depth[node] = 0;
+			state[node] = 0;
+			parent[node] = -1;
+		}
+	}
+
+	/**
+	 * Add a node to the open heap
+	 *
+	 * @param node The index of the node to add
+	 */
+	private void addToOpen(int node) {
+		state[node] = OPEN;
+		heap[heapSize] = node;
+		heapIndex[node] = heapSize;
+		heapSize++;
+		siftUp(heapIndex[node]);
+	}
+
+	/**
+	 * Remove a node from the open heap
+	 *
+	 * @param node The index of the node to remove
+	 */
+	private void removeFromOpen(int node) {
+		state[node] = 0;
+		int pos = heapIndex[node];
+		heapSize--;
+		if (pos != heapSize) {
+			int moved = heap[heapSize];
+			heap[pos] = moved;
+			heapIndex[moved] = pos;
+			siftUp(pos);
+			if (heapIndex[moved] == pos) {
+				siftDown(pos);
+			}
+		}
+	}
+
+	/**
+	 * Move the heap entry at the given position up until the heap is ordered
+	 *
+	 * @param pos The position in the heap to start from
+	 */
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int up = (pos - 1) >> 1;
+			if (total[node] >= total[heap[up]]) {
+				break;
+			}
+			heap[pos] = heap[up];
+			heapIndex[heap[pos]] = pos;
+			pos = up;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * Move the heap entry at the given position down until the heap is ordered
+	 *
+	 * @param pos The position in the heap to start from
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = (pos << 1) + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if ((child + 1 < heapSize) && (total[heap[child + 1]] < total[heap[child]])) {
+				child++;
+			}
+			if (total[heap[child]] >= total[node]) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapIndex[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * Get the X coordinate of the node currently being evaluated
+	 *
+	 * @return The X coordinate of the node currently being evaluated
+	 */
+	public int getCurrentX() {
+		if (current == -1) {
+			return -1;
+		}
+
+		return current / height;
+	}
+
+	/**
+	 * Get the Y coordinate of the node currently being evaluated
+	 *
+	 * @return The Y coordinate of the node currently being evaluated
+	 */
+	public int getCurrentY() {
+		if (current == -1) {
+			return -1;
+		}
+
+		return current % height;
+	}
+
+	/**
+	 * Get the heuristic cost for the given location. This determines in which
+	 * order the locations are processed.
+	 *
+	 * @param mover The entity that is being moved
+	 * @param x The x coordinate of the tile whose cost is being determined
+	 * @param y The y coordiante of the tile whose cost is being determined
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The heuristic cost assigned to the tile
+	 */
+	public float getHeuristicCost(Mover mover, int x, int y, int tx, int ty) {
+		return heuristic.getCost(map, mover, x, y, tx, ty);
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getMover()
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSearchDistance()
+	 */
+	public int getSearchDistance() {
+		return distance;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceX()
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceY()
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+}
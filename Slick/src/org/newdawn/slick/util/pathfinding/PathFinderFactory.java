@@ -0,0 +1,17 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A factory for path finders. Used where a separate path finder, and hence
+ * separate search state, is required for each thread searching a map.
+ * 
+ * @author kevin
+ */
+public interface PathFinderFactory {
+	/**
+	 * Create a new path finder. Each call should return a new instance that
+	 * shares no search state with any other.
+	 * 
+	 * @return The newly created path finder
+	 */
+	public PathFinder createPathFinder();
+}
@@ -0,0 +1,166 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A single request for a path submitted to a BatchPathFinder. The request
+ * can be polled for its result or a listener can be supplied to be notified
+ * once the path has been found.
+ *
+ * @see BatchPathFinder
+ * @author kevin
+ */
+public class PathRequest {
+	/** The entity that will be moving along the path */
+	private Mover mover;
+	/** The x coordinate of the start location */
+	private int sx;
+	/** The y coordinate of the start location */
+	private int sy;
+	/** The x coordinate of the target location */
+	private int tx;
+	/** The y coordinate of the target location */
+	private int ty;
+	/** The listener to be notified when the request completes, or null */
+	private PathRequestListener listener;
+
+	/** The path found, null if none was found */
+	private Path path;
+	/** True if the search for this path has been completed */
+	private boolean complete;
+	/** True if the request was cancelled before being searched */
+	private boolean cancelled;
+
+	/**
+	 * Create a new path request
+	 *
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param listener The listener to notify when the path has been found or null
+	 */
+	public PathRequest(Mover mover, int sx, int sy, int tx, int ty, PathRequestListener listener) {
+		this.mover = mover;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+		this.listener = listener;
+	}
+
+	/**
+	 * Get the entity that will be moving along the path
+	 *
+	 * @return The entity that will be moving along the path
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * Get the x coordinate of the start location
+	 *
+	 * @return The x coordinate of the start location
+	 */
+	public int getSourceX() {
+		return sx;
+	}
+
+	/**
+	 * Get the y coordinate of the start location
+	 *
+	 * @return The y coordinate of the start location
+	 */
+	public int getSourceY() {
+		return sy;
+	}
+
+	/**
+	 * Get the x coordinate of the target location
+	 *
+	 * @return The x coordinate of the target location
+	 */
+	public int getTargetX() {
+		return tx;
+	}
+
+	/**
+	 * Get the y coordinate of the target location
+	 *
+	 * @return The y coordinate of the target location
+	 */
+	public int getTargetY() {
+		return ty;
+	}
+
+	/**
+	 * Get the listener to be notified when this request completes
+	 *
+	 * @return The listener to be notified or null if none was supplied
+	 */
+	public PathRequestListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Check if the search for this path has been completed
+	 *
+	 * @return True if the search for this path has been completed
+	 */
+	public synchronized boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Check if this request was cancelled
+	 *
+	 * @return True if this request was cancelled
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Cancel this request. If the search has not yet started it will be
+	 * skipped and no listener will be notified.
+	 */
+	public synchronized void cancel() {
+		cancelled = true;
+		notifyAll();
+	}
+
+	/**
+	 * Get the path found. Only valid once the request is complete
+	 *
+	 * @return The path found or null if no path was found or the request
+	 * is not yet complete
+	 */
+	public synchronized Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Wait for this request to complete and get the path found
+	 *
+	 * @return The path found or null if no path could be found
+	 * @throws InterruptedException Indicates the thread was interrupted while waiting
+	 */
+	public synchronized Path waitForPath() throws InterruptedException {
+		while (!complete && !cancelled) {
+			wait();
+		}
+
+		return path;
+	}
+
+	/**
+	 * Record the result of the search for this path
+	 *
+	 * @param path The path found or null if no path could be found
+	 */
+	synchronized void complete(Path path) {
+		this.path = path;
+		this.complete = true;
+		notifyAll();
+	}
+}
@@ -0,0 +1,19 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A description of a class responding to the completion of path requests
+ * submitted to a BatchPathFinder.
+ * 
+ * @see BatchPathFinder
+ * @author kevin
+ */
+public interface PathRequestListener {
+	/**
+	 * Notification that a path request has been completed. This is called on
+	 * the thread that calls BatchPathFinder#update(), normally the game thread.
+	 * 
+	 * @param request The request that has been completed
+	 * @param path The path found or null if no path could be found
+	 */
+	public void pathComplete(PathRequest request, Path path);
+}
@@ -0,0 +1,14 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A tagging interface for tile based maps where every tile that is not blocked
+ * costs the same to move into, i.e. getCost() returns the same value for every
+ * tile. Whether a tile is blocked must also not depend on the tile it is entered 
+ * from. Path finders can use this to take short cuts over the map, 
+ * e.g. JumpPointPathFinder.
+ * 
+ * @author kevin
+ */
+public interface UniformCostMap extends TileBasedMap {
+
+}
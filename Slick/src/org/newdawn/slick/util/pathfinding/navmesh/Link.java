@@ -13,6 +13,19 @@ public class Link {
 	/** The target space we'd be linking to */
 	private Space target;
 	
+	/** The search generation this link was last reached in by NavMesh */
+	int stamp;
+	/** The cost of reaching this link in the current search */
+	float cost;
+	/** The total (cost + heuristic) of this link in the current search */
+	float total;
+	/** The link we reached this link from in the current search */
+	Link parent;
+	/** The position of this link in the search's open heap, or -1 if not in it */
+	int heapIndex = -1;
+	/** True if this link has been fully searched */
+	boolean closed;
+	
 	/**
 	 * Create a new link
 	 * 
@@ -40,6 +53,17 @@ public class Link {
 		return ((dx*dx) + (dy*dy));
 	}
 	
+	/**
+	 * Get the distance from this link to the given position
+	 * 
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The distance from this link to the target
+	 */
+	public float distance(float tx, float ty) {
+		return (float) Math.sqrt(distance2(tx, ty));
+	}
+	
 	/**
 	 * Get the x coordinate of the link
 	 * 
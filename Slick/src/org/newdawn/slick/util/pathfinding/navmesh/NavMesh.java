@@ -15,6 +15,26 @@ public class NavMesh {
 	/** The list of spaces that build up this navigation mesh */
 	private ArrayList spaces = new ArrayList();
 	
+	/** The indices of the spaces overlapping each cell of the lookup grid, null if the grid needs building */
+	private int[][] cells;
+	/** The number of cells across the lookup grid */
+	private int cellsAcross;
+	/** The number of cells down the lookup grid */
+	private int cellsDown;
+	/** The size of each cell in the lookup grid */
+	private float cellSize;
+	/** The x coordinate of the top corner of the lookup grid */
+	private float gridX;
+	/** The y coordinate of the top corner of the lookup grid */
+	private float gridY;
+	
+	/** The heap of links making up the open list of the current search */
+	private Link[] heap = new Link[64];
+	/** The number of links in the open heap */
+	private int heapSize;
+	/** The current search generation */
+	private int generation;
+	
 	/**
 	 * Create a new empty mesh
 	 */
@@ -57,6 +77,7 @@ public class NavMesh {
 	 */
 	public void addSpace(Space space) {
 		spaces.add(space);
+		cells = null;
 	}
 	
 	/**
@@ -67,8 +88,22 @@ public class NavMesh {
 	 * @return The space at the given location
 	 */
 	public Space findSpace(float x, float y) {
-		for (int i=0;i<spaces.size();i++) {
-			Space space = getSpace(i);
+		if (cells == null) {
+			buildGrid();
+		}
+		if ((x < gridX) || (y < gridY)) {
+			return null;
+		}
+		
+		int cx = (int) ((x - gridX) / cellSize);
+		int cy = (int) ((y - gridY) / cellSize);
+		if ((cx >= cellsAcross) || (cy >= cellsDown)) {
+			return null;
+		}
+		
+		int[] cell = cells[cx+(cy*cellsAcross)];
+		for (int i=0;i<cell.length;i++) {
+			Space space = getSpace(cell[i]);
 			if (space.contains(x,y)) {
 				return space;
 			}
@@ -78,7 +113,77 @@ public class NavMesh {
 	}
 	
 	/**
-	 * Find a path from the source to the target coordinates 
+	 * Build the grid used to look up spaces by location. Each cell lists the
+	 * spaces overlapping it in the order they appear in the mesh so the same
+	 * space is found as a scan through the whole mesh would.
+	 */
+	private void buildGrid() {
+		if (spaces.size() == 0) {
+			gridX = 0;
+			gridY = 0;
+			cellSize = 1;
+			cellsAcross = 0;
+			cellsDown = 0;
+			cells = new int[0][];
+			return;
+		}
+		
+		float minx = Float.MAX_VALUE;
+		float miny = Float.MAX_VALUE;
+		float maxx = -Float.MAX_VALUE;
+		float maxy = -Float.MAX_VALUE;
+		for (int i=0;i<spaces.size();i++) {
+			Space space = getSpace(i);
+			minx = Math.min(minx, space.getX());
+			miny = Math.min(miny, space.getY());
+			maxx = Math.max(maxx, space.getX()+space.getWidth());
+			maxy = Math.max(maxy, space.getY()+space.getHeight());
+		}
+		
+		// aim for around one space per cell
+		float width = Math.max(maxx - minx, 0.0001f);
+		float height = Math.max(maxy - miny, 0.0001f);
+		gridX = minx;
+		gridY = miny;
+		cellSize = (float) Math.sqrt((width * height) / spaces.size());
+		cellsAcross = Math.max(1, (int) Math.ceil(width / cellSize));
+		cellsDown = Math.max(1, (int) Math.ceil(height / cellSize));
+		
+		int[] counts = new int[cellsAcross*cellsDown];
+		for (int pass=0;pass<2;pass++) {
+			if (pass == 1) {
+				cells = new int[counts.length][];
+				for (int i=0;i<counts.length;i++) {
+					cells[i] = new int[counts[i]];
+					counts[i] = 0;
+				}
+			}
+			
+			for (int i=0;i<spaces.size();i++) {
+				Space space = getSpace(i);
+				int x1 = Math.min(cellsAcross-1, (int) ((space.getX() - gridX) / cellSize));
+				int y1 = Math.min(cellsDown-1, (int) ((space.getY() - gridY) / cellSize));
+				int x2 = Math.min(cellsAcross-1, (int) ((space.getX() + space.getWidth() - gridX) / cellSize));
+				int y2 = Math.min(cellsDown-1, (int) ((space.getY() + space.getHeight() - gridY) / cellSize));
+				
+				for (int cx=x1;cx<=x2;cx++) {
+					for (int cy=y1;cy<=y2;cy++) {
+						int cell = cx+(cy*cellsAcross);
+						if (pass == 1) {
+							cells[cell][counts[cell]] = i;
+						}
+						counts[cell]++;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Find a path from the source to the target coordinates. The search runs
+	 * A* across the links between spaces, costing each step as the straight line
+	 * distance between links, so only the spaces that might lie on the best path
+	 * are searched.
 	 * 
 	 * @param sx The x coordinate of the source location
 	 * @param sy The y coordinate of the source location 
@@ -95,28 +200,159 @@ public class NavMesh {
 			return null;
 		}
 		
-		for (int i=0;i<spaces.size();i++) {
-			((Space) spaces.get(i)).clearCost();
+		generation++;
+		heapSize = 0;
+		
+		// the start and end of the search are links into the source and
+		// out of the target space
+		Link start = new Link(sx, sy, source);
+		Link end = new Link(tx, ty, null);
+		start.stamp = generation;
+		start.cost = 0;
+		start.total = start.distance(tx, ty);
+		start.parent = null;
+		start.closed = false;
+		addToOpen(start);
+		
+		while (heapSize > 0) {
+			Link current = removeFirstFromOpen();
+			current.closed = true;
+			if (current == end) {
+				break;
+			}
+			
+			Space space = current.getTarget();
+			if (space == target) {
+				reach(current, end, tx, ty);
+			}
+			for (int i=0;i<space.getLinkCount();i++) {
+				reach(current, space.getLink(i), tx, ty);
+			}
 		}
-		target.fill(source,tx, ty, 0);
-		if (target.getCost() == Float.MAX_VALUE) {
+		
+		if ((end.stamp != generation) || (!end.closed)) {
 			return null;
 		}
-		if (source.getCost() == Float.MAX_VALUE) {
-			return null;
+		
+		ArrayList route = new ArrayList();
+		for (Link link = end.parent;link != start;link = link.parent) {
+			route.add(0, link);
 		}
 		
 		NavPath path = new NavPath();
 		path.push(new Link(sx, sy, null));
-		if (source.pickLowestCost(target, path)) {
-			path.push(new Link(tx, ty, null));
-			if (optimize) {
-				optimize(path);
+		for (int i=0;i<route.size();i++) {
+			path.push((Link) route.get(i));
+		}
+		path.push(end);
+		if (optimize) {
+			optimize(path);
+		}
+		return path;
+	}
+	
+	/**
+	 * Consider reaching a link in the search from another
+	 * 
+	 * @param from The link we're moving from
+	 * @param to The link we're moving to
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 */
+	private void reach(Link from, Link to, float tx, float ty) {
+		if (to.stamp != generation) {
+			to.stamp = generation;
+			to.closed = false;
+			to.heapIndex = -1;
+		} else if (to.closed) {
+			return;
+		}
+		
+		float cost = from.cost + to.distance(from.getX(), from.getY());
+		if ((to.heapIndex >= 0) && (cost >= to.cost)) {
+			return;
+		}
+		
+		to.cost = cost;
+		to.total = cost + to.distance(tx, ty);
+		to.parent = from;
+		if (to.heapIndex >= 0) {
+			siftUp(to.heapIndex);
+		} else {
+			addToOpen(to);
+		}
+	}
+	
+	/**
+	 * Add a link to the open heap
+	 * 
+	 * @param link The link to add
+	 */
+	private void addToOpen(Link link) {
+		if (heapSize == heap.length) {
+			Link[] temp = new Link[heap.length * 2];
+			System.arraycopy(heap, 0, temp, 0, heap.length);
+			heap = temp;
+		}
+		heap[heapSize] = link;
+		link.heapIndex = heapSize;
+		heapSize++;
+		siftUp(link.heapIndex);
+	}
+	
+	/**
+	 * Remove the link with the lowest total cost from the open heap
+	 * 
+	 * @return The link removed
+	 */
+	private Link removeFirstFromOpen() {
+		Link first = heap[0];
+		first.heapIndex = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			Link link = heap[heapSize];
+			int pos = 0;
+			while (true) {
+				int child = (pos << 1) + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if ((child + 1 < heapSize) && (heap[child + 1].total < heap[child].total)) {
+					child++;
+				}
+				if (heap[child].total >= link.total) {
+					break;
+				}
+				heap[pos] = heap[child];
+				heap[pos].heapIndex = pos;
+				pos = child;
 			}
-			return path;
+			heap[pos] = link;
+			link.heapIndex = pos;
 		}
+		heap[heapSize] = null;
 		
-		return null;
+		return first;
+	}
+	
+	/**
+	 * Move a link up the open heap until it is ordered
+	 * 
+	 * @param pos The position of the link in the heap
+	 */
+	private void siftUp(int pos) {
+		Link link = heap[pos];
+		while (pos > 0) {
+			int up = (pos - 1) >> 1;
+			if (link.total >= heap[up].total) {
+				break;
+			}
+			heap[pos] = heap[up];
+			heap[pos].heapIndex = pos;
+			pos = up;
+		}
+		heap[pos] = link;
+		link.heapIndex = pos;
 	}
 	
 	/**
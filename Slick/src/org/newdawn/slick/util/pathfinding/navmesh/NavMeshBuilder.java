@@ -1,6 +1,10 @@
 package org.newdawn.slick.util.pathfinding.navmesh;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 
 import org.newdawn.slick.util.pathfinding.Mover;
 import org.newdawn.slick.util.pathfinding.PathFindingContext;
@@ -21,6 +25,35 @@ public class NavMeshBuilder implements PathFindingContext {
 	private float smallestSpace = 0.2f;
 	/** True if we're working tile based */
 	private boolean tileBased;
+	/** True if we're merging runs of tiles and linking through edge tables rather than pairwise */
+	private boolean sweep;
+	
+	/**
+	 * Indicate whether the builder should use the sweep based build. Rows of
+	 * clear tiles are merged into runs, runs of matching width in the rows below
+	 * are merged into the same space, and spaces are linked by looking up the
+	 * spaces that share each edge line. This is close to linear in the size of
+	 * the map rather than the pairwise merging and linking of the default build.
+	 * The spaces created differ from the default build but the links between
+	 * them give the same connectivity.
+	 * 
+	 * Quad based builds still use the pairwise merge but are linked through
+	 * the edge tables.
+	 * 
+	 * @param sweep True if the sweep based build should be used
+	 */
+	public void setSweep(boolean sweep) {
+		this.sweep = sweep;
+	}
+	
+	/**
+	 * Check if the builder is using the sweep based build
+	 * 
+	 * @return True if the sweep based build is being used
+	 */
+	public boolean isSweep() {
+		return sweep;
+	}
 	
 	/**
 	 * Build a navigation mesh based on a tile map
@@ -46,6 +79,13 @@ public class NavMeshBuilder implements PathFindingContext {
 		
 		ArrayList spaces = new ArrayList();
 		
+		if (sweep && tileBased) {
+			mergeRuns(map, spaces);
+			linkSpacesByEdge(spaces);
+			
+			return new NavMesh(spaces);
+		}
+		
 		if (tileBased) {
 			for (int x=0;x<map.getWidthInTiles();x++) {
 				for (int y=0;y<map.getHeightInTiles();y++) {
@@ -61,7 +101,11 @@ public class NavMeshBuilder implements PathFindingContext {
 		}
 		
 		while (mergeSpaces(spaces)) {}
-		linkSpaces(spaces);
+		if (sweep) {
+			linkSpacesByEdge(spaces);
+		} else {
+			linkSpaces(spaces);
+		}
 		
 		return new NavMesh(spaces);
 	}
@@ -113,6 +157,176 @@ public class NavMeshBuilder implements PathFindingContext {
 		}
 	}
 	
+	/**
+	 * Build spaces from the clear tiles of the map by finding runs of clear 
+	 * tiles in each row and extending the space above a run downwards where 
+	 * it covers exactly the same columns.
+	 * 
+	 * @param map The map the spaces are being built from
+	 * @param spaces The list to add the spaces created to
+	 */
+	private void mergeRuns(TileBasedMap map, ArrayList spaces) {
+		int width = map.getWidthInTiles();
+		int height = map.getHeightInTiles();
+		
+		// the open space started at each column, described by its end column 
+		// (or -1 for none) and the row it started on
+		int[] openEnd = new int[width];
+		int[] openTop = new int[width];
+		int[] runEnd = new int[width];
+		for (int x=0;x<width;x++) {
+			openEnd[x] = -1;
+		}
+		
+		for (int y=0;y<=height;y++) {
+			for (int x=0;x<width;x++) {
+				runEnd[x] = -1;
+			}
+			
+			if (y < height) {
+				int x = 0;
+				while (x < width) {
+					if (tileBlocked(map, x, y)) {
+						x++;
+						continue;
+					}
+					int start = x;
+					while ((x < width) && (!tileBlocked(map, x, y))) {
+						x++;
+					}
+					runEnd[start] = x;
+				}
+			}
+			
+			for (int x=0;x<width;x++) {
+				if (openEnd[x] < 0) {
+					if (runEnd[x] >= 0) {
+						openEnd[x] = runEnd[x];
+						openTop[x] = y;
+					}
+					continue;
+				}
+				if (runEnd[x] != openEnd[x]) {
+					spaces.add(new Space(x, openTop[x], openEnd[x] - x, y - openTop[x]));
+					openEnd[x] = runEnd[x];
+					openTop[x] = y;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Check if a single tile is blocked
+	 * 
+	 * @param map The map being checked
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return True if the tile is blocked
+	 */
+	private boolean tileBlocked(TileBasedMap map, int x, int y) {
+		sx = x;
+		sy = y;
+		return map.blocked(this, x, y);
+	}
+	
+	/**
+	 * Determine the links between spaces by collecting the spaces along each 
+	 * vertical and horizontal edge line and only comparing spaces that share
+	 * a line. The same spaces are linked as by linkSpaces().
+	 * 
+	 * @param spaces The spaces to link up
+	 */
+	private void linkSpacesByEdge(ArrayList spaces) {
+		// spaces keyed by the x coordinate of their right edge and
+		// the y coordinate of their bottom edge
+		HashMap rightEdges = new HashMap();
+		HashMap bottomEdges = new HashMap();
+		for (int i=0;i<spaces.size();i++) {
+			Space space = (Space) spaces.get(i);
+			addToEdge(rightEdges, space.getX()+space.getWidth(), space);
+			addToEdge(bottomEdges, space.getY()+space.getHeight(), space);
+		}
+		sortEdges(rightEdges, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return Float.compare(((Space) o1).getY(), ((Space) o2).getY());
+			}
+		});
+		sortEdges(bottomEdges, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return Float.compare(((Space) o1).getX(), ((Space) o2).getX());
+			}
+		});
+		
+		for (int i=0;i<spaces.size();i++) {
+			Space a = (Space) spaces.get(i);
+			
+			// spaces whose right edge is on our left edge
+			ArrayList left = (ArrayList) rightEdges.get(new Float(a.getX()));
+			if (left != null) {
+				for (int j=0;j<left.size();j++) {
+					Space b = (Space) left.get(j);
+					if (b.getY() > a.getY()+a.getHeight()) {
+						break;
+					}
+					if (b.getY()+b.getHeight() >= a.getY()) {
+						a.link(b);
+						b.link(a);
+					}
+				}
+			}
+			
+			// spaces whose bottom edge is on our top edge, skipping any that only
+			// touch at a corner already linked through the vertical edges
+			ArrayList above = (ArrayList) bottomEdges.get(new Float(a.getY()));
+			if (above != null) {
+				for (int j=0;j<above.size();j++) {
+					Space b = (Space) above.get(j);
+					if (b.getX() > a.getX()+a.getWidth()) {
+						break;
+					}
+					if (b.getX()+b.getWidth() < a.getX()) {
+						continue;
+					}
+					if ((b.getX()+b.getWidth() == a.getX()) || (a.getX()+a.getWidth() == b.getX())) {
+						continue;
+					}
+					a.link(b);
+					b.link(a);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Add a space to the list of those on an edge line
+	 * 
+	 * @param edges The table of spaces by edge line
+	 * @param line The coordinate of the edge line
+	 * @param space The space to add
+	 */
+	private void addToEdge(HashMap edges, float line, Space space) {
+		Float key = new Float(line);
+		ArrayList list = (ArrayList) edges.get(key);
+		if (list == null) {
+			list = new ArrayList();
+			edges.put(key, list);
+		}
+		list.add(space);
+	}
+	
+	/**
+	 * Sort the spaces on each edge line
+	 * 
+	 * @param edges The table of spaces by edge line
+	 * @param comparator The comparator to sort the spaces on each line with
+	 */
+	private void sortEdges(HashMap edges, Comparator comparator) {
+		Iterator lists = edges.values().iterator();
+		while (lists.hasNext()) {
+			Collections.sort((ArrayList) lists.next(), comparator);
+		}
+	}
+	
 	/**
 	 * Check if a particular space is clear of blockages
 	 * 